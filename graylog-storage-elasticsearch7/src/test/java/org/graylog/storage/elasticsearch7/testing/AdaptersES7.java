@@ -42,6 +42,8 @@ import org.graylog2.indexer.cluster.NodeAdapter;
 import org.graylog2.indexer.counts.CountsAdapter;
 import org.graylog2.indexer.fieldtypes.IndexFieldTypePollerAdapter;
 import org.graylog2.indexer.indices.IndicesAdapter;
+import org.graylog2.indexer.messages.AdaptiveBulkController;
+import org.graylog2.indexer.messages.BulkRequestCompressor;
 import org.graylog2.indexer.messages.ChunkedBulkIndexer;
 import org.graylog2.indexer.messages.MessagesAdapter;
 import org.graylog2.indexer.searches.SearchesAdapter;
@@ -98,7 +100,17 @@ public class AdaptersES7 implements Adapters {
 
     @Override
     public MessagesAdapter messagesAdapter() {
-        return new MessagesAdapterES7(client, new MetricRegistry(), new ChunkedBulkIndexer(), objectMapper);
+        return messagesAdapter(false);
+    }
+
+    @Override
+    public MessagesAdapter messagesAdapter(boolean compressionEnabled) {
+        final Configuration configuration = new Configuration();
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final AdaptiveBulkController bulkController = new AdaptiveBulkController(configuration.getOutputBatchSize(),
+                configuration.getOutputBufferProcessors(), configuration.getOutputBulkLatencyTarget(), metricRegistry);
+        return new MessagesAdapterES7(client, metricRegistry, new ChunkedBulkIndexer(bulkController), objectMapper,
+                new BulkRequestCompressor(compressionEnabled, metricRegistry));
     }
 
     @Override
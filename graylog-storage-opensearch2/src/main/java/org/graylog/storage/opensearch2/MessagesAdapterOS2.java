@@ -20,7 +20,9 @@ import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import org.graylog2.indexer.messages.BulkRequestCompressor;
 import org.graylog2.indexer.messages.ChunkedBulkIndexer;
 import org.graylog2.indexer.messages.DocumentNotFoundException;
 import org.graylog2.indexer.messages.Indexable;
@@ -28,6 +30,8 @@ import org.graylog2.indexer.messages.IndexingRequest;
 import org.graylog2.indexer.messages.Messages;
 import org.graylog2.indexer.messages.MessagesAdapter;
 import org.graylog2.indexer.results.ResultMessage;
+import org.graylog.shaded.opensearch2.org.apache.http.entity.ByteArrayEntity;
+import org.graylog.shaded.opensearch2.org.apache.http.entity.ContentType;
 import org.graylog.shaded.opensearch2.org.opensearch.OpenSearchException;
 import org.graylog.shaded.opensearch2.org.opensearch.action.bulk.BulkItemResponse;
 import org.graylog.shaded.opensearch2.org.opensearch.action.bulk.BulkRequest;
@@ -35,8 +39,16 @@ import org.graylog.shaded.opensearch2.org.opensearch.action.bulk.BulkResponse;
 import org.graylog.shaded.opensearch2.org.opensearch.action.get.GetRequest;
 import org.graylog.shaded.opensearch2.org.opensearch.action.get.GetResponse;
 import org.graylog.shaded.opensearch2.org.opensearch.action.index.IndexRequest;
+import org.graylog.shaded.opensearch2.org.opensearch.client.Request;
+import org.graylog.shaded.opensearch2.org.opensearch.client.RequestOptions;
+import org.graylog.shaded.opensearch2.org.opensearch.client.Response;
+import org.graylog.shaded.opensearch2.org.opensearch.client.ResponseException;
+import org.graylog.shaded.opensearch2.org.opensearch.client.RestHighLevelClient;
 import org.graylog.shaded.opensearch2.org.opensearch.client.indices.AnalyzeRequest;
 import org.graylog.shaded.opensearch2.org.opensearch.client.indices.AnalyzeResponse;
+import org.graylog.shaded.opensearch2.org.opensearch.common.xcontent.DeprecationHandler;
+import org.graylog.shaded.opensearch2.org.opensearch.common.xcontent.NamedXContentRegistry;
+import org.graylog.shaded.opensearch2.org.opensearch.common.xcontent.XContentParser;
 import org.graylog.shaded.opensearch2.org.opensearch.common.xcontent.XContentType;
 import org.graylog.shaded.opensearch2.org.opensearch.rest.RestStatus;
 import org.slf4j.Logger;
@@ -71,13 +83,16 @@ public class MessagesAdapterOS2 implements MessagesAdapter {
     private final Meter invalidTimestampMeter;
     private final ChunkedBulkIndexer chunkedBulkIndexer;
     private final ObjectMapper objectMapper;
+    private final BulkRequestCompressor bulkRequestCompressor;
 
     @Inject
-    public MessagesAdapterOS2(OpenSearchClient openSearchClient, MetricRegistry metricRegistry, ChunkedBulkIndexer chunkedBulkIndexer, ObjectMapper objectMapper) {
+    public MessagesAdapterOS2(OpenSearchClient openSearchClient, MetricRegistry metricRegistry, ChunkedBulkIndexer chunkedBulkIndexer,
+                             ObjectMapper objectMapper, BulkRequestCompressor bulkRequestCompressor) {
         this.client = openSearchClient;
         this.invalidTimestampMeter = metricRegistry.meter(name(Messages.class, "invalid-timestamps"));
         this.chunkedBulkIndexer = chunkedBulkIndexer;
         this.objectMapper = objectMapper;
+        this.bulkRequestCompressor = bulkRequestCompressor;
     }
 
     @Override
@@ -167,24 +182,69 @@ public class MessagesAdapterOS2 implements MessagesAdapter {
     }
 
     private BulkResponse runBulkRequest(int indexedSuccessfully, List<IndexingRequest> chunk) throws ChunkedBulkIndexer.EntityTooLargeException {
-        final BulkRequest bulkRequest = createBulkRequest(chunk);
-
         final BulkResponse result;
         try {
-            result = this.client.execute((c, requestOptions) -> c.bulk(bulkRequest, requestOptions));
+            if (bulkRequestCompressor.isEnabled()) {
+                final BulkRequestCompressor.Body body = compressBulkRequest(chunk);
+                result = this.client.execute((c, requestOptions) -> runCompressedBulkRequest(c, requestOptions, body));
+            } else {
+                final BulkRequest bulkRequest = createBulkRequest(chunk);
+                result = this.client.execute((c, requestOptions) -> c.bulk(bulkRequest, requestOptions));
+            }
         } catch (OpenSearchException e) {
             for (OpenSearchException cause : e.guessRootCauses()) {
-                if (cause.status().equals(RestStatus.REQUEST_ENTITY_TOO_LARGE)) {
-                    throw new ChunkedBulkIndexer.EntityTooLargeException(indexedSuccessfully);
-                } else if (cause.status().equals(RestStatus.TOO_MANY_REQUESTS)) {
-                    throw new ChunkedBulkIndexer.TooManyRequestsException(indexedSuccessfully);
-                }
+                throwIfEntityTooLarge(cause.status().getStatus(), indexedSuccessfully);
+            }
+            // Compressed bulk requests are sent with the low level client, which reports errors as response exceptions.
+            if (e.getCause() instanceof ResponseException responseException) {
+                throwIfEntityTooLarge(responseException.getResponse().getStatusLine().getStatusCode(), indexedSuccessfully);
             }
             throw new org.graylog2.indexer.ElasticsearchException(e);
         }
         return result;
     }
 
+    private void throwIfEntityTooLarge(int status, int indexedSuccessfully) throws ChunkedBulkIndexer.EntityTooLargeException {
+        if (status == RestStatus.REQUEST_ENTITY_TOO_LARGE.getStatus()) {
+            throw new ChunkedBulkIndexer.EntityTooLargeException(indexedSuccessfully);
+        }
+        if (status == RestStatus.TOO_MANY_REQUESTS.getStatus()) {
+            throw new ChunkedBulkIndexer.TooManyRequestsException(indexedSuccessfully);
+        }
+    }
+
+    private BulkRequestCompressor.Body compressBulkRequest(List<IndexingRequest> chunk) {
+        try {
+            return bulkRequestCompressor.compress(outputStream -> {
+                for (IndexingRequest request : chunk) {
+                    final Map<String, Object> action = ImmutableMap.of("index", ImmutableMap.of(
+                            "_index", request.indexSet().getWriteIndexAlias(),
+                            "_id", request.message().getId()));
+                    outputStream.write(objectMapper.writeValueAsBytes(action));
+                    outputStream.write('\n');
+                    outputStream.write(serialize(request));
+                    outputStream.write('\n');
+                }
+            });
+        } catch (IOException e) {
+            throw new org.graylog2.indexer.ElasticsearchException("Unable to compress bulk request", e);
+        }
+    }
+
+    private BulkResponse runCompressedBulkRequest(RestHighLevelClient c, RequestOptions requestOptions, BulkRequestCompressor.Body body) throws IOException {
+        final ByteArrayEntity entity = new ByteArrayEntity(body.buffer(), 0, body.length(), ContentType.APPLICATION_JSON);
+        entity.setContentEncoding("gzip");
+        final Request request = new Request("POST", "/_bulk");
+        request.setEntity(entity);
+        request.setOptions(requestOptions);
+
+        final Response response = c.getLowLevelClient().performRequest(request);
+        try (XContentParser parser = XContentType.JSON.xContent().createParser(NamedXContentRegistry.EMPTY,
+                DeprecationHandler.THROW_UNSUPPORTED_OPERATION, response.getEntity().getContent())) {
+            return BulkResponse.fromXContent(parser);
+        }
+    }
+
     private BulkRequest createBulkRequest(List<IndexingRequest> chunk) {
         final BulkRequest bulkRequest = new BulkRequest();
         chunk.forEach(request -> bulkRequest.add(
@@ -247,14 +307,16 @@ public class MessagesAdapterOS2 implements MessagesAdapter {
     }
 
     private IndexRequest indexRequestFrom(IndexingRequest request) {
-        final byte[] body;
+        return new IndexRequest(request.indexSet().getWriteIndexAlias())
+                .id(request.message().getId())
+                .source(serialize(request), XContentType.JSON);
+    }
+
+    private byte[] serialize(IndexingRequest request) {
         try {
-            body = this.objectMapper.writeValueAsBytes(request.message().toElasticSearchObject(objectMapper, this.invalidTimestampMeter));
+            return this.objectMapper.writeValueAsBytes(request.message().toElasticSearchObject(objectMapper, this.invalidTimestampMeter));
         } catch (JsonProcessingException e) {
             throw new RuntimeException(e);
         }
-        return new IndexRequest(request.indexSet().getWriteIndexAlias())
-                .id(request.message().getId())
-                .source(body, XContentType.JSON);
     }
 }
@@ -45,6 +45,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 import static java.util.Objects.requireNonNull;
@@ -61,17 +63,27 @@ public class OpenSearchExportBackend implements ExportBackend {
 
     private final IndexLookup indexLookup;
     private final RequestStrategy requestStrategy;
+    private final SlicedScroll slicedScroll;
     private final boolean allowLeadingWildcard;
 
     @Inject
-    public OpenSearchExportBackend(IndexLookup indexLookup, RequestStrategy requestStrategy, @Named("allow_leading_wildcard_searches") boolean allowLeadingWildcard) {
+    public OpenSearchExportBackend(IndexLookup indexLookup,
+                                   RequestStrategy requestStrategy,
+                                   SlicedScroll slicedScroll,
+                                   @Named("allow_leading_wildcard_searches") boolean allowLeadingWildcard) {
         this.indexLookup = indexLookup;
         this.requestStrategy = requestStrategy;
+        this.slicedScroll = slicedScroll;
         this.allowLeadingWildcard = allowLeadingWildcard;
     }
 
     @Override
     public void run(ExportMessagesCommand command, Consumer<SimpleMessageChunk> chunkCollector) {
+        if (slicedScroll.isEnabled()) {
+            runSliced(command, chunkCollector);
+            return;
+        }
+
         boolean isFirstChunk = true;
         int totalCount = 0;
 
@@ -99,6 +111,38 @@ public class OpenSearchExportBackend implements ExportBackend {
         }
     }
 
+    private void runSliced(ExportMessagesCommand command, Consumer<SimpleMessageChunk> chunkCollector) {
+        final Set<String> indices = indicesFor(command);
+        final AtomicBoolean isFirstChunk = new AtomicBoolean(true);
+        final AtomicBoolean chunkPublishingFailed = new AtomicBoolean(false);
+        final AtomicInteger totalCount = new AtomicInteger(0);
+
+        slicedScroll.run(slice -> new SearchRequest()
+                        .source(new SearchSourceBuilder()
+                                .query(queryFrom(command))
+                                .size(command.chunkSize())
+                                .sort(Message.FIELD_TIMESTAMP, SortOrder.ASC)
+                                .slice(slice))
+                        .indices(indices.toArray(new String[0]))
+                        .indicesOptions(IndicesOptions.fromOptions(false, false, true, false)),
+                hits -> {
+                    final SimpleMessageChunk.ChunkOrder chunkOrder = isFirstChunk.getAndSet(false) ? SimpleMessageChunk.ChunkOrder.FIRST : SimpleMessageChunk.ChunkOrder.INTERMEDIATE;
+                    if (!publishChunk(chunkCollector, hits, command.fieldsInOrder(), command.timeZone(), chunkOrder)) {
+                        chunkPublishingFailed.set(true);
+                        return false;
+                    }
+                    if (command.limit().isPresent() && totalCount.addAndGet(hits.size()) >= command.limit().getAsInt()) {
+                        LOG.info("Limit of {} reached. Stopping message retrieval.", command.limit().getAsInt());
+                        return false;
+                    }
+                    return true;
+                });
+
+        if (!chunkPublishingFailed.get()) {
+            publishChunk(chunkCollector, Collections.emptyList(), command.fieldsInOrder(), command.timeZone(), SimpleMessageChunk.ChunkOrder.LAST);
+        }
+    }
+
     private List<SearchHit> search(ExportMessagesCommand command) {
         SearchRequest search = prepareSearchRequest(command);
 
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.storage.opensearch2.views.export;
+
+import com.google.common.collect.Streams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.graylog.plugins.views.search.export.ExportException;
+import org.graylog.shaded.opensearch2.org.opensearch.action.search.ClearScrollRequest;
+import org.graylog.shaded.opensearch2.org.opensearch.action.search.SearchRequest;
+import org.graylog.shaded.opensearch2.org.opensearch.action.search.SearchResponse;
+import org.graylog.shaded.opensearch2.org.opensearch.action.search.SearchScrollRequest;
+import org.graylog.shaded.opensearch2.org.opensearch.common.unit.TimeValue;
+import org.graylog.shaded.opensearch2.org.opensearch.search.SearchHit;
+import org.graylog.shaded.opensearch2.org.opensearch.search.slice.SliceBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Fetches export results with concurrent sliced scroll requests.
+ * <p>
+ * Every slice is read by its own worker, pages are handed over to the calling thread through a bounded queue,
+ * so at most {@code search_export_max_buffered_chunks} pages are held in memory at any time. Messages are ordered
+ * by timestamp within a slice only.
+ */
+public class SlicedScroll {
+    private static final Logger LOG = LoggerFactory.getLogger(SlicedScroll.class);
+    private static final TimeValue SCROLL_KEEP_ALIVE = TimeValue.timeValueMinutes(1);
+    private static final long OFFER_TIMEOUT_MS = 500;
+    private static final List<SearchHit> SLICE_DONE = Collections.emptyList();
+
+    private final ExportClient client;
+    private final int parallelism;
+    private final int maxBufferedChunks;
+
+    @Inject
+    public SlicedScroll(ExportClient client,
+                        @Named("search_export_parallelism") int parallelism,
+                        @Named("search_export_max_buffered_chunks") int maxBufferedChunks) {
+        this.client = client;
+        this.parallelism = parallelism;
+        this.maxBufferedChunks = maxBufferedChunks;
+    }
+
+    public boolean isEnabled() {
+        return parallelism > 1;
+    }
+
+    /**
+     * Runs all slices and passes every non-empty page of hits to {@code pageConsumer} on the calling thread.
+     * Reading stops as soon as the consumer returns {@code false}.
+     *
+     * @param requestForSlice creates a fresh search request for the given slice, the scroll and slice settings are added here
+     * @param pageConsumer    receives the pages and returns whether more pages should be fetched
+     */
+    public void run(Function<SliceBuilder, SearchRequest> requestForSlice, Predicate<List<SearchHit>> pageConsumer) {
+        final BlockingQueue<List<SearchHit>> pages = new ArrayBlockingQueue<>(maxBufferedChunks);
+        final AtomicBoolean cancelled = new AtomicBoolean(false);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                new ThreadFactoryBuilder().setNameFormat("sliced-export-worker-%d").setDaemon(true).build());
+
+        try {
+            for (int slice = 0; slice < parallelism; slice++) {
+                final SearchRequest request = requestForSlice.apply(new SliceBuilder(slice, parallelism))
+                        .scroll(SCROLL_KEEP_ALIVE);
+                executor.submit(() -> readSlice(request, pages, cancelled, failure));
+            }
+
+            int finishedSlices = 0;
+            while (finishedSlices < parallelism) {
+                final List<SearchHit> page = pages.take();
+                if (page == SLICE_DONE) {
+                    finishedSlices++;
+                    continue;
+                }
+                if (failure.get() != null) {
+                    break;
+                }
+                if (!pageConsumer.test(page)) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExportException("Interrupted while waiting for sliced export results", e);
+        } finally {
+            cancelled.set(true);
+            executor.shutdownNow();
+        }
+
+        final Exception error = failure.get();
+        if (error != null) {
+            throw error instanceof ExportException
+                    ? (ExportException) error
+                    : new ExportException("Unable to complete sliced export", error);
+        }
+    }
+
+    private void readSlice(SearchRequest request,
+                           BlockingQueue<List<SearchHit>> pages,
+                           AtomicBoolean cancelled,
+                           AtomicReference<Exception> failure) {
+        String scrollId = null;
+        try {
+            SearchResponse response = client.singleSearch(request, "Failed to execute sliced scroll request");
+            scrollId = response.getScrollId();
+            List<SearchHit> hits = hitsFrom(response);
+
+            while (!hits.isEmpty() && !cancelled.get()) {
+                if (!offer(pages, hits, cancelled)) {
+                    return;
+                }
+                final SearchScrollRequest scrollRequest = new SearchScrollRequest(scrollId).scroll(SCROLL_KEEP_ALIVE);
+                response = client.execute((c, requestOptions) -> c.scroll(scrollRequest, requestOptions),
+                        "Failed to retrieve next chunk of sliced scroll request");
+                scrollId = response.getScrollId();
+                hits = hitsFrom(response);
+            }
+        } catch (Exception e) {
+            LOG.warn("Reading export slice failed", e);
+            failure.compareAndSet(null, e);
+        } finally {
+            clearScroll(scrollId);
+            // Always signal completion, the consumer counts finished slices.
+            offer(pages, SLICE_DONE, cancelled);
+        }
+    }
+
+    private boolean offer(BlockingQueue<List<SearchHit>> pages, List<SearchHit> page, AtomicBoolean cancelled) {
+        try {
+            while (!cancelled.get()) {
+                if (pages.offer(page, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private void clearScroll(String scrollId) {
+        if (scrollId == null) {
+            return;
+        }
+        try {
+            final ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+            clearScrollRequest.addScrollId(scrollId);
+            client.execute((c, requestOptions) -> c.clearScroll(clearScrollRequest, requestOptions),
+                    "Unable to clear sliced scroll context");
+        } catch (Exception e) {
+            LOG.debug("Unable to clear scroll context <{}>", scrollId, e);
+        }
+    }
+
+    private List<SearchHit> hitsFrom(SearchResponse response) {
+        return Streams.stream(response.getHits()).collect(Collectors.toCollection(ArrayList::new));
+    }
+}
@@ -63,12 +63,19 @@ public class OpenSearchExportBackendIT extends ElasticsearchBaseTest {
     public void setUp() {
         indexLookup = mock(IndexLookup.class);
 
-        sut = new OpenSearchExportBackend(indexLookup, requestStrategy(), false);
+        sut = new OpenSearchExportBackend(indexLookup, requestStrategy(), slicedScroll(1), false);
     }
 
     private RequestStrategy requestStrategy() {
-        final ExportClient exportClient = new ExportClient(openSearchInstance.openSearchClient());
-        return new SearchAfter(exportClient);
+        return new SearchAfter(exportClient());
+    }
+
+    private SlicedScroll slicedScroll(int parallelism) {
+        return new SlicedScroll(exportClient(), parallelism, 2);
+    }
+
+    private ExportClient exportClient() {
+        return new ExportClient(openSearchInstance.openSearchClient());
     }
 
     @Test
@@ -135,6 +142,37 @@ public class OpenSearchExportBackendIT extends ElasticsearchBaseTest {
                 "graylog_0, 2015-01-01T01:00:00.000Z, Ha");
     }
 
+    @Test
+    public void slicedExportDeliversAllMessages() {
+        importFixture("messages.json");
+        sut = new OpenSearchExportBackend(indexLookup, requestStrategy(), slicedScroll(3), false);
+
+        ExportMessagesCommand command = commandBuilderWithAllStreams()
+                .chunkSize(1)
+                .build();
+
+        runWithExpectedResultIgnoringSort(command, "timestamp,source,message",
+                "graylog_0, 2015-01-01T01:00:00.000Z, source-1, Ha",
+                "graylog_1, 2015-01-01T01:59:59.999Z, source-2, He",
+                "graylog_0, 2015-01-01T03:00:00.000Z, source-1, Hi",
+                "graylog_0, 2015-01-01T04:00:00.000Z, source-2, Ho");
+    }
+
+    @Test
+    public void slicedExportRespectsResultLimit() {
+        importFixture("messages.json");
+        sut = new OpenSearchExportBackend(indexLookup, requestStrategy(), slicedScroll(2), false);
+
+        ExportMessagesCommand command = commandBuilderWithAllStreams()
+                .chunkSize(1)
+                .limit(2)
+                .build();
+
+        SimpleMessageChunk totalResult = collectTotalResult(command);
+
+        assertThat(totalResult.messages()).hasSize(2);
+    }
+
     @Test
     public void marksFirstChunk() {
         importFixture("messages.json");
@@ -16,6 +16,7 @@
  */
 package org.graylog.events;
 
+import com.google.inject.Scopes;
 import com.google.inject.assistedinject.FactoryModuleBuilder;
 import com.google.inject.multibindings.OptionalBinder;
 import org.graylog.events.audit.EventsAuditEventTypes;
@@ -29,6 +30,8 @@ import org.graylog.events.fields.EventFieldSpecEngine;
 import org.graylog.events.fields.providers.LookupTableFieldValueProvider;
 import org.graylog.events.fields.providers.TemplateFieldValueProvider;
 import org.graylog.events.indices.EventIndexer;
+import org.graylog.events.indices.EventIndexingQueue;
+import org.graylog.events.indices.EventIndexingService;
 import org.graylog.events.legacy.LegacyAlarmCallbackEventNotification;
 import org.graylog.events.legacy.LegacyAlarmCallbackEventNotificationConfig;
 import org.graylog.events.legacy.V20190722150700_LegacyAlertConditionMigration;
@@ -51,6 +54,7 @@ import org.graylog.events.processor.aggregation.AggregationEventProcessorConfig;
 import org.graylog.events.processor.aggregation.AggregationEventProcessorParameters;
 import org.graylog.events.processor.aggregation.AggregationSearch;
 import org.graylog.events.processor.aggregation.PivotAggregationSearch;
+import org.graylog.events.processor.realtime.RealtimeFilterEventProcessor;
 import org.graylog.events.processor.storage.EventStorageHandlerEngine;
 import org.graylog.events.processor.storage.PersistToStreamsStorageHandler;
 import org.graylog.events.processor.systemnotification.SystemNotificationEventEntityScope;
@@ -65,6 +69,7 @@ import org.graylog.events.rest.EventNotificationsResource;
 import org.graylog.events.rest.EventsResource;
 import org.graylog.scheduler.schedule.IntervalJobSchedule;
 import org.graylog.scheduler.schedule.OnceJobSchedule;
+import org.graylog2.Configuration;
 import org.graylog2.contentpacks.model.ModelTypes;
 import org.graylog2.plugin.PluginConfigBean;
 import org.graylog2.plugin.PluginModule;
@@ -73,6 +78,12 @@ import java.util.Collections;
 import java.util.Set;
 
 public class EventsModule extends PluginModule {
+    private final Configuration configuration;
+
+    public EventsModule(Configuration configuration) {
+        this.configuration = configuration;
+    }
+
     @Override
     public Set<? extends PluginConfigBean> getConfigBeans() {
         return Collections.emptySet();
@@ -84,6 +95,11 @@ public class EventsModule extends PluginModule {
         bind(EventStorageHandlerEngine.class).asEagerSingleton();
         bind(EventFieldSpecEngine.class).asEagerSingleton();
         bind(EventIndexer.class).asEagerSingleton();
+        final OptionalBinder<EventIndexingQueue> indexingQueueBinder = OptionalBinder.newOptionalBinder(binder(), EventIndexingQueue.class);
+        if (configuration.isEventsAsyncIndexing()) {
+            indexingQueueBinder.setBinding().to(EventIndexingQueue.class).in(Scopes.SINGLETON);
+            serviceBinder().addBinding().to(EventIndexingService.class).in(Scopes.SINGLETON);
+        }
         bind(NotificationGracePeriodService.class).asEagerSingleton();
         bind(EventProcessorExecutionMetrics.class).asEagerSingleton();
         bind(EventNotificationExecutionMetrics.class).asEagerSingleton();
@@ -102,6 +118,8 @@ public class EventsModule extends PluginModule {
 
         addPeriodical(EventNotificationStatusCleanUp.class);
 
+        addMessageProcessor(RealtimeFilterEventProcessor.class, RealtimeFilterEventProcessor.Descriptor.class);
+
         addEntityFacade(ModelTypes.EVENT_DEFINITION_V1, EventDefinitionFacade.class);
         addEntityFacade(ModelTypes.NOTIFICATION_V1, NotificationFacade.class);
 
@@ -32,6 +32,7 @@ import java.util.AbstractMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -45,11 +46,13 @@ public class EventIndexer {
 
     private final StreamService streamService;
     private final Messages messages;
+    private final Optional<EventIndexingQueue> indexingQueue;
 
     @Inject
-    public EventIndexer(StreamService streamService, Messages messages) {
+    public EventIndexer(StreamService streamService, Messages messages, Optional<EventIndexingQueue> indexingQueue) {
         this.streamService = streamService;
         this.messages = messages;
+        this.indexingQueue = indexingQueue;
     }
 
     public void write(List<EventWithContext> eventsWithContext) {
@@ -67,7 +70,13 @@ public class EventIndexer {
                 .flatMap(event -> assignEventsToTargetIndices(event, streamIndices))
                 .map(event -> IndexingRequest.create(event.getKey(), event.getValue()))
                 .collect(Collectors.toList());
-        messages.bulkIndexRequests(requests, true);
+
+        if (indexingQueue.isPresent()) {
+            // Indexed by the EventIndexingService, the queue is stored in the database
+            indexingQueue.get().add(requests);
+        } else {
+            messages.bulkIndexRequests(requests, true);
+        }
     }
 
     private Map<String, IndexSet> indexSetsForStreams(Set<String> streamIds) {
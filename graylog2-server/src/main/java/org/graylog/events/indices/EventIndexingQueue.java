@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.events.indices;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.ReturnDocument;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.graylog.events.event.Event;
+import org.graylog.events.event.EventDto;
+import org.graylog2.database.MongoConnection;
+import org.graylog2.indexer.messages.IndexingRequest;
+import org.graylog2.jackson.TypeReferences;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.lte;
+import static com.mongodb.client.model.Sorts.ascending;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.inc;
+import static com.mongodb.client.model.Updates.set;
+
+/**
+ * Cluster-wide queue of event documents which still have to be indexed, stored in MongoDB so queued events survive a
+ * node restart. Writes are journaled before they are acknowledged.
+ * <p>
+ * Entries are claimed for a limited time by the {@link EventIndexingService} of any node and removed once they have
+ * been indexed. Entries of a writer which didn't finish in time are claimed again, so an event may be indexed more
+ * than once. The event id is the document id, so this overwrites the existing document in the same index.
+ */
+@Singleton
+public class EventIndexingQueue {
+    static final String COLLECTION_NAME = "event_indexing_queue";
+    private static final String FIELD_ID = "_id";
+    private static final String FIELD_CLAIMED_UNTIL = "claimed_until";
+    private static final String FIELD_ATTEMPTS = "attempts";
+    private static final String FIELD_EVENTS = "events";
+    private static final String FIELD_INDEX_SET_ID = "index_set_id";
+    private static final String FIELD_EVENT = "event";
+
+    private final int capacity;
+    private final ObjectMapper objectMapper;
+    private final MongoCollection<Document> collection;
+    private final Meter queuedEvents;
+    private final Meter rejectedEvents;
+
+    @Inject
+    public EventIndexingQueue(@Named("events_indexing_queue_capacity") int capacity,
+                              MongoConnection mongoConnection,
+                              ObjectMapper objectMapper,
+                              MetricRegistry metricRegistry) {
+        this.capacity = capacity;
+        this.objectMapper = objectMapper;
+        this.collection = mongoConnection.getMongoDatabase()
+                .getCollection(COLLECTION_NAME)
+                .withWriteConcern(WriteConcern.JOURNALED);
+        collection.createIndex(Indexes.ascending(FIELD_CLAIMED_UNTIL));
+
+        this.queuedEvents = metricRegistry.meter(name(EventIndexingQueue.class, "queuedEvents"));
+        this.rejectedEvents = metricRegistry.meter(name(EventIndexingQueue.class, "rejectedEvents"));
+    }
+
+    /**
+     * Adds the given event indexing requests as a single entry to the queue.
+     *
+     * @throws IllegalStateException if the queue is full, the caller has to try again later
+     */
+    public void add(List<IndexingRequest> requests) {
+        if (collection.estimatedDocumentCount() >= capacity) {
+            rejectedEvents.mark(requests.size());
+            throw new IllegalStateException("Event indexing queue is full (capacity: " + capacity + "), couldn't queue "
+                    + requests.size() + " events");
+        }
+        final List<Document> events = requests.stream()
+                .map(request -> {
+                    if (!(request.message() instanceof Event event)) {
+                        throw new IllegalArgumentException("Only events can be queued, got: " + request.message().getClass());
+                    }
+                    return new Document(FIELD_INDEX_SET_ID, request.indexSet().getConfig().id())
+                            .append(FIELD_EVENT, new Document(objectMapper.convertValue(event.toDto(), TypeReferences.MAP_STRING_OBJECT)));
+                })
+                .toList();
+        collection.insertOne(new Document(FIELD_CLAIMED_UNTIL, new Date(0))
+                .append(FIELD_ATTEMPTS, 0)
+                .append(FIELD_EVENTS, events));
+        queuedEvents.mark(requests.size());
+    }
+
+    /**
+     * Claims the oldest unclaimed entries until they contain at least the given number of events or no entries are
+     * left. The entries are claimed for the given time, they are claimed again by the next writer afterwards.
+     */
+    List<Entry> claim(int maxEvents, Duration claimDuration) {
+        final List<Entry> entries = new ArrayList<>();
+        int events = 0;
+        while (events < maxEvents) {
+            final Instant now = Instant.now();
+            final Document document = collection.findOneAndUpdate(
+                    lte(FIELD_CLAIMED_UNTIL, Date.from(now)),
+                    set(FIELD_CLAIMED_UNTIL, Date.from(now.plus(claimDuration))),
+                    new FindOneAndUpdateOptions().sort(ascending(FIELD_ID)).returnDocument(ReturnDocument.AFTER));
+            if (document == null) {
+                break;
+            }
+            final Entry entry = toEntry(document);
+            entries.add(entry);
+            events += entry.events().size();
+        }
+        return entries;
+    }
+
+    /**
+     * Removes the given entries after they have been indexed.
+     */
+    void remove(Collection<ObjectId> ids) {
+        if (!ids.isEmpty()) {
+            collection.deleteMany(in(FIELD_ID, ids));
+        }
+    }
+
+    /**
+     * Releases the claim of an entry which couldn't be indexed, it can be claimed again after the given time.
+     */
+    void retryAt(ObjectId id, Instant retryAt) {
+        collection.updateOne(eq(FIELD_ID, id), combine(set(FIELD_CLAIMED_UNTIL, Date.from(retryAt)), inc(FIELD_ATTEMPTS, 1)));
+    }
+
+    long size() {
+        return collection.estimatedDocumentCount();
+    }
+
+    private Entry toEntry(Document document) {
+        final List<QueuedEvent> events = document.getList(FIELD_EVENTS, Document.class).stream()
+                .map(event -> new QueuedEvent(
+                        event.getString(FIELD_INDEX_SET_ID),
+                        objectMapper.convertValue(event.get(FIELD_EVENT, Document.class), EventDto.class)))
+                .toList();
+        return new Entry(document.getObjectId(FIELD_ID), document.getInteger(FIELD_ATTEMPTS, 0), events);
+    }
+
+    record Entry(ObjectId id, int attempts, List<QueuedEvent> events) {}
+
+    record QueuedEvent(String indexSetId, EventDto event) {}
+}
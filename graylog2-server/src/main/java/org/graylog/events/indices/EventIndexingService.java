@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.events.indices;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.AbstractExecutionThreadService;
+import org.graylog.events.event.Event;
+import org.graylog2.indexer.IndexSet;
+import org.graylog2.indexer.IndexSetRegistry;
+import org.graylog2.indexer.messages.IndexingRequest;
+import org.graylog2.indexer.messages.Messages;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Writes the events of the {@link EventIndexingQueue} to the search cluster, combining the entries of several event
+ * processor runs into shared bulk requests. Runs on every node which has {@code events_async_indexing} enabled, the
+ * nodes share the queue.
+ * <p>
+ * Entries which couldn't be written stay in the queue and are retried with an exponential back-off.
+ */
+@Singleton
+public class EventIndexingService extends AbstractExecutionThreadService {
+    private static final Logger LOG = LoggerFactory.getLogger(EventIndexingService.class);
+    private static final Duration POLL_INTERVAL = Duration.ofSeconds(1);
+    // Has to outlast a bulk request including the retries of Messages, entries are written again afterwards
+    private static final Duration CLAIM_DURATION = Duration.ofMinutes(5);
+    private static final Duration MIN_RETRY_DELAY = Duration.ofSeconds(1);
+    private static final Duration MAX_RETRY_DELAY = Duration.ofMinutes(5);
+
+    private final int batchSize;
+    private final EventIndexingQueue queue;
+    private final Messages messages;
+    private final IndexSetRegistry indexSetRegistry;
+    private final CountDownLatch shutdownLatch = new CountDownLatch(1);
+    private final Meter indexedEvents;
+    private final Meter failedEvents;
+    private final Meter droppedEvents;
+    private final Meter retriedEvents;
+    private final Meter failedBatches;
+
+    @Inject
+    public EventIndexingService(@Named("events_indexing_batch_size") int batchSize,
+                                EventIndexingQueue queue,
+                                Messages messages,
+                                IndexSetRegistry indexSetRegistry,
+                                MetricRegistry metricRegistry) {
+        this.batchSize = batchSize;
+        this.queue = queue;
+        this.messages = messages;
+        this.indexSetRegistry = indexSetRegistry;
+
+        this.indexedEvents = metricRegistry.meter(name(EventIndexingService.class, "indexedEvents"));
+        this.failedEvents = metricRegistry.meter(name(EventIndexingService.class, "failedEvents"));
+        this.droppedEvents = metricRegistry.meter(name(EventIndexingService.class, "droppedEvents"));
+        this.retriedEvents = metricRegistry.meter(name(EventIndexingService.class, "retriedEvents"));
+        this.failedBatches = metricRegistry.meter(name(EventIndexingService.class, "failedBatches"));
+        metricRegistry.register(name(EventIndexingService.class, "queueSize"), (Gauge<Long>) queue::size);
+    }
+
+    @Override
+    protected void run() throws Exception {
+        while (isRunning()) {
+            try {
+                final List<EventIndexingQueue.Entry> batch = queue.claim(batchSize, CLAIM_DURATION);
+                if (batch.isEmpty()) {
+                    shutdownLatch.await(POLL_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+                } else {
+                    index(batch);
+                }
+            } catch (InterruptedException e) {
+                LOG.debug("Interrupted while waiting for queued events.");
+            } catch (Exception e) {
+                LOG.warn("Couldn't read queued events, trying again in {} ms.", POLL_INTERVAL.toMillis(), e);
+                shutdownLatch.await(POLL_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    @Override
+    protected void triggerShutdown() {
+        shutdownLatch.countDown();
+    }
+
+    @VisibleForTesting
+    void index(List<EventIndexingQueue.Entry> batch) {
+        final List<IndexingRequest> requests = new ArrayList<>();
+        for (final EventIndexingQueue.Entry entry : batch) {
+            for (final EventIndexingQueue.QueuedEvent queuedEvent : entry.events()) {
+                final Optional<IndexSet> indexSet = indexSetRegistry.get(queuedEvent.indexSetId());
+                if (indexSet.isPresent()) {
+                    requests.add(IndexingRequest.create(indexSet.get(), Event.fromDto(queuedEvent.event())));
+                } else {
+                    LOG.warn("Couldn't find index set <{}> of queued event <{}>, dropping it.",
+                            queuedEvent.indexSetId(), queuedEvent.event().id());
+                    droppedEvents.mark();
+                }
+            }
+        }
+
+        try {
+            // Failed events are submitted to the failure handling by Messages, like in the synchronous path
+            final Set<String> failedIds = requests.isEmpty() ? Set.of() : messages.bulkIndexRequests(requests, true);
+            failedEvents.mark(failedIds.size());
+            indexedEvents.mark(requests.size() - failedIds.size());
+            queue.remove(batch.stream().map(EventIndexingQueue.Entry::id).toList());
+        } catch (Exception e) {
+            LOG.warn("Couldn't index {} queued events, retrying later.", requests.size(), e);
+            failedBatches.mark();
+            retriedEvents.mark(requests.size());
+            final Instant now = Instant.now();
+            batch.forEach(entry -> queue.retryAt(entry.id(), now.plus(retryDelay(entry.attempts()))));
+        }
+    }
+
+    @VisibleForTesting
+    static Duration retryDelay(int attempts) {
+        final Duration delay = MIN_RETRY_DELAY.multipliedBy(1L << Math.min(attempts, 16));
+        return delay.compareTo(MAX_RETRY_DELAY) > 0 ? MAX_RETRY_DELAY : delay;
+    }
+}
@@ -39,6 +39,7 @@ import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
@@ -66,6 +67,12 @@ public class DBEventDefinitionService extends ScopedDbService<EventDefinitionDto
                 getSortBuilder(sortOrder, sortByField), page, perPage);
     }
 
+    public PaginatedList<EventDefinitionDto> searchPaginatedByIds(SearchQuery query, Set<String> ids,
+                                                                  String sortByField, String sortOrder, int page, int perPage) {
+        return findPaginatedWithQueryIdsAndSort(query.toDBQuery(), ids,
+                getSortBuilder(sortOrder, sortByField), page, perPage);
+    }
+
     public EventDefinitionDto saveWithOwnership(EventDefinitionDto eventDefinitionDto, User user) {
         final EventDefinitionDto dto = save(eventDefinitionDto);
         entityOwnerShipService.registerNewEventDefinition(dto.id(), user);
@@ -106,6 +106,22 @@ public class EventProcessorEngine {
         }
     }
 
+    /**
+     * Emits events which have been created outside a scheduled event processor execution, e.g. by evaluating
+     * event definitions in the message processing path.
+     */
+    public void emitEvents(EventDefinition definition, List<EventWithContext> eventsWithContext) throws EventProcessorException {
+        final EventProcessor.Factory factory = eventProcessorFactories.get(definition.config().type());
+
+        if (factory == null) {
+            throw new EventProcessorException("Couldn't find event processor factory for type " + definition.config().type(), true, definition.id(), definition);
+        }
+
+        final EventProcessor eventProcessor = factory.create(definition);
+        metrics.registerEventProcessor(eventProcessor, definition.id());
+        emitEvents(eventProcessor, definition, eventsWithContext);
+    }
+
     private void emitEvents(EventProcessor eventProcessor, EventDefinition eventDefinition, List<EventWithContext> eventsWithContext) throws EventProcessorException {
         if (eventsWithContext.isEmpty()) {
             return;
@@ -40,6 +40,7 @@ import org.graylog.events.processor.EventProcessorException;
 import org.graylog.events.processor.EventProcessorParameters;
 import org.graylog.events.processor.EventProcessorPreconditionException;
 import org.graylog.events.processor.EventStreamService;
+import org.graylog.events.processor.realtime.RealtimeFilterEventDefinitions;
 import org.graylog.events.search.MoreSearch;
 import org.graylog.plugins.views.search.elasticsearch.ElasticsearchQueryString;
 import org.graylog.plugins.views.search.errors.ParameterExpansionError;
@@ -88,6 +89,7 @@ public class AggregationEventProcessor implements EventProcessor {
     private final MoreSearch moreSearch;
     private final EventStreamService eventStreamService;
     private final Messages messages;
+    private final RealtimeFilterEventDefinitions realtimeFilterEventDefinitions;
 
     @Inject
     public AggregationEventProcessor(@Assisted EventDefinition eventDefinition,
@@ -96,7 +98,8 @@ public class AggregationEventProcessor implements EventProcessor {
                                      DBEventProcessorStateService stateService,
                                      MoreSearch moreSearch,
                                      EventStreamService eventStreamService,
-                                     Messages messages) {
+                                     Messages messages,
+                                     RealtimeFilterEventDefinitions realtimeFilterEventDefinitions) {
         this.eventDefinition = eventDefinition;
         this.config = (AggregationEventProcessorConfig) eventDefinition.config();
         this.aggregationSearchFactory = aggregationSearchFactory;
@@ -105,12 +108,30 @@ public class AggregationEventProcessor implements EventProcessor {
         this.moreSearch = moreSearch;
         this.eventStreamService = eventStreamService;
         this.messages = messages;
+        this.realtimeFilterEventDefinitions = realtimeFilterEventDefinitions;
     }
 
     @Override
     public void createEvents(EventFactory eventFactory, EventProcessorParameters processorParameters, EventConsumer<List<EventWithContext>> eventsConsumer) throws EventProcessorException {
         final AggregationEventProcessorParameters parameters = (AggregationEventProcessorParameters) processorParameters;
 
+        // Events for this definition are created in the message processing path, searching again would create duplicates.
+        switch (realtimeFilterEventDefinitions.evaluation(eventDefinition, parameters.timerange().getFrom(), parameters.timerange().getTo())) {
+            case REALTIME -> {
+                LOG.debug("Skipping search for event definition <{}/{}>, it is evaluated in real-time", eventDefinition.title(), eventDefinition.id());
+                stateService.setState(eventDefinition.id(), parameters.timerange().getFrom(), parameters.timerange().getTo());
+                return;
+            }
+            case PENDING -> {
+                final String msg = String.format(Locale.ROOT, "Couldn't finish real-time evaluation <%s/%s> for timerange <%s to %s> because events haven't been emitted on all nodes, yet.",
+                        eventDefinition.title(), eventDefinition.id(), parameters.timerange().getFrom(), parameters.timerange().getTo());
+                throw new EventProcessorPreconditionException(msg, eventDefinition);
+            }
+            case SEARCH -> {
+                // Searched below
+            }
+        }
+
         // TODO: We have to take the Elasticsearch index.refresh_interval into account here!
         if (!dependencyCheck.hasMessagesIndexedUpTo(parameters.timerange())) {
             final String msg = String.format(Locale.ROOT, "Couldn't run aggregation <%s/%s> for timerange <%s to %s> because required messages haven't been indexed, yet.",
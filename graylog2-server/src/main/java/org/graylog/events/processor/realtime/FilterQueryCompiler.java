@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.events.processor.realtime;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.WildcardQuery;
+import org.graylog2.plugin.Message;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+/**
+ * Compiles search query strings into matchers which can be evaluated against a {@link Message} in memory.
+ * <p>
+ * Only a conservative subset of the query language is supported: field terms and phrases, {@code _exists_} and
+ * {@code field:*} checks, and boolean combinations of those. The default index mapping is assumed, so
+ * {@code message} and {@code full_message} are analyzed with the standard analyzer and all other fields are matched
+ * exactly. Everything else (ranges, wildcards, fuzzy and regex queries, terms without a field) can't be compiled,
+ * because an in-memory evaluation could disagree with the search result.
+ */
+public class FilterQueryCompiler {
+    private static final String EXISTS_FIELD = "_exists_";
+    private static final Set<String> ANALYZED_FIELDS = ImmutableSet.of(Message.FIELD_MESSAGE, Message.FIELD_FULL_MESSAGE);
+    // Unfielded terms end up in this field and are rejected, OpenSearch would search them in all fields.
+    private static final String DEFAULT_FIELD = "__no_default_field__";
+
+    private static final Analyzer TEXT_ANALYZER = new StandardAnalyzer();
+    private static final Analyzer ANALYZER = new PerFieldAnalyzerWrapper(new KeywordAnalyzer(),
+            ImmutableMap.of(Message.FIELD_MESSAGE, TEXT_ANALYZER, Message.FIELD_FULL_MESSAGE, TEXT_ANALYZER));
+
+    /**
+     * Matches a single message. Instances are created per message and cache the analyzed field values, so the same
+     * message can be matched against many compiled queries cheaply.
+     */
+    public static class MatchContext {
+        private final Message message;
+        private final Map<String, List<String>> analyzedValues = new HashMap<>();
+
+        public MatchContext(Message message) {
+            this.message = message;
+        }
+
+        Message message() {
+            return message;
+        }
+
+        List<String> analyzedValue(String field) {
+            return analyzedValues.computeIfAbsent(field, f -> {
+                final Object value = message.getField(f);
+                return value == null ? ImmutableList.of() : analyze(f, value.toString());
+            });
+        }
+    }
+
+    public interface Matcher {
+        boolean matches(MatchContext context);
+    }
+
+    public Optional<Matcher> compile(String queryString) {
+        if (isNullOrEmpty(queryString) || queryString.trim().equals("*")) {
+            return Optional.of(context -> true);
+        }
+
+        final QueryParser parser = new QueryParser(DEFAULT_FIELD, ANALYZER);
+        parser.setSplitOnWhitespace(true);
+        // Needed to parse "field:*", all other wildcard queries are rejected anyway.
+        parser.setAllowLeadingWildcard(true);
+        try {
+            return compile(parser.parse(queryString));
+        } catch (ParseException | RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    private Optional<Matcher> compile(Query query) {
+        if (query instanceof BoostQuery boostQuery) {
+            return compile(boostQuery.getQuery());
+        }
+        if (query instanceof MatchAllDocsQuery) {
+            return Optional.of(context -> true);
+        }
+        if (query instanceof TermQuery termQuery) {
+            return compileTerm(termQuery.getTerm());
+        }
+        if (query instanceof PhraseQuery phraseQuery) {
+            return compilePhrase(phraseQuery);
+        }
+        if (query instanceof WildcardQuery wildcardQuery && "*".equals(wildcardQuery.getTerm().text())) {
+            return compileExists(wildcardQuery.getTerm().field());
+        }
+        if (query instanceof BooleanQuery booleanQuery) {
+            return compileBoolean(booleanQuery);
+        }
+        return Optional.empty();
+    }
+
+    private Optional<Matcher> compileTerm(Term term) {
+        final String field = term.field();
+        final String text = term.text();
+        if (DEFAULT_FIELD.equals(field)) {
+            return Optional.empty();
+        }
+        if (EXISTS_FIELD.equals(field)) {
+            return compileExists(text);
+        }
+        if (ANALYZED_FIELDS.contains(field)) {
+            return Optional.of(context -> context.analyzedValue(field).contains(text));
+        }
+        return Optional.of(context -> {
+            final Object value = context.message().getField(field);
+            return value != null && text.equals(value.toString());
+        });
+    }
+
+    private Optional<Matcher> compileExists(String field) {
+        if (DEFAULT_FIELD.equals(field)) {
+            return Optional.empty();
+        }
+        return Optional.of(context -> context.message().hasField(field));
+    }
+
+    private Optional<Matcher> compilePhrase(PhraseQuery phraseQuery) {
+        final Term[] terms = phraseQuery.getTerms();
+        if (terms.length == 0 || phraseQuery.getSlop() != 0) {
+            return Optional.empty();
+        }
+        final String field = terms[0].field();
+        if (!ANALYZED_FIELDS.contains(field)) {
+            // Phrases on keyword fields are parsed into a single term, anything else is unexpected.
+            return Optional.empty();
+        }
+        final String[] texts = Arrays.stream(terms).map(Term::text).toArray(String[]::new);
+        final int[] positions = phraseQuery.getPositions();
+
+        return Optional.of(context -> containsPhrase(context.analyzedValue(field), texts, positions));
+    }
+
+    private static boolean containsPhrase(List<String> tokens, String[] texts, int[] positions) {
+        final int length = positions[positions.length - 1] - positions[0];
+        for (int start = 0; start + length < tokens.size(); start++) {
+            boolean matches = true;
+            for (int i = 0; i < texts.length && matches; i++) {
+                matches = texts[i].equals(tokens.get(start + positions[i] - positions[0]));
+            }
+            if (matches) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Optional<Matcher> compileBoolean(BooleanQuery booleanQuery) {
+        final List<Matcher> required = new ArrayList<>();
+        final List<Matcher> optional = new ArrayList<>();
+        final List<Matcher> prohibited = new ArrayList<>();
+
+        for (BooleanClause clause : booleanQuery.clauses()) {
+            final Optional<Matcher> matcher = compile(clause.getQuery());
+            if (matcher.isEmpty()) {
+                return Optional.empty();
+            }
+            switch (clause.getOccur()) {
+                case MUST, FILTER -> required.add(matcher.get());
+                case SHOULD -> optional.add(matcher.get());
+                case MUST_NOT -> prohibited.add(matcher.get());
+            }
+        }
+
+        // Like in a Lucene boolean query, optional clauses only have to match if there are no required clauses.
+        final int minimumShouldMatch = Math.max(booleanQuery.getMinimumNumberShouldMatch(), required.isEmpty() ? 1 : 0);
+        // A purely negative query matches everything except the prohibited clauses, just like the query_string query.
+        final boolean onlyProhibited = required.isEmpty() && optional.isEmpty();
+
+        return Optional.of(context -> {
+            for (Matcher matcher : prohibited) {
+                if (matcher.matches(context)) {
+                    return false;
+                }
+            }
+            for (Matcher matcher : required) {
+                if (!matcher.matches(context)) {
+                    return false;
+                }
+            }
+            if (onlyProhibited) {
+                return true;
+            }
+            int matchingOptional = 0;
+            for (Matcher matcher : optional) {
+                if (matcher.matches(context) && ++matchingOptional >= minimumShouldMatch) {
+                    return true;
+                }
+            }
+            return matchingOptional >= minimumShouldMatch;
+        });
+    }
+
+    private static List<String> analyze(String field, String value) {
+        final ImmutableList.Builder<String> tokens = ImmutableList.builder();
+        try (TokenStream tokenStream = TEXT_ANALYZER.tokenStream(field, value)) {
+            final CharTermAttribute term = tokenStream.addAttribute(CharTermAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                tokens.add(term.toString());
+            }
+            tokenStream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return tokens.build();
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.events.processor.realtime;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import org.graylog.events.processor.DBEventDefinitionService;
+import org.graylog.events.processor.EventDefinition;
+import org.graylog.events.processor.EventDefinitionDto;
+import org.graylog.events.processor.EventProcessorConfig;
+import org.graylog.events.processor.aggregation.AggregationEventProcessorConfig;
+import org.graylog.scheduler.clock.JobSchedulerClock;
+import org.graylog2.cluster.Node;
+import org.graylog2.cluster.NodeService;
+import org.graylog2.messageprocessors.MessageProcessorsConfig;
+import org.graylog2.plugin.cluster.ClusterConfigService;
+import org.graylog2.plugin.system.NodeId;
+import org.graylog2.system.processing.ProcessingStatusRecorder;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the compiled matchers of all enabled filter-only event definitions which can be evaluated in the
+ * processing path instead of running a periodic search.
+ * <p>
+ * Every node stores its evaluation state in the {@link RealtimeFilterNodeStateService}. The scheduled execution of a
+ * definition only skips its search for a time range if the states of all active nodes show that:
+ * <ul>
+ *     <li>the {@link RealtimeFilterEventProcessor} was enabled before the time range started,</li>
+ *     <li>the current version of the definition was loaded before the time range started,</li>
+ *     <li>the events of all messages received up to the end of the time range have been emitted and</li>
+ *     <li>no events of the definition in the time range failed to be emitted.</li>
+ * </ul>
+ * Otherwise the time range is searched, which can create duplicate events but doesn't lose any. Nodes which don't
+ * have the option enabled don't store a state, so all time ranges are searched while such a node is active.
+ */
+@Singleton
+public class RealtimeFilterEventDefinitions {
+    private static final Logger LOG = LoggerFactory.getLogger(RealtimeFilterEventDefinitions.class);
+    private static final long REFRESH_INTERVAL_SECONDS = 10;
+    // States which haven't been updated for a few refreshes belong to nodes which don't evaluate definitions
+    private static final Duration STATE_MAX_AGE = Duration.standardSeconds(REFRESH_INTERVAL_SECONDS * 3);
+    // Failed ranges only matter until the scheduled executions have searched them
+    private static final Duration FAILED_RANGE_RETENTION = Duration.standardDays(1);
+
+    @AutoValue
+    public abstract static class CompiledDefinition {
+        public abstract EventDefinition eventDefinition();
+
+        public abstract Set<String> streams();
+
+        public abstract FilterQueryCompiler.Matcher matcher();
+
+        public abstract DateTime loadedAt();
+
+        public boolean matchesStreams(Set<String> messageStreamIds) {
+            return streams().isEmpty() || messageStreamIds.stream().anyMatch(streams()::contains);
+        }
+
+        public static CompiledDefinition create(EventDefinition eventDefinition,
+                                                Set<String> streams,
+                                                FilterQueryCompiler.Matcher matcher,
+                                                DateTime loadedAt) {
+            return new AutoValue_RealtimeFilterEventDefinitions_CompiledDefinition(eventDefinition, ImmutableSet.copyOf(streams), matcher, loadedAt);
+        }
+    }
+
+    /**
+     * How the scheduled execution of a definition handles a time range.
+     */
+    public enum Evaluation {
+        /** The time range has to be searched. */
+        SEARCH,
+        /** All events of the time range have been created in real-time, the search is skipped. */
+        REALTIME,
+        /** The time range is evaluated in real-time, but some nodes still have to emit its events. */
+        PENDING
+    }
+
+    private final boolean enabled;
+    private final DBEventDefinitionService eventDefinitionService;
+    private final FilterQueryCompiler compiler;
+    private final ClusterConfigService clusterConfigService;
+    private final JobSchedulerClock clock;
+    private final NodeId nodeId;
+    private final NodeService nodeService;
+    private final RealtimeFilterNodeStateService nodeStateService;
+    private final ProcessingStatusRecorder processingStatusRecorder;
+    private final ObjectMapper objectMapper;
+    private final AtomicReference<List<CompiledDefinition>> definitions = new AtomicReference<>(ImmutableList.of());
+    private final AtomicReference<DateTime> processorEnabledSince = new AtomicReference<>();
+    // Oldest receive time of the messages of every emit which hasn't finished yet
+    private final ConcurrentSkipListMap<Long, DateTime> pendingEmits = new ConcurrentSkipListMap<>();
+    private final AtomicLong emitSequence = new AtomicLong();
+    // Failed ranges which couldn't be stored yet, guarded by itself
+    private final List<RealtimeFilterNodeStateService.FailedRange> unsavedFailedRanges = new ArrayList<>();
+
+    @Inject
+    public RealtimeFilterEventDefinitions(@Named("events_realtime_filter_evaluation") boolean enabled,
+                                          DBEventDefinitionService eventDefinitionService,
+                                          FilterQueryCompiler compiler,
+                                          ClusterConfigService clusterConfigService,
+                                          JobSchedulerClock clock,
+                                          NodeId nodeId,
+                                          NodeService nodeService,
+                                          RealtimeFilterNodeStateService nodeStateService,
+                                          ProcessingStatusRecorder processingStatusRecorder,
+                                          ObjectMapper objectMapper,
+                                          @Named("daemonScheduler") ScheduledExecutorService scheduler) {
+        this.enabled = enabled;
+        this.eventDefinitionService = eventDefinitionService;
+        this.compiler = compiler;
+        this.clusterConfigService = clusterConfigService;
+        this.clock = clock;
+        this.nodeId = nodeId;
+        this.nodeService = nodeService;
+        this.nodeStateService = nodeStateService;
+        this.processingStatusRecorder = processingStatusRecorder;
+        this.objectMapper = objectMapper;
+
+        if (enabled) {
+            scheduler.scheduleWithFixedDelay(this::refresh, 0, REFRESH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the currently active compiled definitions.
+     */
+    public List<CompiledDefinition> definitions() {
+        return definitions.get();
+    }
+
+    /**
+     * Checks if the given definition has been evaluated in the processing path of all nodes for the given time range.
+     * The scheduled execution of such a definition must not search for matching messages again.
+     */
+    public Evaluation evaluation(EventDefinition eventDefinition, DateTime from, DateTime to) {
+        if (!enabled || !isProcessorEnabled()) {
+            return Evaluation.SEARCH;
+        }
+        final Optional<String> fingerprint = fingerprint(eventDefinition.config());
+        if (fingerprint.isEmpty()) {
+            return Evaluation.SEARCH;
+        }
+        final Set<String> activeNodes = nodeService.allActive(Node.Type.SERVER).keySet();
+        final Map<String, RealtimeFilterNodeStateService.NodeState> states = nodeStateService.find(activeNodes);
+        final DateTime now = clock.nowUTC();
+
+        Evaluation evaluation = Evaluation.REALTIME;
+        for (final String activeNode : activeNodes) {
+            final RealtimeFilterNodeStateService.NodeState state = states.get(activeNode);
+            if (state == null || state.updatedAt().isBefore(now.minus(STATE_MAX_AGE))) {
+                LOG.debug("Node <{}> doesn't evaluate event definitions in real-time", activeNode);
+                return Evaluation.SEARCH;
+            }
+            if (state.processorEnabledSince() == null || state.processorEnabledSince().isAfter(from)) {
+                return Evaluation.SEARCH;
+            }
+            // A changed definition is only evaluated in real-time once the new version has been loaded.
+            final RealtimeFilterNodeStateService.LoadedDefinition loaded = state.definitions().get(eventDefinition.id());
+            if (loaded == null || !loaded.fingerprint().equals(fingerprint.get()) || loaded.loadedAt().isAfter(from)) {
+                return Evaluation.SEARCH;
+            }
+            if (state.failedRanges().stream().anyMatch(range -> range.overlaps(eventDefinition.id(), from, to))) {
+                LOG.debug("Events of event definition <{}> couldn't be emitted on node <{}>, searching time range", eventDefinition.id(), activeNode);
+                return Evaluation.SEARCH;
+            }
+            if (state.emittedUntil().isBefore(to)) {
+                evaluation = Evaluation.PENDING;
+            }
+        }
+        return evaluation;
+    }
+
+    /**
+     * Registers an emit of events for messages which have been received since the given time. The scheduled
+     * executions wait until it has finished, see {@link #emitFinished(long)}.
+     *
+     * @return the id of the emit
+     */
+    public long emitStarted(DateTime oldestReceiveTime) {
+        final long id = emitSequence.incrementAndGet();
+        pendingEmits.put(id, oldestReceiveTime);
+        return id;
+    }
+
+    public void emitFinished(long id) {
+        pendingEmits.remove(id);
+    }
+
+    /**
+     * Records that events of the given definition for messages in the given time range couldn't be emitted, the
+     * scheduled execution searches the time range instead. Must be called before the emit is finished.
+     */
+    public void emitFailed(EventDefinition eventDefinition, DateTime from, DateTime to) {
+        final RealtimeFilterNodeStateService.FailedRange failedRange = new RealtimeFilterNodeStateService.FailedRange(eventDefinition.id(), from, to);
+        try {
+            nodeStateService.addFailedRange(nodeId.getNodeId(), failedRange);
+        } catch (Exception e) {
+            LOG.warn("Couldn't store failed real-time events of event definition <{}>, retrying with the next refresh", eventDefinition.id(), e);
+            synchronized (unsavedFailedRanges) {
+                unsavedFailedRanges.add(failedRange);
+            }
+        }
+    }
+
+    private boolean isProcessorEnabled() {
+        final MessageProcessorsConfig config = clusterConfigService.get(MessageProcessorsConfig.class);
+        return config == null || !config.disabledProcessors().contains(RealtimeFilterEventProcessor.class.getCanonicalName());
+    }
+
+    private Optional<CompiledDefinition> compile(EventDefinition eventDefinition, DateTime now) {
+        if (!(eventDefinition.config() instanceof AggregationEventProcessorConfig config)) {
+            return Optional.empty();
+        }
+        // Only filter definitions create one event per message, query parameters need a search to be expanded.
+        if (!config.series().isEmpty() || !config.queryParameters().isEmpty()) {
+            return Optional.empty();
+        }
+        return compiler.compile(config.query())
+                .map(matcher -> CompiledDefinition.create(eventDefinition, config.streams(), matcher, now));
+    }
+
+    @VisibleForTesting
+    void refresh() {
+        final DateTime now = clock.nowUTC();
+        final Map<String, CompiledDefinition> previous = definitions.get().stream()
+                .collect(Collectors.toMap(definition -> definition.eventDefinition().id(), Function.identity()));
+        try (Stream<EventDefinitionDto> allDefinitions = eventDefinitionService.streamAll()) {
+            if (isProcessorEnabled()) {
+                processorEnabledSince.compareAndSet(null, now);
+            } else {
+                processorEnabledSince.set(null);
+            }
+            final List<CompiledDefinition> compiled = allDefinitions
+                    .filter(definition -> definition.state() == EventDefinition.State.ENABLED)
+                    .map(definition -> compile(definition, now))
+                    .flatMap(Optional::stream)
+                    .map(definition -> keepLoadedAt(previous.get(definition.eventDefinition().id()), definition))
+                    .collect(ImmutableList.toImmutableList());
+            definitions.set(compiled);
+            LOG.debug("Evaluating {} event definitions in the processing path", compiled.size());
+            saveState(now, compiled);
+        } catch (Exception e) {
+            LOG.error("Couldn't refresh real-time event definitions", e);
+        }
+    }
+
+    private void saveState(DateTime now, List<CompiledDefinition> compiled) {
+        // The emitted time is determined first, so emits which fail afterwards have stored their failed range
+        final DateTime emittedUntil = emittedUntil(now);
+        synchronized (unsavedFailedRanges) {
+            for (final var iterator = unsavedFailedRanges.iterator(); iterator.hasNext(); ) {
+                nodeStateService.addFailedRange(nodeId.getNodeId(), iterator.next());
+                iterator.remove();
+            }
+        }
+        final Map<String, RealtimeFilterNodeStateService.LoadedDefinition> loaded = compiled.stream()
+                .flatMap(definition -> fingerprint(definition.eventDefinition().config()).stream()
+                        .map(fingerprint -> Map.entry(definition.eventDefinition().id(),
+                                new RealtimeFilterNodeStateService.LoadedDefinition(fingerprint, definition.loadedAt()))))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        nodeStateService.save(nodeId.getNodeId(), now, processorEnabledSince.get(), emittedUntil, loaded, now.minus(FAILED_RANGE_RETENTION));
+    }
+
+    /**
+     * Returns the receive time up to which the events of all messages have been emitted on this node.
+     */
+    private DateTime emittedUntil(DateTime now) {
+        final boolean idle = processingStatusRecorder.getProcessBufferUsage() == 0
+                && processingStatusRecorder.getJournalInfoUncommittedEntries() == 0;
+        DateTime emittedUntil = idle ? now : processingStatusRecorder.getPostProcessingReceiveTime();
+        synchronized (unsavedFailedRanges) {
+            if (!unsavedFailedRanges.isEmpty()) {
+                // Time ranges must not be skipped until the failed ranges have been stored
+                return new DateTime(0L, now.getZone());
+            }
+        }
+        final Map.Entry<Long, DateTime> oldestPending = pendingEmits.firstEntry();
+        if (oldestPending != null && oldestPending.getValue().isBefore(emittedUntil)) {
+            emittedUntil = oldestPending.getValue();
+        }
+        return emittedUntil;
+    }
+
+    private Optional<String> fingerprint(EventProcessorConfig config) {
+        try {
+            return Optional.of(Hashing.sha256().hashBytes(objectMapper.writeValueAsBytes(config)).toString());
+        } catch (JsonProcessingException e) {
+            LOG.warn("Couldn't serialize event definition config", e);
+            return Optional.empty();
+        }
+    }
+
+    private CompiledDefinition keepLoadedAt(CompiledDefinition previous, CompiledDefinition current) {
+        if (previous != null && previous.eventDefinition().config().equals(current.eventDefinition().config())) {
+            return CompiledDefinition.create(current.eventDefinition(), current.streams(), current.matcher(), previous.loadedAt());
+        }
+        return current;
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.events.processor.realtime;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.graylog.events.event.Event;
+import org.graylog.events.event.EventFactory;
+import org.graylog.events.event.EventOriginContext;
+import org.graylog.events.event.EventProcessorEventFactory;
+import org.graylog.events.event.EventReplayInfo;
+import org.graylog.events.event.EventWithContext;
+import org.graylog.events.processor.EventDefinition;
+import org.graylog.events.processor.EventProcessorEngine;
+import org.graylog.events.processor.EventStreamService;
+import org.graylog.events.processor.aggregation.AggregationEventProcessorConfig;
+import org.graylog2.indexer.IndexSet;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.Messages;
+import org.graylog2.plugin.messageprocessors.MessageProcessor;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Creates events for filter-only event definitions while messages are processed, see
+ * {@link RealtimeFilterEventDefinitions}. Matching happens on the processing thread, the created events are handed
+ * over to a separate thread which runs the field specs, notifications and storage handlers. If that thread can't
+ * keep up, the processing thread emits the events itself to apply back-pressure.
+ * <p>
+ * Emits which fail are recorded as failed ranges, the scheduled execution of the definition searches these time
+ * ranges instead.
+ */
+public class RealtimeFilterEventProcessor implements MessageProcessor {
+    private static final Logger LOG = LoggerFactory.getLogger(RealtimeFilterEventProcessor.class);
+    private static final int EMIT_QUEUE_SIZE = 1000;
+    // Resolving the write index needs a request to the search cluster
+    private static final long WRITE_INDEX_CACHE_SECONDS = 1;
+
+    public static class Descriptor implements MessageProcessor.Descriptor {
+        @Override
+        public String name() {
+            return "Real-time Event Definition Filter";
+        }
+
+        @Override
+        public String className() {
+            return RealtimeFilterEventProcessor.class.getCanonicalName();
+        }
+    }
+
+    private final RealtimeFilterEventDefinitions definitions;
+    private final Provider<EventProcessorEngine> engineProvider;
+    private final Provider<EventProcessorEventFactory> eventFactoryProvider;
+    private final EventStreamService eventStreamService;
+    private final ExecutorService emitExecutor;
+    private final Cache<String, String> writeIndices;
+    private final Meter createdEvents;
+    private final Meter failedEvents;
+
+    @Inject
+    public RealtimeFilterEventProcessor(RealtimeFilterEventDefinitions definitions,
+                                        Provider<EventProcessorEngine> engineProvider,
+                                        Provider<EventProcessorEventFactory> eventFactoryProvider,
+                                        EventStreamService eventStreamService,
+                                        MetricRegistry metricRegistry) {
+        this.definitions = definitions;
+        this.engineProvider = engineProvider;
+        this.eventFactoryProvider = eventFactoryProvider;
+        this.eventStreamService = eventStreamService;
+        this.emitExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(EMIT_QUEUE_SIZE),
+                new ThreadFactoryBuilder().setNameFormat("realtime-event-emitter-%d").setDaemon(true).build(),
+                // Unlike CallerRunsPolicy, this also runs the task after shutdown instead of discarding it
+                (task, executor) -> task.run());
+        this.writeIndices = Caffeine.newBuilder()
+                .expireAfterWrite(WRITE_INDEX_CACHE_SECONDS, TimeUnit.SECONDS)
+                .build();
+        this.createdEvents = metricRegistry.meter(name(RealtimeFilterEventProcessor.class, "createdEvents"));
+        this.failedEvents = metricRegistry.meter(name(RealtimeFilterEventProcessor.class, "failedEvents"));
+    }
+
+    @Override
+    public Messages process(Messages messages) {
+        if (!definitions.isEnabled()) {
+            return messages;
+        }
+        final List<RealtimeFilterEventDefinitions.CompiledDefinition> compiledDefinitions = definitions.definitions();
+        if (compiledDefinitions.isEmpty()) {
+            return messages;
+        }
+
+        final EventFactory eventFactory = eventFactoryProvider.get();
+        final Map<EventDefinition, List<RealtimeEvent>> eventsByDefinition = new HashMap<>();
+
+        for (final Message message : messages) {
+            if (message.getFilterOut()) {
+                continue;
+            }
+            final Set<String> streamIds = ImmutableSet.copyOf(message.getStreamIds());
+            final FilterQueryCompiler.MatchContext context = new FilterQueryCompiler.MatchContext(message);
+            Message messageCopy = null;
+
+            for (final RealtimeFilterEventDefinitions.CompiledDefinition definition : compiledDefinitions) {
+                if (!definition.matchesStreams(streamIds) || !definition.matcher().matches(context)) {
+                    continue;
+                }
+                // The message keeps being processed and indexed, the event gets its own copy.
+                if (messageCopy == null) {
+                    messageCopy = new Message(message.getFields());
+                }
+                eventsByDefinition.computeIfAbsent(definition.eventDefinition(), d -> new ArrayList<>())
+                        .add(createEvent(eventFactory, definition, message, messageCopy, streamIds));
+            }
+        }
+
+        eventsByDefinition.forEach((definition, events) -> {
+            createdEvents.mark(events.size());
+            // Registered before the events are handed over, so the scheduled executions wait for them
+            final long emitId = definitions.emitStarted(events.stream()
+                    .map(RealtimeEvent::receiveTime)
+                    .min(Comparator.naturalOrder())
+                    .orElseThrow());
+            emitExecutor.execute(() -> emit(definition, events, emitId));
+        });
+
+        return messages;
+    }
+
+    private RealtimeEvent createEvent(EventFactory eventFactory,
+                                         RealtimeFilterEventDefinitions.CompiledDefinition definition,
+                                         Message message,
+                                         Message messageCopy,
+                                         Set<String> streamIds) {
+        final EventDefinition eventDefinition = definition.eventDefinition();
+        final AggregationEventProcessorConfig config = (AggregationEventProcessorConfig) eventDefinition.config();
+        final DateTime timestamp = message.getTimestamp();
+
+        final Event event = eventFactory.createEvent(eventDefinition, timestamp, eventDefinition.title());
+
+        // Ensure the event has values in the "source_streams" field for permission checks to work
+        eventStreamService.buildEventSourceStreams(definition.streams(), streamIds)
+                .forEach(event::addSourceStream);
+
+        event.setReplayInfo(EventReplayInfo.builder()
+                .timerangeStart(timestamp.minus(config.searchWithinMs()))
+                .timerangeEnd(timestamp)
+                .query(config.query())
+                .streams(event.getSourceStreams())
+                .build());
+
+        final DateTime receiveTime = message.getReceiveTime() != null ? message.getReceiveTime() : timestamp;
+        final IndexSet indexSet = message.getIndexSets().stream().findFirst().orElse(null);
+        return new RealtimeEvent(EventWithContext.create(event, messageCopy), indexSet, message.getId(), receiveTime);
+    }
+
+    private void emit(EventDefinition definition, List<RealtimeEvent> events, long emitId) {
+        try {
+            for (final RealtimeEvent event : events) {
+                writeIndex(event.indexSet()).ifPresent(index -> event.eventWithContext().event()
+                        .setOriginContext(EventOriginContext.elasticsearchMessage(index, event.messageId())));
+            }
+            engineProvider.get().emitEvents(definition, events.stream()
+                    .map(RealtimeEvent::eventWithContext)
+                    .collect(ImmutableList.toImmutableList()));
+        } catch (Exception e) {
+            LOG.error("Couldn't emit {} real-time events for event definition <{}/{}>, searching their time range instead",
+                    events.size(), definition.title(), definition.id(), e);
+            failedEvents.mark(events.size());
+            final List<DateTime> timestamps = events.stream()
+                    .map(event -> event.eventWithContext().event().getEventTimestamp())
+                    .sorted()
+                    .toList();
+            definitions.emitFailed(definition, timestamps.get(0), timestamps.get(timestamps.size() - 1));
+        } finally {
+            definitions.emitFinished(emitId);
+        }
+    }
+
+    /**
+     * Returns the index the message has been written to. The origin context must not reference the write alias, it
+     * points to a different index after the next rotation.
+     */
+    private Optional<String> writeIndex(@Nullable IndexSet indexSet) {
+        if (indexSet == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.ofNullable(writeIndices.get(indexSet.getConfig().id(), id -> indexSet.getActiveWriteIndex()));
+        } catch (Exception e) {
+            LOG.warn("Couldn't determine write index of index set <{}>, creating events without origin context", indexSet.getConfig().id(), e);
+            return Optional.empty();
+        }
+    }
+
+    private record RealtimeEvent(EventWithContext eventWithContext,
+                                 @Nullable IndexSet indexSet,
+                                 String messageId,
+                                 DateTime receiveTime) {}
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.events.processor.realtime;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.UpdateOptions;
+import org.bson.Document;
+import org.graylog2.database.MongoConnection;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.lt;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.pull;
+import static com.mongodb.client.model.Updates.push;
+import static com.mongodb.client.model.Updates.set;
+import static org.graylog2.database.indices.MongoDbIndexTools.ensureTTLIndex;
+
+/**
+ * Stores the real-time evaluation state of every node, so the scheduled execution of an event definition only skips
+ * its search if all nodes evaluated the definition for the whole time range.
+ */
+@Singleton
+public class RealtimeFilterNodeStateService {
+    static final String COLLECTION_NAME = "event_realtime_filter_node_states";
+    private static final String FIELD_ID = "_id";
+    private static final String FIELD_UPDATED_AT = "updated_at";
+    private static final String FIELD_PROCESSOR_ENABLED_SINCE = "processor_enabled_since";
+    private static final String FIELD_EMITTED_UNTIL = "emitted_until";
+    private static final String FIELD_DEFINITIONS = "definitions";
+    private static final String FIELD_DEFINITION_ID = "definition_id";
+    private static final String FIELD_FINGERPRINT = "fingerprint";
+    private static final String FIELD_LOADED_AT = "loaded_at";
+    private static final String FIELD_FAILED_RANGES = "failed_ranges";
+    private static final String FIELD_FROM = "from";
+    private static final String FIELD_TO = "to";
+    // States of nodes which have been stopped for good are removed eventually
+    private static final Duration TTL = Duration.ofDays(7);
+
+    public record LoadedDefinition(String fingerprint, DateTime loadedAt) {}
+
+    public record FailedRange(String definitionId, DateTime from, DateTime to) {
+        boolean overlaps(String definitionId, DateTime from, DateTime to) {
+            return this.definitionId.equals(definitionId) && !this.from.isAfter(to) && !this.to.isBefore(from);
+        }
+    }
+
+    public record NodeState(String nodeId,
+                            DateTime updatedAt,
+                            @Nullable DateTime processorEnabledSince,
+                            DateTime emittedUntil,
+                            Map<String, LoadedDefinition> definitions,
+                            List<FailedRange> failedRanges) {}
+
+    private final MongoCollection<Document> collection;
+
+    @Inject
+    public RealtimeFilterNodeStateService(MongoConnection mongoConnection) {
+        this.collection = mongoConnection.getMongoDatabase().getCollection(COLLECTION_NAME);
+        ensureTTLIndex(collection, TTL, FIELD_UPDATED_AT);
+    }
+
+    /**
+     * Stores the current state of a node. Failed ranges which ended before the given retention time are removed.
+     */
+    public void save(String nodeId,
+                     DateTime updatedAt,
+                     @Nullable DateTime processorEnabledSince,
+                     DateTime emittedUntil,
+                     Map<String, LoadedDefinition> definitions,
+                     DateTime failedRangesRetention) {
+        final List<Document> definitionDocuments = definitions.entrySet().stream()
+                .map(entry -> new Document(FIELD_DEFINITION_ID, entry.getKey())
+                        .append(FIELD_FINGERPRINT, entry.getValue().fingerprint())
+                        .append(FIELD_LOADED_AT, entry.getValue().loadedAt().toDate()))
+                .toList();
+        collection.updateOne(eq(FIELD_ID, nodeId),
+                combine(
+                        set(FIELD_UPDATED_AT, updatedAt.toDate()),
+                        set(FIELD_PROCESSOR_ENABLED_SINCE, processorEnabledSince == null ? null : processorEnabledSince.toDate()),
+                        set(FIELD_EMITTED_UNTIL, emittedUntil.toDate()),
+                        set(FIELD_DEFINITIONS, definitionDocuments)),
+                new UpdateOptions().upsert(true));
+        collection.updateOne(eq(FIELD_ID, nodeId),
+                pull(FIELD_FAILED_RANGES, lt(FIELD_TO, failedRangesRetention.toDate())));
+    }
+
+    /**
+     * Records that the events of the given definition for messages in the given time range couldn't be emitted.
+     */
+    public void addFailedRange(String nodeId, FailedRange failedRange) {
+        collection.updateOne(eq(FIELD_ID, nodeId),
+                push(FIELD_FAILED_RANGES, new Document(FIELD_DEFINITION_ID, failedRange.definitionId())
+                        .append(FIELD_FROM, failedRange.from().toDate())
+                        .append(FIELD_TO, failedRange.to().toDate())),
+                new UpdateOptions().upsert(true));
+    }
+
+    public Map<String, NodeState> find(Collection<String> nodeIds) {
+        return StreamSupport.stream(collection.find(in(FIELD_ID, nodeIds)).spliterator(), false)
+                // Documents which only contain failed ranges don't have a state yet
+                .filter(document -> document.containsKey(FIELD_UPDATED_AT))
+                .map(RealtimeFilterNodeStateService::toNodeState)
+                .collect(Collectors.toMap(NodeState::nodeId, Function.identity()));
+    }
+
+    private static NodeState toNodeState(Document document) {
+        final Map<String, LoadedDefinition> definitions = document.getList(FIELD_DEFINITIONS, Document.class, List.of()).stream()
+                .collect(Collectors.toMap(
+                        definition -> definition.getString(FIELD_DEFINITION_ID),
+                        definition -> new LoadedDefinition(definition.getString(FIELD_FINGERPRINT), dateTime(definition.getDate(FIELD_LOADED_AT)))));
+        final List<FailedRange> failedRanges = document.getList(FIELD_FAILED_RANGES, Document.class, List.of()).stream()
+                .map(range -> new FailedRange(range.getString(FIELD_DEFINITION_ID), dateTime(range.getDate(FIELD_FROM)), dateTime(range.getDate(FIELD_TO))))
+                .toList();
+        return new NodeState(
+                document.getString(FIELD_ID),
+                dateTime(document.getDate(FIELD_UPDATED_AT)),
+                dateTime(document.getDate(FIELD_PROCESSOR_ENABLED_SINCE)),
+                dateTime(document.getDate(FIELD_EMITTED_UNTIL)),
+                definitions,
+                failedRanges);
+    }
+
+    @Nullable
+    private static DateTime dateTime(@Nullable Date date) {
+        return date == null ? null : new DateTime(date, DateTimeZone.UTC);
+    }
+}
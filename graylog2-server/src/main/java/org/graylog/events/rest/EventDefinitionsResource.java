@@ -180,9 +180,7 @@ public class EventDefinitionsResource extends RestResource implements PluginRest
         if ("status".equals(sort)) {
             sort = "alert";
         }
-        final PaginatedList<EventDefinitionDto> result = dbService.searchPaginated(searchQuery, event -> {
-            return isPermitted(RestPermissions.EVENT_DEFINITIONS_READ, event.id());
-        }, sort, order, page, perPage);
+        final PaginatedList<EventDefinitionDto> result = searchPaginated(searchQuery, sort, order, page, perPage);
         PaginatedList<EventDefinitionDto> definitionDtos = new PaginatedList<>(
                 result.delegate(), result.pagination().total(), result.pagination().page(), result.pagination().perPage()
         );
@@ -213,13 +211,20 @@ public class EventDefinitionsResource extends RestResource implements PluginRest
         } catch (IllegalArgumentException e) {
             throw new BadRequestException("Invalid argument in search query: " + e.getMessage());
         }
-        final PaginatedList<EventDefinitionDto> result = dbService.searchPaginated(searchQuery, event -> {
-            return isPermitted(RestPermissions.EVENT_DEFINITIONS_READ, event.id());
-        }, "title", "asc", page, perPage);
+        final PaginatedList<EventDefinitionDto> result = searchPaginated(searchQuery, "title", "asc", page, perPage);
         final ImmutableMap<String, Object> context = contextService.contextFor(result.delegate());
         return PaginatedResponse.create("event_definitions", result, query, context);
     }
 
+    private PaginatedList<EventDefinitionDto> searchPaginated(SearchQuery searchQuery, String sort, String order, int page, int perPage) {
+        // Users with access to a few event definitions only are filtered by the database
+        return getPermittedInstanceIds(RestPermissions.EVENT_DEFINITIONS_READ)
+                .map(ids -> dbService.searchPaginatedByIds(searchQuery, ids, sort, order, page, perPage))
+                .orElseGet(() -> dbService.searchPaginated(searchQuery,
+                        event -> isPermitted(RestPermissions.EVENT_DEFINITIONS_READ, event.id()),
+                        sort, order, page, perPage));
+    }
+
     @GET
     @Path("{definitionId}")
     @ApiOperation("Get an event definition")
@@ -48,6 +48,7 @@ public class PrometheusExporter extends AbstractIdleService {
     private final Provider<PrometheusMappingFilesHandler> mappingFilesHandlerProvider;
     private final PrometheusExporterHTTPServer httpServer;
     private final long refreshIntervalMs;
+    private final boolean streaming;
 
     private ScheduledFuture<?> refreshFuture;
     private PrometheusMappingFilesHandler mappingFilesHandler;
@@ -56,6 +57,7 @@ public class PrometheusExporter extends AbstractIdleService {
     public PrometheusExporter(@Named(PrometheusExporterConfiguration.ENABLED) boolean enabled,
                               @Named(PrometheusExporterConfiguration.BIND_ADDRESS) HostAndPort bindAddress,
                               @Named(PrometheusExporterConfiguration.MAPPING_FILE_REFRESH_INTERVAL) Duration mappingFileRefreshInterval,
+                              @Named(PrometheusExporterConfiguration.STREAMING) boolean streaming,
                               @Named("daemonScheduler") ScheduledExecutorService scheduler,
                               MetricRegistry metricRegistry,
                               Provider<PrometheusMappingFilesHandler> mappingFilesHandlerProvider,
@@ -66,6 +68,7 @@ public class PrometheusExporter extends AbstractIdleService {
         this.mappingFilesHandlerProvider = mappingFilesHandlerProvider;
         this.httpServer = httpServerFactory.create(bindAddress);
         this.refreshIntervalMs = mappingFileRefreshInterval.toMilliseconds();
+        this.streaming = streaming;
     }
 
     @Override
@@ -77,7 +80,7 @@ public class PrometheusExporter extends AbstractIdleService {
 
         createMappingFilesHandler();
 
-        httpServer.replaceCollector(createCollector(mappingFilesHandler.getMapperConfigs()));
+        applyMappings(mappingFilesHandler.getMapperConfigs());
         httpServer.start();
 
         this.refreshFuture = scheduler.scheduleAtFixedRate(this::refresh, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
@@ -100,13 +103,25 @@ public class PrometheusExporter extends AbstractIdleService {
 
         try {
             if (mappingFilesHandler.filesHaveChanged()) {
-                httpServer.replaceCollector(createCollector(mappingFilesHandler.getMapperConfigs()));
+                applyMappings(mappingFilesHandler.getMapperConfigs());
             }
         } catch (Exception e) {
             LOG.error("Couldn't refresh mapping files", e);
         }
     }
 
+    private void applyMappings(List<MapperConfig> mapperConfigs) {
+        if (streaming) {
+            httpServer.replaceMetricsWriter(createMetricsWriter(mapperConfigs));
+        } else {
+            httpServer.replaceCollector(createCollector(mapperConfigs));
+        }
+    }
+
+    private PrometheusMetricsWriter createMetricsWriter(List<MapperConfig> mapperConfigs) {
+        return PrometheusMetricsWriter.create(metricRegistry, new PrometheusMetricMappings(mapperConfigs));
+    }
+
     private Collector createCollector(List<MapperConfig> mapperConfigs) {
         return new DropwizardExports(
                 metricRegistry,
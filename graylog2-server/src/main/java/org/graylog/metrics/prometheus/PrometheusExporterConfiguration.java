@@ -34,6 +34,7 @@ public class PrometheusExporterConfiguration {
     public static final String MAPPING_FILE_PATH_CORE = PREFIX + "mapping_file_path_core";
     public static final String MAPPING_FILE_PATH_CUSTOM = PREFIX + "mapping_file_path_custom";
     public static final String MAPPING_FILE_REFRESH_INTERVAL = PREFIX + "mapping_file_refresh_interval";
+    public static final String STREAMING = PREFIX + "streaming";
 
     private static String DEFAULT_BIND_ADDRESS_HOST = "127.0.0.1";
     // The default port has been added to the Prometheus default port allocation wiki page:
@@ -55,6 +56,9 @@ public class PrometheusExporterConfiguration {
     @Parameter(value = MAPPING_FILE_REFRESH_INTERVAL, validators = {PositiveDurationValidator.class})
     private Duration mappingFileRefreshInterval = Duration.seconds(60);
 
+    @Parameter(value = STREAMING)
+    private boolean streaming = false;
+
     public static class CustomHostAndPortConverter extends HostAndPortConverter {
         @Override
         public HostAndPort convertFrom(String value) {
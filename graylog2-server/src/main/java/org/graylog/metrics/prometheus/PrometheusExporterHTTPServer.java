@@ -19,32 +19,55 @@ package org.graylog.metrics.prometheus;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.net.HostAndPort;
 import com.google.inject.assistedinject.Assisted;
+import com.google.common.base.Splitter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
 import io.prometheus.client.Collector;
 import io.prometheus.client.CollectorRegistry;
 import io.prometheus.client.exporter.HTTPServer;
+import io.prometheus.client.exporter.common.TextFormat;
 import io.prometheus.client.hotspot.DefaultExports;
 import org.graylog2.shared.SuppressForbidden;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
 
 public class PrometheusExporterHTTPServer {
     private static final Logger LOG = LoggerFactory.getLogger(PrometheusExporterHTTPServer.class);
 
     private static final int DEFAULT_HTTP_SERVER_BACKLOG = 3;
+    private static final int STREAMING_HTTP_THREADS = 5;
+    private static final int STREAMING_BUFFER_SIZE = 64 * 1024;
+    private static final String HEALTHY_RESPONSE = "Exporter is Healthy.";
 
     private final HostAndPort bindAddress;
     private final AtomicReference<CollectorRegistry> registryRef = new AtomicReference<>(newCollectorRegistry());
+    private final AtomicReference<PrometheusMetricsWriter> metricsWriterRef = new AtomicReference<>(null);
     private final AtomicBoolean isRunning = new AtomicBoolean(false);
 
     private HTTPServer server;
+    private HttpServer streamingServer;
+    private ExecutorService streamingExecutor;
 
     @Inject
     public PrometheusExporterHTTPServer(@Assisted HostAndPort bindAddress) {
@@ -63,14 +86,29 @@ public class PrometheusExporterHTTPServer {
         registryRef.set(newRegistry);
     }
 
+    /**
+     * Switches the server to the streaming mode, the metrics of the given writer are written directly to the response
+     * in addition to the JVM metrics. Must be called before {@link #start()}; later calls replace the writer.
+     */
+    public void replaceMetricsWriter(PrometheusMetricsWriter metricsWriter) {
+        final PrometheusMetricsWriter previous = metricsWriterRef.getAndSet(metricsWriter);
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
     @SuppressForbidden("Deliberate usage of HttpServer")
     public void start() {
         try {
             final InetSocketAddress addr = new InetSocketAddress(bindAddress.getHost(), bindAddress.getPort());
             final HttpServer httpServer = HttpServer.create(addr, DEFAULT_HTTP_SERVER_BACKLOG);
-            final ReplaceableCollectorRegistry replaceableRegistry = new ReplaceableCollectorRegistry(registryRef);
 
-            this.server = new HTTPServer(httpServer, replaceableRegistry, true);
+            if (metricsWriterRef.get() != null) {
+                startStreaming(httpServer);
+            } else {
+                final ReplaceableCollectorRegistry replaceableRegistry = new ReplaceableCollectorRegistry(registryRef);
+                this.server = new HTTPServer(httpServer, replaceableRegistry, true);
+            }
             isRunning.set(true);
             LOG.info("Exporting Prometheus metrics on <{}> via HTTP", bindAddress);
         } catch (IOException e) {
@@ -78,15 +116,121 @@ public class PrometheusExporterHTTPServer {
         }
     }
 
+    private void startStreaming(HttpServer httpServer) {
+        // The JVM metrics are few, they are still collected through a collector registry
+        final CollectorRegistry jvmRegistry = newCollectorRegistry();
+        DefaultExports.register(jvmRegistry);
+        registryRef.set(jvmRegistry);
+
+        httpServer.createContext("/", exchange -> handleMetrics(exchange, jvmRegistry));
+        httpServer.createContext("/metrics", exchange -> handleMetrics(exchange, jvmRegistry));
+        httpServer.createContext("/-/healthy", this::handleHealthy);
+
+        this.streamingExecutor = Executors.newFixedThreadPool(STREAMING_HTTP_THREADS, new ThreadFactoryBuilder()
+                .setNameFormat("prometheus-exporter-http-%d")
+                .setDaemon(true)
+                .build());
+        httpServer.setExecutor(streamingExecutor);
+        httpServer.start();
+        this.streamingServer = httpServer;
+    }
+
+    private void handleMetrics(HttpExchange exchange, CollectorRegistry jvmRegistry) throws IOException {
+        try (exchange) {
+            final PrometheusMetricsWriter metricsWriter = metricsWriterRef.get();
+            if (metricsWriter == null) {
+                // The exporter is being stopped, requests which are still in flight get no metrics
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            final String contentType = TextFormat.chooseContentType(exchange.getRequestHeaders().getFirst("Accept"));
+            final boolean openMetrics = TextFormat.CONTENT_TYPE_OPENMETRICS_100.equals(contentType);
+            final Set<String> names = parseNames(exchange.getRequestURI().getRawQuery());
+            final boolean gzip = acceptsGzip(exchange);
+
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            if (gzip) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            // Chunked response, the size isn't known before the metrics have been written
+            exchange.sendResponseHeaders(200, 0);
+
+            final OutputStream body = gzip ? new GZIPOutputStream(exchange.getResponseBody()) : exchange.getResponseBody();
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8), STREAMING_BUFFER_SIZE)) {
+                metricsWriter.write(writer, openMetrics, names.isEmpty() ? name -> true : names::contains);
+
+                final Enumeration<Collector.MetricFamilySamples> jvmSamples = names.isEmpty()
+                        ? jvmRegistry.metricFamilySamples()
+                        : jvmRegistry.filteredMetricFamilySamples(names);
+                if (openMetrics) {
+                    TextFormat.writeOpenMetrics100(writer, jvmSamples);
+                } else {
+                    TextFormat.write004(writer, jvmSamples);
+                }
+            }
+        }
+    }
+
+    private void handleHealthy(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            final byte[] response = HEALTHY_RESPONSE.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+        }
+    }
+
+    private static boolean acceptsGzip(HttpExchange exchange) {
+        final List<String> encodings = exchange.getRequestHeaders().get("Accept-Encoding");
+        return encodings != null && encodings.stream()
+                .flatMap(value -> Splitter.on(',').trimResults().splitToList(value).stream())
+                .anyMatch("gzip"::equalsIgnoreCase);
+    }
+
+    /**
+     * Parses the "name[]" query parameters which select the metric families to return, like the standard exporter.
+     */
+    @VisibleForTesting
+    static Set<String> parseNames(String rawQuery) {
+        final Set<String> names = new HashSet<>();
+        if (rawQuery == null) {
+            return names;
+        }
+        for (String parameter : Splitter.on('&').omitEmptyStrings().split(rawQuery)) {
+            final int separator = parameter.indexOf('=');
+            if (separator > 0) {
+                final String key = URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8);
+                if ("name[]".equals(key)) {
+                    names.add(URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return names;
+    }
+
     public void stop() {
+        isRunning.set(false);
         if (server != null) {
-            isRunning.set(false);
             server.stop();
         }
+        if (streamingServer != null) {
+            streamingServer.stop(0);
+            streamingExecutor.shutdownNow();
+        }
+        final PrometheusMetricsWriter metricsWriter = metricsWriterRef.getAndSet(null);
+        if (metricsWriter != null) {
+            metricsWriter.close();
+        }
     }
 
     @VisibleForTesting
     Optional<Integer> getPort() {
+        if (streamingServer != null) {
+            return Optional.of(streamingServer.getAddress().getPort());
+        }
         return Optional.ofNullable(server).map(HTTPServer::getPort);
     }
 
@@ -44,7 +44,7 @@ public class PrometheusMetricFilter implements MetricFilter {
      * @param glob the glob pattern
      * @return regexp pattern
      */
-    private Pattern globToRegex(String glob) {
+    static Pattern globToRegex(String glob) {
         final String[] parts = glob.split(Pattern.quote("*"), -1);
         final StringBuilder escapedPattern = new StringBuilder(Pattern.quote(parts[0]));
 
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.metrics.prometheus;
+
+import com.google.common.collect.ImmutableList;
+import io.prometheus.client.dropwizard.samplebuilder.MapperConfig;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The metric mapping rules compiled into an index. Mappings without wildcards are looked up by name, only the ones
+ * with wildcards have to be matched one by one.
+ * <p>
+ * Like the {@link io.prometheus.client.dropwizard.samplebuilder.CustomMappingSampleBuilder}, the first matching
+ * mapping wins and {@code ${n}} placeholders in label values are replaced with the value of the n-th wildcard.
+ */
+public class PrometheusMetricMappings {
+    private final Map<String, CompiledMapping> exactMappings = new HashMap<>();
+    private final List<CompiledMapping> wildcardMappings;
+
+    public record MappedName(String name, List<String> labelNames, List<String> labelValues) {}
+
+    private record CompiledMapping(int order, Pattern pattern, String name, Map<String, String> labels) {
+        MappedName map(Matcher matcher) {
+            final ImmutableList.Builder<String> labelValues = ImmutableList.builderWithExpectedSize(labels.size());
+            for (String template : labels.values()) {
+                String value = template;
+                for (int i = 0; i < matcher.groupCount(); i++) {
+                    value = value.replace("${" + i + "}", matcher.group(i + 1));
+                }
+                labelValues.add(value);
+            }
+            return new MappedName(name, ImmutableList.copyOf(labels.keySet()), labelValues.build());
+        }
+    }
+
+    public PrometheusMetricMappings(List<MapperConfig> mapperConfigs) {
+        final ImmutableList.Builder<CompiledMapping> wildcards = ImmutableList.builder();
+        for (int i = 0; i < mapperConfigs.size(); i++) {
+            final MapperConfig config = mapperConfigs.get(i);
+            // Sorted label names make the output stable
+            final CompiledMapping mapping = new CompiledMapping(i, PrometheusMetricFilter.globToRegex(config.getMatch()),
+                    config.getName(), new TreeMap<>(config.getLabels()));
+            if (config.getMatch().contains("*")) {
+                wildcards.add(mapping);
+            } else {
+                exactMappings.putIfAbsent(config.getMatch(), mapping);
+            }
+        }
+        this.wildcardMappings = wildcards.build();
+    }
+
+    /**
+     * Returns the Prometheus name and labels for the given Dropwizard metric name or {@code null} if the metric isn't
+     * mapped and must not be exported.
+     */
+    @Nullable
+    public MappedName map(String metricName) {
+        final CompiledMapping exact = exactMappings.get(metricName);
+        for (CompiledMapping mapping : wildcardMappings) {
+            if (exact != null && exact.order() < mapping.order()) {
+                break;
+            }
+            final Matcher matcher = mapping.pattern().matcher(metricName);
+            if (matcher.matches()) {
+                return mapping.map(matcher);
+            }
+        }
+        return exact == null ? null : exact.map(exact.pattern().matcher(metricName));
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.metrics.prometheus;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricRegistryListener;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import io.prometheus.client.Collector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Writes the mapped metrics of a {@link MetricRegistry} in the Prometheus text or OpenMetrics format.
+ * <p>
+ * The mapping of every metric is resolved once when the metric is registered, and the metrics are kept grouped by
+ * their metric family. A scrape only walks this index and writes the current values directly to the response,
+ * instead of matching all metric names against the mappings and building the samples in memory first.
+ */
+public class PrometheusMetricsWriter implements MetricRegistryListener, AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(PrometheusMetricsWriter.class);
+
+    private static final String[] QUANTILES = {"0.5", "0.75", "0.95", "0.98", "0.99", "0.999"};
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1L);
+
+    private enum Kind {
+        GAUGE("gauge"), SUMMARY("summary"), COUNTER("counter");
+
+        private final String type;
+
+        Kind(String type) {
+            this.type = type;
+        }
+    }
+
+    private record Entry(String metricName, Metric metric, PrometheusMetricMappings.MappedName mappedName) {}
+
+    private record Family(Kind kind, ConcurrentMap<String, Entry> entries) {}
+
+    private final MetricRegistry metricRegistry;
+    private final PrometheusMetricMappings mappings;
+    private final ConcurrentSkipListMap<String, Family> families = new ConcurrentSkipListMap<>();
+
+    private PrometheusMetricsWriter(MetricRegistry metricRegistry, PrometheusMetricMappings mappings) {
+        this.metricRegistry = metricRegistry;
+        this.mappings = mappings;
+    }
+
+    /**
+     * Creates a writer for the given registry. The writer keeps track of added and removed metrics until it is closed.
+     */
+    public static PrometheusMetricsWriter create(MetricRegistry metricRegistry, PrometheusMetricMappings mappings) {
+        final PrometheusMetricsWriter writer = new PrometheusMetricsWriter(metricRegistry, mappings);
+        // Adding the listener also notifies it about all existing metrics
+        metricRegistry.addListener(writer);
+        return writer;
+    }
+
+    @Override
+    public void close() {
+        metricRegistry.removeListener(this);
+    }
+
+    /**
+     * Writes all metric families whose name is accepted by the given filter.
+     *
+     * @param writer       the response writer
+     * @param openMetrics  {@code true} for the OpenMetrics format, {@code false} for the text format 0.0.4
+     * @param familyFilter filter for the family names, counters are checked with and without "_total" suffix
+     */
+    public void write(Writer writer, boolean openMetrics, Predicate<String> familyFilter) throws IOException {
+        for (Map.Entry<String, Family> familyEntry : families.entrySet()) {
+            final String name = familyEntry.getKey();
+            final Family family = familyEntry.getValue();
+            if (family.entries().isEmpty() || !includeFamily(name, family.kind(), familyFilter)) {
+                continue;
+            }
+
+            // The text format 0.0.4 expects the counter family name to match the sample name
+            final String familyName = family.kind() == Kind.COUNTER && !openMetrics ? name + "_total" : name;
+            boolean headerWritten = false;
+            for (Entry entry : family.entries().values()) {
+                if (!headerWritten) {
+                    writeHeader(writer, familyName, family.kind(), entry);
+                    headerWritten = true;
+                }
+                writeSamples(writer, name, family.kind(), entry);
+            }
+        }
+    }
+
+    private static boolean includeFamily(String name, Kind kind, Predicate<String> familyFilter) {
+        return familyFilter.test(name) || (kind == Kind.COUNTER && familyFilter.test(name + "_total"));
+    }
+
+    private static void writeHeader(Writer writer, String familyName, Kind kind, Entry entry) throws IOException {
+        writer.write("# HELP ");
+        writer.write(familyName);
+        writer.write(" Generated from Dropwizard metric import (metric=");
+        writeEscapedHelp(writer, entry.metricName());
+        writer.write(", type=");
+        writer.write(entry.metric().getClass().getName());
+        writer.write(")\n# TYPE ");
+        writer.write(familyName);
+        writer.write(' ');
+        writer.write(kind.type);
+        writer.write('\n');
+    }
+
+    private static void writeSamples(Writer writer, String name, Kind kind, Entry entry) throws IOException {
+        final PrometheusMetricMappings.MappedName mappedName = entry.mappedName();
+        final Metric metric = entry.metric();
+
+        if (metric instanceof Gauge<?> gauge) {
+            final Object value = gauge.getValue();
+            final double doubleValue;
+            if (value instanceof Number number) {
+                doubleValue = number.doubleValue();
+            } else if (value instanceof Boolean bool) {
+                doubleValue = bool ? 1 : 0;
+            } else {
+                LOG.trace("Invalid type for gauge {}: {}", entry.metricName(), value == null ? null : value.getClass().getName());
+                return;
+            }
+            writeSample(writer, name, "", mappedName, null, doubleValue);
+        } else if (metric instanceof Counter counter) {
+            writeSample(writer, name, "", mappedName, null, counter.getCount());
+        } else if (metric instanceof Meter meter) {
+            writeSample(writer, name, "_total", mappedName, null, meter.getCount());
+        } else if (metric instanceof Timer timer) {
+            writeSummary(writer, name, mappedName, timer.getSnapshot(), timer.getCount(), 1.0D / NANOS_PER_SECOND);
+        } else if (metric instanceof Histogram histogram) {
+            writeSummary(writer, name, mappedName, histogram.getSnapshot(), histogram.getCount(), 1.0D);
+        }
+    }
+
+    private static void writeSummary(Writer writer, String name, PrometheusMetricMappings.MappedName mappedName,
+                                     Snapshot snapshot, long count, double factor) throws IOException {
+        final double[] values = {
+                snapshot.getMedian(),
+                snapshot.get75thPercentile(),
+                snapshot.get95thPercentile(),
+                snapshot.get98thPercentile(),
+                snapshot.get99thPercentile(),
+                snapshot.get999thPercentile()
+        };
+        for (int i = 0; i < QUANTILES.length; i++) {
+            writeSample(writer, name, "", mappedName, QUANTILES[i], values[i] * factor);
+        }
+        writeSample(writer, name, "_count", mappedName, null, count);
+    }
+
+    private static void writeSample(Writer writer, String name, String suffix, PrometheusMetricMappings.MappedName mappedName,
+                                    String quantile, double value) throws IOException {
+        writer.write(name);
+        writer.write(suffix);
+
+        final List<String> labelNames = mappedName.labelNames();
+        final List<String> labelValues = mappedName.labelValues();
+        if (!labelNames.isEmpty() || quantile != null) {
+            writer.write('{');
+            for (int i = 0; i < labelNames.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(labelNames.get(i));
+                writer.write("=\"");
+                writeEscapedLabelValue(writer, labelValues.get(i));
+                writer.write('"');
+            }
+            if (quantile != null) {
+                if (!labelNames.isEmpty()) {
+                    writer.write(',');
+                }
+                writer.write("quantile=\"");
+                writer.write(quantile);
+                writer.write('"');
+            }
+            writer.write('}');
+        }
+
+        writer.write(' ');
+        writer.write(Collector.doubleToGoString(value));
+        writer.write('\n');
+    }
+
+    private static void writeEscapedHelp(Writer writer, String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            switch (c) {
+                case '\\' -> writer.write("\\\\");
+                case '\n' -> writer.write("\\n");
+                default -> writer.write(c);
+            }
+        }
+    }
+
+    private static void writeEscapedLabelValue(Writer writer, String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            switch (c) {
+                case '\\' -> writer.write("\\\\");
+                case '\"' -> writer.write("\\\"");
+                case '\n' -> writer.write("\\n");
+                default -> writer.write(c);
+            }
+        }
+    }
+
+    private void add(String metricName, Metric metric, Kind kind) {
+        final PrometheusMetricMappings.MappedName mappedName = mappings.map(metricName);
+        if (mappedName == null) {
+            return;
+        }
+        final Family family = families.computeIfAbsent(mappedName.name(), name -> new Family(kind, new ConcurrentSkipListMap<>()));
+        if (family.kind() != kind) {
+            LOG.debug("Not exporting metric <{}>, metric family <{}> already contains metrics of type {}",
+                    metricName, mappedName.name(), family.kind().type);
+            return;
+        }
+        family.entries().put(metricName, new Entry(metricName, metric, mappedName));
+    }
+
+    private void remove(String metricName) {
+        final PrometheusMetricMappings.MappedName mappedName = mappings.map(metricName);
+        if (mappedName == null) {
+            return;
+        }
+        final Family family = families.get(mappedName.name());
+        if (family != null) {
+            family.entries().remove(metricName);
+        }
+    }
+
+    @Override
+    public void onGaugeAdded(String name, Gauge<?> gauge) {
+        add(name, gauge, Kind.GAUGE);
+    }
+
+    @Override
+    public void onGaugeRemoved(String name) {
+        remove(name);
+    }
+
+    @Override
+    public void onCounterAdded(String name, Counter counter) {
+        add(name, counter, Kind.GAUGE);
+    }
+
+    @Override
+    public void onCounterRemoved(String name) {
+        remove(name);
+    }
+
+    @Override
+    public void onHistogramAdded(String name, Histogram histogram) {
+        add(name, histogram, Kind.SUMMARY);
+    }
+
+    @Override
+    public void onHistogramRemoved(String name) {
+        remove(name);
+    }
+
+    @Override
+    public void onMeterAdded(String name, Meter meter) {
+        add(name, meter, Kind.COUNTER);
+    }
+
+    @Override
+    public void onMeterRemoved(String name) {
+        remove(name);
+    }
+
+    @Override
+    public void onTimerAdded(String name, Timer timer) {
+        add(name, timer, Kind.SUMMARY);
+    }
+
+    @Override
+    public void onTimerRemoved(String name) {
+        remove(name);
+    }
+}
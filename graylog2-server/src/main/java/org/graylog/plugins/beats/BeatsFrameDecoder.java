@@ -19,26 +19,24 @@ package org.graylog.plugins.beats;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.io.ByteStreams;
 import com.google.common.primitives.Ints;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
 import io.netty.handler.codec.ReplayingDecoder;
+import io.netty.handler.codec.TooLongFrameException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
-import java.util.zip.InflaterInputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 /**
  * FrameDecoder for the Beats/Lumberjack protocol.
@@ -55,6 +53,14 @@ public class BeatsFrameDecoder extends ReplayingDecoder<BeatsFrameDecoder.Decodi
     private static final byte FRAME_JSON = 'J';
     private static final byte FRAME_WINDOW_SIZE = 'W';
 
+    // Compressed frames are inflated in chunks of this size and decoded while inflating
+    private static final int INFLATE_CHUNK_SIZE = 64 * 1024;
+    // Limits the memory needed for a single frame inside of a compressed frame
+    @VisibleForTesting
+    static final int MAX_DECOMPRESSED_FRAME_SIZE = 64 * 1024 * 1024;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
     enum DecodingState {
         PROTOCOL_VERSION,
         FRAME_TYPE,
@@ -101,13 +107,13 @@ public class BeatsFrameDecoder extends ReplayingDecoder<BeatsFrameDecoder.Decodi
                 processWindowSizeFrame(buffer);
                 break;
             case FRAME_DATA:
-                list.addAll(parseDataFrame(channelHandlerContext.channel(), buffer));
+                list.add(parseDataFrame(channelHandlerContext.channel(), buffer));
                 break;
             case FRAME_COMPRESSED:
-                list.addAll(processCompressedFrame(channelHandlerContext.channel(), buffer));
+                processCompressedFrame(channelHandlerContext.channel(), buffer, list);
                 break;
             case FRAME_JSON:
-                list.addAll(parseJsonFrame(channelHandlerContext.channel(), buffer));
+                list.add(parseJsonFrame(channelHandlerContext.channel(), buffer));
                 break;
             default:
                 throw new Exception("Unknown decoding state: " + state());
@@ -116,20 +122,23 @@ public class BeatsFrameDecoder extends ReplayingDecoder<BeatsFrameDecoder.Decodi
         checkpoint(DecodingState.PROTOCOL_VERSION);
     }
 
-    private Collection<ByteBuf> processUncompressedBuffer(Channel channel, ByteBuf buffer) throws Exception {
+    private void processUncompressedBuffer(Channel channel, ByteBuf buffer, List<Object> out) throws Exception {
         checkVersion(buffer);
         byte frameType = buffer.readByte();
 
         switch (frameType) {
             case FRAME_WINDOW_SIZE:
                 processWindowSizeFrame(buffer);
-                return Collections.emptyList();
+                break;
             case FRAME_DATA:
-                return parseDataFrame(channel, buffer);
+                out.add(parseDataFrame(channel, buffer));
+                break;
             case FRAME_COMPRESSED:
-                return processCompressedFrame(channel, buffer);
+                processCompressedFrame(channel, buffer, out);
+                break;
             case FRAME_JSON:
-                return parseJsonFrame(channel, buffer);
+                out.add(parseJsonFrame(channel, buffer));
+                break;
             default:
                 throw new Exception("Unknown frame type: " + frameType);
         }
@@ -160,7 +169,7 @@ public class BeatsFrameDecoder extends ReplayingDecoder<BeatsFrameDecoder.Decodi
     /**
      * <a href="https://github.com/logstash-plugins/logstash-input-beats/blob/master/PROTOCOL.md#json-frame-type">'json' frame type</a>
      */
-    private Collection<ByteBuf> parseJsonFrame(Channel channel, ByteBuf channelBuffer) throws IOException {
+    private ByteBuf parseJsonFrame(Channel channel, ByteBuf channelBuffer) throws IOException {
         sequenceNum = channelBuffer.readUnsignedInt();
         LOG.trace("Received sequence number {}", sequenceNum);
 
@@ -169,30 +178,109 @@ public class BeatsFrameDecoder extends ReplayingDecoder<BeatsFrameDecoder.Decodi
         final ByteBuf buffer = channelBuffer.readBytes(jsonLength);
         sendACK(channel);
 
-        return Collections.singleton(buffer);
+        return buffer;
     }
 
     /**
+     * The compressed payload is inflated in chunks into a pooled buffer. Every complete frame is decoded as soon as
+     * it has been inflated, so only the frame currently being inflated has to be kept in memory instead of the whole
+     * decompressed window.
+     *
      * @see <a href="https://github.com/logstash-plugins/logstash-input-beats/blob/master/PROTOCOL.md#compressed-frame-type">'compressed' frame type</a>
      */
-    private Collection<ByteBuf> processCompressedFrame(Channel channel, ByteBuf channelBuffer) throws Exception {
-        final long payloadLength = channelBuffer.readUnsignedInt();
-        final byte[] data = new byte[(int) payloadLength];
-        channelBuffer.readBytes(data);
-        try (final ByteArrayInputStream dataStream = new ByteArrayInputStream(data);
-             final InputStream in = new InflaterInputStream(dataStream)) {
-            final ByteBuf buffer = Unpooled.wrappedBuffer(ByteStreams.toByteArray(in));
-            return processCompressedDataFrames(channel, buffer);
+    private void processCompressedFrame(Channel channel, ByteBuf channelBuffer, List<Object> out) throws Exception {
+        final int payloadLength = Ints.saturatedCast(channelBuffer.readUnsignedInt());
+        final ByteBuf payload = channelBuffer.readSlice(payloadLength);
+
+        final Inflater inflater = new Inflater();
+        final ByteBuf frames = channel.alloc().buffer(INFLATE_CHUNK_SIZE);
+        try {
+            inflater.setInput(payload.nioBuffer());
+            while (!inflater.finished()) {
+                frames.ensureWritable(INFLATE_CHUNK_SIZE);
+                final ByteBuffer chunk = frames.nioBuffer(frames.writerIndex(), frames.writableBytes());
+                final int inflated = inflater.inflate(chunk);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new CorruptedFrameException("Truncated compressed frame");
+                }
+                frames.writerIndex(frames.writerIndex() + inflated);
+
+                processCompressedDataFrames(channel, frames, out);
+                frames.discardSomeReadBytes();
+            }
+            if (frames.isReadable()) {
+                throw new CorruptedFrameException("Incomplete frame at end of compressed frame");
+            }
+        } catch (DataFormatException e) {
+            throw new CorruptedFrameException("Invalid compressed frame", e);
+        } finally {
+            frames.release();
+            inflater.end();
+        }
+    }
+
+    private void processCompressedDataFrames(Channel channel, ByteBuf channelBuffer, List<Object> out) throws Exception {
+        int frameLength;
+        while ((frameLength = completeFrameLength(channelBuffer)) > 0) {
+            processUncompressedBuffer(channel, channelBuffer.readSlice(frameLength), out);
+        }
+    }
+
+    /**
+     * Returns the length of the frame at the reader index of the given buffer if it is complete, otherwise -1.
+     */
+    @VisibleForTesting
+    static int completeFrameLength(ByteBuf buffer) {
+        final int start = buffer.readerIndex();
+        final int readable = buffer.readableBytes();
+        if (readable < 2) {
+            return -1;
         }
+
+        long length;
+        switch (buffer.getByte(start + 1)) {
+            case FRAME_WINDOW_SIZE:
+                length = 6;
+                break;
+            case FRAME_JSON:
+                if (readable < 10) {
+                    return -1;
+                }
+                length = 10 + buffer.getUnsignedInt(start + 6);
+                break;
+            case FRAME_COMPRESSED:
+                if (readable < 6) {
+                    return -1;
+                }
+                length = 6 + buffer.getUnsignedInt(start + 2);
+                break;
+            case FRAME_DATA:
+                if (readable < 10) {
+                    return -1;
+                }
+                final long items = 2 * buffer.getUnsignedInt(start + 6);
+                length = 10;
+                for (long i = 0; i < items; i++) {
+                    if (readable < length + 4) {
+                        return -1;
+                    }
+                    length += 4 + buffer.getUnsignedInt(start + (int) length);
+                    checkFrameLength(length);
+                }
+                break;
+            default:
+                // Let the frame decoding fail on the unknown frame type
+                return 2;
+        }
+
+        checkFrameLength(length);
+        return readable < length ? -1 : (int) length;
     }
 
-    private Collection<ByteBuf> processCompressedDataFrames(Channel channel, ByteBuf channelBuffer) throws Exception {
-        final List<ByteBuf> events = new ArrayList<>();
-        while (channelBuffer.isReadable()) {
-            final Collection<ByteBuf> buffers = processUncompressedBuffer(channel, channelBuffer);
-            events.addAll(buffers);
+    private static void checkFrameLength(long length) {
+        if (length > MAX_DECOMPRESSED_FRAME_SIZE) {
+            throw new TooLongFrameException("Frame in compressed frame exceeds " + MAX_DECOMPRESSED_FRAME_SIZE + " bytes");
         }
-        return events;
     }
 
     /**
@@ -206,14 +294,14 @@ public class BeatsFrameDecoder extends ReplayingDecoder<BeatsFrameDecoder.Decodi
     /**
      * @see <a href="https://github.com/logstash-plugins/logstash-input-beats/blob/master/PROTOCOL.md#data-frame-type">'data' frame type</a>
      */
-    private Collection<ByteBuf> parseDataFrame(Channel channel, ByteBuf channelBuffer) throws IOException {
+    private ByteBuf parseDataFrame(Channel channel, ByteBuf channelBuffer) throws IOException {
         sequenceNum = channelBuffer.readUnsignedInt();
         LOG.trace("Received sequence number {}", sequenceNum);
 
         final int pairs = Ints.saturatedCast(channelBuffer.readUnsignedInt());
-        final JsonFactory jsonFactory = new JsonFactory();
-        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        try (final JsonGenerator jg = jsonFactory.createGenerator(outputStream)) {
+        final ByteBuf buffer = channel.alloc().buffer();
+        boolean written = false;
+        try (final JsonGenerator jg = JSON_FACTORY.createGenerator((OutputStream) new ByteBufOutputStream(buffer))) {
             jg.writeStartObject();
             for (int i = 0; i < pairs; i++) {
                 final String key = parseDataItem(channelBuffer);
@@ -221,12 +309,17 @@ public class BeatsFrameDecoder extends ReplayingDecoder<BeatsFrameDecoder.Decodi
                 jg.writeStringField(key, value);
             }
             jg.writeEndObject();
+            written = true;
+        } finally {
+            // Incomplete frames are signalled with an error by the replaying decoder, don't leak the buffer then
+            if (!written) {
+                buffer.release();
+            }
         }
 
-        final ByteBuf buffer = Unpooled.wrappedBuffer(outputStream.toByteArray());
         sendACK(channel);
 
-        return Collections.singleton(buffer);
+        return buffer;
     }
 
     private String parseDataItem(ByteBuf buf) {
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.netflow.codecs;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.UpdateOptions;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.graylog2.database.MongoConnection;
+import org.joda.time.Duration;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.Optional;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.currentDate;
+import static com.mongodb.client.model.Updates.set;
+import static org.graylog2.database.indices.MongoDbIndexTools.ensureTTLIndex;
+
+@Singleton
+public class MongoNetFlowV9TemplateStore implements NetFlowV9TemplateStore {
+    private static final String COLLECTION_NAME = "netflow_v9_templates";
+    private static final String FIELD_ID = "_id";
+    private static final String FIELD_TEMPLATE_ID = "template_id";
+    private static final String FIELD_OPTION_TEMPLATE = "option_template";
+    private static final String FIELD_BYTES = "bytes";
+    private static final String FIELD_UPDATED_AT = "updated_at";
+
+    private final MongoCollection<Document> collection;
+
+    @Inject
+    public MongoNetFlowV9TemplateStore(MongoConnection mongoConnection,
+                                       @Named("message_journal_max_age") Duration journalMaxAge) {
+        this.collection = mongoConnection.getMongoDatabase().getCollection(COLLECTION_NAME);
+        ensureTTLIndex(collection, ttl(journalMaxAge), FIELD_UPDATED_AT);
+    }
+
+    /**
+     * Journal entries reference templates for up to {@link NetFlowV9TemplateRegistry#STORED_TEMPLATE_VALIDITY} after
+     * they have been stored, so templates must be kept for that long beyond the journal retention.
+     */
+    static java.time.Duration ttl(Duration journalMaxAge) {
+        return java.time.Duration.ofMillis(journalMaxAge.getMillis()).plus(NetFlowV9TemplateRegistry.STORED_TEMPLATE_VALIDITY);
+    }
+
+    @Override
+    public void save(NetFlowV9TemplateRegistry.Template template) {
+        collection.updateOne(
+                eq(FIELD_ID, template.getId()),
+                combine(
+                        set(FIELD_TEMPLATE_ID, template.getTemplateId()),
+                        set(FIELD_OPTION_TEMPLATE, template.isOptionTemplate()),
+                        set(FIELD_BYTES, new Binary(template.getBytes())),
+                        currentDate(FIELD_UPDATED_AT)
+                ),
+                new UpdateOptions().upsert(true)
+        );
+    }
+
+    @Override
+    public Optional<NetFlowV9TemplateRegistry.Template> get(long id) {
+        final Document document = collection.find(eq(FIELD_ID, id)).first();
+        if (document == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new NetFlowV9TemplateRegistry.Template(
+                id,
+                document.getInteger(FIELD_TEMPLATE_ID),
+                document.getBoolean(FIELD_OPTION_TEMPLATE),
+                document.get(FIELD_BYTES, Binary.class).getData()));
+    }
+}
@@ -59,6 +59,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -73,8 +74,16 @@ public class NetFlowCodec extends AbstractCodec implements MultiMessageCodec {
     /**
      * Marker byte which signals that the contained netflow v9 packet is non-RFC:
      * It contains all necessary template flows before any data flows and can be completely parsed without a template cache.
+     * No longer written, but still decoded for journal entries written by older versions.
      */
     public static final byte ORDERED_V9_MARKER = 0x01;
+    /**
+     * Marker byte which signals that the contained netflow v9 packets reference their templates by version, which have
+     * to be resolved from the {@link NetFlowV9TemplateRegistry}. The marker is followed by the number of referenced
+     * templates (unsigned short), their version ids (long each), the number of packets (int) and the packets, each
+     * prefixed with its length (int).
+     */
+    public static final byte REFERENCED_V9_MARKER = 0x02;
     @VisibleForTesting
     static final String CK_NETFLOW9_DEFINITION_PATH = "netflow9_definitions_Path";
     private static final Logger LOG = LoggerFactory.getLogger(NetFlowCodec.class);
@@ -133,6 +142,8 @@ public class NetFlowCodec extends AbstractCodec implements MultiMessageCodec {
                 case ORDERED_V9_MARKER:
                     // our "custom" netflow v9 that has all the templates in the same packet
                     return decodeV9(sender, buffer);
+                case REFERENCED_V9_MARKER:
+                    return toMessages(decodeReferencedV9Packets(buffer), sender);
                 default:
                     final List<RawMessage.SourceNode> sourceNodes = rawMessage.getSourceNodes();
                     final RawMessage.SourceNode sourceNode = sourceNodes.isEmpty() ? null : sourceNodes.get(sourceNodes.size() - 1);
@@ -154,8 +165,10 @@ public class NetFlowCodec extends AbstractCodec implements MultiMessageCodec {
 
     @VisibleForTesting
     Collection<Message> decodeV9(InetSocketAddress sender, ByteBuf buffer) throws InvalidProtocolBufferException {
-        final List<NetFlowV9Packet> netFlowV9Packets = decodeV9Packets(buffer);
+        return toMessages(decodeV9Packets(buffer), sender);
+    }
 
+    private Collection<Message> toMessages(List<NetFlowV9Packet> netFlowV9Packets, InetSocketAddress sender) {
         return netFlowV9Packets.stream().map(netFlowV9Packet -> netFlowV9Packet.records().stream()
                 .filter(record -> record instanceof NetFlowV9Record)
                 .map(record -> NetFlowFormatter.toMessage(netFlowV9Packet.header(), record, sender))
@@ -188,6 +201,35 @@ public class NetFlowCodec extends AbstractCodec implements MultiMessageCodec {
                 .collect(Collectors.toList());
     }
 
+    @VisibleForTesting
+    List<NetFlowV9Packet> decodeReferencedV9Packets(ByteBuf buffer) {
+        final NetFlowV9TemplateRegistry templateRegistry = netflowV9CodecAggregator.getTemplateRegistry();
+
+        // resolve and parse all templates used in the packets
+        final Map<Integer, NetFlowV9Template> templateMap = Maps.newHashMap();
+        NetFlowV9OptionTemplate optionTemplate = null;
+        final int templateCount = buffer.readUnsignedShort();
+        for (int i = 0; i < templateCount; i++) {
+            final long id = buffer.readLong();
+            final NetFlowV9TemplateRegistry.Template template = templateRegistry.get(id)
+                    .orElseThrow(() -> new FlowException("Unknown NetFlow V9 template version " + id));
+            final ByteBuf templateBuffer = Unpooled.wrappedBuffer(template.getBytes());
+            if (template.isOptionTemplate()) {
+                optionTemplate = NetFlowV9Parser.parseOptionTemplate(templateBuffer, typeRegistry);
+            } else {
+                templateMap.put(template.getTemplateId(), NetFlowV9Parser.parseTemplate(templateBuffer, typeRegistry));
+            }
+        }
+
+        final int packetCount = buffer.readInt();
+        final List<NetFlowV9Packet> packets = new ArrayList<>(packetCount);
+        for (int i = 0; i < packetCount; i++) {
+            final ByteBuf packet = buffer.readSlice(buffer.readInt());
+            packets.add(NetFlowV9Parser.parsePacket(packet, typeRegistry, templateMap, optionTemplate));
+        }
+        return packets;
+    }
+
     @FactoryClass
     public interface Factory extends AbstractCodec.Factory<NetFlowCodec> {
         @Override
@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.netflow.codecs;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps track of the NetFlow v9 templates announced by each exporter, identified by its remote address and source id.
+ * <p>
+ * Every distinct template is a version identified by a hash of its contents. Once a version has been written to the
+ * {@link NetFlowV9TemplateStore}, journal entries only reference it instead of containing the template bytes, and an
+ * entry keeps resolving to the right template even if the exporter redefines a template id later.
+ * <p>
+ * Templates are registered on the network threads, so they are stored on a separate thread. If the template store is
+ * unavailable, storing is retried with an exponential back-off instead of on every announcement.
+ */
+@Singleton
+public class NetFlowV9TemplateRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(NetFlowV9TemplateRegistry.class);
+
+    // Templates still in use are stored again after this interval, so they don't expire from the template store.
+    private static final long STORE_REFRESH_INTERVAL_MILLIS = Duration.ofDays(1).toMillis();
+    // Templates may only be referenced for this long after they have been stored, the template store keeps them for
+    // this time beyond the journal retention, see MongoNetFlowV9TemplateStore.
+    static final Duration STORED_TEMPLATE_VALIDITY = Duration.ofMillis(2 * STORE_REFRESH_INTERVAL_MILLIS);
+    private static final long STORE_MIN_BACKOFF_MILLIS = Duration.ofSeconds(1).toMillis();
+    private static final long STORE_MAX_BACKOFF_MILLIS = Duration.ofMinutes(5).toMillis();
+    private static final int STORE_QUEUE_SIZE = 1000;
+
+    private final NetFlowV9TemplateStore templateStore;
+    private final ExecutorService storeExecutor;
+    private final Clock clock;
+    private final Cache<TemplateKey, Map<Integer, Template>> exporters;
+    private final Cache<Long, Template> templates;
+    private volatile long storeBackoffMillis = 0;
+    private volatile long storeRetryAt = 0;
+
+    @Inject
+    public NetFlowV9TemplateRegistry(NetFlowV9TemplateStore templateStore) {
+        this(templateStore,
+                new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(STORE_QUEUE_SIZE),
+                        new ThreadFactoryBuilder().setNameFormat("netflow-v9-template-store-%d").setDaemon(true).build()),
+                Clock.systemUTC());
+    }
+
+    @VisibleForTesting
+    NetFlowV9TemplateRegistry(NetFlowV9TemplateStore templateStore, ExecutorService storeExecutor, Clock clock) {
+        this.templateStore = templateStore;
+        this.storeExecutor = storeExecutor;
+        this.clock = clock;
+        this.exporters = CacheBuilder.newBuilder()
+                .maximumSize(5000)
+                .removalListener(notification -> LOG.debug("Removed templates of exporter {} for reason {}", notification.getKey(), notification.getCause()))
+                .build();
+        this.templates = CacheBuilder.newBuilder()
+                .maximumSize(10000)
+                .build();
+    }
+
+    /**
+     * Registers a template announced by an exporter. Re-announcing an unchanged template neither hashes nor stores it
+     * again, a changed template becomes a new version and replaces the current one of its template id.
+     *
+     * @param exporter       the exporter, see {@link TemplateKey#idForExporter(java.net.SocketAddress, long)}
+     * @param templateId     the template id
+     * @param bytes          the raw template flow
+     * @param optionTemplate whether this is an option template
+     * @return the current version of the template
+     */
+    public Template register(TemplateKey exporter, int templateId, byte[] bytes, boolean optionTemplate) {
+        final Map<Integer, Template> exporterTemplates = templatesOf(exporter);
+        final Template current = exporterTemplates.get(templateId);
+        if (current != null && current.isOptionTemplate() == optionTemplate && Arrays.equals(current.getBytes(), bytes)) {
+            store(current);
+            return current;
+        }
+
+        final long id = versionId(bytes, optionTemplate);
+        Template template = templates.getIfPresent(id);
+        if (template == null) {
+            template = new Template(id, templateId, optionTemplate, bytes);
+            templates.put(id, template);
+            LOG.debug("Registered new version {} of template {} for exporter {}", id, templateId, exporter);
+        }
+        store(template);
+        exporterTemplates.put(templateId, template);
+        return template;
+    }
+
+    public Optional<Template> current(TemplateKey exporter, int templateId) {
+        final Map<Integer, Template> exporterTemplates = exporters.getIfPresent(exporter);
+        return exporterTemplates == null ? Optional.empty() : Optional.ofNullable(exporterTemplates.get(templateId));
+    }
+
+    public Set<Integer> templateIds(TemplateKey exporter) {
+        final Map<Integer, Template> exporterTemplates = exporters.getIfPresent(exporter);
+        return exporterTemplates == null ? Collections.emptySet() : exporterTemplates.keySet();
+    }
+
+    /**
+     * Resolves a template version, falling back to the template store if it isn't known to this node (anymore).
+     */
+    public Optional<Template> get(long id) {
+        final Template template = templates.getIfPresent(id);
+        if (template != null) {
+            return Optional.of(template);
+        }
+        final Optional<Template> stored = templateStore.get(id);
+        stored.ifPresent(t -> templates.put(id, t));
+        return stored;
+    }
+
+    /**
+     * Checks if journal entries can reference the given template version. Until it has been stored, the template
+     * bytes have to be written into the journal entries, otherwise they can't be decoded after a restart.
+     */
+    public boolean isStored(Template template) {
+        return template.storedAt > 0 && clock.millis() - template.storedAt < STORED_TEMPLATE_VALIDITY.toMillis();
+    }
+
+    private Map<Integer, Template> templatesOf(TemplateKey exporter) {
+        try {
+            return exporters.get(exporter, ConcurrentHashMap::new);
+        } catch (ExecutionException ignored) {
+            // the loader cannot fail, it only creates a new map
+            throw new IllegalStateException("Couldn't create template map for exporter " + exporter);
+        }
+    }
+
+    private void store(Template template) {
+        final long now = clock.millis();
+        if (now - template.storedAt < STORE_REFRESH_INTERVAL_MILLIS || now < storeRetryAt) {
+            return;
+        }
+        // Only one pending save per template, announcements keep coming while it is being stored.
+        if (!template.storing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            storeExecutor.execute(() -> save(template));
+        } catch (RejectedExecutionException e) {
+            // the template is still resolvable from memory on this node, try again on the next announcement
+            template.storing.set(false);
+            LOG.debug("Too many pending NetFlow V9 templates, not storing template {}", template.getTemplateId());
+        }
+    }
+
+    private void save(Template template) {
+        try {
+            if (clock.millis() < storeRetryAt) {
+                return;
+            }
+            templateStore.save(template);
+            template.storedAt = clock.millis();
+            storeBackoffMillis = 0;
+        } catch (Exception e) {
+            // the template is still resolvable from memory on this node, try again after backing off
+            storeBackoffMillis = Math.min(STORE_MAX_BACKOFF_MILLIS, Math.max(STORE_MIN_BACKOFF_MILLIS, storeBackoffMillis * 2));
+            storeRetryAt = clock.millis() + storeBackoffMillis;
+            LOG.warn("Couldn't store NetFlow V9 template {}, retrying in {} ms", template.getTemplateId(), storeBackoffMillis, e);
+        } finally {
+            template.storing.set(false);
+        }
+    }
+
+    private static long versionId(byte[] bytes, boolean optionTemplate) {
+        return Hashing.murmur3_128().newHasher()
+                .putBoolean(optionTemplate)
+                .putBytes(bytes)
+                .hash()
+                .asLong();
+    }
+
+    public static class Template {
+        private final long id;
+        private final int templateId;
+        private final boolean optionTemplate;
+        private final byte[] bytes;
+        private final AtomicBoolean storing = new AtomicBoolean(false);
+        private volatile long storedAt;
+
+        public Template(long id, int templateId, boolean optionTemplate, byte[] bytes) {
+            this.id = id;
+            this.templateId = templateId;
+            this.optionTemplate = optionTemplate;
+            this.bytes = bytes;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public int getTemplateId() {
+            return templateId;
+        }
+
+        public boolean isOptionTemplate() {
+            return optionTemplate;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+    }
+}
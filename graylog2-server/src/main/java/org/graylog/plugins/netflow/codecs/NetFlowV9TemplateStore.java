@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.netflow.codecs;
+
+import com.google.inject.ImplementedBy;
+
+import java.util.Optional;
+
+/**
+ * Persists NetFlow v9 template versions, so journal entries referencing them can be decoded after a restart.
+ */
+@ImplementedBy(MongoNetFlowV9TemplateStore.class)
+public interface NetFlowV9TemplateStore {
+    void save(NetFlowV9TemplateRegistry.Template template);
+
+    Optional<NetFlowV9TemplateRegistry.Template> get(long id);
+}
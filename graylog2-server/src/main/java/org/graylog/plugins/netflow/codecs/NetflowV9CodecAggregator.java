@@ -35,7 +35,9 @@ import javax.annotation.Nonnull;
 import javax.inject.Inject;
 import java.net.SocketAddress;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
@@ -45,26 +47,22 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 /**
- * For Netflow v9 packets we want to prepend the corresponding flow template.
+ * For Netflow v9 packets we want to reference the corresponding flow templates.
  * If we don't have that template yet, we consider the flow packet to be incomplete and continue to wait for the template.
- * TODO consider sharing seen templates between nodes in the cluster to minimize wait time
+ * The templates themselves are kept in the {@link NetFlowV9TemplateRegistry}. Journal entries only contain their versions
+ * once they have been stored, until then the templates are included in the journal entries.
  */
 public class NetflowV9CodecAggregator implements RemoteAddressCodecAggregator {
     private static final Logger LOG = LoggerFactory.getLogger(NetflowV9CodecAggregator.class);
 
     private static final ByteBuf PASSTHROUGH_MARKER = Unpooled.wrappedBuffer(new byte[]{NetFlowCodec.PASSTHROUGH_MARKER});
 
-    private final Cache<TemplateKey, TemplateBytes> templateCache;
+    private final NetFlowV9TemplateRegistry templateRegistry;
     private final Cache<TemplateKey, Queue<PacketBytes>> packetCache;
 
     @Inject
-    public NetflowV9CodecAggregator() {
-        // TODO customize
-        this.templateCache = CacheBuilder.newBuilder()
-                .maximumSize(5000)
-                .removalListener(notification -> LOG.debug("Removed {} from template cache for reason {}", notification.getKey(), notification.getCause()))
-                .recordStats()
-                .build();
+    public NetflowV9CodecAggregator(NetFlowV9TemplateRegistry templateRegistry) {
+        this.templateRegistry = templateRegistry;
         this.packetCache = CacheBuilder.newBuilder()
                 .expireAfterWrite(1, TimeUnit.MINUTES)
                 .maximumWeight(Size.megabytes(1).toBytes())
@@ -74,6 +72,10 @@ public class NetflowV9CodecAggregator implements RemoteAddressCodecAggregator {
                 .build();
     }
 
+    public NetFlowV9TemplateRegistry getTemplateRegistry() {
+        return templateRegistry;
+    }
+
     @Nonnull
     @Override
     public Result addChunk(ByteBuf buf, SocketAddress remoteAddress) {
@@ -100,7 +102,7 @@ public class NetflowV9CodecAggregator implements RemoteAddressCodecAggregator {
 
             // The rest of the code works as follows:
             // We shallowly parse the incoming packet, extracting all flows into ByteBufs.
-            // We then cache the raw bytes for template flows, keyed by remote ip and source id. These are used to reassemble the packet for the journal later.
+            // We then register the raw bytes for template flows, keyed by remote ip and source id. The journal entry only references their versions.
             // For each netflow v9 packet that we do not have a matching template for yet, we put it into a queue.
             // Once the template flow arrives we go back through the queue and remove now matching packets for further processing.
             if (LOG.isTraceEnabled()) {
@@ -108,28 +110,18 @@ public class NetflowV9CodecAggregator implements RemoteAddressCodecAggregator {
             }
             final RawNetFlowV9Packet rawNetFlowV9Packet = NetFlowV9Parser.parsePacketShallow(buf);
             final long sourceId = rawNetFlowV9Packet.header().sourceId();
+            final TemplateKey exporter = TemplateKey.idForExporter(remoteAddress, sourceId);
 
             LOG.trace("Incoming NetFlow V9 packet contains: {}", rawNetFlowV9Packet);
 
             // register templates and check for buffered flows
             for (Map.Entry<Integer, byte[]> template : rawNetFlowV9Packet.templates().entrySet()) {
-                final int templateId = template.getKey();
-                final byte[] bytes = template.getValue();
-
-                final TemplateKey templateKey = new TemplateKey(remoteAddress, sourceId, templateId);
-                final TemplateBytes templateBytes = new TemplateBytes(bytes, false);
-                templateCache.put(templateKey, templateBytes);
+                templateRegistry.register(exporter, template.getKey(), template.getValue(), false);
             }
 
             final Map.Entry<Integer, byte[]> optionTemplate = rawNetFlowV9Packet.optionTemplate();
             if (optionTemplate != null) {
-                final int templateId = optionTemplate.getKey();
-                final byte[] bytes = optionTemplate.getValue();
-
-                final TemplateKey templateKey = new TemplateKey(remoteAddress, sourceId, templateId);
-                final TemplateBytes templateBytes = new TemplateBytes(bytes, true);
-
-                templateCache.put(templateKey, templateBytes);
+                templateRegistry.register(exporter, optionTemplate.getKey(), optionTemplate.getValue(), true);
             }
 
             // this list of flows to return in the result
@@ -139,15 +131,9 @@ public class NetflowV9CodecAggregator implements RemoteAddressCodecAggregator {
 
             // if we have new templates, figure out which buffered packets template requirements are now satisfied
             if (!rawNetFlowV9Packet.templates().isEmpty() || rawNetFlowV9Packet.optionTemplate() != null) {
-                final Set<Integer> knownTemplateIds = new HashSet<>();
-                for (TemplateKey templateKey : templateCache.asMap().keySet()) {
-                    if (templateKey.getRemoteAddress() == remoteAddress && templateKey.getSourceId() == sourceId) {
-                        final Integer templateId = templateKey.getTemplateId();
-                        knownTemplateIds.add(templateId);
-                    }
-                }
+                final Set<Integer> knownTemplateIds = templateRegistry.templateIds(exporter);
 
-                final Queue<PacketBytes> bufferedPackets = packetCache.getIfPresent(TemplateKey.idForExporter(remoteAddress, sourceId));
+                final Queue<PacketBytes> bufferedPackets = packetCache.getIfPresent(exporter);
                 if (bufferedPackets != null) {
                     final List<PacketBytes> tempQueue = new ArrayList<>(bufferedPackets.size());
                     PacketBytes previousPacket;
@@ -172,20 +158,18 @@ public class NetflowV9CodecAggregator implements RemoteAddressCodecAggregator {
 
             boolean packetBuffered = false;
 
-            // the list of template keys to return in the result
-            final Set<TemplateKey> templates = new HashSet<>();
+            // the template versions to reference in the result, keyed by their id
+            final Map<Long, NetFlowV9TemplateRegistry.Template> templates = new LinkedHashMap<>();
 
             // find out which templates we need to include for the buffered and current packets
             bufferedTemplateIds.addAll(rawNetFlowV9Packet.usedTemplates());
             for (int templateId : bufferedTemplateIds) {
-                final TemplateKey templateKey = new TemplateKey(remoteAddress, sourceId, templateId);
-                final TemplateBytes template = templateCache.getIfPresent(templateKey);
+                final NetFlowV9TemplateRegistry.Template template = templateRegistry.current(exporter, templateId).orElse(null);
 
                 if (template == null) {
                     // we don't have the template, this packet needs to be buffered until we receive the templates
                     try {
-                        final TemplateKey newTemplateKey = TemplateKey.idForExporter(remoteAddress, sourceId);
-                        final Queue<PacketBytes> bufferedPackets = packetCache.get(newTemplateKey, ConcurrentLinkedQueue::new);
+                        final Queue<PacketBytes> bufferedPackets = packetCache.get(exporter, ConcurrentLinkedQueue::new);
                         final byte[] bytes = ByteBufUtil.getBytes(buf);
                         bufferedPackets.add(new PacketBytes(bytes, rawNetFlowV9Packet.usedTemplates()));
                         packetBuffered = true;
@@ -194,7 +178,7 @@ public class NetflowV9CodecAggregator implements RemoteAddressCodecAggregator {
                     }
                 } else {
                     // include the template in our result
-                    templates.add(templateKey);
+                    templates.put(template.getId(), template);
 
                     // .slice is enough here, because we convert it into a byte array when creating the result below
                     // no need to copy or retain anything, the buffer only lives as long as this method's scope
@@ -213,34 +197,25 @@ public class NetflowV9CodecAggregator implements RemoteAddressCodecAggregator {
                 return new Result(null, true);
             }
 
-            // add the used templates and option template to the journal message builder
-            final NetFlowV9Journal.RawNetflowV9.Builder builder = NetFlowV9Journal.RawNetflowV9.newBuilder();
-            for (TemplateKey templateKey : templates) {
-                final TemplateBytes templateBytes = templateCache.getIfPresent(templateKey);
-                if (templateBytes == null) {
-                    LOG.warn("Template {} expired while processing, discarding netflow packet", templateKey);
-                } else if (templateBytes.isOptionTemplate()) {
-                    LOG.debug("Writing options template flow {}", templateKey);
-                    final byte[] bytes = templateBytes.getBytes();
-                    builder.putOptionTemplate(1, ByteString.copyFrom(bytes));
-                } else {
-                    LOG.debug("Writing template {}", templateKey);
-                    final byte[] bytes = templateBytes.getBytes();
-                    builder.putTemplates(templateKey.getTemplateId(), ByteString.copyFrom(bytes));
-                }
+            // journal entries must stay decodable after a restart, so templates which haven't been stored yet are included
+            if (!templates.values().stream().allMatch(templateRegistry::isStored)) {
+                return new Result(orderedPacket(templates.values(), packetsToSend), true);
             }
 
-            // finally write out all the packets we had buffered as well as the current one
+            // reference the used template versions and write out all the packets we had buffered as well as the current one,
+            // see NetFlowCodec#REFERENCED_V9_MARKER for the layout
+            final ByteBuf resultBuffer = Unpooled.buffer()
+                    .writeByte(NetFlowCodec.REFERENCED_V9_MARKER)
+                    .writeShort(templates.size());
+            for (NetFlowV9TemplateRegistry.Template template : templates.values()) {
+                LOG.debug("Referencing template {} version {}", template.getTemplateId(), template.getId());
+                resultBuffer.writeLong(template.getId());
+            }
+            resultBuffer.writeInt(packetsToSend.size());
             for (ByteBuf packetBuffer : packetsToSend) {
-                final byte[] bytes = ByteBufUtil.getBytes(packetBuffer);
-                final ByteString value = ByteString.copyFrom(bytes);
-                builder.addPackets(value);
+                resultBuffer.writeInt(packetBuffer.readableBytes())
+                        .writeBytes(packetBuffer, packetBuffer.readerIndex(), packetBuffer.readableBytes());
             }
-
-            final byte[] bytes = builder.build().toByteArray();
-            final ByteBuf resultBuffer = Unpooled.buffer(bytes.length + 1)
-                    .writeByte(NetFlowCodec.ORDERED_V9_MARKER)
-                    .writeBytes(bytes);
             return new Result(resultBuffer, true);
 
         } catch (Exception e) {
@@ -249,22 +224,28 @@ public class NetflowV9CodecAggregator implements RemoteAddressCodecAggregator {
         }
     }
 
-    private static class TemplateBytes {
-        private final byte[] bytes;
-        private final boolean optionTemplate;
-
-        public TemplateBytes(byte[] bytes, boolean optionTemplate) {
-            this.bytes = bytes;
-            this.optionTemplate = optionTemplate;
+    private static ByteBuf orderedPacket(Collection<NetFlowV9TemplateRegistry.Template> templates, Collection<ByteBuf> packets) {
+        // add the used templates and option template to the journal message builder
+        final NetFlowV9Journal.RawNetflowV9.Builder builder = NetFlowV9Journal.RawNetflowV9.newBuilder();
+        for (NetFlowV9TemplateRegistry.Template template : templates) {
+            if (template.isOptionTemplate()) {
+                LOG.debug("Writing options template flow {}", template.getTemplateId());
+                builder.putOptionTemplate(1, ByteString.copyFrom(template.getBytes()));
+            } else {
+                LOG.debug("Writing template {}", template.getTemplateId());
+                builder.putTemplates(template.getTemplateId(), ByteString.copyFrom(template.getBytes()));
+            }
         }
 
-        public byte[] getBytes() {
-            return bytes;
+        // finally write out all the packets we had buffered as well as the current one
+        for (ByteBuf packetBuffer : packets) {
+            builder.addPackets(ByteString.copyFrom(ByteBufUtil.getBytes(packetBuffer)));
         }
 
-        public boolean isOptionTemplate() {
-            return optionTemplate;
-        }
+        final byte[] bytes = builder.build().toByteArray();
+        return Unpooled.buffer(bytes.length + 1)
+                .writeByte(NetFlowCodec.ORDERED_V9_MARKER)
+                .writeBytes(bytes);
     }
 
     public static class PacketBytes {
@@ -17,14 +17,13 @@
 package org.graylog.plugins.pipelineprocessor.functions.strings;
 
 import com.google.common.collect.ForwardingMap;
-import io.krakens.grok.api.Grok;
-import io.krakens.grok.api.Match;
 import org.graylog.plugins.pipelineprocessor.EvaluationContext;
 import org.graylog.plugins.pipelineprocessor.ast.functions.AbstractFunction;
 import org.graylog.plugins.pipelineprocessor.ast.functions.FunctionArgs;
 import org.graylog.plugins.pipelineprocessor.ast.functions.FunctionDescriptor;
 import org.graylog.plugins.pipelineprocessor.ast.functions.ParameterDescriptor;
 import org.graylog2.grok.GrokPatternRegistry;
+import org.graylog2.grok.PrefilteredGrok;
 
 import javax.inject.Inject;
 import java.util.Map;
@@ -60,10 +59,9 @@ public class GrokMatch extends AbstractFunction<GrokMatch.GrokResult> {
             return null;
         }
 
-        final Grok grok = grokPatternRegistry.cachedGrokForPattern(pattern, onlyNamedCaptures);
+        final PrefilteredGrok grok = grokPatternRegistry.cachedPrefilteredGrokForPattern(pattern, onlyNamedCaptures);
 
-        final Match match = grok.match(value);
-        return new GrokResult(match.captureFlattened());
+        return new GrokResult(grok.captureFlattened(value));
     }
 
     @Override
@@ -44,12 +44,14 @@ import org.graylog.plugins.views.search.engine.EngineBindings;
 import org.graylog.plugins.views.search.engine.QuerySuggestionsService;
 import org.graylog.plugins.views.search.engine.SearchConfig;
 import org.graylog.plugins.views.search.engine.SearchConfigProvider;
+import org.graylog.plugins.views.search.engine.suggestions.LocalSuggestionIndexProcessor;
 import org.graylog.plugins.views.search.export.ChunkDecorator;
 import org.graylog.plugins.views.search.export.DecoratingMessagesExporter;
 import org.graylog.plugins.views.search.export.ExportBackend;
 import org.graylog.plugins.views.search.export.LegacyChunkDecorator;
 import org.graylog.plugins.views.search.export.MessagesExporter;
 import org.graylog.plugins.views.search.export.SimpleMessageChunkCsvWriter;
+import org.graylog.plugins.views.search.export.SimpleMessageChunkNdjsonWriter;
 import org.graylog.plugins.views.search.filter.AndFilter;
 import org.graylog.plugins.views.search.filter.OrFilter;
 import org.graylog.plugins.views.search.filter.QueryStringFilter;
@@ -247,14 +249,18 @@ public class ViewsBindings extends ViewsModule {
         registerExceptionMappers();
 
         addExportFormat(() -> MoreMediaTypes.TEXT_CSV_TYPE);
+        addExportFormat(() -> MoreMediaTypes.APPLICATION_NDJSON_GZIP_TYPE);
+        addExportFormat(() -> MoreMediaTypes.APPLICATION_NDJSON_ZSTD_TYPE);
 
         jerseyAdditionalComponentsBinder().addBinding().toInstance(SimpleMessageChunkCsvWriter.class);
+        jerseyAdditionalComponentsBinder().addBinding().toInstance(SimpleMessageChunkNdjsonWriter.class);
         jerseyAdditionalComponentsBinder().addBinding().toInstance(MessageExportFormatFilter.class);
         jerseyAdditionalComponentsBinder().addBinding().toInstance(SearchUserBinder.class);
 
         bind(SearchConfig.class).toProvider(SearchConfigProvider.class);
 
         binder().bind(QuerySuggestionsService.class).toProvider(QuerySuggestionsProvider.class);
+        addMessageProcessor(LocalSuggestionIndexProcessor.class, LocalSuggestionIndexProcessor.Descriptor.class);
 
         // The ViewResolver binder must be explicitly initialized to avoid an initialization error when
         // no values are bound.
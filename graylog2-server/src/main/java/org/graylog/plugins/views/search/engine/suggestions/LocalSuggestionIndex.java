@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.views.search.engine.suggestions;
+
+import com.github.joschi.jadconfig.util.Duration;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.indexer.searches.timeranges.TimeRange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the recently processed values of a configured set of fields per stream, to answer prefix suggestions for
+ * field values without searching. The values of each stream and field are kept in a sorted map, so a prefix lookup
+ * is a range scan.
+ * <p>
+ * Only messages processed by this node are indexed. A request is therefore only answered locally if it asks for the
+ * recent past, which has been completely observed, and there are enough matching values. Occurrences are counted on
+ * this node since a value has been added to the index, not within the requested time range, and values only seen by
+ * other nodes are missing. Local responses are therefore marked as approximate.
+ */
+@Singleton
+public class LocalSuggestionIndex {
+    private static final Logger LOG = LoggerFactory.getLogger(LocalSuggestionIndex.class);
+    private static final long MAINTENANCE_INTERVAL_SECONDS = 30;
+    private static final int MAX_VALUE_LENGTH = 256;
+    // Requests for a time range ending slightly before "now" are still answered locally.
+    private static final long MAX_END_DEVIATION_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private record Key(String streamId, String field) {}
+
+    private static class ValueStats {
+        private final LongAdder occurrences = new LongAdder();
+        private volatile long lastSeen;
+    }
+
+    private static class Values {
+        private final ConcurrentSkipListMap<String, ValueStats> values = new ConcurrentSkipListMap<>();
+        private final AtomicInteger size = new AtomicInteger();
+    }
+
+    private final Set<String> fields;
+    private final int maxValues;
+    private final long periodMillis;
+    private final Clock clock;
+    private final long startedAt;
+    private final Map<Key, Values> index = new ConcurrentHashMap<>();
+
+    @Inject
+    public LocalSuggestionIndex(@Named("suggestions_local_index_fields") Set<String> fields,
+                                @Named("suggestions_local_index_max_values") int maxValues,
+                                @Named("suggestions_local_index_period") Duration period,
+                                @Named("daemonScheduler") ScheduledExecutorService scheduler) {
+        this(fields, maxValues, period, Clock.systemUTC());
+        if (isEnabled()) {
+            scheduler.scheduleAtFixedRate(this::maintain, MAINTENANCE_INTERVAL_SECONDS, MAINTENANCE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    @VisibleForTesting
+    LocalSuggestionIndex(Set<String> fields, int maxValues, Duration period, Clock clock) {
+        this.fields = ImmutableSet.copyOf(fields);
+        this.maxValues = maxValues;
+        this.periodMillis = period.toMilliseconds();
+        this.clock = clock;
+        this.startedAt = clock.millis();
+    }
+
+    public boolean isEnabled() {
+        return !fields.isEmpty();
+    }
+
+    public void add(Message message) {
+        final long now = clock.millis();
+        Set<String> streamIds = null;
+        for (String field : fields) {
+            final Object value = message.getField(field);
+            if (value == null) {
+                continue;
+            }
+            final String stringValue = value.toString();
+            if (stringValue.isEmpty() || stringValue.length() > MAX_VALUE_LENGTH) {
+                continue;
+            }
+            if (streamIds == null) {
+                streamIds = message.getStreamIds();
+            }
+            for (String streamId : streamIds) {
+                record(index.computeIfAbsent(new Key(streamId, field), key -> new Values()), stringValue, now);
+            }
+        }
+    }
+
+    private void record(Values values, String value, long now) {
+        ValueStats stats = values.values.get(value);
+        if (stats == null) {
+            // Skip new values until the next maintenance run made room for them
+            if (values.size.get() >= maxValues) {
+                return;
+            }
+            final ValueStats newStats = new ValueStats();
+            stats = values.values.putIfAbsent(value, newStats);
+            if (stats == null) {
+                values.size.incrementAndGet();
+                stats = newStats;
+            }
+        }
+        stats.occurrences.increment();
+        stats.lastSeen = now;
+    }
+
+    /**
+     * Answers the request from the local index, if the field is indexed, the time range has been completely observed
+     * and there are at least as many matching values as requested. The occurrences of the response are approximate.
+     */
+    public Optional<SuggestionResponse> suggest(SuggestionRequest req) {
+        if (!fields.contains(req.field()) || !isCovered(req.timerange())) {
+            return Optional.empty();
+        }
+
+        final long from = req.timerange().getFrom().getMillis();
+        final Map<String, Long> occurrences = new HashMap<>();
+        for (String streamId : req.streams()) {
+            final Values values = index.get(new Key(streamId, req.field()));
+            if (values == null) {
+                continue;
+            }
+            final ConcurrentNavigableMap<String, ValueStats> candidates = values.values.tailMap(req.input(), true);
+            for (Map.Entry<String, ValueStats> entry : candidates.entrySet()) {
+                if (!entry.getKey().startsWith(req.input())) {
+                    break;
+                }
+                if (entry.getValue().lastSeen >= from) {
+                    occurrences.merge(entry.getKey(), entry.getValue().occurrences.sum(), Long::sum);
+                }
+            }
+        }
+
+        if (occurrences.size() < req.size()) {
+            // Other nodes might know further values
+            return Optional.empty();
+        }
+
+        final List<Map.Entry<String, Long>> sorted = new ArrayList<>(occurrences.entrySet());
+        sorted.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()).thenComparing(Map.Entry.comparingByKey()));
+        final List<SuggestionEntry> suggestions = sorted.stream()
+                .limit(req.size())
+                .map(entry -> new SuggestionEntry(entry.getKey(), entry.getValue()))
+                .toList();
+        final long sumOtherDocsCount = sorted.stream()
+                .skip(req.size())
+                .mapToLong(Map.Entry::getValue)
+                .sum();
+
+        return Optional.of(SuggestionResponse.forApproximateSuggestions(req.field(), req.input(), suggestions, sumOtherDocsCount));
+    }
+
+    private boolean isCovered(TimeRange timeRange) {
+        final long now = clock.millis();
+        final long from = timeRange.getFrom().getMillis();
+        final long to = timeRange.getTo().getMillis();
+        return to >= now - MAX_END_DEVIATION_MILLIS && from >= startedAt && from >= now - periodMillis;
+    }
+
+    /**
+     * Removes values which haven't been seen within the configured period and the least frequent values of streams
+     * and fields which reached the maximum number of values, to make room for new ones.
+     */
+    @VisibleForTesting
+    void maintain() {
+        try {
+            final long expiredBefore = clock.millis() - periodMillis;
+            index.entrySet().removeIf(indexEntry -> {
+                final Values values = indexEntry.getValue();
+                values.values.entrySet().removeIf(entry -> {
+                    if (entry.getValue().lastSeen < expiredBefore) {
+                        values.size.decrementAndGet();
+                        return true;
+                    }
+                    return false;
+                });
+                if (values.size.get() >= maxValues) {
+                    evictLeastFrequent(values);
+                }
+                return values.values.isEmpty();
+            });
+        } catch (Exception e) {
+            LOG.error("Couldn't clean up local suggestion index", e);
+        }
+    }
+
+    private void evictLeastFrequent(Values values) {
+        final int evictions = values.size.get() - maxValues * 9 / 10;
+        values.values.entrySet().stream()
+                .sorted(Comparator.comparingLong(entry -> entry.getValue().occurrences.sum()))
+                .limit(evictions)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(value -> {
+                    if (values.values.remove(value) != null) {
+                        values.size.decrementAndGet();
+                    }
+                });
+    }
+}
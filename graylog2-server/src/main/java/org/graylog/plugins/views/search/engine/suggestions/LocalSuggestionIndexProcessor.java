@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.views.search.engine.suggestions;
+
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.Messages;
+import org.graylog2.plugin.messageprocessors.MessageProcessor;
+
+import javax.inject.Inject;
+
+/**
+ * Feeds the values of processed messages into the {@link LocalSuggestionIndex}. Runs after the stream routing, so
+ * the values are indexed per stream.
+ */
+public class LocalSuggestionIndexProcessor implements MessageProcessor {
+    public static class Descriptor implements MessageProcessor.Descriptor {
+        @Override
+        public String name() {
+            return "Local Suggestion Index";
+        }
+
+        @Override
+        public String className() {
+            return LocalSuggestionIndexProcessor.class.getCanonicalName();
+        }
+    }
+
+    private final LocalSuggestionIndex suggestionIndex;
+
+    @Inject
+    public LocalSuggestionIndexProcessor(LocalSuggestionIndex suggestionIndex) {
+        this.suggestionIndex = suggestionIndex;
+    }
+
+    @Override
+    public Messages process(Messages messages) {
+        if (!suggestionIndex.isEnabled()) {
+            return messages;
+        }
+        for (final Message message : messages) {
+            if (!message.getFilterOut()) {
+                suggestionIndex.add(message);
+            }
+        }
+        return messages;
+    }
+}
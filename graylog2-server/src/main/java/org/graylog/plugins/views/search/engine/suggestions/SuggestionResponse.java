@@ -38,12 +38,21 @@ public abstract class SuggestionResponse {
     @Nullable
     public abstract Long sumOtherDocsCount();
 
+    /**
+     * Whether the occurrences are estimates instead of the document counts of the search backend.
+     */
+    public abstract boolean approximate();
+
 
     public static SuggestionResponse forSuggestions(final String field, final String input, final List<SuggestionEntry> suggestions, Long sumOtherDocsCount) {
-        return new AutoValue_SuggestionResponse(field, input, suggestions, Optional.empty(), sumOtherDocsCount);
+        return new AutoValue_SuggestionResponse(field, input, suggestions, Optional.empty(), sumOtherDocsCount, false);
+    }
+
+    public static SuggestionResponse forApproximateSuggestions(final String field, final String input, final List<SuggestionEntry> suggestions, Long sumOtherDocsCount) {
+        return new AutoValue_SuggestionResponse(field, input, suggestions, Optional.empty(), sumOtherDocsCount, true);
     }
 
     public static SuggestionResponse forError(final String field, final String input, final SuggestionError error) {
-        return new AutoValue_SuggestionResponse(field, input, Collections.emptyList(), Optional.of(error), null);
+        return new AutoValue_SuggestionResponse(field, input, Collections.emptyList(), Optional.of(error), null, false);
     }
 }
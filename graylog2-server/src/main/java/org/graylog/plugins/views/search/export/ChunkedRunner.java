@@ -57,6 +57,8 @@ public class ChunkedRunner {
                close();
             }
         });
+        // Let the worker thread terminate once the export is done instead of idling until the executor is collected.
+        e.shutdown();
     }
 
     private void writeExceptionAsChunk(Exception ex) {
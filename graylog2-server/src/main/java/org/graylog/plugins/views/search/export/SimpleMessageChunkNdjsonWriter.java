@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.views.search.export;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.luben.zstd.ZstdOutputStream;
+import org.graylog2.rest.MoreMediaTypes;
+
+import javax.inject.Inject;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.Provider;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes message chunks as gzip or zstd compressed newline-delimited JSON.
+ * <p>
+ * Every chunk is compressed as a separate gzip member or zstd frame. Concatenated members/frames form a valid
+ * stream for both formats, so the export can be streamed without keeping compressor state between chunks.
+ */
+@Provider
+@Produces({MoreMediaTypes.APPLICATION_NDJSON_GZIP, MoreMediaTypes.APPLICATION_NDJSON_ZSTD})
+public class SimpleMessageChunkNdjsonWriter extends SimpleMessageChunkWriter {
+    private static final int COMPRESSION_BUFFER_SIZE = 64 * 1024;
+
+    private final ObjectMapper objectMapper;
+
+    @Inject
+    public SimpleMessageChunkNdjsonWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return typesMatch(type, genericType) && (MoreMediaTypes.APPLICATION_NDJSON_GZIP_TYPE.isCompatible(mediaType)
+                || MoreMediaTypes.APPLICATION_NDJSON_ZSTD_TYPE.isCompatible(mediaType));
+    }
+
+    @Override
+    public void writeTo(
+            SimpleMessageChunk chunk,
+            Class<?> type, Type genericType,
+            Annotation[] annotations,
+            MediaType mediaType,
+            MultivaluedMap<String, Object> httpHeaders,
+            OutputStream entityStream) throws IOException, WebApplicationException {
+        if (chunk.messages().isEmpty()) {
+            return;
+        }
+
+        try (OutputStream out = compressingStream(new NonClosingOutputStream(entityStream), mediaType);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            // Messages are separated by raw newlines, the generator must not add its own separators.
+            generator.setRootValueSeparator(null);
+            for (SimpleMessage message : chunk.messages()) {
+                writeMessage(generator, chunk, message);
+                generator.writeRaw('\n');
+            }
+        }
+    }
+
+    private void writeMessage(JsonGenerator generator, SimpleMessageChunk chunk, SimpleMessage message) throws IOException {
+        generator.writeStartObject();
+        for (String field : chunk.fieldsInOrder()) {
+            final Object value = message.valueFor(field);
+            if (value != null) {
+                generator.writeFieldName(field);
+                generator.writeObject(value);
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    private OutputStream compressingStream(OutputStream entityStream, MediaType mediaType) throws IOException {
+        if (MoreMediaTypes.APPLICATION_NDJSON_GZIP_TYPE.isCompatible(mediaType)) {
+            return new GZIPOutputStream(entityStream, COMPRESSION_BUFFER_SIZE);
+        }
+        if (MoreMediaTypes.APPLICATION_NDJSON_ZSTD_TYPE.isCompatible(mediaType)) {
+            return new ZstdOutputStream(entityStream);
+        }
+        throw new IllegalArgumentException("Media type " + mediaType + " not supported");
+    }
+
+    /**
+     * Closing the compressor finishes the current gzip member/zstd frame, but the entity stream has to stay open
+     * for the following chunks.
+     */
+    private static class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -100,11 +100,11 @@ public class MessagesResource extends RestResource implements PluginRestResource
     }
 
     @ApiOperation(
-            value = "Export messages as CSV",
+            value = "Export messages as CSV or compressed NDJSON",
             notes = "Use this endpoint, if you want to configure export parameters freely instead of relying on an existing Search"
     )
     @POST
-    @Produces(MoreMediaTypes.TEXT_CSV)
+    @Produces({MoreMediaTypes.TEXT_CSV, MoreMediaTypes.APPLICATION_NDJSON_GZIP, MoreMediaTypes.APPLICATION_NDJSON_ZSTD})
     @NoAuditEvent("Has custom audit events")
     public ChunkedOutput<SimpleMessageChunk> retrieve(@ApiParam @Valid MessagesRequest rawrequest,
                                                       @Context SearchUser searchUser) {
@@ -152,7 +152,7 @@ public class MessagesResource extends RestResource implements PluginRestResource
     @ApiOperation(value = "Export a search result as CSV")
     @POST
     @Path("{searchId}")
-    @Produces(MoreMediaTypes.TEXT_CSV)
+    @Produces({MoreMediaTypes.TEXT_CSV, MoreMediaTypes.APPLICATION_NDJSON_GZIP, MoreMediaTypes.APPLICATION_NDJSON_ZSTD})
     @NoAuditEvent("Has custom audit events")
     public ChunkedOutput<SimpleMessageChunk> retrieveForSearch(
             @ApiParam(value = "ID of an existing Search", name = "searchId") @PathParam("searchId") String searchId,
@@ -22,6 +22,7 @@ import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import org.apache.shiro.authz.annotation.RequiresAuthentication;
 import org.graylog.plugins.views.search.engine.QuerySuggestionsService;
+import org.graylog.plugins.views.search.engine.suggestions.LocalSuggestionIndex;
 import org.graylog.plugins.views.search.engine.suggestions.SuggestionFieldType;
 import org.graylog.plugins.views.search.engine.suggestions.SuggestionRequest;
 import org.graylog.plugins.views.search.engine.suggestions.SuggestionResponse;
@@ -67,6 +68,7 @@ public class SuggestionsResource extends RestResource implements PluginRestResou
     public static final int SUGGESTIONS_COUNT_MAX = 100;
     private final PermittedStreams permittedStreams;
     private final QuerySuggestionsService querySuggestionsService;
+    private final LocalSuggestionIndex localSuggestionIndex;
 
     private final MappedFieldTypesService mappedFieldTypesService;
 
@@ -74,9 +76,10 @@ public class SuggestionsResource extends RestResource implements PluginRestResou
     private final NodeService nodeService;
 
     @Inject
-    public SuggestionsResource(PermittedStreams permittedStreams, QuerySuggestionsService querySuggestionsService, MappedFieldTypesService mappedFieldTypesService, EntityTitleService entityTitleService, NodeService nodeService) {
+    public SuggestionsResource(PermittedStreams permittedStreams, QuerySuggestionsService querySuggestionsService, LocalSuggestionIndex localSuggestionIndex, MappedFieldTypesService mappedFieldTypesService, EntityTitleService entityTitleService, NodeService nodeService) {
         this.permittedStreams = permittedStreams;
         this.querySuggestionsService = querySuggestionsService;
+        this.localSuggestionIndex = localSuggestionIndex;
         this.mappedFieldTypesService = mappedFieldTypesService;
         this.entityTitleService = entityTitleService;
         this.nodeService = nodeService;
@@ -108,13 +111,15 @@ public class SuggestionsResource extends RestResource implements PluginRestResou
                 .timerange(timerange)
                 .build();
 
-        SuggestionResponse res = querySuggestionsService.suggest(req);
+        SuggestionResponse res = localSuggestionIndex.suggest(req)
+                .orElseGet(() -> querySuggestionsService.suggest(req));
         final List<SuggestionEntryDTO> suggestions = augmentSuggestions(res.suggestions().stream()
                 .map(s -> SuggestionEntryDTO.create(s.getValue(), s.getOccurrence()))
                 .toList(), fieldType, searchUser);
         final SuggestionsDTO.Builder suggestionsBuilder = SuggestionsDTO.builder(res.field(), res.input())
                 .suggestions(suggestions)
-                .sumOtherDocsCount(res.sumOtherDocsCount());
+                .sumOtherDocsCount(res.sumOtherDocsCount())
+                .approximate(res.approximate());
 
         res.suggestionError()
                 .map(e -> SuggestionsErrorDTO.create(e.type(), e.reason()))
@@ -47,8 +47,11 @@ public abstract class SuggestionsDTO {
     @JsonInclude(JsonInclude.Include.NON_NULL)
     public abstract Long sumOtherDocsCount();
 
+    @JsonProperty
+    public abstract boolean approximate();
+
     public static Builder builder(final String field, final String input) {
-        return new AutoValue_SuggestionsDTO.Builder().field(field).input(input).suggestions(Collections.emptyList());
+        return new AutoValue_SuggestionsDTO.Builder().field(field).input(input).suggestions(Collections.emptyList()).approximate(false);
     }
 
     @AutoValue.Builder
@@ -63,6 +66,8 @@ public abstract class SuggestionsDTO {
 
         public abstract Builder sumOtherDocsCount(@Nullable final Long sumOtherDocsCount);
 
+        public abstract Builder approximate(final boolean approximate);
+
         public abstract SuggestionsDTO build();
     }
 }
@@ -16,6 +16,8 @@
  */
 package org.graylog.plugins.views.search.validation;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
 import org.apache.lucene.queryparser.classic.ParseException;
@@ -23,19 +25,39 @@ import org.apache.lucene.search.Query;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Singleton;
 
+@Singleton
 public class LuceneQueryParser {
 
     public static final Analyzer ANALYZER = new WhitespaceAnalyzer();
+    // The search bar validates the query on almost every keystroke, so the same queries are parsed over and over.
+    private static final int MAX_CACHED_QUERIES = 1000;
 
     private final boolean allowLeadingWildcard;
+    private final Cache<String, ParsedQuery> parsedQueries = Caffeine.newBuilder()
+            .maximumSize(MAX_CACHED_QUERIES)
+            .build();
 
     @Inject
     public LuceneQueryParser(@Named("allow_leading_wildcard_searches") final boolean allowLeadingWildcard) {
         this.allowLeadingWildcard = allowLeadingWildcard;
     }
 
+    /**
+     * Parses the given query. Successfully parsed queries are cached, the result is immutable and can be shared.
+     */
     public ParsedQuery parse(final String query) throws ParseException {
+        final ParsedQuery cached = parsedQueries.getIfPresent(query);
+        if (cached != null) {
+            return cached;
+        }
+        final ParsedQuery parsed = doParse(query);
+        parsedQueries.put(query, parsed);
+        return parsed;
+    }
+
+    private ParsedQuery doParse(final String query) throws ParseException {
         final TokenCollectingQueryParser parser = new TokenCollectingQueryParser(ParsedTerm.DEFAULT_FIELD, ANALYZER);
         parser.setSplitOnWhitespace(true);
         parser.setAllowLeadingWildcard(allowLeadingWildcard);
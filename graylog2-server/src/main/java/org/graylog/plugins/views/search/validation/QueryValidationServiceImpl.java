@@ -16,29 +16,79 @@
  */
 package org.graylog.plugins.views.search.validation;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.graylog.plugins.views.search.Parameter;
+import org.graylog.plugins.views.search.engine.BackendQuery;
+import org.graylog.plugins.views.search.rest.MappedFieldTypeDTO;
 import org.graylog.plugins.views.search.validation.validators.ValidationErrors;
 import org.graylog2.indexer.fieldtypes.MappedFieldTypesService;
+import org.graylog2.plugin.indexer.searches.timeranges.AbsoluteRange;
+import org.graylog2.plugin.indexer.searches.timeranges.TimeRange;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+/**
+ * Validates queries of the search bar. Validation results and the field types of the requested streams are cached
+ * for a few seconds, because the UI validates the query on almost every keystroke. Concurrent requests for the same
+ * streams and time range share a single field type lookup.
+ */
 @Singleton
 public class QueryValidationServiceImpl implements QueryValidationService {
+    private static final int MAX_CACHED_RESULTS = 1000;
+    private static final int MAX_CACHED_FIELD_TYPES = 100;
+    private static final Duration RESULT_TTL = Duration.ofSeconds(5);
+    private static final Duration FIELD_TYPES_TTL = Duration.ofSeconds(30);
 
     private final LuceneQueryParser luceneQueryParser;
     private final MappedFieldTypesService fields;
     private final Set<QueryValidator> validators;
+    private final Cache<ResultKey, ValidationResponse> results;
+    private final Cache<FieldTypesKey, Set<MappedFieldTypeDTO>> fieldTypes;
+
+    private record FieldTypesKey(Set<String> streams, TimeRange timerange) {}
+
+    private record ResultKey(BackendQuery query,
+                             Optional<BackendQuery> filter,
+                             FieldTypesKey fieldTypesKey,
+                             ImmutableSet<Parameter> parameters,
+                             ValidationMode validationMode) {}
 
     @Inject
     public QueryValidationServiceImpl(LuceneQueryParser luceneQueryParser,
                                       MappedFieldTypesService fields,
                                       Set<QueryValidator> validators) {
+        this(luceneQueryParser, fields, validators, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    QueryValidationServiceImpl(LuceneQueryParser luceneQueryParser,
+                               MappedFieldTypesService fields,
+                               Set<QueryValidator> validators,
+                               Ticker ticker) {
         this.luceneQueryParser = luceneQueryParser;
         this.fields = fields;
         this.validators = validators;
+        this.results = Caffeine.newBuilder()
+                .maximumSize(MAX_CACHED_RESULTS)
+                .expireAfterWrite(RESULT_TTL)
+                .ticker(ticker)
+                .build();
+        this.fieldTypes = Caffeine.newBuilder()
+                .maximumSize(MAX_CACHED_FIELD_TYPES)
+                .expireAfterWrite(FIELD_TYPES_TTL)
+                .ticker(ticker)
+                .build();
     }
 
     @Override
@@ -48,23 +98,50 @@ public class QueryValidationServiceImpl implements QueryValidationService {
             return ValidationResponse.ok();
         }
 
+        final FieldTypesKey fieldTypesKey = new FieldTypesKey(ImmutableSet.copyOf(req.streams()), timeRangeBucket(req.timerange()));
+        final ResultKey resultKey = new ResultKey(req.query(), req.filter(), fieldTypesKey, req.parameters(), req.validationMode());
+        final ValidationResponse cached = results.getIfPresent(resultKey);
+        if (cached != null) {
+            return cached;
+        }
+
         try {
             final ParsedQuery parsedQuery = luceneQueryParser.parse(req.rawQuery());
 
             final ValidationContext context = ValidationContext.builder()
                     .request(req)
                     .query(parsedQuery)
-                    .availableFields(fields.fieldTypesByStreamIds(req.streams(), req.timerange()))
+                    .availableFields(fieldTypes.get(fieldTypesKey, key -> fields.fieldTypesByStreamIds(key.streams(), key.timerange())))
                     .build();
 
             final List<ValidationMessage> explanations = validators.stream()
                     .flatMap(val -> val.validate(context).stream())
                     .collect(Collectors.toList());
 
-            return ValidationResponse.withDetectedStatus(explanations);
+            final ValidationResponse response = ValidationResponse.withDetectedStatus(explanations);
+            results.put(resultKey, response);
+            return response;
 
+        } catch (ParseException e) {
+            // Incomplete queries typed into the search bar fail the same way every time
+            final ValidationResponse response = ValidationResponse.error(ValidationErrors.create(e));
+            results.put(resultKey, response);
+            return response;
         } catch (Exception e) {
             return ValidationResponse.error(ValidationErrors.create(e));
         }
     }
+
+    /**
+     * Absolute time ranges are widened to full minutes, so a range ending "now" doesn't produce a new cache key on
+     * every request. This might include an additional index in the field type lookup, which is fine for validation.
+     * Relative and keyword ranges are cache keys on their own.
+     */
+    private static TimeRange timeRangeBucket(TimeRange timeRange) {
+        if (timeRange instanceof AbsoluteRange absoluteRange) {
+            return AbsoluteRange.create(absoluteRange.from().minuteOfHour().roundFloorCopy(),
+                    absoluteRange.to().minuteOfHour().roundCeilingCopy());
+        }
+        return timeRange;
+    }
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.security.permissions;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.apache.shiro.authz.Permission;
+import org.apache.shiro.authz.permission.WildcardPermission;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Answers {@link Permission#implies(Permission)} checks against a large set of permissions without testing every
+ * single one of them.
+ * <p>
+ * Wildcard permissions with up to three parts ({@code domain:action:instance}) which don't contain wildcards are
+ * kept in hash sets, {@link GRNPermission}s are compared by equality. All other permissions are checked one by one,
+ * just like Shiro does.
+ */
+public class PermissionIndex {
+    // Same as the protected constants in WildcardPermission
+    private static final String WILDCARD_TOKEN = "*";
+    private static final String PART_DIVIDER_TOKEN = ":";
+    private static final Splitter PART_SPLITTER = Splitter.on(PART_DIVIDER_TOKEN);
+    private static final Splitter SUBPART_SPLITTER = Splitter.on(",");
+
+    // "domain", "domain:action" and "domain:action:instance"
+    private final Set<String> exactPermissions = new HashSet<>();
+    private final Set<GRNPermission> grnPermissions = new HashSet<>();
+    private final List<Permission> otherPermissions;
+    private final List<Permission> allPermissions;
+
+    public PermissionIndex(Collection<Permission> permissions) {
+        final ImmutableList.Builder<Permission> others = ImmutableList.builder();
+        for (Permission permission : permissions) {
+            if (permission instanceof GRNPermission grnPermission) {
+                grnPermissions.add(grnPermission);
+            } else if (!addExactPermission(permission)) {
+                others.add(permission);
+            }
+        }
+        this.otherPermissions = others.build();
+        this.allPermissions = ImmutableList.copyOf(permissions);
+    }
+
+    public boolean implies(Permission permission) {
+        if (permission instanceof GRNPermission) {
+            return grnPermissions.contains(permission) || impliedBy(otherPermissions, permission);
+        }
+        final List<String> parts = singleValuedParts(permission);
+        if (parts == null) {
+            // Multiple values in a part can only be implied by a single permission containing all of them
+            return impliedBy(allPermissions, permission);
+        }
+
+        String prefix = null;
+        for (int i = 0; i < Math.min(parts.size(), 3); i++) {
+            prefix = prefix == null ? parts.get(i) : prefix + PART_DIVIDER_TOKEN + parts.get(i);
+            if (exactPermissions.contains(prefix)) {
+                return true;
+            }
+        }
+        return impliedBy(otherPermissions, permission);
+    }
+
+    private boolean addExactPermission(Permission permission) {
+        final List<Set<String>> parts = parts(permission);
+        if (parts == null || parts.size() > 3 || parts.stream().anyMatch(part -> part.contains(WILDCARD_TOKEN))) {
+            return false;
+        }
+        final Set<String> expanded = new HashSet<>();
+        expanded.add(null);
+        for (Set<String> part : parts) {
+            final Set<String> prefixes = new HashSet<>();
+            for (String prefix : expanded) {
+                for (String value : part) {
+                    prefixes.add(prefix == null ? value : prefix + PART_DIVIDER_TOKEN + value);
+                }
+            }
+            expanded.clear();
+            expanded.addAll(prefixes);
+        }
+        exactPermissions.addAll(expanded);
+        return true;
+    }
+
+    private static List<String> singleValuedParts(Permission permission) {
+        final List<Set<String>> parts = parts(permission);
+        if (parts == null || parts.stream().anyMatch(part -> part.size() != 1)) {
+            return null;
+        }
+        return parts.stream().map(part -> part.iterator().next()).toList();
+    }
+
+    /**
+     * Returns the parts of plain wildcard permissions, subclasses might change how permissions are implied.
+     */
+    static List<Set<String>> parts(Permission permission) {
+        if (permission.getClass() != WildcardPermission.class && permission.getClass() != CaseSensitiveWildcardPermission.class) {
+            return null;
+        }
+        // The string representation is built from the already parsed (and possibly lower-cased) parts
+        return PART_SPLITTER.splitToList(permission.toString()).stream()
+                .map(part -> (Set<String>) ImmutableSet.copyOf(SUBPART_SPLITTER.split(part)))
+                .toList();
+    }
+
+    private static boolean impliedBy(List<Permission> permissions, Permission permission) {
+        for (Permission candidate : permissions) {
+            if (candidate.implies(permission)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.security.permissions;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.shiro.authz.Permission;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Resolves the instance ids a set of permissions grants access to, so lists of entities can be filtered by id in the
+ * database instead of checking every single entity.
+ */
+public class PermittedInstances {
+    // Not a valid id of any entity, only permissions for all instances imply it
+    private static final String ANY_INSTANCE = "__any_instance__";
+
+    private PermittedInstances() {
+    }
+
+    /**
+     * Returns the ids of all instances for which the given permissions imply {@code permission}
+     * (e.g. {@code streams:read}).
+     *
+     * @return the permitted ids or an empty optional if the permissions imply all instances
+     */
+    public static Optional<Set<String>> resolve(Collection<Permission> permissions, String permission) {
+        final CaseSensitiveWildcardPermission anyInstance = instancePermission(permission, ANY_INSTANCE);
+        if (permissions.stream().anyMatch(p -> p.implies(anyInstance))) {
+            return Optional.empty();
+        }
+
+        final ImmutableSet.Builder<String> ids = ImmutableSet.builder();
+        for (Permission held : permissions) {
+            if (held instanceof GRNPermission) {
+                // Only implies other GRN permissions
+                continue;
+            }
+            final List<Set<String>> parts = PermissionIndex.parts(held);
+            if (parts == null) {
+                // Unknown permission types can't be resolved into ids, check every instance then
+                return Optional.empty();
+            }
+            // Only permissions with an instance part can imply single instances now
+            if (parts.size() < 3) {
+                continue;
+            }
+            for (String id : parts.get(2)) {
+                if (held.implies(instancePermission(permission, id))) {
+                    ids.add(id);
+                }
+            }
+        }
+        return Optional.of(ids.build());
+    }
+
+    private static CaseSensitiveWildcardPermission instancePermission(String permission, String id) {
+        return new CaseSensitiveWildcardPermission(permission + ":" + id);
+    }
+}
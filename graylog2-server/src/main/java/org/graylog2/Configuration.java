@@ -76,6 +76,9 @@ public class Configuration extends CaConfiguration {
     @Parameter(value = "output_flush_interval", required = true, validators = PositiveIntegerValidator.class)
     private int outputFlushInterval = 1;
 
+    @Parameter(value = "output_bulk_latency_target", validators = PositiveDurationValidator.class)
+    private Duration outputBulkLatencyTarget = Duration.seconds(10);
+
     @Parameter(value = "outputbuffer_processors", required = true, validators = PositiveIntegerValidator.class)
     private int outputBufferProcessors = 3;
 
@@ -104,6 +107,33 @@ public class Configuration extends CaConfiguration {
     @Parameter(value = "allow_highlighting")
     private boolean allowHighlighting = false;
 
+    @Parameter(value = "events_realtime_filter_evaluation")
+    private boolean eventsRealtimeFilterEvaluation = false;
+
+    @Parameter(value = "events_async_indexing")
+    private boolean eventsAsyncIndexing = false;
+
+    @Parameter(value = "events_indexing_batch_size", validators = PositiveIntegerValidator.class)
+    private int eventsIndexingBatchSize = 500;
+
+    @Parameter(value = "events_indexing_queue_capacity", validators = PositiveIntegerValidator.class)
+    private int eventsIndexingQueueCapacity = 10000;
+
+    @Parameter(value = "search_export_parallelism", validators = PositiveIntegerValidator.class)
+    private int searchExportParallelism = 1;
+
+    @Parameter(value = "search_export_max_buffered_chunks", validators = PositiveIntegerValidator.class)
+    private int searchExportMaxBufferedChunks = 8;
+
+    @Parameter(value = "suggestions_local_index_fields", converter = TrimmedStringSetConverter.class)
+    private Set<String> suggestionsLocalIndexFields = Collections.emptySet();
+
+    @Parameter(value = "suggestions_local_index_max_values", validators = PositiveIntegerValidator.class)
+    private int suggestionsLocalIndexMaxValues = 10000;
+
+    @Parameter(value = "suggestions_local_index_period", validators = PositiveDurationValidator.class)
+    private Duration suggestionsLocalIndexPeriod = Duration.minutes(15);
+
     @Parameter(value = "lb_recognition_period_seconds", validators = PositiveIntegerValidator.class)
     private int loadBalancerRecognitionPeriodSeconds = 3;
 
@@ -116,6 +146,15 @@ public class Configuration extends CaConfiguration {
     @Parameter(value = "stream_processing_max_faults", validators = PositiveIntegerValidator.class)
     private int streamProcessingMaxFaults = 3;
 
+    @Parameter(value = "stream_rule_metrics_compact")
+    private boolean streamRuleMetricsCompact = false;
+
+    @Parameter(value = "stream_rule_metrics_sample_rate", validators = PositiveIntegerValidator.class)
+    private int streamRuleMetricsSampleRate = 1;
+
+    @Parameter(value = "stream_rule_metrics_top_rules", validators = PositiveIntegerValidator.class)
+    private int streamRuleMetricsTopRules = 10;
+
     @Parameter(value = "output_module_timeout", validators = PositiveLongValidator.class)
     private long outputModuleTimeout = 10000;
 
@@ -272,6 +311,10 @@ public class Configuration extends CaConfiguration {
         return outputFlushInterval;
     }
 
+    public Duration getOutputBulkLatencyTarget() {
+        return outputBulkLatencyTarget;
+    }
+
     public int getOutputBufferProcessors() {
         return outputBufferProcessors;
     }
@@ -328,6 +371,42 @@ public class Configuration extends CaConfiguration {
         return allowHighlighting;
     }
 
+    public boolean isEventsRealtimeFilterEvaluation() {
+        return eventsRealtimeFilterEvaluation;
+    }
+
+    public boolean isEventsAsyncIndexing() {
+        return eventsAsyncIndexing;
+    }
+
+    public int getEventsIndexingBatchSize() {
+        return eventsIndexingBatchSize;
+    }
+
+    public int getEventsIndexingQueueCapacity() {
+        return eventsIndexingQueueCapacity;
+    }
+
+    public int getSearchExportParallelism() {
+        return searchExportParallelism;
+    }
+
+    public int getSearchExportMaxBufferedChunks() {
+        return searchExportMaxBufferedChunks;
+    }
+
+    public Set<String> getSuggestionsLocalIndexFields() {
+        return suggestionsLocalIndexFields;
+    }
+
+    public int getSuggestionsLocalIndexMaxValues() {
+        return suggestionsLocalIndexMaxValues;
+    }
+
+    public Duration getSuggestionsLocalIndexPeriod() {
+        return suggestionsLocalIndexPeriod;
+    }
+
     public int getLoadBalancerRecognitionPeriodSeconds() {
         return loadBalancerRecognitionPeriodSeconds;
     }
@@ -340,6 +419,18 @@ public class Configuration extends CaConfiguration {
         return streamProcessingMaxFaults;
     }
 
+    public boolean isStreamRuleMetricsCompact() {
+        return streamRuleMetricsCompact;
+    }
+
+    public int getStreamRuleMetricsSampleRate() {
+        return streamRuleMetricsSampleRate;
+    }
+
+    public int getStreamRuleMetricsTopRules() {
+        return streamRuleMetricsTopRules;
+    }
+
     public long getOutputModuleTimeout() {
         return outputModuleTimeout;
     }
@@ -188,7 +188,7 @@ public class Server extends ServerBootstrap {
                 new ContentPacksModule(),
                 new ViewsBindings(),
                 new JobSchedulerModule(),
-                new EventsModule(),
+                new EventsModule(configuration),
                 new EnterpriseModule(),
                 new GRNTypesModule(),
                 new SecurityModule(),
@@ -89,6 +89,9 @@ public class ElasticsearchConfiguration {
     @Parameter(value = "index_field_type_periodical_full_refresh_interval", validators = {PositiveDurationValidator.class})
     private Duration indexFieldTypePeriodicalFullRefreshInterval = Duration.minutes(5);
 
+    @Parameter(value = "index_field_type_track_observed_fields")
+    private boolean indexFieldTypeTrackObservedFields = false;
+
     @Parameter(value = "retention_strategy", required = true)
     private String retentionStrategy = DeletionRetentionStrategy.NAME;
 
@@ -217,6 +220,10 @@ public class ElasticsearchConfiguration {
         return indexFieldTypePeriodicalFullRefreshInterval;
     }
 
+    public boolean isIndexFieldTypeTrackObservedFields() {
+        return indexFieldTypeTrackObservedFields;
+    }
+
     public String getRotationStrategy() {
         return rotationStrategy;
     }
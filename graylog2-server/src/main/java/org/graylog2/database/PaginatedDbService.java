@@ -150,6 +150,34 @@ public abstract class PaginatedDbService<DTO> {
         }
     }
 
+    /**
+     * Returns a {@link PaginatedList<DTO>} for the given query and pagination parameters, restricted to the entries
+     * with the given IDs.
+     * <p>
+     * This is the database-side alternative to
+     * {@link PaginatedDbService#findPaginatedWithQueryFilterAndSort(DBQuery.Query, Predicate, DBSort.SortBuilder, int, int)}
+     * if the filter only checks for permitted IDs. Counting and paging is done by the database.
+     *
+     * @param query   the query to execute
+     * @param ids     the IDs of the entries which may be returned
+     * @param sort    the sort builder for the query
+     * @param page    the page number that should be returned
+     * @param perPage the number of entries per page, 0 is unlimited
+     * @return the paginated list
+     */
+    protected PaginatedList<DTO> findPaginatedWithQueryIdsAndSort(DBQuery.Query query,
+                                                                  Set<String> ids,
+                                                                  DBSort.SortBuilder sort,
+                                                                  int page,
+                                                                  int perPage) {
+        final List<ObjectId> objectIds = ids.stream()
+                .filter(ObjectId::isValid)
+                .map(ObjectId::new)
+                .collect(Collectors.toList());
+
+        return findPaginatedWithQueryAndSort(DBQuery.and(query, DBQuery.in("_id", objectIds)), sort, page, perPage);
+    }
+
     protected ImmutableList<DTO> asImmutableList(Iterator<? extends DTO> cursor) {
         return ImmutableList.copyOf(cursor);
     }
@@ -48,8 +48,8 @@ public class GrokPatternRegistry {
     private final GrokPatternService grokPatternService;
 
     private final AtomicReference<Set<GrokPattern>> patterns = new AtomicReference<>(Collections.emptySet());
-    private final LoadingCache<String, Grok> grokCache;
-    private final LoadingCache<String, Grok> grokCacheNamedOnly;
+    private final LoadingCache<String, PrefilteredGrok> grokCache;
+    private final LoadingCache<String, PrefilteredGrok> grokCacheNamedOnly;
 
     @Inject
     public GrokPatternRegistry(EventBus serverEventBus,
@@ -92,6 +92,14 @@ public class GrokPatternRegistry {
     }
 
     public Grok cachedGrokForPattern(String pattern, boolean namedCapturesOnly) {
+        return cachedPrefilteredGrokForPattern(pattern, namedCapturesOnly).grok();
+    }
+
+    /**
+     * Returns the compiled pattern together with its literal prefilter. Prefer this over
+     * {@link #cachedGrokForPattern(String, boolean)} when matching many values which usually don't match.
+     */
+    public PrefilteredGrok cachedPrefilteredGrokForPattern(String pattern, boolean namedCapturesOnly) {
         try {
             if (namedCapturesOnly) {
                 return grokCacheNamedOnly.get(pattern);
@@ -116,7 +124,7 @@ public class GrokPatternRegistry {
         return patterns.get();
     }
 
-    private class GrokReloader extends CacheLoader<String, Grok> {
+    private class GrokReloader extends CacheLoader<String, PrefilteredGrok> {
         private final boolean namedCapturesOnly;
 
         GrokReloader(boolean namedCapturesOnly) {
@@ -124,12 +132,12 @@ public class GrokPatternRegistry {
         }
 
         @Override
-        public Grok load(@Nonnull String pattern) throws Exception {
+        public PrefilteredGrok load(@Nonnull String pattern) throws Exception {
             final GrokCompiler grokCompiler = GrokCompiler.newInstance();
             for (GrokPattern grokPattern : patterns()) {
                 grokCompiler.register(grokPattern.name(), grokPattern.pattern());
             }
-            return grokCompiler.compile(pattern, namedCapturesOnly);
+            return new PrefilteredGrok(grokCompiler.compile(pattern, namedCapturesOnly));
         }
     }
 }
@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.grok;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import io.krakens.grok.api.Grok;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled {@link Grok} pattern together with the literal strings every match has to contain.
+ * <p>
+ * Checking for those literals is a lot cheaper than running the regular expression, so values which can't match
+ * (the common case for extractors and pipeline rules trying several patterns) are rejected without touching the
+ * regex engine.
+ */
+public class PrefilteredGrok {
+    // Inline flags like (?i) or (?x) change how literals are matched
+    private static final Pattern INLINE_FLAGS = Pattern.compile("\\(\\?[imsuxdU-]+[:)]");
+    private static final int MIN_LITERAL_LENGTH = 2;
+
+    private final Grok grok;
+    private final List<String> requiredLiterals;
+
+    public PrefilteredGrok(Grok grok) {
+        this.grok = grok;
+        this.requiredLiterals = requiredLiterals(grok.getNamedRegex());
+    }
+
+    public Grok grok() {
+        return grok;
+    }
+
+    /**
+     * Checks if the value contains all literals required by the pattern. If this returns {@code false}, the pattern
+     * can't match the value.
+     */
+    public boolean mightMatch(String value) {
+        for (String literal : requiredLiterals) {
+            if (!value.contains(literal)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same as {@code grok().match(value).captureFlattened()}, but skips the regular expression if the value can't
+     * match.
+     */
+    public Map<String, Object> captureFlattened(String value) {
+        if (!mightMatch(value)) {
+            return Collections.emptyMap();
+        }
+        return grok.match(value).captureFlattened();
+    }
+
+    /**
+     * Extracts the literal strings outside of groups which have to be part of any match of the regular expression.
+     * Everything which isn't obviously a literal (groups, classes, escapes, quantified characters) ends a literal.
+     * If the expression contains a top-level alternation or inline flags, there are no required literals.
+     */
+    @VisibleForTesting
+    static List<String> requiredLiterals(String regex) {
+        if (INLINE_FLAGS.matcher(regex).find()) {
+            return ImmutableList.of();
+        }
+        final List<String> literals = new ArrayList<>();
+        final StringBuilder current = new StringBuilder();
+        int i = 0;
+        while (i < regex.length()) {
+            final char c = regex.charAt(i);
+            switch (c) {
+                case '|':
+                    // Top-level alternation, nothing is required
+                    return ImmutableList.of();
+                case '(':
+                    addLiteral(literals, current);
+                    i = skipQuantifier(regex, skipGroup(regex, i));
+                    continue;
+                case '[':
+                    addLiteral(literals, current);
+                    i = skipQuantifier(regex, skipClass(regex, i));
+                    continue;
+                case '\\':
+                    if (i + 1 >= regex.length()) {
+                        return ImmutableList.of();
+                    }
+                    final char escaped = regex.charAt(i + 1);
+                    if (Character.isLetterOrDigit(escaped)) {
+                        // Character classes, anchors, back references, quoting... nothing we can use
+                        addLiteral(literals, current);
+                        i = skipQuantifier(regex, skipEscape(regex, i));
+                        continue;
+                    }
+                    i = appendLiteralChar(regex, i + 2, escaped, literals, current);
+                    continue;
+                case '.', '^', '$', ')', ']', '{', '}', '*', '+', '?':
+                    addLiteral(literals, current);
+                    i = skipQuantifier(regex, i + 1);
+                    continue;
+                default:
+                    i = appendLiteralChar(regex, i + 1, c, literals, current);
+            }
+        }
+        addLiteral(literals, current);
+
+        // Check the most selective literals first
+        literals.sort(Comparator.comparingInt(String::length).reversed());
+        return ImmutableList.copyOf(literals);
+    }
+
+    /**
+     * Returns the index after the escape sequence starting at {@code start}, a backslash followed by a letter or digit.
+     * Hexadecimal, octal and control characters, properties and named back references span more than two characters,
+     * none of which may end up in a literal.
+     */
+    private static int skipEscape(String regex, int start) {
+        final char escaped = regex.charAt(start + 1);
+        final int next = start + 2;
+        switch (escaped) {
+            case 'Q':
+                final int end = regex.indexOf("\\E", next);
+                return end < 0 ? regex.length() : end + 2;
+            case 'x':
+                return regex.startsWith("{", next) ? skipPast(regex, next, '}') : Math.min(next + 2, regex.length());
+            case 'u':
+                return Math.min(next + 4, regex.length());
+            case 'c':
+                return Math.min(next + 1, regex.length());
+            case 'p', 'P':
+                // A single letter property name, unless the name is in braces
+                return regex.startsWith("{", next) ? skipPast(regex, next, '}') : Math.min(next + 1, regex.length());
+            case 'N', 'b':
+                return regex.startsWith("{", next) ? skipPast(regex, next, '}') : next;
+            case 'k':
+                return skipPast(regex, next, '>');
+            case '0':
+                return skipDigits(regex, next, 3);
+            default:
+                // Back references can have more than one digit
+                return Character.isDigit(escaped) ? skipDigits(regex, next, Integer.MAX_VALUE) : next;
+        }
+    }
+
+    private static int skipPast(String regex, int start, char c) {
+        final int end = regex.indexOf(c, start);
+        return end < 0 ? regex.length() : end + 1;
+    }
+
+    private static int skipDigits(String regex, int start, int maxDigits) {
+        int i = start;
+        while (i < regex.length() && i - start < maxDigits && Character.isDigit(regex.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int appendLiteralChar(String regex, int next, char c, List<String> literals, StringBuilder current) {
+        if (next < regex.length()) {
+            final char quantifier = regex.charAt(next);
+            if (quantifier == '?' || quantifier == '*' || quantifier == '{') {
+                // The character is optional (or might be), so the literal ends before it
+                addLiteral(literals, current);
+                return skipQuantifier(regex, next);
+            }
+            if (quantifier == '+') {
+                // The character is required at least once, but what follows isn't adjacent anymore
+                current.append(c);
+                addLiteral(literals, current);
+                return skipQuantifier(regex, next);
+            }
+        }
+        current.append(c);
+        return next;
+    }
+
+    private static void addLiteral(List<String> literals, StringBuilder current) {
+        if (current.length() >= MIN_LITERAL_LENGTH) {
+            literals.add(current.toString());
+        }
+        current.setLength(0);
+    }
+
+    private static int skipQuantifier(String regex, int i) {
+        if (i >= regex.length()) {
+            return i;
+        }
+        final char c = regex.charAt(i);
+        if (c == '?' || c == '*' || c == '+') {
+            i++;
+        } else if (c == '{') {
+            final int end = regex.indexOf('}', i);
+            i = end < 0 ? regex.length() : end + 1;
+        } else {
+            return i;
+        }
+        // Lazy or possessive quantifier
+        if (i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+')) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the index after the group starting at {@code start}.
+     */
+    private static int skipGroup(String regex, int start) {
+        int depth = 0;
+        int i = start;
+        while (i < regex.length()) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                i = skipClass(regex, i);
+                continue;
+            }
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+                if (depth == 0) {
+                    return i + 1;
+                }
+            }
+            i++;
+        }
+        return regex.length();
+    }
+
+    /**
+     * Returns the index after the character class starting at {@code start}.
+     */
+    private static int skipClass(String regex, int start) {
+        int depth = 0;
+        int i = start;
+        while (i < regex.length()) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                depth++;
+                // A closing bracket right at the start of a class is a literal
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') {
+                    i++;
+                } else if (i + 2 < regex.length() && regex.charAt(i + 1) == '^' && regex.charAt(i + 2) == ']') {
+                    i += 2;
+                }
+            } else if (c == ']') {
+                depth--;
+                if (depth == 0) {
+                    return i + 1;
+                }
+            }
+            i++;
+        }
+        return regex.length();
+    }
+}
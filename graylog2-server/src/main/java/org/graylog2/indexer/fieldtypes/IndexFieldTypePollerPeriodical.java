@@ -21,9 +21,12 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 import org.apache.mina.util.ConcurrentHashSet;
+import org.graylog2.events.ClusterEventBus;
 import org.graylog2.indexer.IndexSet;
 import org.graylog2.indexer.MongoIndexSet;
 import org.graylog2.indexer.cluster.Cluster;
+import org.graylog2.indexer.fieldtypes.events.ObservedFieldsEvent;
+import org.graylog2.indexer.fieldtypes.events.ObservedFieldsResetEvent;
 import org.graylog2.indexer.indexset.IndexSetConfig;
 import org.graylog2.indexer.indexset.IndexSetService;
 import org.graylog2.indexer.indexset.events.IndexSetCreatedEvent;
@@ -43,6 +46,7 @@ import javax.inject.Named;
 import java.time.Instant;
 import java.util.Collection;
 import java.util.LinkedHashSet;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
@@ -65,11 +69,16 @@ public class IndexFieldTypePollerPeriodical extends Periodical {
     private final ServerStatus serverStatus;
     private final com.github.joschi.jadconfig.util.Duration fullRefreshInterval;
     private final ScheduledExecutorService scheduler;
+    private final ClusterEventBus clusterEventBus;
+    private final boolean trackObservedFields;
 
     private volatile Set<IndexSetConfig> allIndexSetConfigs;
     private volatile Instant lastFullRefresh = Instant.MIN;
     private final ConcurrentHashMap<String, Instant> lastPoll = new ConcurrentHashMap<>();
     private final ConcurrentHashSet<String> pollInProgress = new ConcurrentHashSet<>();
+    // Only used if observed fields are tracked, see ObservedFieldsTracker
+    private final ConcurrentHashSet<String> indexSetsWithNewFields = new ConcurrentHashSet<>();
+    private final ConcurrentHashMap<String, String> lastPolledWriteIndex = new ConcurrentHashMap<>();
 
     @Inject
     public IndexFieldTypePollerPeriodical(final IndexFieldTypePoller poller,
@@ -80,8 +89,10 @@ public class IndexFieldTypePollerPeriodical extends Periodical {
                                           final MongoIndexSet.Factory mongoIndexSetFactory,
                                           final Cluster cluster,
                                           final EventBus eventBus,
+                                          final ClusterEventBus clusterEventBus,
                                           final ServerStatus serverStatus,
                                           @Named("index_field_type_periodical_full_refresh_interval") final com.github.joschi.jadconfig.util.Duration fullRefreshInterval,
+                                          @Named("index_field_type_track_observed_fields") final boolean trackObservedFields,
                                           @Named("daemonScheduler") final ScheduledExecutorService scheduler) {
         this.poller = poller;
         this.dbService = dbService;
@@ -92,6 +103,8 @@ public class IndexFieldTypePollerPeriodical extends Periodical {
         this.serverStatus = serverStatus;
         this.fullRefreshInterval = fullRefreshInterval;
         this.scheduler = scheduler;
+        this.clusterEventBus = clusterEventBus;
+        this.trackObservedFields = trackObservedFields;
 
         eventBus.register(this);
     }
@@ -123,7 +136,9 @@ public class IndexFieldTypePollerPeriodical extends Periodical {
             allConfigs = allIndexSetConfigs = new LinkedHashSet<>(indexSetService.findAll());
 
             // Only maintain the previous polling time for index sets which actually exist
-            lastPoll.keySet().retainAll(allConfigs.stream().map(IndexSetConfig::id).collect(Collectors.toSet()));
+            final Set<String> indexSetIds = allConfigs.stream().map(IndexSetConfig::id).collect(Collectors.toSet());
+            lastPoll.keySet().retainAll(indexSetIds);
+            lastPolledWriteIndex.keySet().retainAll(indexSetIds);
         }
 
         if (needsFullRefresh()) {
@@ -197,9 +212,13 @@ public class IndexFieldTypePollerPeriodical extends Periodical {
                 // Only check the active write index on a regular basis, the others don't change anymore
                 final String activeWriteIndex = indexSet.getActiveWriteIndex();
                 if (activeWriteIndex != null) {
-                    LOG.debug("Updating index field types for active write index <{}> in index set <{}/{}>",
-                            activeWriteIndex, indexSetTitle, indexSetId);
-                    poller.pollIndex(activeWriteIndex, indexSetId).ifPresent(dbService::upsert);
+                    if (trackObservedFields) {
+                        pollIfChanged(indexSetTitle, indexSetId, activeWriteIndex);
+                    } else {
+                        LOG.debug("Updating index field types for active write index <{}> in index set <{}/{}>",
+                                activeWriteIndex, indexSetTitle, indexSetId);
+                        poller.pollIndex(activeWriteIndex, indexSetId).ifPresent(dbService::upsert);
+                    }
                 } else {
                     LOG.warn("Active write index for index set \"{}\" ({}) doesn't exist yet",
                             indexSetTitle, indexSetId);
@@ -217,6 +236,41 @@ public class IndexFieldTypePollerPeriodical extends Periodical {
         });
     }
 
+    /**
+     * Polls the active write index if its mapping might have changed since the last successful poll. That is the case
+     * if nodes observed new fields for the index set or if the index set has been rotated since.
+     */
+    private void pollIfChanged(String indexSetTitle, String indexSetId, String activeWriteIndex) {
+        // Remove the marker before polling, fields which are observed in the meantime will mark it again
+        final boolean hasNewFields = indexSetsWithNewFields.remove(indexSetId);
+        final boolean rotated = !activeWriteIndex.equals(lastPolledWriteIndex.get(indexSetId));
+        if (!hasNewFields && !rotated) {
+            LOG.debug("No new fields observed for active write index <{}> in index set <{}/{}>",
+                    activeWriteIndex, indexSetTitle, indexSetId);
+            return;
+        }
+        if (rotated) {
+            // The new write index starts without fields, so the nodes have to report all of them again
+            clusterEventBus.post(ObservedFieldsResetEvent.create(indexSetId));
+        }
+
+        LOG.debug("Updating index field types for active write index <{}> in index set <{}/{}>",
+                activeWriteIndex, indexSetTitle, indexSetId);
+        boolean polled = false;
+        try {
+            final Optional<IndexFieldTypesDTO> fieldTypes = poller.pollIndex(activeWriteIndex, indexSetId);
+            fieldTypes.ifPresent(dbService::upsert);
+            polled = fieldTypes.isPresent();
+        } finally {
+            if (polled) {
+                lastPolledWriteIndex.put(indexSetId, activeWriteIndex);
+            } else if (hasNewFields) {
+                // Keep the marker, so the mapping is fetched again on the next refresh interval
+                indexSetsWithNewFields.add(indexSetId);
+            }
+        }
+    }
+
     private boolean needsFullRefresh() {
         if (fullRefreshInterval.toSeconds() == 0) {
             return false;
@@ -230,6 +284,18 @@ public class IndexFieldTypePollerPeriodical extends Periodical {
         return skippedLifecycles.contains(currentLifecycle);
     }
 
+    /**
+     * Marks index sets for which nodes have observed new fields, so the active write index gets polled on the next
+     * refresh interval.
+     *
+     * @param event observed fields event
+     */
+    @SuppressWarnings("unused")
+    @Subscribe
+    public void handleObservedFields(final ObservedFieldsEvent event) {
+        indexSetsWithNewFields.addAll(event.indexSetIds());
+    }
+
     /**
      * Creates a new field type polling job for the newly created index set.
      *
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.indexer.fieldtypes;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import org.graylog2.events.ClusterEventBus;
+import org.graylog2.indexer.fieldtypes.events.ObservedFieldsEvent;
+import org.graylog2.indexer.fieldtypes.events.ObservedFieldsResetEvent;
+import org.graylog2.indexer.messages.IndexingRequest;
+import org.graylog2.plugin.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of the field names which have been indexed into each index set on this node.
+ * <p>
+ * Whenever a field shows up which hasn't been seen before, the index set is reported to the leader node with an
+ * {@link ObservedFieldsEvent}, so {@link IndexFieldTypePollerPeriodical} only has to fetch the mapping of the active
+ * write index if it might actually have changed.
+ */
+@Singleton
+public class ObservedFieldsTracker {
+    private static final Logger LOG = LoggerFactory.getLogger(ObservedFieldsTracker.class);
+    private static final long PUBLISH_INTERVAL_SECONDS = 1;
+    // Index sets with more fields than this are always reported, the mapping is fetched on every refresh interval then.
+    @VisibleForTesting
+    static final int MAX_FIELDS_PER_INDEX_SET = 10_000;
+
+    private final boolean enabled;
+    private final ClusterEventBus clusterEventBus;
+    private final ConcurrentHashMap<String, Set<String>> observedFields = new ConcurrentHashMap<>();
+    private final Set<String> changedIndexSets = ConcurrentHashMap.newKeySet();
+
+    @Inject
+    public ObservedFieldsTracker(@Named("index_field_type_track_observed_fields") boolean enabled,
+                                 ClusterEventBus clusterEventBus,
+                                 EventBus eventBus,
+                                 @Named("daemonScheduler") ScheduledExecutorService scheduler) {
+        this.enabled = enabled;
+        this.clusterEventBus = clusterEventBus;
+
+        if (enabled) {
+            eventBus.register(this);
+            scheduler.scheduleWithFixedDelay(this::publish, PUBLISH_INTERVAL_SECONDS, PUBLISH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Records the fields of successfully indexed messages.
+     */
+    public void record(Collection<IndexingRequest> indexingRequests) {
+        if (!enabled) {
+            return;
+        }
+        for (IndexingRequest request : indexingRequests) {
+            // Other indexables like events are written into index sets with a static mapping
+            if (!(request.message() instanceof Message message)) {
+                continue;
+            }
+            final String indexSetId = request.indexSet().getConfig().id();
+            final Set<String> fields = observedFields.computeIfAbsent(indexSetId, id -> ConcurrentHashMap.newKeySet());
+            for (String field : message.getFieldNames()) {
+                if (!fields.contains(field)) {
+                    if (fields.size() < MAX_FIELDS_PER_INDEX_SET) {
+                        fields.add(field);
+                    }
+                    changedIndexSets.add(indexSetId);
+                }
+            }
+        }
+    }
+
+    @VisibleForTesting
+    void publish() {
+        if (changedIndexSets.isEmpty()) {
+            return;
+        }
+        try {
+            final Set<String> indexSetIds = ImmutableSet.copyOf(changedIndexSets);
+            changedIndexSets.removeAll(indexSetIds);
+            LOG.debug("Observed new fields in index sets {}", indexSetIds);
+            clusterEventBus.post(ObservedFieldsEvent.create(indexSetIds));
+        } catch (Exception e) {
+            LOG.error("Couldn't publish observed fields", e);
+        }
+    }
+
+    @SuppressWarnings("unused")
+    @Subscribe
+    public void handleReset(final ObservedFieldsResetEvent event) {
+        LOG.debug("Resetting observed fields for index set <{}>", event.indexSetId());
+        observedFields.remove(event.indexSetId());
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.indexer.fieldtypes.events;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+import org.graylog.autovalue.WithBeanGetter;
+
+/**
+ * Cluster event which is sent after the active write index of an index set changed. The new index doesn't contain
+ * any fields yet, so all nodes have to forget the fields they have observed for the index set.
+ */
+@AutoValue
+@WithBeanGetter
+@JsonAutoDetect
+public abstract class ObservedFieldsResetEvent {
+    @JsonProperty("index_set_id")
+    public abstract String indexSetId();
+
+    @JsonCreator
+    public static ObservedFieldsResetEvent create(@JsonProperty("index_set_id") String indexSetId) {
+        return new AutoValue_ObservedFieldsResetEvent(indexSetId);
+    }
+}
@@ -129,6 +129,10 @@ public class Indices {
         return indicesAdapter.getIndexStats(Collections.singleton(indexSet.getIndexWildcard()));
     }
 
+    public JsonNode getIndexStats(final Collection<String> indices) {
+        return indicesAdapter.getIndexStats(indices);
+    }
+
     public boolean exists(String indexName) {
         try {
             return indicesAdapter.exists(indexName);
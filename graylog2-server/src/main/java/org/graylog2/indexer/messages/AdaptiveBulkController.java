@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.indexer.messages;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.github.joschi.jadconfig.util.Duration;
+import com.google.common.annotations.VisibleForTesting;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static org.graylog2.shared.metrics.MetricUtils.safelyRegister;
+
+/**
+ * Learns the size and the number of concurrent bulk requests the indexer cluster can handle.
+ * <p>
+ * All limits are unlimited as long as the cluster keeps up. They are decreased multiplicatively when a bulk request
+ * is rejected or takes longer than the latency target, and increased additively by every fast bulk request until they
+ * are back at the configured batch size and number of output processors. The limits are kept across batches.
+ * <p>
+ * Requests rejected as too large (HTTP status 413) exceeded the maximum request size of the cluster, which is a limit
+ * in bytes. They decrease a limit on the estimated size of the messages in a request instead of the number of
+ * messages, and that limit never grows back to the smallest size which has been rejected.
+ */
+@Singleton
+public class AdaptiveBulkController {
+    static final int UNLIMITED = Integer.MAX_VALUE;
+    static final long UNLIMITED_BYTES = Long.MAX_VALUE;
+    static final long INITIAL_REJECTION_BACKOFF_MILLIS = 250;
+    static final long MAX_REJECTION_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final int chunkSizeCeiling;
+    private final int chunkSizeStep;
+    private final int concurrencyCeiling;
+    private final long latencyTargetNanos;
+
+    private final Timer bulkRequestLatency;
+    private final Meter rejectedBulkRequests;
+    private final Meter slowBulkRequests;
+
+    private int chunkSizeLimit = UNLIMITED;
+    private long chunkBytesLimit = UNLIMITED_BYTES;
+    private long tooLargeChunkBytes = UNLIMITED_BYTES;
+    private int concurrencyLimit = UNLIMITED;
+    private int inFlightRequests = 0;
+    private int consecutiveRejections = 0;
+
+    @Inject
+    public AdaptiveBulkController(@Named("output_batch_size") int outputBatchSize,
+                                  @Named("outputbuffer_processors") int outputBufferProcessors,
+                                  @Named("output_bulk_latency_target") Duration latencyTarget,
+                                  MetricRegistry metricRegistry) {
+        this.chunkSizeCeiling = outputBatchSize;
+        this.chunkSizeStep = Math.max(1, outputBatchSize / 20);
+        this.concurrencyCeiling = outputBufferProcessors;
+        this.latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(latencyTarget.toMilliseconds());
+
+        this.bulkRequestLatency = metricRegistry.timer(name(AdaptiveBulkController.class, "bulkRequestLatency"));
+        this.rejectedBulkRequests = metricRegistry.meter(name(AdaptiveBulkController.class, "rejectedBulkRequests"));
+        this.slowBulkRequests = metricRegistry.meter(name(AdaptiveBulkController.class, "slowBulkRequests"));
+        safelyRegister(metricRegistry, name(AdaptiveBulkController.class, "chunkSizeLimit"),
+                (Gauge<Integer>) () -> reportedLimit(chunkSizeLimit(), chunkSizeCeiling));
+        safelyRegister(metricRegistry, name(AdaptiveBulkController.class, "concurrencyLimit"),
+                (Gauge<Integer>) () -> reportedLimit(concurrencyLimit(), concurrencyCeiling));
+        safelyRegister(metricRegistry, name(AdaptiveBulkController.class, "inFlightRequests"),
+                (Gauge<Integer>) this::inFlightRequests);
+    }
+
+    /**
+     * Returns the maximum number of messages which should be sent in a single bulk request.
+     */
+    public synchronized int chunkSizeLimit() {
+        return chunkSizeLimit;
+    }
+
+    /**
+     * Returns the maximum estimated size in bytes of the messages which should be sent in a single bulk request. A
+     * bulk request always contains at least one message.
+     */
+    public synchronized long chunkBytesLimit() {
+        return chunkBytesLimit;
+    }
+
+    /**
+     * Returns how long to wait before retrying a rejected bulk request. The time doubles with every consecutive
+     * rejection.
+     */
+    public synchronized long rejectionBackoffMillis() {
+        if (consecutiveRejections == 0) {
+            return 0;
+        }
+        final int doublings = Math.min(consecutiveRejections - 1, 16);
+        return Math.min(MAX_REJECTION_BACKOFF_MILLIS, INITIAL_REJECTION_BACKOFF_MILLIS << doublings);
+    }
+
+    @VisibleForTesting
+    synchronized int concurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    @VisibleForTesting
+    synchronized int inFlightRequests() {
+        return inFlightRequests;
+    }
+
+    /**
+     * Blocks until another bulk request may be sent. Every call must be followed by one of {@link #onSuccess},
+     * {@link #onTooLarge}, {@link #onRejected} or {@link #onFailure}.
+     */
+    public synchronized void acquire() {
+        while (inFlightRequests >= concurrencyLimit) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                // Don't block a shutdown, the request is sent regardless of the limit.
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        inFlightRequests++;
+    }
+
+    /**
+     * Records a successful bulk request, which increases the limits if it was faster than the latency target and
+     * decreases the concurrency limit otherwise. The chunk size limit is only increased by requests which used it up.
+     */
+    public synchronized void onSuccess(int chunkSize, long latencyNanos) {
+        bulkRequestLatency.update(latencyNanos, TimeUnit.NANOSECONDS);
+        consecutiveRejections = 0;
+        if (latencyNanos > latencyTargetNanos) {
+            slowBulkRequests.mark();
+            decreaseConcurrency();
+        } else {
+            increase(chunkSize);
+        }
+        release();
+    }
+
+    /**
+     * Records a bulk request which was rejected because the request body was too large (HTTP status 413).
+     */
+    public synchronized void onTooLarge(long chunkBytes) {
+        tooLargeChunkBytes = Math.min(tooLargeChunkBytes, chunkBytes);
+        chunkBytesLimit = Math.max(1, Math.min(chunkBytesLimit, chunkBytes) / 2);
+        release();
+    }
+
+    /**
+     * Records a bulk request which was rejected because the cluster couldn't keep up (HTTP status 429).
+     */
+    public synchronized void onRejected(int chunkSize) {
+        rejectedBulkRequests.mark();
+        consecutiveRejections++;
+        decreaseChunkSize(chunkSize);
+        decreaseConcurrency();
+        release();
+    }
+
+    /**
+     * Records a bulk request which failed for any other reason, the limits are left unchanged.
+     */
+    public synchronized void onFailure() {
+        release();
+    }
+
+    private void release() {
+        inFlightRequests--;
+        notifyAll();
+    }
+
+    private void decreaseChunkSize(int chunkSize) {
+        chunkSizeLimit = Math.max(1, Math.min(chunkSizeLimit, chunkSize) / 2);
+    }
+
+    private void decreaseConcurrency() {
+        // The request being recorded is still counted as in flight.
+        concurrencyLimit = Math.max(1, Math.min(concurrencyLimit, inFlightRequests) / 2);
+    }
+
+    private void increase(int chunkSize) {
+        if (chunkBytesLimit != UNLIMITED_BYTES) {
+            // Growing up to the rejected size again would only lead to the next rejection.
+            final long chunkBytesStep = Math.max(1, tooLargeChunkBytes / 20);
+            chunkBytesLimit = Math.max(1, Math.min(chunkBytesLimit + chunkBytesStep, tooLargeChunkBytes - 1));
+        }
+        if (chunkSizeLimit != UNLIMITED && chunkSize >= chunkSizeLimit) {
+            chunkSizeLimit += chunkSizeStep;
+            if (chunkSizeLimit >= chunkSizeCeiling) {
+                chunkSizeLimit = UNLIMITED;
+            }
+        }
+        if (concurrencyLimit != UNLIMITED) {
+            concurrencyLimit++;
+            if (concurrencyLimit >= concurrencyCeiling) {
+                concurrencyLimit = UNLIMITED;
+            }
+            notifyAll();
+        }
+    }
+
+    private static int reportedLimit(int limit, int ceiling) {
+        return limit == UNLIMITED ? ceiling : limit;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.indexer.messages;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Compresses bulk request bodies with gzip in the thread building the request.
+ * <p>
+ * Every thread keeps its output buffer and deflater, so compressing a bulk request doesn't allocate once the buffer
+ * has grown to the usual request size. The returned {@link Body} is backed by that buffer and is only valid until the
+ * same thread compresses the next request, which is fine for the synchronous bulk requests of the indexer adapters.
+ */
+@Singleton
+public class BulkRequestCompressor {
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    // Don't keep buffers of exceptionally large requests around.
+    private static final int MAX_RETAINED_BUFFER_SIZE = 16 * 1024 * 1024;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private final boolean enabled;
+    private final Timer compressionCpuTime;
+    private final Histogram compressedSizePercent;
+    private final Meter uncompressedBytes;
+    private final Meter compressedBytes;
+    private final ThreadLocal<GzipBuffer> buffers = ThreadLocal.withInitial(GzipBuffer::new);
+
+    public interface BodyWriter {
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
+
+    /**
+     * A compressed request body, the first {@code length} bytes of {@code buffer}.
+     */
+    public record Body(byte[] buffer, int length, long uncompressedLength) {
+    }
+
+    @Inject
+    public BulkRequestCompressor(@Named("elasticsearch_compression_enabled") boolean enabled, MetricRegistry metricRegistry) {
+        this.enabled = enabled;
+        this.compressionCpuTime = metricRegistry.timer(name(BulkRequestCompressor.class, "compressionCpuTime"));
+        this.compressedSizePercent = metricRegistry.histogram(name(BulkRequestCompressor.class, "compressedSizePercent"));
+        this.uncompressedBytes = metricRegistry.meter(name(BulkRequestCompressor.class, "uncompressedBytes"));
+        this.compressedBytes = metricRegistry.meter(name(BulkRequestCompressor.class, "compressedBytes"));
+    }
+
+    /**
+     * @return {@code true} if bulk request bodies should be compressed
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Body compress(BodyWriter bodyWriter) throws IOException {
+        final long start = cpuTime();
+
+        GzipBuffer buffer = buffers.get();
+        if (buffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+            buffer = new GzipBuffer();
+            buffers.set(buffer);
+        }
+        buffer.start();
+        bodyWriter.writeTo(buffer);
+        final Body body = buffer.finish();
+
+        compressionCpuTime.update(cpuTime() - start, TimeUnit.NANOSECONDS);
+        uncompressedBytes.mark(body.uncompressedLength());
+        compressedBytes.mark(body.length());
+        if (body.uncompressedLength() > 0) {
+            compressedSizePercent.update(body.length() * 100L / body.uncompressedLength());
+        }
+        return body;
+    }
+
+    private static long cpuTime() {
+        return THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    /**
+     * Writes the gzip header and trailer around the raw deflate output, so the deflater can be reset and reused.
+     */
+    private static class GzipBuffer extends OutputStream {
+        private final ExposedByteArrayOutputStream output = new ExposedByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final DeflaterOutputStream deflaterStream = new DeflaterOutputStream(output, deflater, 8192);
+        private final CRC32 crc = new CRC32();
+        private long uncompressedLength;
+
+        int capacity() {
+            return output.capacity();
+        }
+
+        void start() {
+            output.reset();
+            output.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+            deflater.reset();
+            crc.reset();
+            uncompressedLength = 0;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            deflaterStream.write(b);
+            crc.update(b);
+            uncompressedLength++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            deflaterStream.write(b, off, len);
+            crc.update(b, off, len);
+            uncompressedLength += len;
+        }
+
+        Body finish() throws IOException {
+            deflaterStream.finish();
+            writeIntLE((int) crc.getValue());
+            writeIntLE((int) uncompressedLength);
+            return new Body(output.buffer(), output.size(), uncompressedLength);
+        }
+
+        private void writeIntLE(int value) {
+            output.write(value & 0xff);
+            output.write((value >> 8) & 0xff);
+            output.write((value >> 16) & 0xff);
+            output.write((value >> 24) & 0xff);
+        }
+    }
+
+    private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+        ExposedByteArrayOutputStream(int size) {
+            super(size);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+}
@@ -16,46 +16,118 @@
  */
 package org.graylog2.indexer.messages;
 
+import com.google.common.annotations.VisibleForTesting;
 import org.graylog2.indexer.ElasticsearchException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.inject.Inject;
+import javax.inject.Singleton;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+@Singleton
 public class ChunkedBulkIndexer {
     private static final Logger LOG = LoggerFactory.getLogger(ChunkedBulkIndexer.class);
 
+    private final AdaptiveBulkController controller;
+    private final Sleeper sleeper;
+
     public interface BulkIndex {
         List<Messages.IndexingError> apply(Chunk chunk) throws ChunkedBulkIndexer.EntityTooLargeException, IOException;
     }
 
+    @VisibleForTesting
+    interface Sleeper {
+        void sleep(long millis) throws InterruptedException;
+    }
+
+    @Inject
+    public ChunkedBulkIndexer(AdaptiveBulkController controller) {
+        this(controller, Thread::sleep);
+    }
+
+    @VisibleForTesting
+    ChunkedBulkIndexer(AdaptiveBulkController controller, Sleeper sleeper) {
+        this.controller = controller;
+        this.sleeper = sleeper;
+    }
+
+    /**
+     * Indexes the messages with one bulk request per chunk. The chunk size and the number of concurrent bulk requests
+     * are limited by the {@link AdaptiveBulkController}, which learns them from rejected and slow requests.
+     */
     public List<Messages.IndexingError> index(List<IndexingRequest> messageList, BulkIndex bulkIndex) throws IOException {
         if (messageList.isEmpty()) {
             return Collections.emptyList();
         }
 
-        int chunkSize = messageList.size();
+        final List<Messages.IndexingError> indexingErrors = new ArrayList<>();
         int offset = 0;
-        for (;;) {
+        while (offset < messageList.size()) {
+            final int chunkSize = nextChunkSize(messageList, offset);
+            final List<IndexingRequest> chunk = messageList.subList(offset, offset + chunkSize);
+
+            controller.acquire();
+            final long start = System.nanoTime();
             try {
-                return bulkIndex.apply(new Chunk(messageList, offset, chunkSize));
+                indexingErrors.addAll(bulkIndex.apply(new Chunk(chunk, 0, chunkSize)));
+                controller.onSuccess(chunkSize, System.nanoTime() - start);
+                offset += chunkSize;
             } catch (EntityTooLargeException e) {
+                offset += e.indexedSuccessfully;
                 if (e instanceof TooManyRequestsException) {
-                    LOG.warn("Bulk index failed with 'Too many requests' error. Retrying by splitting up batch size <{}>.", chunkSize);
+                    controller.onRejected(chunkSize);
+                    final long backoffMillis = controller.rejectionBackoffMillis();
+                    LOG.warn("Bulk index failed with 'Too many requests' error. Retrying in {}ms by splitting up batch size <{}>.",
+                            backoffMillis, chunkSize);
+                    // The cluster is overloaded, a smaller request alone doesn't give it time to recover.
+                    backOff(backoffMillis);
                 } else {
                     LOG.warn("Bulk index failed with 'Request Entity Too Large' error. Retrying by splitting up batch size <{}>.", chunkSize);
+                    controller.onTooLarge(chunkBytes(chunk));
+                    if (chunkSize == 1) {
+                        throw new ElasticsearchException("Bulk index cannot split output batch any further.");
+                    }
                 }
                 if (chunkSize == messageList.size()) {
                     LOG.warn("Consider lowering the \"output_batch_size\" setting. Or resizing your Search cluster");
                 }
-                offset += e.indexedSuccessfully;
-                chunkSize /= 2;
+            } catch (IOException | RuntimeException e) {
+                controller.onFailure();
+                throw e;
             }
-            if (chunkSize == 0) {
-                throw new ElasticsearchException("Bulk index cannot split output batch any further.");
+        }
+        return indexingErrors;
+    }
+
+    private int nextChunkSize(List<IndexingRequest> messageList, int offset) {
+        final int maxChunkSize = Math.min(controller.chunkSizeLimit(), messageList.size() - offset);
+        final long bytesLimit = controller.chunkBytesLimit();
+        long bytes = messageList.get(offset).message().getSize();
+        int chunkSize = 1;
+        while (chunkSize < maxChunkSize) {
+            bytes += messageList.get(offset + chunkSize).message().getSize();
+            if (bytes > bytesLimit) {
+                break;
             }
+            chunkSize++;
+        }
+        return chunkSize;
+    }
+
+    private static long chunkBytes(List<IndexingRequest> chunk) {
+        return chunk.stream().mapToLong(request -> request.message().getSize()).sum();
+    }
+
+    private void backOff(long millis) {
+        try {
+            sleeper.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ElasticsearchException("Interrupted while waiting to retry rejected bulk request.");
         }
     }
 
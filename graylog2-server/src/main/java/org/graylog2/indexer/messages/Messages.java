@@ -31,6 +31,7 @@ import org.graylog.failure.FailureSubmissionService;
 import org.graylog2.indexer.IndexSet;
 import org.graylog2.indexer.InvalidWriteTargetException;
 import org.graylog2.indexer.MasterNotDiscoveredException;
+import org.graylog2.indexer.fieldtypes.ObservedFieldsTracker;
 import org.graylog2.indexer.results.ResultMessage;
 import org.graylog2.plugin.Message;
 import org.graylog2.shared.utilities.ExceptionUtils;
@@ -95,16 +96,19 @@ public class Messages {
     private final MessagesAdapter messagesAdapter;
     private final ProcessingStatusRecorder processingStatusRecorder;
     private final TrafficAccounting trafficAccounting;
+    private final ObservedFieldsTracker observedFieldsTracker;
 
     @Inject
     public Messages(TrafficAccounting trafficAccounting,
                     MessagesAdapter messagesAdapter,
                     ProcessingStatusRecorder processingStatusRecorder,
-                    FailureSubmissionService failureSubmissionService) {
+                    FailureSubmissionService failureSubmissionService,
+                    ObservedFieldsTracker observedFieldsTracker) {
         this.trafficAccounting = trafficAccounting;
         this.messagesAdapter = messagesAdapter;
         this.processingStatusRecorder = processingStatusRecorder;
         this.failureSubmissionService = failureSubmissionService;
+        this.observedFieldsTracker = observedFieldsTracker;
     }
 
     public ResultMessage get(String messageId, String index) throws DocumentNotFoundException, IOException {
@@ -156,6 +160,7 @@ public class Messages {
                 .collect(Collectors.toList());
 
         recordTimestamp(successfulRequests);
+        observedFieldsTracker.record(successfulRequests);
         accountTotalMessageSizes(indexingRequestList, isSystemTraffic);
 
         return propagateFailure(remainingErrors);
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.indexer.rotation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.graylog2.indexer.IndexSet;
+import org.graylog2.indexer.indices.Indices;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The write indices of all index sets and their document count and storage size, taken once per index rotation
+ * cycle with a few bulk requests instead of several requests per index set.
+ * <p>
+ * Only index sets whose write index alias points to exactly one index, which also is the newest index of the set,
+ * are part of the snapshot. Everything else has to be checked (and possibly repaired) with the regular requests.
+ */
+public class IndexRotationSnapshot {
+    // Keeps the request line of the refresh and stats requests well below the default limit of 4kB.
+    private static final int MAX_INDICES_PER_REQUEST = 50;
+
+    private static final IndexRotationSnapshot EMPTY = new IndexRotationSnapshot(ImmutableMap.of(), ImmutableMap.of());
+
+    public record IndexStats(long numberOfMessages, long storeSizeInBytes) {}
+
+    private final Map<String, String> writeIndices;
+    private final Map<String, IndexStats> indexStats;
+
+    @VisibleForTesting
+    public IndexRotationSnapshot(Map<String, String> writeIndices, Map<String, IndexStats> indexStats) {
+        this.writeIndices = ImmutableMap.copyOf(writeIndices);
+        this.indexStats = ImmutableMap.copyOf(indexStats);
+    }
+
+    public static IndexRotationSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Fetches the aliases of all indices and refreshes and fetches the statistics of the write indices of the given
+     * index sets.
+     */
+    public static IndexRotationSnapshot create(Indices indices, Collection<IndexSet> indexSets) {
+        final Map<String, Set<String>> aliasTargets = new HashMap<>();
+        final Map<String, Integer> newestIndexNumbers = new HashMap<>();
+        indices.getIndexNamesAndAliases("*").forEach((index, aliases) -> {
+            aliases.forEach(alias -> aliasTargets.computeIfAbsent(alias, a -> new HashSet<>()).add(index));
+            indexNumber(index).ifPresent(number -> newestIndexNumbers.merge(indexPrefix(index), number, Math::max));
+        });
+
+        final Map<String, String> writeIndices = new HashMap<>();
+        for (IndexSet indexSet : indexSets) {
+            final Set<String> targets = aliasTargets.getOrDefault(indexSet.getWriteIndexAlias(), Set.of());
+            final Integer newestIndexNumber = newestIndexNumbers.get(indexSet.getIndexPrefix());
+            if (targets.size() != 1 || newestIndexNumber == null) {
+                continue;
+            }
+            // Same name as the one built by IndexSet#getNewestIndex()
+            final String newestIndex = indexSet.getIndexPrefix() + "_" + newestIndexNumber;
+            if (targets.contains(newestIndex)) {
+                writeIndices.put(indexSet.getWriteIndexAlias(), newestIndex);
+            }
+        }
+
+        final Map<String, IndexStats> indexStats = new HashMap<>();
+        for (List<String> batch : Lists.partition(List.copyOf(new HashSet<>(writeIndices.values())), MAX_INDICES_PER_REQUEST)) {
+            // Refresh so we have current stats on idle indices
+            indices.refresh(batch.toArray(new String[0]));
+            indices.getIndexStats(batch).fields().forEachRemaining(entry -> {
+                final JsonNode primaries = entry.getValue().path("primaries");
+                final JsonNode count = primaries.path("docs").path("count");
+                final JsonNode sizeInBytes = primaries.path("store").path("size_in_bytes");
+                if (count.isNumber() && sizeInBytes.isNumber()) {
+                    indexStats.put(entry.getKey(), new IndexStats(count.asLong(), sizeInBytes.asLong()));
+                }
+            });
+        }
+
+        return new IndexRotationSnapshot(writeIndices, indexStats);
+    }
+
+    private static String indexPrefix(String index) {
+        return index.substring(0, index.lastIndexOf('_'));
+    }
+
+    private static Optional<Integer> indexNumber(String index) {
+        final int separator = index.lastIndexOf('_');
+        final String suffix = index.substring(separator + 1);
+        if (separator < 0 || suffix.isEmpty() || suffix.length() > 9 || !suffix.chars().allMatch(c -> c >= '0' && c <= '9')) {
+            return Optional.empty();
+        }
+        return Optional.of(Integer.parseInt(suffix));
+    }
+
+    /**
+     * Returns the index the write index alias of the given index set points to, if it also is the newest index of
+     * the index set.
+     */
+    public Optional<String> writeIndex(IndexSet indexSet) {
+        return Optional.ofNullable(writeIndices.get(indexSet.getWriteIndexAlias()));
+    }
+
+    /**
+     * Returns the statistics of the given index, if it has been refreshed and fetched for this snapshot.
+     */
+    public Optional<IndexStats> indexStats(String index) {
+        return Optional.ofNullable(indexStats.get(index));
+    }
+
+    public int size() {
+        return writeIndices.size();
+    }
+}
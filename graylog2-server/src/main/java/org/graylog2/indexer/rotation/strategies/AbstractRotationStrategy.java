@@ -23,12 +23,14 @@ import org.graylog2.configuration.ElasticsearchConfiguration;
 import org.graylog2.indexer.IndexSet;
 import org.graylog2.indexer.NoTargetIndexException;
 import org.graylog2.indexer.indices.Indices;
+import org.graylog2.indexer.rotation.IndexRotationSnapshot;
 import org.graylog2.plugin.indexer.rotation.RotationStrategy;
 import org.graylog2.plugin.system.NodeId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.util.Optional;
 
 import static java.util.Objects.requireNonNull;
 import static org.graylog2.audit.AuditEventTypes.ES_INDEX_ROTATION_COMPLETE;
@@ -58,23 +60,39 @@ public abstract class AbstractRotationStrategy implements RotationStrategy {
     @Nullable
     protected abstract Result shouldRotate(String indexName, IndexSet indexSet);
 
+    /**
+     * Like {@link #shouldRotate(String, IndexSet)}, but may use the statistics of the given snapshot instead of
+     * requesting them. The snapshot doesn't necessarily contain the index.
+     */
+    @Nullable
+    protected Result shouldRotate(String indexName, IndexSet indexSet, IndexRotationSnapshot snapshot) {
+        return shouldRotate(indexName, indexSet);
+    }
+
     @Override
     public void rotate(IndexSet indexSet) {
+        rotate(indexSet, IndexRotationSnapshot.empty());
+    }
+
+    public void rotate(IndexSet indexSet, IndexRotationSnapshot snapshot) {
         requireNonNull(indexSet, "indexSet must not be null");
         final String indexSetTitle = requireNonNull(indexSet.getConfig(), "Index set configuration must not be null").title();
         final String strategyName = this.getClass().getCanonicalName();
         final String indexName;
         try {
-            indexName = indexSet.getNewestIndex();
+            final Optional<String> writeIndex = snapshot.writeIndex(indexSet);
+            indexName = writeIndex.isPresent() ? writeIndex.get() : indexSet.getNewestIndex();
         } catch (NoTargetIndexException e) {
             LOG.error("Could not find current deflector target of index set <{}>. Aborting.", indexSetTitle, e);
             return;
         }
 
-        // Refresh so we have current stats on idle indices
-        indices.refresh(indexName);
+        // Refresh so we have current stats on idle indices, the snapshot has been taken after a refresh
+        if (snapshot.indexStats(indexName).isEmpty()) {
+            indices.refresh(indexName);
+        }
 
-        final Result rotate = shouldRotate(indexName, indexSet);
+        final Result rotate = shouldRotate(indexName, indexSet, snapshot);
         if (rotate == null) {
             LOG.error("Cannot perform rotation of index <{}> in index set <{}> with strategy <{}> at this moment", indexName, indexSetTitle, strategyName);
             return;
@@ -21,6 +21,7 @@ import org.graylog2.configuration.ElasticsearchConfiguration;
 import org.graylog2.indexer.IndexNotFoundException;
 import org.graylog2.indexer.IndexSet;
 import org.graylog2.indexer.indices.Indices;
+import org.graylog2.indexer.rotation.IndexRotationSnapshot;
 import org.graylog2.plugin.indexer.rotation.RotationStrategyConfig;
 import org.graylog2.plugin.system.NodeId;
 import org.slf4j.Logger;
@@ -55,6 +56,12 @@ public class MessageCountRotationStrategy extends AbstractRotationStrategy {
     @Nullable
     @Override
     protected Result shouldRotate(String index, IndexSet indexSet) {
+        return shouldRotate(index, indexSet, IndexRotationSnapshot.empty());
+    }
+
+    @Nullable
+    @Override
+    protected Result shouldRotate(String index, IndexSet indexSet, IndexRotationSnapshot snapshot) {
         if (!(indexSet.getConfig().rotationStrategy() instanceof MessageCountRotationStrategyConfig)) {
             throw new IllegalStateException("Invalid rotation strategy config <" + indexSet.getConfig().rotationStrategy().getClass().getCanonicalName() + "> for index set <" + indexSet.getConfig().id() + ">");
         }
@@ -62,7 +69,9 @@ public class MessageCountRotationStrategy extends AbstractRotationStrategy {
         final MessageCountRotationStrategyConfig config = (MessageCountRotationStrategyConfig) indexSet.getConfig().rotationStrategy();
 
         try {
-            final long numberOfMessages = indices.numberOfMessages(index);
+            final long numberOfMessages = snapshot.indexStats(index)
+                    .map(IndexRotationSnapshot.IndexStats::numberOfMessages)
+                    .orElseGet(() -> indices.numberOfMessages(index));
 
             final boolean shouldRotate = numberOfMessages > config.maxDocsPerIndex();
             final MessageFormat format = shouldRotate ?
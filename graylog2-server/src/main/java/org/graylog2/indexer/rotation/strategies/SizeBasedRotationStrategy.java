@@ -20,6 +20,7 @@ import org.graylog2.audit.AuditEventSender;
 import org.graylog2.configuration.ElasticsearchConfiguration;
 import org.graylog2.indexer.IndexSet;
 import org.graylog2.indexer.indices.Indices;
+import org.graylog2.indexer.rotation.IndexRotationSnapshot;
 import org.graylog2.plugin.indexer.rotation.RotationStrategyConfig;
 import org.graylog2.plugin.system.NodeId;
 
@@ -53,13 +54,21 @@ public class SizeBasedRotationStrategy extends AbstractRotationStrategy {
     @Nullable
     @Override
     protected Result shouldRotate(final String index, IndexSet indexSet) {
+        return shouldRotate(index, indexSet, IndexRotationSnapshot.empty());
+    }
+
+    @Nullable
+    @Override
+    protected Result shouldRotate(final String index, IndexSet indexSet, IndexRotationSnapshot snapshot) {
         if (!(indexSet.getConfig().rotationStrategy() instanceof SizeBasedRotationStrategyConfig)) {
             throw new IllegalStateException("Invalid rotation strategy config <" + indexSet.getConfig().rotationStrategy().getClass().getCanonicalName() + "> for index set <" + indexSet.getConfig().id() + ">");
         }
 
         final SizeBasedRotationStrategyConfig config = (SizeBasedRotationStrategyConfig) indexSet.getConfig().rotationStrategy();
 
-        final Optional<Long> storeSizeInBytes = indices.getStoreSizeInBytes(index);
+        final Optional<Long> storeSizeInBytes = snapshot.indexStats(index)
+                .map(IndexRotationSnapshot.IndexStats::storeSizeInBytes)
+                .or(() -> indices.getStoreSizeInBytes(index));
         if (!storeSizeInBytes.isPresent()) {
             return null;
         }
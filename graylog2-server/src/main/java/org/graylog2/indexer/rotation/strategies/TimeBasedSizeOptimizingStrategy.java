@@ -22,6 +22,7 @@ import org.graylog2.audit.AuditEventSender;
 import org.graylog2.configuration.ElasticsearchConfiguration;
 import org.graylog2.indexer.IndexSet;
 import org.graylog2.indexer.indices.Indices;
+import org.graylog2.indexer.rotation.IndexRotationSnapshot;
 import org.graylog2.indexer.retention.strategies.NoopRetentionStrategyConfig;
 import org.graylog2.plugin.indexer.rotation.RotationStrategyConfig;
 import org.graylog2.plugin.system.NodeId;
@@ -34,6 +35,7 @@ import javax.annotation.Nonnull;
 import javax.inject.Inject;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Optional;
 
 import static org.graylog2.shared.utilities.StringUtils.f;
 import static org.graylog2.shared.utilities.StringUtils.humanReadableByteCount;
@@ -77,14 +79,25 @@ public class TimeBasedSizeOptimizingStrategy extends AbstractRotationStrategy {
     @Override
     @Nonnull
     protected Result shouldRotate(final String index, IndexSet indexSet) {
+        return shouldRotate(index, indexSet, IndexRotationSnapshot.empty());
+    }
+
+    @Override
+    @Nonnull
+    protected Result shouldRotate(final String index, IndexSet indexSet, IndexRotationSnapshot snapshot) {
+        final Optional<IndexRotationSnapshot.IndexStats> indexStats = snapshot.indexStats(index);
         final DateTime creationDate = indices.indexCreationDate(index).orElseThrow(()-> new IllegalStateException("No index creation date"));
-        final Long sizeInBytes = indices.getStoreSizeInBytes(index).orElseThrow(() -> new IllegalStateException("No index size"));
+        final Long sizeInBytes = indexStats.map(IndexRotationSnapshot.IndexStats::storeSizeInBytes)
+                .or(() -> indices.getStoreSizeInBytes(index))
+                .orElseThrow(() -> new IllegalStateException("No index size"));
 
         if (!(indexSet.getConfig().rotationStrategy() instanceof TimeBasedSizeOptimizingStrategyConfig config)) {
             throw new IllegalStateException(f("Unsupported RotationStrategyConfig type <%s>", indexSet.getConfig().rotationStrategy()));
         }
 
-        if (indices.numberOfMessages(index) == 0) {
+        final long numberOfMessages = indexStats.map(IndexRotationSnapshot.IndexStats::numberOfMessages)
+                .orElseGet(() -> indices.numberOfMessages(index));
+        if (numberOfMessages == 0) {
             return createResult(false, "Index is empty");
         }
 
@@ -22,9 +22,9 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.Maps;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import org.graylog2.inputs.codecs.gelf.GELFMessage;
-import org.graylog2.inputs.codecs.gelf.GELFMessageChunk;
 import org.graylog2.plugin.Tools;
 import org.graylog2.plugin.inputs.codecs.CodecAggregator;
 import org.slf4j.Logger;
@@ -34,10 +34,13 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -45,7 +48,23 @@ import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import static com.codahale.metrics.MetricRegistry.name;
 import static java.util.Objects.requireNonNull;
-
+import static org.graylog2.inputs.codecs.gelf.GELFMessageChunk.HEADER_PART_HASH_LENGTH;
+import static org.graylog2.inputs.codecs.gelf.GELFMessageChunk.HEADER_PART_HASH_START;
+import static org.graylog2.inputs.codecs.gelf.GELFMessageChunk.HEADER_PART_SEQCNT_START;
+import static org.graylog2.inputs.codecs.gelf.GELFMessageChunk.HEADER_PART_SEQNUM_START;
+import static org.graylog2.inputs.codecs.gelf.GELFMessageChunk.HEADER_TOTAL_LENGTH;
+
+/**
+ * Reassembles chunked GELF messages.
+ * <p>
+ * The payload of every chunk is copied into a buffer of its exact size and kept in a slot array which is allocated
+ * for each message id when its first chunk arrives. Complete messages are returned as a composite buffer of these
+ * payloads. Keeping a slice instead would keep the whole receive buffer of the datagram alive while waiting for the
+ * other chunks.
+ * <p>
+ * Incomplete messages are expired with a hashed timing wheel: every waiting message is added to the wheel slot of the
+ * second its first chunk arrived in, and the eviction task only has to look at the slots which are old enough.
+ */
 public class GelfChunkAggregator implements CodecAggregator {
     private static final Logger log = LoggerFactory.getLogger(GelfChunkAggregator.class);
 
@@ -55,6 +74,12 @@ public class GelfChunkAggregator implements CodecAggregator {
     public static final int VALIDITY_PERIOD = 5000; // millis
     private static final long CHECK_PERIOD = 1000;
 
+    // One slot per check period, the wheel has to be larger than the validity period to not mix up expired and
+    // current entries in the same slot.
+    private static final long TICK_DURATION = CHECK_PERIOD;
+    private static final long VALIDITY_TICKS = VALIDITY_PERIOD / TICK_DURATION;
+    private static final int WHEEL_SIZE = 8;
+
     public static final String CHUNK_COUNTER = name(GelfChunkAggregator.class, "total-chunks");
     public static final String WAITING_MESSAGES = name(GelfChunkAggregator.class, "waiting-messages");
     public static final String COMPLETE_MESSAGES = name(GelfChunkAggregator.class, "complete-messages");
@@ -63,7 +88,7 @@ public class GelfChunkAggregator implements CodecAggregator {
     public static final String DUPLICATE_CHUNKS = name(GelfChunkAggregator.class, "duplicate-chunks");
 
     private final ConcurrentMap<String, ChunkEntry> chunks = Maps.newConcurrentMap();
-    private final ConcurrentSkipListSet<ChunkEntry> sortedEvictionSet = new ConcurrentSkipListSet<>();
+    private final List<Set<ChunkEntry>> timingWheel = new ArrayList<>(WHEEL_SIZE);
     private final Counter chunkCounter;
     private final Counter waitingMessages;
     private final Counter expiredMessages;
@@ -73,9 +98,12 @@ public class GelfChunkAggregator implements CodecAggregator {
 
     @Inject
     public GelfChunkAggregator(@Named("daemonScheduler") ScheduledExecutorService scheduler, MetricRegistry metricRegistry) {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            timingWheel.add(ConcurrentHashMap.newKeySet());
+        }
         scheduler.scheduleAtFixedRate(new ChunkEvictionTask(), VALIDITY_PERIOD, CHECK_PERIOD, TimeUnit.MILLISECONDS);
         chunkCounter = metricRegistry.counter(CHUNK_COUNTER);
-        // this is a counter instead of a Gauge, because calling sortedEvictionSet.size() is expensive
+        // this is a counter instead of a Gauge, because counting the entries in the timing wheel is expensive
         waitingMessages = metricRegistry.counter(WAITING_MESSAGES);
         completeMessages = metricRegistry.counter(COMPLETE_MESSAGES);
         expiredMessages = metricRegistry.counter(EXPIRED_MESSAGES);
@@ -86,36 +114,42 @@ public class GelfChunkAggregator implements CodecAggregator {
     @Nonnull
     @Override
     public Result addChunk(ByteBuf buffer) {
+        if (isChunked(buffer)) {
+            final ByteBuf aggregatedBuffer;
+            try {
+                chunkCounter.inc();
+                aggregatedBuffer = checkForCompletion(buffer);
+                if (aggregatedBuffer == null) {
+                    return VALID_EMPTY_RESULT;
+                }
+            } catch (IllegalArgumentException | IllegalStateException | IndexOutOfBoundsException e) {
+                log.debug("Invalid gelf message chunk, dropping message.", e);
+                return INVALID_RESULT;
+            }
+            return new Result(aggregatedBuffer, true);
+        }
+
         final byte[] readable = new byte[buffer.readableBytes()];
         buffer.readBytes(readable, buffer.readerIndex(), buffer.readableBytes());
 
         final GELFMessage msg = new GELFMessage(readable);
 
-        final ByteBuf aggregatedBuffer;
         switch (msg.getGELFType()) {
-            case CHUNKED:
-                try {
-                    chunkCounter.inc();
-                    aggregatedBuffer = checkForCompletion(msg);
-                    if (aggregatedBuffer == null) {
-                        return VALID_EMPTY_RESULT;
-                    }
-                } catch (IllegalArgumentException | IllegalStateException | IndexOutOfBoundsException e) {
-                    log.debug("Invalid gelf message chunk, dropping message.", e);
-                    return INVALID_RESULT;
-                }
-                break;
             case ZLIB:
             case GZIP:
             case UNCOMPRESSED:
-                aggregatedBuffer = Unpooled.wrappedBuffer(readable);
-                break;
+                return new Result(Unpooled.wrappedBuffer(readable), true);
             case UNSUPPORTED:
                 return INVALID_RESULT;
             default:
                 return INVALID_RESULT;
         }
-        return new Result(aggregatedBuffer, true);
+    }
+
+    private static boolean isChunked(ByteBuf buffer) {
+        return buffer.readableBytes() >= 2
+                && buffer.getByte(buffer.readerIndex()) == GELFMessage.Type.CHUNKED.first()
+                && buffer.getByte(buffer.readerIndex() + 1) == GELFMessage.Type.CHUNKED.second();
     }
 
     /**
@@ -123,34 +157,49 @@ public class GelfChunkAggregator implements CodecAggregator {
      * If the message isn't complete, it adds the chunk to the internal buffer and waits for more incoming messages.
      * Outdated chunks are being purged regularly.
      *
-     * @param gelfMessage the gelf message chunk
-     * @return null or a {@link org.graylog2.plugin.journal.RawMessage raw message} object
+     * @param buffer the gelf message chunk
+     * @return null or the payload of the complete message
      */
     @Nullable
-    private ByteBuf checkForCompletion(GELFMessage gelfMessage) {
+    private ByteBuf checkForCompletion(ByteBuf buffer) {
         if (!chunks.isEmpty() && log.isDebugEnabled()) {
             log.debug("Dumping GELF chunk map [chunks for {} messages]:\n{}", chunks.size(), humanReadableChunkMap());
         }
-        final GELFMessageChunk chunk = new GELFMessageChunk(gelfMessage, null); // TODO second parameter
-        final int sequenceCount = chunk.getSequenceCount();
-
-        final String messageId = chunk.getId();
+        final int start = buffer.readerIndex();
+        final int length = buffer.readableBytes();
+        if (length < HEADER_TOTAL_LENGTH) {
+            throw new IllegalArgumentException("This GELF message chunk is too short. Cannot even contain the required header.");
+        }
+        final String messageId = ByteBufUtil.hexDump(buffer, start + HEADER_PART_HASH_START, HEADER_PART_HASH_LENGTH);
+        final int sequenceNumber = buffer.getUnsignedByte(start + HEADER_PART_SEQNUM_START);
+        final int sequenceCount = buffer.getUnsignedByte(start + HEADER_PART_SEQCNT_START);
+        final long arrival = Tools.nowUTC().getMillis();
 
-        ChunkEntry entry = new ChunkEntry(sequenceCount, chunk.getArrival(), messageId);
+        ChunkEntry entry = new ChunkEntry(sequenceCount, arrival, messageId);
 
         final ChunkEntry existing = chunks.putIfAbsent(messageId, entry);
         if (existing == null) {
-            // add this chunk entry to the eviction set
+            // add this chunk entry to the timing wheel
             waitingMessages.inc();
-            sortedEvictionSet.add(entry);
+            wheelSlot(entry.firstTimestamp).add(entry);
         } else {
-            // the entry is already in the eviction set and chunk map
+            // the entry is already in the timing wheel and chunk map
             entry = existing;
         }
 
-        final int sequenceNumber = chunk.getSequenceNumber();
-        if (!entry.payloadArray.compareAndSet(sequenceNumber, null, chunk)) {
-            log.error("Received duplicate chunk {} for message {} from {}", sequenceNumber, messageId, gelfMessage.getSourceAddress());
+        if (sequenceNumber >= entry.payloadArray.length()) {
+            throw new IndexOutOfBoundsException("Chunk " + sequenceNumber + " of message " + messageId
+                    + " exceeds the sequence count " + entry.payloadArray.length());
+        }
+
+        final ByteBuf data = buffer.copy(start + HEADER_TOTAL_LENGTH, length - HEADER_TOTAL_LENGTH);
+        if (!entry.payloadArray.compareAndSet(sequenceNumber, null, data)) {
+            data.release();
+            if (entry.payloadArray.get(sequenceNumber) == ChunkEntry.RELEASED) {
+                // the message has been completed or expired concurrently
+                return null;
+            }
+            log.error("Received duplicate chunk {} for message {}", sequenceNumber, messageId);
             duplicateChunks.inc();
             return null;
         }
@@ -158,54 +207,60 @@ public class GelfChunkAggregator implements CodecAggregator {
         final int chunkWatermark = entry.chunkSlotsWritten.incrementAndGet();
 
         if (chunkWatermark > MAX_CHUNKS) {
-            getAndCleanupEntry(messageId);
+            if (removeEntry(entry)) {
+                entry.releaseChunks();
+            }
             throw new IllegalStateException("Maximum number of chunks reached, discarding message");
         }
 
-        if (chunkWatermark == sequenceCount) {
+        if (chunkWatermark == entry.payloadArray.length()) {
             // message is complete by chunk count, assemble and return it.
             // it might still be corrupt etc, but we've seen enough chunks
-            // remove before operating on it, to avoid racing too much with the clean up job, some race is inevitable, though.
-            entry = getAndCleanupEntry(messageId);
-
-            final byte[] allChunks[] = new byte[sequenceCount][];
-            for (int i = 0; i < entry.payloadArray.length(); i++) {
-                final GELFMessageChunk messageChunk = entry.payloadArray.get(i);
-                if (messageChunk == null) {
-                    log.debug("Couldn't read chunk {} of message {}, skipping this chunk.", i, messageId);
-                } else {
-                    allChunks[i] = messageChunk.getData();
-                }
+            // only the thread removing the entry may assemble it, it might have been expired concurrently.
+            if (!removeEntry(entry)) {
+                return null;
             }
             completeMessages.inc();
-            return Unpooled.wrappedBuffer(allChunks);
+            return entry.assemble();
         }
 
         // message isn't complete yet, check if we should remove the other parts as well
         if (isOutdated(entry)) {
             // chunks are outdated, the oldest came in over 5 seconds ago, clean them all up
             log.debug("Not all chunks of <{}> arrived within {}ms. Dropping chunks.", messageId, VALIDITY_PERIOD);
-            expireEntry(messageId);
+            expireEntry(entry);
         }
 
         return null;
     }
 
-    private void expireEntry(String messageId) {
-        final ChunkEntry cleanupEntry = getAndCleanupEntry(messageId);
-        expiredMessages.inc();
-        expiredChunks.inc(cleanupEntry.chunkSlotsWritten.get());
+    private void expireEntry(ChunkEntry entry) {
+        if (removeEntry(entry)) {
+            entry.releaseChunks();
+            expiredMessages.inc();
+            expiredChunks.inc(entry.chunkSlotsWritten.get());
+        }
     }
 
     private boolean isOutdated(ChunkEntry entry) {
         return (Tools.nowUTC().getMillis() - entry.firstTimestamp) > VALIDITY_PERIOD;
     }
 
-    private ChunkEntry getAndCleanupEntry(String id) {
-        final ChunkEntry entry = chunks.remove(id);
-        sortedEvictionSet.remove(entry);
+    /**
+     * Removes the entry from the chunk map and the timing wheel. Only the caller which successfully removed an entry
+     * may release or assemble its chunks.
+     */
+    private boolean removeEntry(ChunkEntry entry) {
+        if (!chunks.remove(entry.id, entry)) {
+            return false;
+        }
+        wheelSlot(entry.firstTimestamp).remove(entry);
         waitingMessages.dec();
-        return entry;
+        return true;
+    }
+
+    private Set<ChunkEntry> wheelSlot(long timestamp) {
+        return timingWheel.get(Math.floorMod(timestamp / TICK_DURATION, WHEEL_SIZE));
     }
 
     private String humanReadableChunkMap() {
@@ -215,8 +270,8 @@ public class GelfChunkAggregator implements CodecAggregator {
             sb.append("Message <").append(entry.getKey()).append("> ");
             sb.append("\tChunks:\n");
             for (int i = 0; i < entry.getValue().payloadArray.length(); i++) {
-                final GELFMessageChunk chunk = entry.getValue().payloadArray.get(i);
-                sb.append("\t\t").append(chunk == null ? "<not arrived yet>" : chunk).append("\n");
+                final ByteBuf chunk = entry.getValue().payloadArray.get(i);
+                sb.append("\t\t").append(chunk == null ? "<not arrived yet>" : "Data size: " + chunk.readableBytes()).append("\n");
             }
         }
 
@@ -225,9 +280,12 @@ public class GelfChunkAggregator implements CodecAggregator {
 
     @VisibleForTesting
     static class ChunkEntry implements Comparable<ChunkEntry> {
+        // Marks the slots of a completed or expired message, chunks arriving afterwards are released immediately.
+        private static final ByteBuf RELEASED = Unpooled.unreleasableBuffer(Unpooled.EMPTY_BUFFER);
+
         protected final AtomicInteger chunkSlotsWritten = new AtomicInteger(0);
         protected final long firstTimestamp;
-        protected final AtomicReferenceArray<GELFMessageChunk> payloadArray;
+        protected final AtomicReferenceArray<ByteBuf> payloadArray;
         protected final String id;
 
         public ChunkEntry(int chunkCount, long firstTimestamp, String id) {
@@ -236,6 +294,26 @@ public class GelfChunkAggregator implements CodecAggregator {
             this.id = requireNonNull(id);
         }
 
+        /**
+         * Returns the chunks as a single composite buffer. All slots must have been written.
+         */
+        ByteBuf assemble() {
+            final ByteBuf[] allChunks = new ByteBuf[payloadArray.length()];
+            for (int i = 0; i < allChunks.length; i++) {
+                allChunks[i] = payloadArray.getAndSet(i, RELEASED);
+            }
+            return Unpooled.wrappedBuffer(allChunks);
+        }
+
+        void releaseChunks() {
+            for (int i = 0; i < payloadArray.length(); i++) {
+                final ByteBuf chunk = payloadArray.getAndSet(i, RELEASED);
+                if (chunk != null && chunk != RELEASED) {
+                    chunk.release();
+                }
+            }
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
@@ -281,24 +359,27 @@ public class GelfChunkAggregator implements CodecAggregator {
 
     @VisibleForTesting
     class ChunkEvictionTask implements Runnable {
+        private long lastExpiredTick = Long.MIN_VALUE;
+
         @Override
         public void run() {
             try {
-                // loop until we've either evicted all outdated chunk entries, or the set is completely empty.
-                // this task will run every second by default (see constant in constructor)
-                while (true) {
-                    // Check if eviction set is empty to avoid a NoElementException when calling first().
-                    if (sortedEvictionSet.isEmpty()) {
-                        break;
-                    }
-                    final ChunkEntry oldestChunkEntry = sortedEvictionSet.first();
-                    if (isOutdated(oldestChunkEntry)) {
-                        expireEntry(oldestChunkEntry.id);
-                    } else {
-                        log.debug("No more outdated chunk entries found to evict, leaving cleanup loop.");
-                        break;
+                // all entries in the slots up to this tick arrived more than VALIDITY_PERIOD ago
+                final long expiredTick = Tools.nowUTC().getMillis() / TICK_DURATION - VALIDITY_TICKS - 1;
+                // after a pause or a clock change look at the whole wheel, otherwise only at the newly expired slots
+                final long firstTick = lastExpiredTick >= expiredTick || lastExpiredTick < expiredTick - WHEEL_SIZE
+                        ? expiredTick - WHEEL_SIZE + 1
+                        : lastExpiredTick + 1;
+
+                for (long tick = firstTick; tick <= expiredTick; tick++) {
+                    for (final ChunkEntry entry : timingWheel.get(Math.floorMod(tick, WHEEL_SIZE))) {
+                        // a slot might also contain entries of a later round of the wheel
+                        if (isOutdated(entry)) {
+                            expireEntry(entry);
+                        }
                     }
                 }
+                lastExpiredTick = expiredTick;
             } catch (Exception e) {
                 // Make sure to never throw an exception out of this runnable, it's being run in an executor.
                 log.warn("Error while expiring GELF chunk entries", e);
@@ -0,0 +1,489 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.inputs.codecs;
+
+import com.google.common.collect.ImmutableSet;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.Tools;
+import org.joda.time.Chronology;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.IllegalFieldValueException;
+import org.joda.time.chrono.ISOChronology;
+
+import javax.annotation.Nullable;
+import java.net.InetAddress;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parses syslog messages directly from the raw payload without building syslog4j events first.
+ * <p>
+ * Supports RFC 5424, RFC 3164 with BSD or ISO 8601 timestamps and Cisco messages with sequence numbers. The parser
+ * is strict: everything it can't parse exactly like syslog4j (unusual date formats, escaped structured data, ...)
+ * makes {@link #parse(byte[], InetAddress)} return {@code null}, so the caller can fall back to syslog4j.
+ */
+final class NativeSyslogParser {
+    private static final Set<Charset> SUPPORTED_CHARSETS = ImmutableSet.of(StandardCharsets.UTF_8, StandardCharsets.US_ASCII, StandardCharsets.ISO_8859_1);
+    private static final Chronology UTC_CHRONOLOGY = ISOChronology.getInstanceUTC();
+    private static final byte[][] MONTHS = {
+            "Jan".getBytes(StandardCharsets.US_ASCII), "Feb".getBytes(StandardCharsets.US_ASCII), "Mar".getBytes(StandardCharsets.US_ASCII),
+            "Apr".getBytes(StandardCharsets.US_ASCII), "May".getBytes(StandardCharsets.US_ASCII), "Jun".getBytes(StandardCharsets.US_ASCII),
+            "Jul".getBytes(StandardCharsets.US_ASCII), "Aug".getBytes(StandardCharsets.US_ASCII), "Sep".getBytes(StandardCharsets.US_ASCII),
+            "Oct".getBytes(StandardCharsets.US_ASCII), "Nov".getBytes(StandardCharsets.US_ASCII), "Dec".getBytes(StandardCharsets.US_ASCII)
+    };
+    private static final int MAX_PRIORITY = 191;
+    private static final long INVALID = Long.MIN_VALUE;
+    private static final String NIL = "-";
+
+    interface SourceResolver {
+        String resolve(@Nullable String parsedHost, @Nullable InetAddress remoteAddress);
+    }
+
+    private final Charset charset;
+    @Nullable
+    private final DateTimeZone defaultTimeZone;
+    private final boolean expandStructuredData;
+    private final boolean storeFullMessage;
+    private final SourceResolver sourceResolver;
+
+    NativeSyslogParser(Charset charset,
+                       @Nullable DateTimeZone defaultTimeZone,
+                       boolean expandStructuredData,
+                       boolean storeFullMessage,
+                       SourceResolver sourceResolver) {
+        this.charset = charset;
+        this.defaultTimeZone = defaultTimeZone;
+        this.expandStructuredData = expandStructuredData;
+        this.storeFullMessage = storeFullMessage;
+        this.sourceResolver = sourceResolver;
+    }
+
+    /**
+     * The parser looks for ASCII delimiters in the raw bytes, which only works for ASCII compatible charsets.
+     */
+    static boolean supports(Charset charset) {
+        return SUPPORTED_CHARSETS.contains(charset);
+    }
+
+    @Nullable
+    Message parse(byte[] payload, @Nullable InetAddress remoteAddress) {
+        final int length = payload.length;
+        // syslog4j trims some of the fields, so we leave messages with surrounding whitespace to it.
+        if (length < 4 || payload[0] != '<' || (payload[length - 1] & 0xFF) <= ' ') {
+            return null;
+        }
+
+        int pos = 1;
+        int priority = 0;
+        while (pos < length && pos < 4 && isDigit(payload[pos])) {
+            priority = priority * 10 + (payload[pos++] - '0');
+        }
+        if (pos == 1 || pos >= length || payload[pos] != '>' || priority > MAX_PRIORITY) {
+            return null;
+        }
+        pos++;
+
+        // Same format detection as in SyslogCodec, see the patterns over there.
+        int digitsEnd = pos;
+        while (digitsEnd < length && isDigit(payload[digitsEnd])) {
+            digitsEnd++;
+        }
+        final int digits = digitsEnd - pos;
+        if (digits >= 1 && digits <= 3 && digitsEnd < length && isWhitespace(payload[digitsEnd])) {
+            return parseRfc5424(payload, digitsEnd, priority, remoteAddress);
+        }
+        if (digitsEnd + 1 < length && payload[digitsEnd] == ':' && isWhitespace(payload[digitsEnd + 1])) {
+            return parseCisco(payload, pos, digitsEnd, priority, remoteAddress);
+        }
+        if (startsWith(payload, pos, "date=")) {
+            // FortiGate
+            return null;
+        }
+        return parseRfc3164(payload, pos, priority, remoteAddress);
+    }
+
+    @Nullable
+    private Message parseRfc5424(byte[] payload, int versionEnd, int priority, @Nullable InetAddress remoteAddress) {
+        final int length = payload.length;
+        if (payload[versionEnd] != ' ') {
+            return null;
+        }
+        final int timestampStart = versionEnd + 1;
+        final int timestampEnd = tokenEnd(payload, timestampStart);
+        final int hostEnd = tokenEnd(payload, timestampEnd + 1);
+        final int appEnd = tokenEnd(payload, hostEnd + 1);
+        final int procIdEnd = tokenEnd(payload, appEnd + 1);
+        final int msgIdEnd = tokenEnd(payload, procIdEnd + 1);
+        if (msgIdEnd < 0 || msgIdEnd >= length) {
+            return null;
+        }
+        final long timestamp = parseIsoTimestamp(payload, timestampStart, timestampEnd);
+        if (timestamp == INVALID) {
+            return null;
+        }
+        final String host = string(payload, timestampEnd + 1, hostEnd);
+        if (NIL.equals(host)) {
+            return null;
+        }
+        final String applicationName = string(payload, hostEnd + 1, appEnd);
+        final String processId = string(payload, appEnd + 1, procIdEnd);
+        final int msgIdStart = procIdEnd + 1;
+        final boolean nilMsgId = msgIdEnd - msgIdStart == 1 && payload[msgIdStart] == '-';
+
+        final Map<String, Object> fields = new HashMap<>();
+        final int sdStart = msgIdEnd + 1;
+        final int messageStart;
+        if (payload[sdStart] == '-' && (sdStart + 1 == length || payload[sdStart + 1] == ' ')) {
+            if (contains(payload, sdStart, length, '[')) {
+                return null;
+            }
+            // Without structured data, syslog4j only strips the message ID if it is empty.
+            messageStart = nilMsgId ? skipSpaces(payload, sdStart + 1) : msgIdStart;
+        } else if (payload[sdStart] == '[') {
+            final int sdEnd = parseStructuredData(payload, sdStart, fields);
+            if (sdEnd < 0) {
+                return null;
+            }
+            final int textStart = skipSpaces(payload, sdEnd);
+            if (sdEnd < length && payload[sdEnd] != ' ' || contains(payload, textStart, length, '[') || contains(payload, textStart, length, ']')) {
+                return null;
+            }
+            // An empty message is replaced with everything after the process ID, like in SyslogCodec.
+            messageStart = textStart < length ? textStart : msgIdStart;
+        } else {
+            return null;
+        }
+        if (messageStart >= length) {
+            return null;
+        }
+
+        if (!NIL.equals(applicationName)) {
+            fields.put("application_name", applicationName);
+        }
+        if (!NIL.equals(processId)) {
+            fields.put("process_id", processId);
+        }
+
+        final Message message = createMessage(payload, messageStart, sourceResolver.resolve(host, remoteAddress), timestamp, priority);
+        addFullMessage(message, payload);
+        message.addFields(fields);
+        return message;
+    }
+
+    /**
+     * Parses all structured data elements starting at the given position into the fields.
+     *
+     * @return the position after the last element or -1 if the structured data can't be parsed
+     */
+    private int parseStructuredData(byte[] payload, int start, Map<String, Object> fields) {
+        final int length = payload.length;
+        int pos = start;
+        while (pos < length && payload[pos] == '[') {
+            final int idStart = pos + 1;
+            pos = idStart;
+            while (pos < length && payload[pos] != ' ' && payload[pos] != ']' && payload[pos] != '=' && payload[pos] != '"') {
+                pos++;
+            }
+            if (pos == idStart || pos >= length) {
+                return -1;
+            }
+            final String prefix = expandStructuredData ? string(payload, idStart, pos) + "_" : "";
+            while (pos < length && payload[pos] == ' ') {
+                final int nameStart = pos + 1;
+                pos = nameStart;
+                while (pos < length && payload[pos] != '=' && payload[pos] != ' ' && payload[pos] != ']' && payload[pos] != '"') {
+                    pos++;
+                }
+                if (pos == nameStart || pos + 1 >= length || payload[pos] != '=' || payload[pos + 1] != '"') {
+                    return -1;
+                }
+                final int nameEnd = pos;
+                final int valueStart = pos + 2;
+                pos = valueStart;
+                while (pos < length && payload[pos] != '"') {
+                    if (payload[pos] == '\\' || payload[pos] == ']') {
+                        return -1;
+                    }
+                    pos++;
+                }
+                if (pos >= length) {
+                    return -1;
+                }
+                // syslog4j collects the elements in maps, duplicate names would depend on the iteration order.
+                if (fields.put(prefix + string(payload, nameStart, nameEnd), string(payload, valueStart, pos)) != null) {
+                    return -1;
+                }
+                pos++;
+            }
+            if (pos >= length || payload[pos] != ']') {
+                return -1;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    @Nullable
+    private Message parseRfc3164(byte[] payload, int start, int priority, @Nullable InetAddress remoteAddress) {
+        final int length = payload.length;
+        final int timestampEnd;
+        final long timestamp;
+        if (start + 4 < length && isDigit(payload[start]) && payload[start + 4] == '-') {
+            timestampEnd = tokenEnd(payload, start);
+            timestamp = timestampEnd < 0 ? INVALID : parseIsoTimestamp(payload, start, timestampEnd);
+        } else {
+            timestampEnd = bsdTimestampEnd(payload, start);
+            timestamp = timestampEnd < 0 ? INVALID : parseBsdTimestamp(payload, start, 0, zone());
+        }
+        if (timestamp == INVALID || timestampEnd >= length || payload[timestampEnd] != ' ') {
+            return null;
+        }
+
+        final int hostStart = timestampEnd + 1;
+        final int hostEnd = tokenEnd(payload, hostStart);
+        if (hostEnd < 0 || hostEnd >= length || payload[hostEnd - 1] == ':' || contains(payload, hostStart, hostEnd, '[')) {
+            return null;
+        }
+
+        final String host = string(payload, hostStart, hostEnd);
+        final Message message = createMessage(payload, hostStart, sourceResolver.resolve(host, remoteAddress), timestamp, priority);
+        addFullMessage(message, payload);
+        return message;
+    }
+
+    @Nullable
+    private Message parseCisco(byte[] payload, int sequenceStart, int sequenceEnd, int priority, @Nullable InetAddress remoteAddress) {
+        final int length = payload.length;
+        final int sequenceDigits = sequenceEnd - sequenceStart;
+        // Messages without sequence number usually have a year and time zone, which we leave to syslog4j. The
+        // handling of the configured time zone is left to syslog4j as well.
+        if (sequenceDigits == 0 || sequenceDigits > 9 || defaultTimeZone != null || payload[sequenceEnd + 1] != ' ') {
+            return null;
+        }
+        int timestampStart = sequenceEnd + 2;
+        if (timestampStart < length && (payload[timestampStart] == '*' || payload[timestampStart] == '.')) {
+            timestampStart++;
+        }
+        final int secondsEnd = bsdTimestampEnd(payload, timestampStart);
+        final int timestampEnd = secondsEnd + 4;
+        if (secondsEnd < 0 || timestampEnd + 1 >= length || payload[secondsEnd] != '.'
+                || !isDigit(payload[secondsEnd + 1]) || !isDigit(payload[secondsEnd + 2]) || !isDigit(payload[secondsEnd + 3])
+                || payload[timestampEnd] != ':' || payload[timestampEnd + 1] != ' ' || timestampEnd + 2 >= length) {
+            return null;
+        }
+        final int millis = number(payload, secondsEnd + 1, 3);
+        final long timestamp = parseBsdTimestamp(payload, timestampStart, millis, DateTimeZone.UTC);
+        if (timestamp == INVALID) {
+            return null;
+        }
+
+        final Message message = createMessage(payload, timestampEnd + 2, sourceResolver.resolve(null, remoteAddress), timestamp, priority);
+        message.addField("sequence_number", number(payload, sequenceStart, sequenceDigits));
+        addFullMessage(message, payload);
+        return message;
+    }
+
+    private Message createMessage(byte[] payload, int messageStart, String source, long timestamp, int priority) {
+        final Message message = new Message(string(payload, messageStart, payload.length), source, new DateTime(timestamp));
+        final int facility = priority >> 3;
+        message.addField("facility", Tools.syslogFacilityToReadable(facility));
+        message.addField("level", priority & 7);
+        message.addField("facility_num", facility);
+        return message;
+    }
+
+    private void addFullMessage(Message message, byte[] payload) {
+        if (storeFullMessage) {
+            message.addField("full_message", new String(payload, charset));
+        }
+    }
+
+    private DateTimeZone zone() {
+        return defaultTimeZone == null ? DateTimeZone.getDefault() : defaultTimeZone;
+    }
+
+    /**
+     * Checks for a BSD timestamp like {@code Oct 11 22:14:15} or {@code Feb  5 17:32:18}.
+     *
+     * @return the position after the seconds or -1 if there is no such timestamp
+     */
+    private static int bsdTimestampEnd(byte[] payload, int start) {
+        final int end = start + 15;
+        if (end > payload.length || month(payload, start) < 0 || payload[start + 3] != ' '
+                || !(payload[start + 4] == ' ' || isDigit(payload[start + 4])) || !isDigit(payload[start + 5])
+                || payload[start + 6] != ' ' || !isTime(payload, start + 7)) {
+            return -1;
+        }
+        return end;
+    }
+
+    private static long parseBsdTimestamp(byte[] payload, int start, int millis, DateTimeZone zone) {
+        final int month = month(payload, start) + 1;
+        final int day = payload[start + 4] == ' ' ? number(payload, start + 5, 1) : number(payload, start + 4, 2);
+        final Chronology chronology = ISOChronology.getInstance(zone);
+        try {
+            // BSD timestamps don't have a year, syslog4j uses the current one as well.
+            return chronology.getDateTimeMillis(chronology.year().get(System.currentTimeMillis()), month, day,
+                    number(payload, start + 7, 2), number(payload, start + 10, 2), number(payload, start + 13, 2), millis);
+        } catch (IllegalFieldValueException e) {
+            return INVALID;
+        }
+    }
+
+    /**
+     * Parses timestamps like {@code 2003-08-24T05:14:15.000003-07:00}. Fractions of a second are truncated to
+     * milliseconds and a time zone is required.
+     */
+    private static long parseIsoTimestamp(byte[] payload, int start, int end) {
+        if (end - start < 20 || !isDigits(payload, start, 4) || payload[start + 4] != '-' || !isDigits(payload, start + 5, 2)
+                || payload[start + 7] != '-' || !isDigits(payload, start + 8, 2) || payload[start + 10] != 'T'
+                || !isTime(payload, start + 11)) {
+            return INVALID;
+        }
+        int pos = start + 19;
+        int millis = 0;
+        if (payload[pos] == '.') {
+            final int fractionStart = ++pos;
+            while (pos < end && isDigit(payload[pos])) {
+                if (pos - fractionStart < 3) {
+                    millis = millis * 10 + (payload[pos] - '0');
+                }
+                pos++;
+            }
+            final int fractionDigits = pos - fractionStart;
+            if (fractionDigits == 0 || fractionDigits > 9) {
+                return INVALID;
+            }
+            for (int i = fractionDigits; i < 3; i++) {
+                millis *= 10;
+            }
+        }
+
+        final int offsetMillis;
+        if (pos + 1 == end && payload[pos] == 'Z') {
+            offsetMillis = 0;
+        } else if (pos + 6 == end && (payload[pos] == '+' || payload[pos] == '-') && isDigits(payload, pos + 1, 2)
+                && payload[pos + 3] == ':' && isDigits(payload, pos + 4, 2)) {
+            final int offset = (number(payload, pos + 1, 2) * 60 + number(payload, pos + 4, 2)) * 60_000;
+            offsetMillis = payload[pos] == '-' ? -offset : offset;
+        } else {
+            return INVALID;
+        }
+
+        try {
+            return UTC_CHRONOLOGY.getDateTimeMillis(number(payload, start, 4), number(payload, start + 5, 2), number(payload, start + 8, 2),
+                    number(payload, start + 11, 2), number(payload, start + 14, 2), number(payload, start + 17, 2), millis) - offsetMillis;
+        } catch (IllegalFieldValueException e) {
+            return INVALID;
+        }
+    }
+
+    private static boolean isTime(byte[] payload, int start) {
+        return start + 8 <= payload.length && isDigits(payload, start, 2) && payload[start + 2] == ':'
+                && isDigits(payload, start + 3, 2) && payload[start + 5] == ':' && isDigits(payload, start + 6, 2);
+    }
+
+    private static int month(byte[] payload, int start) {
+        if (start + 3 > payload.length) {
+            return -1;
+        }
+        for (int i = 0; i < MONTHS.length; i++) {
+            final byte[] month = MONTHS[i];
+            if (payload[start] == month[0] && payload[start + 1] == month[1] && payload[start + 2] == month[2]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the end of the non-empty token starting at the given position, which is either the position of the
+     * next space or the end of the payload. Returns -1 if the token is empty.
+     */
+    private static int tokenEnd(byte[] payload, int start) {
+        if (start <= 0 || start >= payload.length) {
+            return -1;
+        }
+        int pos = start;
+        while (pos < payload.length && payload[pos] != ' ') {
+            pos++;
+        }
+        return pos == start ? -1 : pos;
+    }
+
+    private static int skipSpaces(byte[] payload, int start) {
+        int pos = start;
+        while (pos < payload.length && payload[pos] == ' ') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean contains(byte[] payload, int start, int end, char c) {
+        for (int i = start; i < end; i++) {
+            if (payload[i] == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWith(byte[] payload, int start, String prefix) {
+        if (start + prefix.length() > payload.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (payload[start + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int number(byte[] payload, int start, int digits) {
+        int value = 0;
+        for (int i = start; i < start + digits; i++) {
+            value = value * 10 + (payload[i] - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigits(byte[] payload, int start, int digits) {
+        for (int i = start; i < start + digits; i++) {
+            if (!isDigit(payload[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+    }
+
+    private String string(byte[] payload, int start, int end) {
+        return new String(payload, start, end - start, charset);
+    }
+}
@@ -75,21 +75,32 @@ public class SyslogCodec extends AbstractCodec {
     static final String CK_EXPAND_STRUCTURED_DATA = "expand_structured_data";
     static final String CK_STORE_FULL_MESSAGE = "store_full_message";
     static final String CK_TIMEZONE = "timezone";
+    static final String CK_USE_NATIVE_PARSER = "use_native_parser";
 
     private final Timer resolveTime;
     private final Timer decodeTime;
+    @Nullable
+    private final NativeSyslogParser nativeParser;
 
     @AssistedInject
     public SyslogCodec(@Assisted Configuration configuration, MetricRegistry metricRegistry) {
         super(configuration);
         this.resolveTime = metricRegistry.timer(name(SyslogCodec.class, "resolveTime"));
         this.decodeTime = metricRegistry.timer(name(SyslogCodec.class, "decodeTime"));
+
+        if (configuration.getBoolean(CK_USE_NATIVE_PARSER) && NativeSyslogParser.supports(charset)) {
+            this.nativeParser = new NativeSyslogParser(charset, defaultTimeZone(),
+                    configuration.getBoolean(CK_EXPAND_STRUCTURED_DATA),
+                    configuration.getBoolean(CK_STORE_FULL_MESSAGE),
+                    this::resolveSource);
+        } else {
+            this.nativeParser = null;
+        }
     }
 
     @Nullable
     @Override
     public Message decode(@Nonnull RawMessage rawMessage) {
-        final String msg = new String(rawMessage.getPayload(), charset);
         try (Timer.Context ignored = this.decodeTime.time()) {
             final ResolvableInetSocketAddress address = rawMessage.getRemoteAddress();
             final InetSocketAddress remoteAddress;
@@ -98,10 +109,26 @@ public class SyslogCodec extends AbstractCodec {
             } else {
                 remoteAddress = address.getInetSocketAddress();
             }
-            return parse(msg, remoteAddress == null ? null : remoteAddress.getAddress(), rawMessage.getTimestamp());
+            final InetAddress inetAddress = remoteAddress == null ? null : remoteAddress.getAddress();
+
+            if (nativeParser != null) {
+                final Message message = nativeParser.parse(rawMessage.getPayload(), inetAddress);
+                if (message != null) {
+                    return message;
+                }
+            }
+            final String msg = new String(rawMessage.getPayload(), charset);
+            return parse(msg, inetAddress, rawMessage.getTimestamp());
         }
     }
 
+    @Nullable
+    private DateTimeZone defaultTimeZone() {
+        final String timeZoneConfig = configuration.getString(CK_TIMEZONE);
+        final boolean isDefaultTimeZoneSet = StringUtils.isNotBlank(timeZoneConfig) && !DropdownField.NOT_CONFIGURED.equals(timeZoneConfig);
+        return isDefaultTimeZoneSet ? DateTimeZone.forID(timeZoneConfig) : null;
+    }
+
     private Message parse(String msg, InetAddress remoteAddress, DateTime receivedTimestamp) {
         /*
          * ZOMG funny 80s neckbeard protocols. We are now deciding if to parse
@@ -125,10 +152,8 @@ public class SyslogCodec extends AbstractCodec {
          *  http://open.spotify.com/track/2ZtQKBB8wDTtPPqDZhy7xZ
          *
          */
-        String timeZoneConfig = configuration.getString(CK_TIMEZONE);
         final SyslogServerEventIF e;
-        boolean isDefaultTimeZoneSet = StringUtils.isNotBlank(timeZoneConfig) && !DropdownField.NOT_CONFIGURED.equals(timeZoneConfig);
-        DateTimeZone defaultTimeZone = isDefaultTimeZoneSet ? DateTimeZone.forID(timeZoneConfig) : null;
+        final DateTimeZone defaultTimeZone = defaultTimeZone();
         if (STRUCTURED_SYSLOG_PATTERN.matcher(msg).matches()) {
             e = new StructuredSyslogServerEvent(msg, remoteAddress, defaultTimeZone);
         } else if (CISCO_WITH_SEQUENCE_NUMBERS_PATTERN.matcher(msg).matches()) {
@@ -199,6 +224,10 @@ public class SyslogCodec extends AbstractCodec {
     }
 
     private String parseHost(SyslogServerEventIF msg, InetAddress remoteAddress) {
+        return resolveSource(msg.getHost(), remoteAddress);
+    }
+
+    private String resolveSource(@Nullable String host, @Nullable InetAddress remoteAddress) {
         if (remoteAddress != null && configuration.getBoolean(CK_FORCE_RDNS)) {
             try (Timer.Context ignored = this.resolveTime.time()) {
                 return Tools.rdnsLookup(remoteAddress);
@@ -207,7 +236,6 @@ public class SyslogCodec extends AbstractCodec {
             }
         }
 
-        final String host = msg.getHost();
         return isNullOrEmpty(host) && remoteAddress != null ? InetAddresses.toAddrString(remoteAddress) : host;
     }
 
@@ -289,6 +317,15 @@ public class SyslogCodec extends AbstractCodec {
                     )
             );
 
+            r.addField(
+                    new BooleanField(
+                            CK_USE_NATIVE_PARSER,
+                            "Use native parser?",
+                            false,
+                            "Parse RFC 3164, RFC 5424 and Cisco messages with the faster built-in parser. Messages in other formats are still parsed with syslog4j."
+                    )
+            );
+
             r.addField(new DropdownField(
                     CK_TIMEZONE,
                     "Time Zone",
@@ -108,7 +108,7 @@ public class HttpTransport extends AbstractTcpTransport {
         handlers.put("decompressor", HttpContentDecompressor::new);
         handlers.put("encoder", HttpResponseEncoder::new);
         handlers.put("aggregator", () -> new HttpObjectAggregator(maxChunkSize));
-        handlers.put("http-handler", () -> new HttpHandler(enableCors));
+        handlers.put("http-handler", () -> new HttpHandler(enableCors, input));
         if (enableBulkReceiving) {
             handlers.put("http-bulk-newline-decoder",
                     () -> new LenientDelimiterBasedFrameDecoder(maxChunkSize, Delimiters.lineDelimiter()));
@@ -20,6 +20,7 @@ import com.codahale.metrics.Gauge;
 import com.codahale.metrics.InstrumentedExecutorService;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.MetricSet;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.eventbus.EventBus;
@@ -45,6 +46,7 @@ import org.graylog.shaded.kafka09.consumer.TopicFilter;
 import org.graylog.shaded.kafka09.consumer.Whitelist;
 import org.graylog.shaded.kafka09.javaapi.consumer.ConsumerConnector;
 import org.graylog.shaded.kafka09.message.MessageAndMetadata;
+import org.graylog2.plugin.BaseConfiguration;
 import org.graylog2.plugin.LocalMetricRegistry;
 import org.graylog2.plugin.ServerStatus;
 import org.graylog2.plugin.configuration.Configuration;
@@ -63,14 +65,18 @@ import org.graylog2.plugin.inputs.transports.Transport;
 import org.graylog2.plugin.journal.RawMessage;
 import org.graylog2.plugin.lifecycles.Lifecycle;
 import org.graylog2.plugin.system.NodeId;
+import org.graylog2.shared.messageq.MessageQueueModule;
+import org.graylog2.shared.messageq.kafka.KafkaInputJournal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import javax.inject.Named;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Properties;
@@ -115,6 +121,7 @@ public class KafkaTransport extends ThrottleableTransport {
     private final EventBus serverEventBus;
     private final ServerStatus serverStatus;
     private final ScheduledExecutorService scheduler;
+    private final boolean kafkaJournal;
     private final MetricRegistry metricRegistry;
     private final AtomicLong totalBytesRead = new AtomicLong(0);
     private final AtomicLong lastSecBytesRead = new AtomicLong(0);
@@ -134,7 +141,8 @@ public class KafkaTransport extends ThrottleableTransport {
                           NodeId nodeId,
                           EventBus serverEventBus,
                           ServerStatus serverStatus,
-                          @Named("daemonScheduler") ScheduledExecutorService scheduler) {
+                          @Named("daemonScheduler") ScheduledExecutorService scheduler,
+                          BaseConfiguration serverConfiguration) {
         super(serverEventBus, configuration);
         this.configuration = configuration;
         this.localRegistry = localRegistry;
@@ -142,6 +150,7 @@ public class KafkaTransport extends ThrottleableTransport {
         this.serverEventBus = serverEventBus;
         this.serverStatus = serverStatus;
         this.scheduler = scheduler;
+        this.kafkaJournal = MessageQueueModule.KAFKA_JOURNAL_MODE.equals(serverConfiguration.getMessageJournalMode());
         this.metricRegistry = localRegistry;
         final int numThreads = configuration.getInt(CK_THREADS);
         this.executor = executorService(numThreads);
@@ -213,6 +222,10 @@ public class KafkaTransport extends ThrottleableTransport {
         serverEventBus.register(this);
 
         if (legacyMode) {
+            if (kafkaJournal) {
+                LOG.warn("Input <{}> uses the legacy Kafka consumer which can't be used as message journal, " +
+                        "its messages aren't journaled.", input.getId());
+            }
             doLaunchLegacy(input);
         } else {
             doLaunchConsumer(input);
@@ -238,6 +251,10 @@ public class KafkaTransport extends ThrottleableTransport {
         props.put(org.apache.kafka.clients.consumer.ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
 
         insertCustomProperties(props);
+        if (kafkaJournal) {
+            // The input topics are the journal, offsets are only committed once the messages have been acknowledged.
+            props.put("enable.auto.commit", "false");
+        }
 
         final int numThreads = configuration.getInt(CK_THREADS);
         // this is being used during shutdown to first stop all submitted jobs before committing the offsets back to zookeeper
@@ -251,6 +268,7 @@ public class KafkaTransport extends ThrottleableTransport {
     private class ConsumerRunnable implements Runnable {
         private final MessageInput input;
         private final KafkaConsumer<byte[], byte[]> consumer;
+        private final KafkaInputJournal journal;
 
         public ConsumerRunnable(Properties props, MessageInput input, int threadId) {
             this.input = input;
@@ -258,43 +276,21 @@ public class KafkaTransport extends ThrottleableTransport {
             nprops.put("client.id", "gl2-" + nodeId.getShortNodeId() + "-" + input.getId() + "-" + threadId);
             consumer = new KafkaConsumer<>(nprops);
             //noinspection ConstantConditions
-            consumer.subscribe(Pattern.compile(configuration.getString(CK_TOPIC_FILTER)));
-        }
-
-        private void consumeRecords(ConsumerRecords<byte[], byte[]> consumerRecords) {
-            for (final ConsumerRecord<byte[], byte[]> record : consumerRecords) {
-                if (paused) {
-                    // we try not to spin here, so we wait until the lifecycle goes back to running.
-                    LOG.debug("Message processing is paused, blocking until message processing is turned back on.");
-                    Uninterruptibles.awaitUninterruptibly(pausedLatch);
-                }
-                // check for being stopped before actually getting the message, otherwise we could end up losing that message
-                if (stopped) {
-                    break;
-                }
-                if (isThrottled()) {
-                    blockUntilUnthrottled();
-                }
-
-                // process the message, this will immediately mark the message as having been processed. this gets tricky
-                // if we get an exception about processing it down below.
-                final byte[] bytes = record.value();
-
-                // it is possible that the message is null
-                if (bytes == null) {
-                    continue;
-                }
-                totalBytesRead.addAndGet(bytes.length);
-                lastSecBytesReadTmp.addAndGet(bytes.length);
-
-                final RawMessage rawMessage = new RawMessage(bytes);
-                input.processRawMessage(rawMessage);
+            final Pattern topicFilter = Pattern.compile(configuration.getString(CK_TOPIC_FILTER));
+            if (kafkaJournal) {
+                journal = new KafkaInputJournal(consumer);
+                journal.subscribe(topicFilter);
+            } else {
+                journal = null;
+                consumer.subscribe(topicFilter);
             }
         }
 
         private Optional<ConsumerRecords<byte[], byte[]>> tryPoll() {
             try {
-                final ConsumerRecords<byte[], byte[]> consumerRecords = consumer.poll(Duration.ofSeconds(1));
+                final ConsumerRecords<byte[], byte[]> consumerRecords = journal != null
+                        ? journal.poll(Duration.ofSeconds(1))
+                        : consumer.poll(Duration.ofSeconds(1));
 
                 return Optional.of(consumerRecords);
             } catch (WakeupException e) {
@@ -322,18 +318,79 @@ public class KafkaTransport extends ThrottleableTransport {
                     break;
                 }
                 try {
-                    consumeRecords(consumerRecords.get());
+                    consumeRecords(consumerRecords.get(), input, journal);
                 } catch (Exception e) {
                     LOG.error("Exception in consumer thread. Stopping input", e);
                     stopped = true;
                     break;
                 }
             }
-            // explicitly commit our offsets when stopping.
-            // this might trigger a couple of times, but it won't hurt
-            consumer.commitAsync();
-            stopLatch.countDown();
-            consumer.close(Duration.ofSeconds(5));
+            if (journal != null) {
+                // commit the offsets of all acknowledged messages, the others are read again after a restart.
+                closeJournal();
+                stopLatch.countDown();
+            } else {
+                // explicitly commit our offsets when stopping.
+                // this might trigger a couple of times, but it won't hurt
+                consumer.commitAsync();
+                stopLatch.countDown();
+                consumer.close(Duration.ofSeconds(5));
+            }
+        }
+
+        private void closeJournal() {
+            try {
+                journal.close(Duration.ofSeconds(5));
+            } catch (KafkaException e) {
+                LOG.warn("Couldn't commit offsets of acknowledged messages, they will be read again.", e);
+            }
+        }
+    }
+
+    @VisibleForTesting
+    void consumeRecords(ConsumerRecords<byte[], byte[]> consumerRecords, MessageInput input, @Nullable KafkaInputJournal journal) {
+        // the records of a poll are handed to the input in one batch, pending messages are processed before
+        // blocking so they don't wait for the pause or throttling to end.
+        final List<RawMessage> batch = new ArrayList<>(consumerRecords.count());
+        for (final ConsumerRecord<byte[], byte[]> record : consumerRecords) {
+            if (paused) {
+                processBatch(input, batch);
+                // we try not to spin here, so we wait until the lifecycle goes back to running.
+                LOG.debug("Message processing is paused, blocking until message processing is turned back on.");
+                Uninterruptibles.awaitUninterruptibly(pausedLatch);
+            }
+            // check for being stopped before actually getting the message, otherwise we could end up losing that message
+            if (stopped) {
+                break;
+            }
+            if (isThrottled()) {
+                processBatch(input, batch);
+                blockUntilUnthrottled();
+            }
+
+            // process the message, this will immediately mark the message as having been processed. this gets tricky
+            // if we get an exception about processing it down below.
+            final byte[] bytes = record.value();
+
+            // it is possible that the message is null
+            if (bytes == null) {
+                if (journal != null) {
+                    journal.skip(record);
+                }
+                continue;
+            }
+            totalBytesRead.addAndGet(bytes.length);
+            lastSecBytesReadTmp.addAndGet(bytes.length);
+
+            batch.add(journal != null ? journal.rawMessage(record) : new RawMessage(bytes));
+        }
+        processBatch(input, batch);
+    }
+
+    private static void processBatch(MessageInput input, List<RawMessage> batch) {
+        if (!batch.isEmpty()) {
+            input.processRawMessages(batch);
+            batch.clear();
         }
     }
 
@@ -17,6 +17,7 @@
 package org.graylog2.inputs.transports.netty;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
@@ -32,12 +33,35 @@ import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ByteProcessor;
+import org.graylog2.plugin.inputs.MessageInput;
+import org.graylog2.plugin.journal.RawMessage;
+
+import javax.annotation.Nullable;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 public class HttpHandler extends SimpleChannelInboundHandler<HttpRequest> {
+    private static final String BULK_PATH = "/gelf/bulk";
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final ByteProcessor SKIP_WHITESPACE = value -> value == ' ' || value == '\t' || value == '\r';
+
     private final boolean enableCors;
+    @Nullable
+    private final MessageInput input;
 
     public HttpHandler(boolean enableCors) {
+        this(enableCors, null);
+    }
+
+    /**
+     * @param input the input receiving the messages of bulk requests, bulk requests are not supported without it
+     */
+    public HttpHandler(boolean enableCors, @Nullable MessageInput input) {
         this.enableCors = enableCors;
+        this.input = input;
     }
 
     @Override
@@ -64,19 +88,104 @@ public class HttpHandler extends SimpleChannelInboundHandler<HttpRequest> {
             // send on to raw message handler
             writeResponse(channel, keepAlive, httpRequestVersion, HttpResponseStatus.ACCEPTED, origin);
             ctx.fireChannelRead(buffer.retain());
+        } else if (input != null && BULK_PATH.equals(request.uri()) && request instanceof FullHttpRequest fullHttpRequest) {
+            handleBulkRequest(channel, keepAlive, httpRequestVersion, origin, fullHttpRequest);
         } else {
             writeResponse(channel, keepAlive, httpRequestVersion, HttpResponseStatus.NOT_FOUND, origin);
         }
     }
 
+    /**
+     * Handles a bulk request with one GELF document per line. The documents are passed to the input as one batch and
+     * the request is acknowledged once with the number of accepted lines and the errors of the rejected lines.
+     * Compressed request bodies have already been inflated by the HTTP content decompressor.
+     */
+    private void handleBulkRequest(Channel channel,
+                                   boolean keepAlive,
+                                   HttpVersion httpRequestVersion,
+                                   String origin,
+                                   FullHttpRequest request) {
+        final String contentEncoding = request.headers().get(HttpHeaderNames.CONTENT_ENCODING);
+        if (contentEncoding != null && !HttpHeaderValues.IDENTITY.contentEqualsIgnoreCase(contentEncoding)) {
+            writeResponse(channel, keepAlive, httpRequestVersion, HttpResponseStatus.UNSUPPORTED_MEDIA_TYPE, origin);
+            return;
+        }
+
+        final InetSocketAddress remoteAddress = channel.remoteAddress() instanceof InetSocketAddress address ? address : null;
+        final ByteBuf content = request.content();
+        final List<RawMessage> messages = new ArrayList<>();
+        final StringBuilder errors = new StringBuilder();
+        int rejected = 0;
+        int lineNumber = 0;
+        int start = content.readerIndex();
+        final int end = content.writerIndex();
+        while (start < end) {
+            lineNumber++;
+            int lineEnd = content.indexOf(start, end, (byte) '\n');
+            final int next = lineEnd < 0 ? end : lineEnd + 1;
+            if (lineEnd < 0) {
+                lineEnd = end;
+            }
+            final String error = addBulkLine(content, start, lineEnd, remoteAddress, messages);
+            if (error != null && rejected++ < MAX_REPORTED_ERRORS) {
+                errors.append(errors.length() == 0 ? "" : ",")
+                        .append("{\"line\":").append(lineNumber).append(",\"error\":\"").append(error).append("\"}");
+            }
+            start = next;
+        }
+
+        if (!messages.isEmpty()) {
+            input.processRawMessages(messages);
+        }
+
+        final String body = "{\"accepted\":" + messages.size() + ",\"rejected\":" + rejected + ",\"errors\":[" + errors + "]}";
+        final HttpResponseStatus status = messages.isEmpty() && rejected > 0 ? HttpResponseStatus.BAD_REQUEST : HttpResponseStatus.ACCEPTED;
+        writeResponse(channel, keepAlive, httpRequestVersion, status, origin,
+                Unpooled.copiedBuffer(body, StandardCharsets.UTF_8), HttpHeaderValues.APPLICATION_JSON);
+    }
+
+    /**
+     * Adds the line between the given indices to the messages if it looks like a JSON object. Blank lines are skipped.
+     *
+     * @return the error of a rejected line, {@code null} otherwise
+     */
+    @Nullable
+    private static String addBulkLine(ByteBuf content, int start, int end, InetSocketAddress remoteAddress, List<RawMessage> messages) {
+        final int first = content.forEachByte(start, end - start, SKIP_WHITESPACE);
+        if (first < 0) {
+            return null;
+        }
+        final int last = content.forEachByteDesc(first, end - first, SKIP_WHITESPACE);
+        if (content.getByte(first) != '{' || content.getByte(last) != '}') {
+            return "Line is not a JSON object";
+        }
+        final byte[] payload = new byte[last - first + 1];
+        content.getBytes(first, payload);
+        messages.add(new RawMessage(payload, remoteAddress));
+        return null;
+    }
+
     private void writeResponse(Channel channel,
                                boolean keepAlive,
                                HttpVersion httpRequestVersion,
                                HttpResponseStatus status,
                                String origin) {
-        final HttpResponse response = new DefaultFullHttpResponse(httpRequestVersion, status);
+        writeResponse(channel, keepAlive, httpRequestVersion, status, origin, Unpooled.EMPTY_BUFFER, null);
+    }
 
-        response.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
+    private void writeResponse(Channel channel,
+                               boolean keepAlive,
+                               HttpVersion httpRequestVersion,
+                               HttpResponseStatus status,
+                               String origin,
+                               ByteBuf content,
+                               @Nullable CharSequence contentType) {
+        final HttpResponse response = new DefaultFullHttpResponse(httpRequestVersion, status, content);
+
+        response.headers().set(HttpHeaderNames.CONTENT_LENGTH, content.readableBytes());
+        if (contentType != null) {
+            response.headers().set(HttpHeaderNames.CONTENT_TYPE, contentType);
+        }
         response.headers().set(HttpHeaderNames.CONNECTION, keepAlive ? HttpHeaderValues.KEEP_ALIVE : HttpHeaderValues.CLOSE);
 
         if (enableCors && origin != null && !origin.isEmpty()) {
@@ -38,6 +38,7 @@ import org.graylog2.lookup.adapters.dnslookup.ADnsAnswer;
 import org.graylog2.lookup.adapters.dnslookup.DnsAnswer;
 import org.graylog2.lookup.adapters.dnslookup.DnsClient;
 import org.graylog2.lookup.adapters.dnslookup.DnsLookupAdapterConfiguration;
+import org.graylog2.lookup.adapters.dnslookup.DnsLookupResultCache;
 import org.graylog2.lookup.adapters.dnslookup.DnsLookupType;
 import org.graylog2.lookup.adapters.dnslookup.PtrDnsAnswer;
 import org.graylog2.lookup.adapters.dnslookup.TxtDnsAnswer;
@@ -80,6 +81,7 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
     private static final String TIMER_REVERSE_LOOKUP = "reverseLookupTime";
     private static final String TIMER_TEXT_LOOKUP = "textLookupTime";
     private DnsClient dnsClient;
+    private DnsLookupResultCache resultCache;
     private final Config config;
     private final DnsLookupAdapterConfiguration adapterConfiguration;
 
@@ -108,6 +110,7 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
         dnsClient = new DnsClient(config.requestTimeout(), adapterConfiguration.getPoolSize(),
                 adapterConfiguration.getPoolRefreshInterval().toSeconds());
         dnsClient.start(config.serverIps());
+        resultCache = new DnsLookupResultCache(adapterConfiguration);
     }
 
     @Override
@@ -141,6 +144,10 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
             return getEmptyResult();
         }
 
+        return resultCache.get(trimmedKey, this::lookup);
+    }
+
+    private LookupResult lookup(String trimmedKey) {
         LOG.debug("Beginning [{}] DNS resolution for key [{}]", config.lookupType(), trimmedKey);
 
         LookupResult lookupResult;
@@ -20,12 +20,17 @@ import com.github.joschi.jadconfig.Parameter;
 import com.github.joschi.jadconfig.util.Duration;
 import com.github.joschi.jadconfig.validators.PositiveDurationValidator;
 import com.github.joschi.jadconfig.validators.PositiveIntegerValidator;
+import com.github.joschi.jadconfig.validators.PositiveLongValidator;
 import org.graylog2.plugin.PluginConfigBean;
 
 public class DnsLookupAdapterConfiguration implements PluginConfigBean {
     private static final String PREFIX = "dns_lookup_adapter_";
     protected static final String RESOLVER_POOL_SIZE = PREFIX + "resolver_pool_size";
     protected static final String RESOLVER_POOL_REFRESH_INTERVAL = PREFIX + "resolver_pool_refresh_interval";
+    protected static final String RESULT_CACHE_SIZE = PREFIX + "result_cache_size";
+    protected static final String RESULT_CACHE_MIN_TTL = PREFIX + "result_cache_min_ttl";
+    protected static final String RESULT_CACHE_MAX_TTL = PREFIX + "result_cache_max_ttl";
+    protected static final String RESULT_CACHE_NEGATIVE_TTL = PREFIX + "result_cache_negative_ttl";
 
     protected static final int DEFAULT_POOL_SIZE = 10;
     protected static final int DEFAULT_REFRESH_INTERVAL_SECONDS = 300;
@@ -36,6 +41,19 @@ public class DnsLookupAdapterConfiguration implements PluginConfigBean {
     @Parameter(value = RESOLVER_POOL_REFRESH_INTERVAL, validators = PositiveDurationValidator.class)
     private Duration poolRefreshInterval = Duration.seconds(DEFAULT_REFRESH_INTERVAL_SECONDS);
 
+    // Number of lookup results cached per adapter, see DnsLookupResultCache.
+    @Parameter(value = RESULT_CACHE_SIZE, validators = PositiveLongValidator.class)
+    private long resultCacheSize = 10000;
+
+    @Parameter(value = RESULT_CACHE_MIN_TTL, validators = PositiveDurationValidator.class)
+    private Duration resultCacheMinTtl = Duration.seconds(5);
+
+    @Parameter(value = RESULT_CACHE_MAX_TTL, validators = PositiveDurationValidator.class)
+    private Duration resultCacheMaxTtl = Duration.hours(1);
+
+    @Parameter(value = RESULT_CACHE_NEGATIVE_TTL, validators = PositiveDurationValidator.class)
+    private Duration resultCacheNegativeTtl = Duration.seconds(30);
+
     public int getPoolSize() {
         return poolSize;
     }
@@ -43,4 +61,20 @@ public class DnsLookupAdapterConfiguration implements PluginConfigBean {
     public Duration getPoolRefreshInterval() {
         return poolRefreshInterval;
     }
+
+    public long getResultCacheSize() {
+        return resultCacheSize;
+    }
+
+    public Duration getResultCacheMinTtl() {
+        return resultCacheMinTtl;
+    }
+
+    public Duration getResultCacheMaxTtl() {
+        return resultCacheMaxTtl;
+    }
+
+    public Duration getResultCacheNegativeTtl() {
+        return resultCacheNegativeTtl;
+    }
 }
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.lookup.adapters.dnslookup;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.google.common.annotations.VisibleForTesting;
+import org.graylog2.plugin.lookup.LookupResult;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Caches DNS lookup results for the TTL of the returned records, clamped to the configured minimum and maximum.
+ * Empty and failed lookups (e.g. NXDOMAIN or timeouts) are cached for the negative TTL, so that unresolvable keys
+ * don't hit the DNS servers over and over again.
+ * <p>
+ * Concurrent lookups of the same key are merged: only the first caller queries the DNS servers, all others wait
+ * for its result. The query doesn't run inside the cache's compute lock, so slow queries don't block lookups of
+ * unrelated keys.
+ */
+public class DnsLookupResultCache {
+    private final Cache<String, LookupResult> cache;
+    private final ConcurrentMap<String, CompletableFuture<LookupResult>> inFlight = new ConcurrentHashMap<>();
+
+    public DnsLookupResultCache(DnsLookupAdapterConfiguration configuration) {
+        this(configuration.getResultCacheSize(),
+                Duration.ofMillis(configuration.getResultCacheMinTtl().toMilliseconds()),
+                Duration.ofMillis(configuration.getResultCacheMaxTtl().toMilliseconds()),
+                Duration.ofMillis(configuration.getResultCacheNegativeTtl().toMilliseconds()),
+                Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    DnsLookupResultCache(long maximumSize, Duration minTtl, Duration maxTtl, Duration negativeTtl, Ticker ticker) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new ResultExpiry(minTtl.toNanos(), maxTtl.toNanos(), negativeTtl.toNanos()))
+                .ticker(ticker)
+                .build();
+    }
+
+    public LookupResult get(String key, Function<String, LookupResult> lookup) {
+        final LookupResult cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        final CompletableFuture<LookupResult> future = new CompletableFuture<>();
+        final CompletableFuture<LookupResult> running = inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            return running.join();
+        }
+        try {
+            // Another lookup might have finished between the cache check and registering this one.
+            LookupResult result = cache.getIfPresent(key);
+            if (result == null) {
+                result = lookup.apply(key);
+                cache.put(key, result);
+            }
+            future.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private static class ResultExpiry implements Expiry<String, LookupResult> {
+        private final long minTtlNanos;
+        private final long maxTtlNanos;
+        private final long negativeTtlNanos;
+
+        private ResultExpiry(long minTtlNanos, long maxTtlNanos, long negativeTtlNanos) {
+            this.minTtlNanos = minTtlNanos;
+            this.maxTtlNanos = maxTtlNanos;
+            this.negativeTtlNanos = negativeTtlNanos;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, LookupResult result, long currentTime) {
+            if (result.hasError() || result.isEmpty()) {
+                return negativeTtlNanos;
+            }
+            // Saturates for results without a TTL, which end up with the maximum TTL.
+            final long ttlNanos = TimeUnit.MILLISECONDS.toNanos(result.cacheTTL());
+            return Math.max(minTtlNanos, Math.min(maxTtlNanos, ttlNanos));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, LookupResult result, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, result, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, LookupResult result, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
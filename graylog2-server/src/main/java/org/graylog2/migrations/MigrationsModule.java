@@ -68,5 +68,7 @@ public class MigrationsModule extends PluginModule {
         addMigration(V20230523160600_PopulateEventDefinitionState.class);
         addMigration(V20230531135500_MigrateRemoveObsoleteItemsFromGrantsCollection.class);
         addMigration(V20230601104500_AddSourcesPageV2.class);
+        addMigration(V20230612110000_AddRealtimeFilterEventProcessorToProcessingOrderMigration.class);
+        addMigration(V20230612120000_AddLocalSuggestionIndexProcessorToProcessingOrderMigration.class);
     }
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.migrations;
+
+import org.graylog2.messageprocessors.MessageProcessorsConfig;
+import org.graylog2.messageprocessors.StreamMatcherFilterProcessor;
+import org.graylog2.plugin.cluster.ClusterConfigService;
+import org.graylog2.plugin.messageprocessors.MessageProcessor;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Shared logic of the migrations which add a message processor to the stored processing order.
+ */
+final class ProcessingOrderMigrations {
+    private ProcessingOrderMigrations() {
+    }
+
+    /**
+     * Moves the given processor to the end of the processing order, after the stream routing. Unknown processors run
+     * first, so processors which rely on the stream ids of a message have to be moved. The disabled processors are
+     * kept, only the order changes.
+     */
+    static void moveToEnd(ClusterConfigService clusterConfigService,
+                          Set<String> processorClassNames,
+                          Class<? extends MessageProcessor> processorClass) {
+        final MessageProcessorsConfig config = clusterConfigService.getOrDefault(MessageProcessorsConfig.class,
+                MessageProcessorsConfig.defaultConfig());
+
+        final List<String> order = config.withProcessors(processorClassNames).processorOrder();
+
+        final boolean remove = order.remove(processorClass.getCanonicalName());
+        if (!remove) {
+            throw new IllegalStateException(processorClass.getSimpleName() + " not in processor list");
+        }
+        if (!order.contains(StreamMatcherFilterProcessor.class.getCanonicalName())) {
+            throw new IllegalStateException("StreamMatcherFilterProcessor not in processor list");
+        }
+        order.add(processorClass.getCanonicalName());
+
+        final MessageProcessorsConfig newProcessorsConfig = config.toBuilder()
+                .processorOrder(order)
+                .build().withProcessors(processorClassNames);
+        clusterConfigService.write(newProcessorsConfig);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.migrations;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.google.auto.value.AutoValue;
+import org.graylog.events.processor.realtime.RealtimeFilterEventProcessor;
+import org.graylog2.plugin.cluster.ClusterConfigService;
+import org.graylog2.plugin.messageprocessors.MessageProcessor;
+
+import javax.inject.Inject;
+import java.time.ZonedDateTime;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Unknown processors run first in the processing order, before any stream routing happened. The
+ * {@link RealtimeFilterEventProcessor} needs the stream ids of a message, so it gets moved to the end of the order.
+ */
+public class V20230612110000_AddRealtimeFilterEventProcessorToProcessingOrderMigration extends Migration {
+
+    private final ClusterConfigService clusterConfigService;
+    private final Set<String> processorClassNames;
+
+    @Inject
+    public V20230612110000_AddRealtimeFilterEventProcessorToProcessingOrderMigration(ClusterConfigService clusterConfigService,
+                                                                                       Set<MessageProcessor.Descriptor> processorDescriptors) {
+        this.clusterConfigService = clusterConfigService;
+        this.processorClassNames = processorDescriptors.stream()
+                .map(MessageProcessor.Descriptor::className)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public ZonedDateTime createdAt() {
+        return ZonedDateTime.parse("2023-06-12T11:00:00Z");
+    }
+
+    @Override
+    public void upgrade() {
+        if (clusterConfigService.get(MigrationCompleted.class) != null) {
+            return;
+        }
+
+        // Run the real-time event processor last, it has to see the messages after stream routing and pipelines
+        // modified them, just like a search on the indexed messages would.
+        ProcessingOrderMigrations.moveToEnd(clusterConfigService, processorClassNames, RealtimeFilterEventProcessor.class);
+
+        clusterConfigService.write(MigrationCompleted.create());
+    }
+
+    @JsonAutoDetect
+    @AutoValue
+    public static abstract class MigrationCompleted {
+        @JsonCreator
+        public static MigrationCompleted create() {
+            return new AutoValue_V20230612110000_AddRealtimeFilterEventProcessorToProcessingOrderMigration_MigrationCompleted();
+        }
+    }
+}
@@ -16,6 +16,8 @@
  */
 package org.graylog2.periodical;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import org.graylog2.indexer.IndexSet;
 import org.graylog2.indexer.IndexSetRegistry;
 import org.graylog2.indexer.NoTargetIndexException;
@@ -24,6 +26,8 @@ import org.graylog2.indexer.indexset.IndexSetConfig;
 import org.graylog2.indexer.indices.HealthStatus;
 import org.graylog2.indexer.indices.Indices;
 import org.graylog2.indexer.indices.TooManyAliasesException;
+import org.graylog2.indexer.rotation.IndexRotationSnapshot;
+import org.graylog2.indexer.rotation.strategies.AbstractRotationStrategy;
 import org.graylog2.indexer.rotation.strategies.TimeBasedRotationStrategy;
 import org.graylog2.notifications.Notification;
 import org.graylog2.notifications.NotificationService;
@@ -37,8 +41,12 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
+import static com.codahale.metrics.MetricRegistry.name;
+
 public class IndexRotationThread extends Periodical {
     private static final Logger LOG = LoggerFactory.getLogger(IndexRotationThread.class);
 
@@ -49,6 +57,7 @@ public class IndexRotationThread extends Periodical {
     private final Indices indices;
     private final NodeId nodeId;
     private final Map<String, Provider<RotationStrategy>> rotationStrategyMap;
+    private final Timer cycleTime;
 
     @Inject
     public IndexRotationThread(NotificationService notificationService,
@@ -57,7 +66,8 @@ public class IndexRotationThread extends Periodical {
                                Cluster cluster,
                                ActivityWriter activityWriter,
                                NodeId nodeId,
-                               Map<String, Provider<RotationStrategy>> rotationStrategyMap) {
+                               Map<String, Provider<RotationStrategy>> rotationStrategyMap,
+                               MetricRegistry metricRegistry) {
         this.notificationService = notificationService;
         this.indexSetRegistry = indexSetRegistry;
         this.cluster = cluster;
@@ -65,6 +75,7 @@ public class IndexRotationThread extends Periodical {
         this.indices = indices;
         this.nodeId = nodeId;
         this.rotationStrategyMap = rotationStrategyMap;
+        this.cycleTime = metricRegistry.timer(name(IndexRotationThread.class, "cycleTime"));
     }
 
     @Override
@@ -84,29 +95,55 @@ public class IndexRotationThread extends Periodical {
     public void doRun() {
         // Point deflector to a new index if required.
         if (cluster.isConnected()) {
-            indexSetRegistry.forEach((indexSet) -> {
-                try {
+            try (Timer.Context ignored = cycleTime.time()) {
+                final List<IndexSet> writableIndexSets = new ArrayList<>();
+                indexSetRegistry.forEach((indexSet) -> {
                     if (indexSet.getConfig().isWritable()) {
-                        checkAndRepair(indexSet);
-                        checkForRotation(indexSet);
+                        writableIndexSets.add(indexSet);
                     } else {
                         LOG.debug("Skipping non-writable index set <{}> ({})", indexSet.getConfig().id(), indexSet.getConfig().title());
                     }
-                } catch (Exception e) {
-                    LOG.error("Couldn't point deflector to a new index", e);
+                });
+
+                final IndexRotationSnapshot snapshot = takeSnapshot(writableIndexSets);
+                for (IndexSet indexSet : writableIndexSets) {
+                    try {
+                        checkAndRepair(indexSet, snapshot);
+                        checkForRotation(indexSet, snapshot);
+                    } catch (Exception e) {
+                        LOG.error("Couldn't point deflector to a new index", e);
+                    }
                 }
-            });
+            }
         } else {
             LOG.debug("Elasticsearch cluster isn't healthy. Skipping index rotation.");
         }
     }
 
+    private IndexRotationSnapshot takeSnapshot(List<IndexSet> indexSets) {
+        if (indexSets.isEmpty()) {
+            return IndexRotationSnapshot.empty();
+        }
+        try {
+            final IndexRotationSnapshot snapshot = IndexRotationSnapshot.create(indices, indexSets);
+            LOG.debug("Took snapshot of {} out of {} write indices", snapshot.size(), indexSets.size());
+            return snapshot;
+        } catch (Exception e) {
+            LOG.warn("Couldn't take snapshot of write indices, checking every index set on its own", e);
+            return IndexRotationSnapshot.empty();
+        }
+    }
+
     @Override
     protected Logger getLogger() {
         return LOG;
     }
 
     protected void checkForRotation(IndexSet indexSet) {
+        checkForRotation(indexSet, IndexRotationSnapshot.empty());
+    }
+
+    protected void checkForRotation(IndexSet indexSet, IndexRotationSnapshot snapshot) {
         final IndexSetConfig config = indexSet.getConfig();
         final Provider<RotationStrategy> rotationStrategyProvider = rotationStrategyMap.get(config.rotationStrategyClass());
 
@@ -124,7 +161,11 @@ public class IndexRotationThread extends Periodical {
             return;
         }
 
-        rotationStrategy.rotate(indexSet);
+        if (rotationStrategy instanceof AbstractRotationStrategy abstractRotationStrategy) {
+            abstractRotationStrategy.rotate(indexSet, snapshot);
+        } else {
+            rotationStrategy.rotate(indexSet);
+        }
     }
 
     private void rotationProblemNotification(String title, String description) {
@@ -137,6 +178,13 @@ public class IndexRotationThread extends Periodical {
         notificationService.publishIfFirst(notification);
     }
 
+    protected void checkAndRepair(IndexSet indexSet, IndexRotationSnapshot snapshot) {
+        // The snapshot only contains index sets whose write index alias points to the newest index.
+        if (snapshot.writeIndex(indexSet).isEmpty()) {
+            checkAndRepair(indexSet);
+        }
+    }
+
     protected void checkAndRepair(IndexSet indexSet) {
         if (!indexSet.isUp()) {
             if (indices.exists(indexSet.getWriteIndexAlias())) {
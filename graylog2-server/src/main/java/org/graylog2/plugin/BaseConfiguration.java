@@ -108,6 +108,12 @@ public abstract class BaseConfiguration extends PathConfiguration {
     @Parameter(value = "proxied_requests_default_call_timeout", required = true, validator = PositiveDurationValidator.class)
     private Duration proxiedRequestsDefaultCallTimeout = Duration.seconds(5);
 
+    @Parameter(value = "proxied_requests_max_requests", validator = PositiveIntegerValidator.class)
+    private int proxiedRequestsMaxRequests = 256;
+
+    @Parameter(value = "proxied_requests_max_requests_per_host", validator = PositiveIntegerValidator.class)
+    private int proxiedRequestsMaxRequestsPerHost = 64;
+
     public int getProcessBufferProcessors() {
         return processBufferProcessors;
     }
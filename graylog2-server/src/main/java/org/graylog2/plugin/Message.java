@@ -202,6 +202,7 @@ public class Message implements Messages, Indexable {
 
     private static final Pattern VALID_KEY_CHARS = Pattern.compile("^[\\w\\.\\-@]*$");
     private static final char KEY_REPLACEMENT_CHAR = '_';
+    private static final long NO_PROCESSING_TIME = Long.MIN_VALUE;
 
     private static final ImmutableSet<String> GRAYLOG_FIELDS = ImmutableSet.of(
         FIELD_GL2_ACCOUNTED_MESSAGE_SIZE,
@@ -293,6 +294,8 @@ public class Message implements Messages, Indexable {
     private int sequenceNr = 0;
 
     private DateTime receiveTime;
+    // Kept as epoch millis, the DateTime is only created when it's requested.
+    private long processingTimeMillis = NO_PROCESSING_TIME;
     private DateTime processingTime;
 
     private ArrayList<Recording> recordings;
@@ -402,6 +405,14 @@ public class Message implements Messages, Indexable {
         return getFieldAs(DateTime.class, FIELD_TIMESTAMP).withZone(UTC);
     }
 
+    /**
+     * Returns the message timestamp as milliseconds since the epoch, without creating a {@link DateTime} in UTC.
+     */
+    public long getTimestampMillis() {
+        ensureValidTimestamp();
+        return getFieldAs(DateTime.class, FIELD_TIMESTAMP).getMillis();
+    }
+
     @Override
     public Map<String, Object> toElasticSearchObject(ObjectMapper objectMapper, @Nonnull final Meter invalidTimestampMeter) {
         final Map<String, Object> obj = Maps.newHashMapWithExpectedSize(REQUIRED_FIELDS.size() + fields.size());
@@ -448,7 +459,7 @@ public class Message implements Messages, Indexable {
 
         final Object timestampValue = getField(FIELD_TIMESTAMP);
         DateTime dateTime = timestampValue == null ? fallbackForNullTimestamp() : convertToDateTime(timestampValue);
-        obj.put(FIELD_TIMESTAMP, buildElasticSearchTimeFormat(dateTime.withZone(UTC)));
+        obj.put(FIELD_TIMESTAMP, buildElasticSearchTimeFormat(dateTime.getMillis()));
 
         if (processingErrors != null && !processingErrors.isEmpty()) {
             if (processingErrors.stream().anyMatch(processingError -> processingError.getCause().equals(ProcessingFailureCause.InvalidTimestampException))) {
@@ -884,6 +895,9 @@ public class Message implements Messages, Indexable {
 
     @Nullable
     public DateTime getProcessingTime() {
+        if (processingTime == null && processingTimeMillis != NO_PROCESSING_TIME) {
+            processingTime = new DateTime(processingTimeMillis, UTC);
+        }
         return processingTime;
     }
 
@@ -891,9 +905,15 @@ public class Message implements Messages, Indexable {
         // TODO: In Graylog 3.2 we can set this as field in the message because at that point we have a mapping entry
         if (processingTime != null) {
             this.processingTime = processingTime;
+            this.processingTimeMillis = processingTime.getMillis();
         }
     }
 
+    public void setProcessingTimeMillis(long processingTimeMillis) {
+        this.processingTime = null;
+        this.processingTimeMillis = processingTimeMillis;
+    }
+
     // helper methods to optionally record timing information per message, useful for debugging or benchmarking
     // not thread safe!
     public void recordTiming(ServerStatus serverStatus, String name, long elapsedNanos) {
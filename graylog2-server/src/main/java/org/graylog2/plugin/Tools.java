@@ -24,6 +24,7 @@ import com.google.common.io.BaseEncoding;
 import com.google.common.io.ByteStreams;
 import com.google.common.primitives.Doubles;
 import org.graylog2.plugin.indexer.searches.timeranges.AbsoluteRange;
+import org.graylog2.plugin.utilities.date.ElasticSearchTimestampFormatter;
 import org.graylog2.shared.SuppressForbidden;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
@@ -322,6 +323,10 @@ public final class Tools {
         return timestamp.toString(ES_DATE_FORMAT_FORMATTER);
     }
 
+    public static String buildElasticSearchTimeFormat(long epochMillis) {
+        return ElasticSearchTimestampFormatter.format(epochMillis);
+    }
+
     /**
      * The double representation of a UNIX timestamp with milliseconds is a strange, human readable format.
      * <p/>
@@ -18,6 +18,18 @@ package org.graylog2.plugin.buffers;
 
 import org.graylog2.plugin.journal.RawMessage;
 
+import java.util.List;
+
 public interface InputBuffer extends EventBuffer {
     void insert(RawMessage message);
+
+    /**
+     * Inserts a batch of messages. Implementations should publish the batch at once instead of claiming a slot per
+     * message.
+     */
+    default void insert(List<RawMessage> messages) {
+        for (RawMessage message : messages) {
+            insert(message);
+        }
+    }
 }
@@ -21,6 +21,7 @@ import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.MetricSet;
 import com.fasterxml.jackson.annotation.JsonValue;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.Maps;
 import org.graylog2.plugin.AbstractDescriptor;
@@ -42,7 +43,9 @@ import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -383,20 +386,12 @@ public abstract class MessageInput implements Stoppable {
     public void processRawMessage(RawMessage rawMessage) {
         final int payloadLength = rawMessage.getPayload().length;
         if (payloadLength == 0) {
-            LOG.debug("Discarding empty message {} from input {} (remote address {}). Turn logger org.graylog2.plugin.journal.RawMessage to TRACE to see originating stack trace.",
-                    rawMessage.getId(),
-                    toIdentifier(),
-                    rawMessage.getRemoteAddress() == null ? "unknown" : rawMessage.getRemoteAddress());
-            emptyMessages.inc();
+            discardEmptyMessage(rawMessage);
             return;
         }
 
-        // add the common message metadata for this input/codec
-        rawMessage.setCodecName(codec.getName());
-        rawMessage.setCodecConfig(codecConfig);
-        rawMessage.addSourceNode(getId(), serverStatus.getNodeId());
         // Wrap at unsigned int maximum
-        rawMessage.setSequenceNr((int) sequenceNr.getAndUpdate(i -> i == 0xFFFF_FFFFL ? 0 : i + 1));
+        addMessageMetadata(rawMessage, sequenceNr.getAndUpdate(i -> i == 0xFFFF_FFFFL ? 0 : i + 1));
 
         inputBuffer.insert(rawMessage);
 
@@ -406,6 +401,62 @@ public abstract class MessageInput implements Stoppable {
         globalRawSize.inc(payloadLength);
     }
 
+    /**
+     * Processes a batch of raw messages, e.g. the records of a single poll. The messages are published to the input
+     * buffer in bulk and the sequence numbers and metrics are updated once for the whole batch.
+     */
+    public void processRawMessages(List<RawMessage> rawMessages) {
+        final List<RawMessage> messages = new ArrayList<>(rawMessages.size());
+        long payloadLength = 0;
+        for (RawMessage rawMessage : rawMessages) {
+            final int length = rawMessage.getPayload().length;
+            if (length == 0) {
+                discardEmptyMessage(rawMessage);
+            } else {
+                messages.add(rawMessage);
+                payloadLength += length;
+            }
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        // Reserve a range of sequence numbers, wrapping at unsigned int maximum
+        final int count = messages.size();
+        final long firstSequenceNr = sequenceNr.getAndUpdate(i -> (i + count) & 0xFFFF_FFFFL);
+        for (int i = 0; i < count; i++) {
+            addMessageMetadata(messages.get(i), firstSequenceNr + i);
+        }
+
+        inputBuffer.insert(messages);
+
+        incomingMessages.mark(count);
+        globalIncomingMessages.inc(count);
+        rawSize.mark(payloadLength);
+        globalRawSize.inc(payloadLength);
+    }
+
+    @VisibleForTesting
+    void setNextSequenceNr(long nextSequenceNr) {
+        sequenceNr.set(nextSequenceNr);
+    }
+
+    private void addMessageMetadata(RawMessage rawMessage, long sequenceNr) {
+        // add the common message metadata for this input/codec
+        rawMessage.setCodecName(codec.getName());
+        rawMessage.setCodecConfig(codecConfig);
+        rawMessage.addSourceNode(getId(), serverStatus.getNodeId());
+        rawMessage.setSequenceNr((int) sequenceNr);
+    }
+
+    private void discardEmptyMessage(RawMessage rawMessage) {
+        LOG.debug("Discarding empty message {} from input {} (remote address {}). Turn logger org.graylog2.plugin.journal.RawMessage to TRACE to see originating stack trace.",
+                rawMessage.getId(),
+                toIdentifier(),
+                rawMessage.getRemoteAddress() == null ? "unknown" : rawMessage.getRemoteAddress());
+        emptyMessages.inc();
+    }
+
     public String getType() {
         return this.getClass().getCanonicalName();
     }
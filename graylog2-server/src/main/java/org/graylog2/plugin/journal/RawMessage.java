@@ -294,6 +294,10 @@ public class RawMessage implements Serializable {
         return messageQueueId;
     }
 
+    public void setMessageQueueId(Object messageQueueId) {
+        this.messageQueueId = messageQueueId;
+    }
+
     /**
      * @deprecated use {@link #getMessageQueueId()} instead
      */
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.plugin.utilities.date;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import static org.graylog2.plugin.Tools.ES_DATE_FORMAT_FORMATTER;
+
+/**
+ * Formats epoch milliseconds in the {@code yyyy-MM-dd HH:mm:ss.SSS} (UTC) format used for the timestamp field of
+ * indexed messages, without creating intermediate date objects.
+ * <p>
+ * Messages in a bulk request usually have the same or neighbouring timestamps, so every thread keeps the
+ * formatted date and time of the last second it has seen and only writes the milliseconds for timestamps in the same
+ * second. Timestamps outside of the four digit year range are formatted with {@link org.graylog2.plugin.Tools#ES_DATE_FORMAT_FORMATTER}.
+ */
+public final class ElasticSearchTimestampFormatter {
+    // 0000-01-01 00:00:00.000 and 9999-12-31 23:59:59.999
+    private static final long MIN_MILLIS = -62167219200000L;
+    private static final long MAX_MILLIS = 253402300799999L;
+
+    private static final ThreadLocal<Buffer> BUFFERS = ThreadLocal.withInitial(Buffer::new);
+
+    private ElasticSearchTimestampFormatter() {
+    }
+
+    public static String format(long epochMillis) {
+        if (epochMillis < MIN_MILLIS || epochMillis > MAX_MILLIS) {
+            return ES_DATE_FORMAT_FORMATTER.print(epochMillis);
+        }
+        return BUFFERS.get().format(epochMillis);
+    }
+
+    private static class Buffer {
+        private final char[] chars = "0000-00-00 00:00:00.000".toCharArray();
+        private long epochSecond = Long.MIN_VALUE;
+
+        private String format(long epochMillis) {
+            final long second = Math.floorDiv(epochMillis, 1000);
+            if (second != epochSecond) {
+                writeSecond(second);
+                epochSecond = second;
+            }
+            writeDigits(20, 3, (int) Math.floorMod(epochMillis, 1000));
+            return new String(chars);
+        }
+
+        private void writeSecond(long second) {
+            final LocalDateTime dateTime = LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC);
+            writeDigits(0, 4, dateTime.getYear());
+            writeDigits(5, 2, dateTime.getMonthValue());
+            writeDigits(8, 2, dateTime.getDayOfMonth());
+            writeDigits(11, 2, dateTime.getHour());
+            writeDigits(14, 2, dateTime.getMinute());
+            writeDigits(17, 2, dateTime.getSecond());
+        }
+
+        private void writeDigits(int offset, int length, int value) {
+            for (int i = offset + length - 1; i >= offset; i--) {
+                chars[i] = (char) ('0' + value % 10);
+                value /= 10;
+            }
+        }
+    }
+}
@@ -19,6 +19,7 @@ package org.graylog2.rest;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.net.HttpHeaders;
 import com.google.common.net.MediaType;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import org.glassfish.jersey.client.filter.CsrfProtectionFilter;
@@ -29,26 +30,37 @@ import retrofit2.converter.jackson.JacksonConverterFactory;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Singleton;
 import java.time.Duration;
 
+@Singleton
 public class RemoteInterfaceProvider {
     private final ObjectMapper objectMapper;
     private final OkHttpClient okHttpClient;
     private final Duration defaultProxyTimeout;
+    // Proxied requests fan out to all nodes for every UI poll, the limits of the shared client's dispatcher
+    // (5 requests per host) would queue them until they hit their deadline.
+    private final Dispatcher dispatcher;
 
     @Inject
     public RemoteInterfaceProvider(ObjectMapper objectMapper,
                                    OkHttpClient okHttpClient,
                                    @Named("proxied_requests_default_call_timeout")
-                                       com.github.joschi.jadconfig.util.Duration defaultProxyTimeout
+                                       com.github.joschi.jadconfig.util.Duration defaultProxyTimeout,
+                                   @Named("proxied_requests_max_requests") int maxRequests,
+                                   @Named("proxied_requests_max_requests_per_host") int maxRequestsPerHost
                                    ) {
         this.objectMapper = objectMapper;
         this.okHttpClient = okHttpClient;
         this.defaultProxyTimeout = Duration.ofMillis(defaultProxyTimeout.toMilliseconds());
+        this.dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
     }
 
     public <T> T get(Node node, final String authorizationToken, Class<T> interfaceClass, Duration timeout) {
         final OkHttpClient okHttpClient = this.okHttpClient.newBuilder()
+                .dispatcher(dispatcher)
                 .writeTimeout(timeout)
                 .readTimeout(timeout)
                 .callTimeout(timeout)
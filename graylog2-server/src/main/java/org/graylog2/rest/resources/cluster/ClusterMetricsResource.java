@@ -22,6 +22,7 @@ import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
+import okhttp3.Request;
 import org.apache.shiro.authz.annotation.RequiresAuthentication;
 import org.graylog2.audit.jersey.NoAuditEvent;
 import org.graylog2.cluster.NodeService;
@@ -81,4 +82,10 @@ public class ClusterMetricsResource extends ProxiedResource {
                 () -> stripCallResult(requestOnAllNodes(RemoteMetricsResource.class, r -> r.multipleMetrics(request), callTimeout))
         );
     }
+
+    @Override
+    protected boolean isCoalescable(Request request) {
+        // Reading metrics uses POST to transfer the metric names, it doesn't change anything on the nodes.
+        return true;
+    }
 }
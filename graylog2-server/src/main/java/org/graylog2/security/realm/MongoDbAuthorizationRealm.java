@@ -26,6 +26,7 @@ import org.apache.shiro.authc.AuthenticationToken;
 import org.apache.shiro.authz.AuthorizationInfo;
 import org.apache.shiro.authz.Permission;
 import org.apache.shiro.authz.SimpleAuthorizationInfo;
+import org.apache.shiro.authz.permission.RolePermissionResolver;
 import org.apache.shiro.authz.permission.WildcardPermissionResolver;
 import org.apache.shiro.realm.AuthorizingRealm;
 import org.apache.shiro.subject.PrincipalCollection;
@@ -33,6 +34,7 @@ import org.graylog.grn.GRN;
 import org.graylog.grn.GRNRegistry;
 import org.graylog.grn.GRNTypes;
 import org.graylog.security.PermissionAndRoleResolver;
+import org.graylog.security.permissions.PermissionIndex;
 import org.graylog2.plugin.database.users.User;
 import org.graylog2.security.MongoDbAuthorizationCacheManager;
 import org.graylog2.shared.security.ShiroRequestHeadersBinder;
@@ -42,6 +44,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import java.util.Collection;
 import java.util.Optional;
 import java.util.Set;
 
@@ -115,7 +118,7 @@ public class MongoDbAuthorizationRealm extends AuthorizingRealm {
             }
         }
 
-        final SimpleAuthorizationInfo info = new SimpleAuthorizationInfo();
+        final SimpleAuthorizationInfo info = new IndexedAuthorizationInfo();
         info.setObjectPermissions(permissionsBuilder.build());
         info.setRoles(rolesBuilder.build());
 
@@ -127,6 +130,53 @@ public class MongoDbAuthorizationRealm extends AuthorizingRealm {
         return info;
     }
 
+    @Override
+    protected boolean isPermitted(Permission permission, AuthorizationInfo info) {
+        if (info instanceof IndexedAuthorizationInfo indexedInfo) {
+            return indexedInfo.permissionIndex(this).implies(permission);
+        }
+        return super.isPermitted(permission, info);
+    }
+
+    /**
+     * Resolves the same permissions as {@link AuthorizingRealm} does for every single permission check.
+     */
+    private Collection<Permission> resolveAllPermissions(AuthorizationInfo info) {
+        final ImmutableSet.Builder<Permission> permissions = ImmutableSet.builder();
+        if (info.getObjectPermissions() != null) {
+            permissions.addAll(info.getObjectPermissions());
+        }
+        if (info.getStringPermissions() != null) {
+            info.getStringPermissions().forEach(permission -> permissions.add(getPermissionResolver().resolvePermission(permission)));
+        }
+        final RolePermissionResolver rolePermissionResolver = getRolePermissionResolver();
+        if (rolePermissionResolver != null && info.getRoles() != null) {
+            for (String role : info.getRoles()) {
+                final Collection<Permission> rolePermissions = rolePermissionResolver.resolvePermissionsInRole(role);
+                if (rolePermissions != null) {
+                    permissions.addAll(rolePermissions);
+                }
+            }
+        }
+        return permissions.build();
+    }
+
+    /**
+     * Authorization info which indexes its permissions on first use. The info is cached per principal and request,
+     * so all permission checks of a request (e.g. one per listed stream) use the same index.
+     */
+    private static class IndexedAuthorizationInfo extends SimpleAuthorizationInfo {
+        private transient volatile PermissionIndex permissionIndex;
+
+        PermissionIndex permissionIndex(MongoDbAuthorizationRealm realm) {
+            PermissionIndex index = permissionIndex;
+            if (index == null) {
+                index = permissionIndex = new PermissionIndex(realm.resolveAllPermissions(this));
+            }
+            return index;
+        }
+    }
+
     private Optional<GRN> getUserPrincipal(PrincipalCollection principals) {
         final String userId = Iterables.getFirst(principals.byType(String.class), null);
         if (isBlank(userId)) {
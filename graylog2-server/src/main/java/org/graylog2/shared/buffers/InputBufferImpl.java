@@ -22,18 +22,21 @@ import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.WorkHandler;
 import com.lmax.disruptor.dsl.Disruptor;
 import com.lmax.disruptor.dsl.ProducerType;
 import org.graylog2.plugin.BaseConfiguration;
 import org.graylog2.plugin.GlobalMetricNames;
 import org.graylog2.plugin.buffers.InputBuffer;
 import org.graylog2.plugin.journal.RawMessage;
+import org.graylog2.shared.messageq.MessageQueueModule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
+import java.util.List;
 import java.util.concurrent.ThreadFactory;
 
 import static com.codahale.metrics.MetricRegistry.name;
@@ -52,6 +55,7 @@ public class InputBufferImpl implements InputBuffer {
                            BaseConfiguration configuration,
                            Provider<DirectMessageHandler> directMessageHandlerProvider,
                            Provider<RawMessageEncoderHandler> rawMessageEncoderHandlerProvider,
+                           Provider<KafkaInputMessageHandler> kafkaInputMessageHandlerProvider,
                            Provider<JournallingMessageHandler> spoolingMessageHandlerProvider) {
         final Disruptor<RawMessageEvent> disruptor = new Disruptor<>(
                 RawMessageEvent.FACTORY,
@@ -62,12 +66,15 @@ public class InputBufferImpl implements InputBuffer {
         disruptor.setDefaultExceptionHandler(new LoggingExceptionHandler(LOG));
 
         final int numberOfHandlers = configuration.getInputbufferProcessors();
+        // The Kafka inputs read from their topics, which are their journal. Messages of other inputs use the disk journal.
+        final boolean kafkaJournal = MessageQueueModule.KAFKA_JOURNAL_MODE.equals(configuration.getMessageJournalMode());
         if (configuration.isMessageJournalEnabled()) {
-            LOG.info("Message journal is enabled.");
+            LOG.info(kafkaJournal ? "Message journal is enabled, Kafka inputs use their topics as journal." : "Message journal is enabled.");
 
-            final RawMessageEncoderHandler[] handlers = new RawMessageEncoderHandler[numberOfHandlers];
+            @SuppressWarnings("unchecked")
+            final WorkHandler<RawMessageEvent>[] handlers = new WorkHandler[numberOfHandlers];
             for (int i = 0; i < numberOfHandlers; i++) {
-                handlers[i] = rawMessageEncoderHandlerProvider.get();
+                handlers[i] = kafkaJournal ? kafkaInputMessageHandlerProvider.get() : rawMessageEncoderHandlerProvider.get();
             }
             disruptor.handleEventsWithWorkerPool(handlers).then(spoolingMessageHandlerProvider.get());
         } else {
@@ -103,6 +110,20 @@ public class InputBufferImpl implements InputBuffer {
         incomingMessages.mark();
     }
 
+    @Override
+    public void insert(List<RawMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        final RawMessage[] batch = messages.toArray(new RawMessage[0]);
+        // A batch can't be larger than the ring buffer, so publish large batches in chunks of the buffer size.
+        final int chunkSize = ringBuffer.getBufferSize();
+        for (int start = 0; start < batch.length; start += chunkSize) {
+            ringBuffer.publishEvents(RawMessageEvent.TRANSLATOR, start, Math.min(chunkSize, batch.length - start), batch);
+        }
+        incomingMessages.mark(batch.length);
+    }
+
     @Override
     public long getUsage() {
         return ringBuffer.getBufferSize() - ringBuffer.remainingCapacity();
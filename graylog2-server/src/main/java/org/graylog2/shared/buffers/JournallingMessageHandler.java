@@ -67,7 +67,9 @@ public class JournallingMessageHandler implements EventHandler<RawMessageEvent>
             // call the update on the recorder service for every message. (less contention)
             processingStatusRecorder.updateIngestReceiveTime(metricsFilter.getLatestReceiveTime());
 
-            messageQueueWriter.write(entries);
+            if (!entries.isEmpty()) {
+                messageQueueWriter.write(entries);
+            }
 
             // Release objects for GC
             batch.stream()
@@ -93,6 +95,9 @@ public class JournallingMessageHandler implements EventHandler<RawMessageEvent>
         @Nullable
         @Override
         public RawMessageEvent apply(RawMessageEvent input) {
+            if (input.isJournaled()) {
+                return null;
+            }
             if (log.isTraceEnabled()) {
                 log.trace("Journalling message {}", input.getMessageId());
             }
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.shared.buffers;
+
+import com.lmax.disruptor.WorkHandler;
+import org.graylog2.shared.messageq.kafka.KafkaMessageQueueId;
+
+import javax.inject.Inject;
+
+/**
+ * Used with the {@code kafka} journal mode. The messages of Kafka inputs are already journaled in their topics and
+ * are passed on to the process buffer right away, the messages of all other inputs are encoded for the disk journal.
+ */
+class KafkaInputMessageHandler implements WorkHandler<RawMessageEvent> {
+    private final DirectMessageHandler directMessageHandler;
+    private final RawMessageEncoderHandler rawMessageEncoderHandler;
+
+    @Inject
+    public KafkaInputMessageHandler(DirectMessageHandler directMessageHandler,
+                                    RawMessageEncoderHandler rawMessageEncoderHandler) {
+        this.directMessageHandler = directMessageHandler;
+        this.rawMessageEncoderHandler = rawMessageEncoderHandler;
+    }
+
+    @Override
+    public void onEvent(RawMessageEvent event) throws Exception {
+        if (event.getRawMessage().getMessageQueueId() instanceof KafkaMessageQueueId) {
+            directMessageHandler.onEvent(event);
+            // The journalling handler runs for every event, it must not write this one to the disk journal
+            event.setJournaled(true);
+        } else {
+            rawMessageEncoderHandler.onEvent(event);
+        }
+    }
+}
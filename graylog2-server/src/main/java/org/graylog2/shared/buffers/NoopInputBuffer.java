@@ -20,6 +20,7 @@ import org.graylog2.plugin.buffers.InputBuffer;
 import org.graylog2.plugin.journal.RawMessage;
 
 import javax.inject.Singleton;
+import java.util.List;
 
 @Singleton
 public class NoopInputBuffer implements InputBuffer {
@@ -28,6 +29,10 @@ public class NoopInputBuffer implements InputBuffer {
     public void insert(RawMessage message) {
     }
 
+    @Override
+    public void insert(List<RawMessage> messages) {
+    }
+
     @Override
     public long getUsage() {
         return 0;
@@ -37,6 +37,9 @@ public class RawMessageEvent {
     // We need access to the raw message timestamp after the raw message has been cleared
     private DateTime messageTimestamp;
 
+    // set if the message has already been journaled elsewhere and handed to the process buffer
+    private boolean journaled;
+
     public static final EventFactory<RawMessageEvent> FACTORY = new EventFactory<RawMessageEvent>() {
         @Override
         public RawMessageEvent newInstance() {
@@ -91,6 +94,14 @@ public class RawMessageEvent {
         this.messageTimestamp = messageTimestamp;
     }
 
+    public boolean isJournaled() {
+        return journaled;
+    }
+
+    public void setJournaled(boolean journaled) {
+        this.journaled = journaled;
+    }
+
     // performance doesn't matter, it's only being called during tracing
     public UUID getMessageId() {
         final ByteBuffer wrap = ByteBuffer.wrap(messageIdBytes);
@@ -102,5 +113,6 @@ public class RawMessageEvent {
         this.encodedRawMessage = null;
         this.messageIdBytes = null;
         this.messageTimestamp = null;
+        this.journaled = false;
     }
 }
@@ -176,6 +176,8 @@ public class DecodingProcessor implements EventHandler<MessageEvent> {
                 }
             }
 
+            // Every message is acknowledged on its own, the raw message is only done once all of them are.
+            acknowledger.expectAcknowledgements(raw.getMessageQueueId(), processedMessages.size());
             event.setMessages(processedMessages);
         }
     }
@@ -24,7 +24,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import java.security.SecureRandom;
+import java.util.concurrent.ThreadLocalRandom;
 
 // Fill the first 32 bits of the ULIDs random section with
 // a sequence number that reflects the order in which messages were received by an input.
@@ -61,21 +61,20 @@ import java.security.SecureRandom;
 public class MessageULIDGenerator {
     private static final Logger LOG = LoggerFactory.getLogger(MessageULIDGenerator.class);
     private final ULID ulid;
-    private final SecureRandom random;
 
     @Inject
     public MessageULIDGenerator(ULID ulid) {
         this.ulid = ulid;
-        random = new SecureRandom();
     }
 
     public String createULID(Message message) {
-        checkTimestamp(message.getTimestamp().getMillis());
+        final long timestamp = message.getTimestampMillis();
+        checkTimestamp(timestamp);
         try {
-            return createULID(message.getTimestamp().getMillis(), message.getSequenceNr());
+            return createULID(timestamp, message.getSequenceNr());
         } catch (Exception e) {
             LOG.error("Exception while creating ULID.", e);
-            return ulid.nextULID(message.getTimestamp().getMillis());
+            return ulid.nextULID(timestamp);
         }
     }
 
@@ -86,7 +85,9 @@ public class MessageULIDGenerator {
 
         final long msbWithoutRandom = timestamp << 16;
         final long lsbWithoutRandom = lsbSeq << 48;
-        final long nextRandom = random.nextLong();
+        // The random bits only have to make IDs with the same timestamp and sequence number unique, they don't have
+        // to be unpredictable. A per-thread generator avoids contention between the processing threads.
+        final long nextRandom = ThreadLocalRandom.current().nextLong();
 
         final ULID.Value sequencedULID = new ULID.Value(msbWithoutRandom | msbSeq, lsbWithoutRandom | (nextRandom >>> 16));
         return sequencedULID.toString();
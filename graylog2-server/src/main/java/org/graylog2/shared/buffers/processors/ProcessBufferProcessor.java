@@ -28,12 +28,12 @@ import org.graylog2.buffers.OutputBuffer;
 import org.graylog2.messageprocessors.OrderedMessageProcessors;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.Messages;
-import org.graylog2.plugin.Tools;
 import org.graylog2.plugin.buffers.MessageEvent;
 import org.graylog2.plugin.messageprocessors.MessageProcessor;
 import org.graylog2.plugin.streams.DefaultStream;
 import org.graylog2.plugin.streams.Stream;
 import org.graylog2.system.processing.ProcessingStatusRecorder;
+import org.joda.time.DateTimeUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -172,7 +172,7 @@ public class ProcessBufferProcessor implements WorkHandler<MessageEvent> {
             }
 
             // The processing time should only be set once all message processors have finished
-            message.setProcessingTime(Tools.nowUTC());
+            message.setProcessingTimeMillis(DateTimeUtils.currentTimeMillis());
             processingStatusRecorder.updatePostProcessingReceiveTime(message.getReceiveTime());
 
             if(failureSubmissionService.submitProcessingErrors(message)) {
@@ -35,6 +35,14 @@ public interface MessageQueueAcknowledger {
 
     void acknowledge(List<Message> messages);
 
+    /**
+     * Called once the raw message with the given message queue id has been decoded into the given number of
+     * messages, before any of them is acknowledged. Every message is acknowledged on its own, a raw message without
+     * messages is done right away.
+     */
+    default void expectAcknowledgements(@Nullable Object messageQueueId, int count) {
+    }
+
     @AutoValue
     abstract class Metrics {
         public static class Provider implements javax.inject.Provider<MessageQueueAcknowledger.Metrics> {
@@ -23,6 +23,7 @@ import org.graylog2.shared.journal.Journal;
 import org.graylog2.shared.journal.LocalKafkaJournal;
 import org.graylog2.shared.journal.LocalKafkaJournalModule;
 import org.graylog2.shared.journal.NoopJournal;
+import org.graylog2.shared.messageq.kafka.KafkaMessageQueueAcknowledger;
 import org.graylog2.shared.messageq.localkafka.LocalKafkaMessageQueueAcknowledger;
 import org.graylog2.shared.messageq.localkafka.LocalKafkaMessageQueueReader;
 import org.graylog2.shared.messageq.localkafka.LocalKafkaMessageQueueWriter;
@@ -33,6 +34,7 @@ import org.graylog2.shared.messageq.noop.NoopMessageQueueWriter;
 public class MessageQueueModule extends PluginModule {
     public static final String DISK_JOURNAL_MODE = "disk";
     public static final String NOOP_JOURNAL_MODE = "noop";
+    public static final String KAFKA_JOURNAL_MODE = "kafka";
 
     private final Configuration configuration;
 
@@ -51,12 +53,18 @@ public class MessageQueueModule extends PluginModule {
                 bindMessageQueueImplementation(LocalKafkaMessageQueueReader.class, LocalKafkaMessageQueueWriter.class,
                         LocalKafkaMessageQueueAcknowledger.class);
                 break;
+            case KAFKA_JOURNAL_MODE:
+                // The topics of the Kafka inputs are their journal, messages of all other inputs use the disk journal.
+                bindMessageQueueImplementation(LocalKafkaMessageQueueReader.class, LocalKafkaMessageQueueWriter.class,
+                        KafkaMessageQueueAcknowledger.class);
+                break;
             default:
                 // OK, none of the journal modes covered by this plugin are activated
                 break;
         }
 
-        if (configuration.getMessageJournalMode().equals(DISK_JOURNAL_MODE)) {
+        if (configuration.getMessageJournalMode().equals(DISK_JOURNAL_MODE)
+                || configuration.getMessageJournalMode().equals(KAFKA_JOURNAL_MODE)) {
             install(new LocalKafkaJournalModule());
             serviceBinder().addBinding().to(LocalKafkaJournal.class).in(Scopes.SINGLETON);
         } else {
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.shared.messageq.kafka;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.graylog2.plugin.journal.RawMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Uses the topics of a Kafka input as its message journal, instead of writing the messages to a second journal.
+ * <p>
+ * The consumer must not commit offsets automatically. The offset of a record is only committed once the messages of
+ * the record and of all records before it in the partition have been acknowledged by the
+ * {@link KafkaMessageQueueAcknowledger}. After a restart or a rebalance, unacknowledged records are read again.
+ * <p>
+ * Like the consumer, an instance must only be used by a single thread.
+ */
+public class KafkaInputJournal {
+    private static final Logger LOG = LoggerFactory.getLogger(KafkaInputJournal.class);
+
+    private final Consumer<byte[], byte[]> consumer;
+    private final KafkaMessageQueueOffsets offsets = new KafkaMessageQueueOffsets();
+
+    public KafkaInputJournal(Consumer<byte[], byte[]> consumer) {
+        this.consumer = consumer;
+    }
+
+    public void subscribe(Pattern pattern) {
+        consumer.subscribe(pattern, new ConsumerRebalanceListener() {
+            @Override
+            public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                // Messages of revoked partitions which are acknowledged later on are read again by the new owner.
+                try {
+                    commitSync(Duration.ofSeconds(5));
+                } catch (KafkaException e) {
+                    LOG.warn("Couldn't commit offsets of revoked partitions {}, their records will be read again.", partitions, e);
+                } finally {
+                    offsets.remove(partitions);
+                }
+            }
+
+            @Override
+            public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+            }
+
+            @Override
+            public void onPartitionsLost(Collection<TopicPartition> partitions) {
+                // The partitions are already owned by another consumer, committing would fail.
+                offsets.remove(partitions);
+            }
+        });
+    }
+
+    /**
+     * Commits the acknowledged offsets and polls the next records.
+     */
+    public ConsumerRecords<byte[], byte[]> poll(Duration timeout) {
+        commitAcknowledged();
+        return consumer.poll(timeout);
+    }
+
+    /**
+     * Returns the raw message for the given record and tracks it until the message is acknowledged. Records without
+     * payload are never acknowledged because the input discards them, so they aren't tracked.
+     */
+    public RawMessage rawMessage(ConsumerRecord<byte[], byte[]> record) {
+        final RawMessage rawMessage = new RawMessage(record.value());
+        if (record.value().length == 0) {
+            offsets.skip(record);
+        } else {
+            rawMessage.setMessageQueueId(offsets.track(record));
+        }
+        return rawMessage;
+    }
+
+    /**
+     * Marks a record as done which isn't handed to the input.
+     */
+    public void skip(ConsumerRecord<byte[], byte[]> record) {
+        offsets.skip(record);
+    }
+
+    /**
+     * Commits the acknowledged offsets and closes the consumer.
+     */
+    public void close(Duration timeout) {
+        try {
+            commitSync(timeout);
+        } finally {
+            consumer.close(timeout);
+        }
+    }
+
+    private void commitAcknowledged() {
+        final Map<TopicPartition, OffsetAndMetadata> committable = offsets.committableOffsets();
+        if (committable.isEmpty()) {
+            return;
+        }
+        consumer.commitAsync(committable, (committed, e) -> {
+            if (e != null) {
+                LOG.warn("Couldn't commit offsets {}, retrying with the next poll", committed, e);
+                offsets.commitFailed(committable);
+            }
+        });
+    }
+
+    private void commitSync(Duration timeout) {
+        final Map<TopicPartition, OffsetAndMetadata> committable = offsets.committableOffsets();
+        if (!committable.isEmpty()) {
+            consumer.commitSync(committable, timeout);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.shared.messageq.kafka;
+
+import org.graylog2.plugin.Message;
+import org.graylog2.shared.messageq.AbstractMessageQueueAcknowledger;
+import org.graylog2.shared.messageq.MessageQueueAcknowledger;
+import org.graylog2.shared.messageq.localkafka.LocalKafkaMessageQueueAcknowledger;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hands acknowledgements to the offsets of the Kafka consumer which read the message. The offsets are committed by
+ * the {@link KafkaInputJournal}, because the Kafka consumer must only be used by the thread polling it.
+ * <p>
+ * Messages of all other inputs are still written to the disk journal, their acknowledgements are passed on to it.
+ */
+@Singleton
+public class KafkaMessageQueueAcknowledger extends AbstractMessageQueueAcknowledger<KafkaMessageQueueId> {
+    private final LocalKafkaMessageQueueAcknowledger journalAcknowledger;
+
+    @Inject
+    public KafkaMessageQueueAcknowledger(LocalKafkaMessageQueueAcknowledger journalAcknowledger,
+                                         MessageQueueAcknowledger.Metrics metrics) {
+        super(KafkaMessageQueueId.class, metrics);
+        this.journalAcknowledger = journalAcknowledger;
+    }
+
+    @Override
+    public void acknowledge(@Nullable Object queueId) {
+        if (queueIdClass.isInstance(queueId)) {
+            super.acknowledge(queueId);
+        } else {
+            journalAcknowledger.acknowledge(queueId);
+        }
+    }
+
+    @Override
+    public void acknowledge(List<Message> messages) {
+        final List<Message> journaledMessages = new ArrayList<>();
+        for (final Message message : messages) {
+            if (queueIdClass.isInstance(message.getMessageQueueId())) {
+                super.acknowledge(message.getMessageQueueId());
+            } else {
+                journaledMessages.add(message);
+            }
+        }
+        if (!journaledMessages.isEmpty()) {
+            journalAcknowledger.acknowledge(journaledMessages);
+        }
+    }
+
+    @Override
+    public void expectAcknowledgements(@Nullable Object messageQueueId, int count) {
+        if (messageQueueId instanceof KafkaMessageQueueId queueId) {
+            queueId.offsets().expectAcknowledgements(queueId.partition(), queueId.offset(), count);
+        }
+    }
+
+    @Override
+    protected void doAcknowledge(KafkaMessageQueueId queueId) {
+        queueId.offsets().acknowledge(queueId.partition(), queueId.offset());
+    }
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.shared.messageq.kafka;
+
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * Identifies a message by the partition and offset of the Kafka input record it was read from. The id keeps a
+ * reference to the offsets of the consumer which read the record, so the acknowledgement reaches that consumer.
+ */
+public record KafkaMessageQueueId(KafkaMessageQueueOffsets offsets, TopicPartition partition, long offset) {
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.shared.messageq.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Tracks the records a Kafka consumer handed to an input until their messages have been acknowledged.
+ * <p>
+ * Messages are processed and indexed in parallel, so acknowledgements arrive out of order. The committable offset of
+ * a partition is the lowest offset which hasn't been acknowledged yet, everything before it is done. A record which
+ * is decoded into several messages is done once all of them have been acknowledged. Only the
+ * consumer thread may call {@link #track(ConsumerRecord)}, {@link #skip(ConsumerRecord)},
+ * {@link #committableOffsets()} and {@link #remove(Collection)}, acknowledgements can come from any thread.
+ */
+public class KafkaMessageQueueOffsets {
+    private final ConcurrentMap<TopicPartition, PartitionOffsets> partitions = new ConcurrentHashMap<>();
+
+    /**
+     * Starts tracking the given record.
+     *
+     * @return the message queue id for the messages of the record
+     */
+    public KafkaMessageQueueId track(ConsumerRecord<?, ?> record) {
+        final TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+        final PartitionOffsets offsets = partitions.computeIfAbsent(partition, p -> new PartitionOffsets());
+        offsets.pending.put(record.offset(), 1);
+        offsets.nextOffset = record.offset() + 1;
+        return new KafkaMessageQueueId(this, partition, record.offset());
+    }
+
+    /**
+     * Marks a record as done which won't be acknowledged, e.g. because it doesn't have a payload.
+     */
+    public void skip(ConsumerRecord<?, ?> record) {
+        final TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+        partitions.computeIfAbsent(partition, p -> new PartitionOffsets()).nextOffset = record.offset() + 1;
+    }
+
+    void acknowledge(TopicPartition partition, long offset) {
+        final PartitionOffsets offsets = partitions.get(partition);
+        // The partition has been revoked in the meantime, the new owner reads the record again.
+        if (offsets != null) {
+            offsets.pending.computeIfPresent(offset, (o, remaining) -> remaining > 1 ? remaining - 1 : null);
+        }
+    }
+
+    void expectAcknowledgements(TopicPartition partition, long offset, int count) {
+        final PartitionOffsets offsets = partitions.get(partition);
+        if (offsets != null) {
+            offsets.pending.computeIfPresent(offset, (o, remaining) -> count > 0 ? count : null);
+        }
+    }
+
+    /**
+     * Returns the offsets to commit for all partitions which made progress since the last call. The committed offset
+     * is the offset of the next record to read.
+     */
+    public Map<TopicPartition, OffsetAndMetadata> committableOffsets() {
+        final Map<TopicPartition, OffsetAndMetadata> committable = new HashMap<>();
+        partitions.forEach((partition, offsets) -> {
+            final long offset = offsets.committableOffset();
+            if (offset > offsets.committedOffset) {
+                offsets.committedOffset = offset;
+                committable.put(partition, new OffsetAndMetadata(offset));
+            }
+        });
+        return committable;
+    }
+
+    /**
+     * Returns the offsets of a failed commit to the next call of {@link #committableOffsets()}.
+     */
+    public void commitFailed(Map<TopicPartition, OffsetAndMetadata> failed) {
+        failed.keySet().forEach(partition -> {
+            final PartitionOffsets offsets = partitions.get(partition);
+            if (offsets != null) {
+                offsets.committedOffset = -1;
+            }
+        });
+    }
+
+    /**
+     * Stops tracking the given partitions, later acknowledgements for their records are ignored.
+     */
+    public void remove(Collection<TopicPartition> revoked) {
+        revoked.forEach(partitions::remove);
+    }
+
+    private static class PartitionOffsets {
+        // Offset of every pending record to the number of acknowledgements it still waits for
+        private final ConcurrentSkipListMap<Long, Integer> pending = new ConcurrentSkipListMap<>();
+        private long nextOffset = -1;
+        private long committedOffset = -1;
+
+        private long committableOffset() {
+            // Acknowledgements only remove offsets, without pending offsets every tracked record is done.
+            final Map.Entry<Long, Integer> first = pending.firstEntry();
+            return first != null ? first.getKey() : nextOffset;
+        }
+    }
+}
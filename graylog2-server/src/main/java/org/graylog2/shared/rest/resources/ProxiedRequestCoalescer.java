@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.shared.rest.resources;
+
+import com.google.common.annotations.VisibleForTesting;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.ByteString;
+
+import javax.annotation.Nullable;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Shares identical in-flight proxied requests between concurrent callers, e.g. several browser windows refreshing the
+ * same cluster overview. Requests are only identical if they have the same method, URL, body and authentication
+ * token, so a response is never shared between different users.
+ * <p>
+ * All callers get the same response entity, so this must only be used for calls with deserialized, read-only
+ * response bodies. Cancelling the future of a caller means that it gave up on the response. The shared request is
+ * only cancelled once all of its callers gave up.
+ */
+@Singleton
+public class ProxiedRequestCoalescer {
+    private final ConcurrentMap<RequestKey, InFlightRequest> inFlight = new ConcurrentHashMap<>();
+
+    private record RequestKey(String method, String url, @Nullable ByteString body, @Nullable String authenticationToken) {
+    }
+
+    /**
+     * Executes the given request, or joins an identical request which is already in flight.
+     *
+     * @param request             the request, used to identify identical requests
+     * @param authenticationToken the token which is forwarded with the request
+     * @param execution           starts the request if no identical request is in flight
+     * @return a future which completes with the (possibly shared) response
+     */
+    public <T> CompletableFuture<ProxiedResource.NodeResponse<T>> execute(Request request,
+                                                                          @Nullable String authenticationToken,
+                                                                          Supplier<CompletableFuture<ProxiedResource.NodeResponse<T>>> execution) {
+        final RequestKey key = new RequestKey(request.method(), request.url().toString(), bodyHash(request.body()), authenticationToken);
+        while (true) {
+            final InFlightRequest created = new InFlightRequest();
+            final InFlightRequest existing = inFlight.putIfAbsent(key, created);
+            if (existing == null) {
+                created.join();
+                start(key, created, execution);
+                return created.callerResponse();
+            }
+            if (existing.join()) {
+                return existing.callerResponse();
+            }
+            // All callers of the existing request gave up and it is being cancelled, so start a new one
+            inFlight.remove(key, existing);
+        }
+    }
+
+    private <T> void start(RequestKey key,
+                           InFlightRequest inFlightRequest,
+                           Supplier<CompletableFuture<ProxiedResource.NodeResponse<T>>> execution) {
+        try {
+            final CompletableFuture<ProxiedResource.NodeResponse<T>> future = execution.get();
+            inFlightRequest.setExecution(future);
+            future.whenComplete((response, error) -> {
+                inFlight.remove(key, inFlightRequest);
+                if (error != null) {
+                    inFlightRequest.response.completeExceptionally(error);
+                } else {
+                    inFlightRequest.response.complete(response);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, inFlightRequest);
+            inFlightRequest.response.completeExceptionally(e);
+        }
+    }
+
+    @VisibleForTesting
+    int inFlightRequests() {
+        return inFlight.size();
+    }
+
+    @Nullable
+    private static ByteString bodyHash(@Nullable RequestBody body) {
+        if (body == null) {
+            return null;
+        }
+        try (Buffer buffer = new Buffer()) {
+            body.writeTo(buffer);
+            return buffer.sha256();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class InFlightRequest {
+        private final CompletableFuture<ProxiedResource.NodeResponse<?>> response = new CompletableFuture<>();
+        // Guarded by this
+        private int callers = 0;
+        private boolean abandoned = false;
+        private CompletableFuture<?> execution;
+
+        synchronized boolean join() {
+            if (abandoned) {
+                return false;
+            }
+            callers++;
+            return true;
+        }
+
+        synchronized void setExecution(CompletableFuture<?> execution) {
+            this.execution = execution;
+        }
+
+        private synchronized void leave() {
+            callers--;
+            if (callers == 0 && !response.isDone()) {
+                abandoned = true;
+                execution.cancel(false);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> CompletableFuture<ProxiedResource.NodeResponse<T>> callerResponse() {
+            // Callers get their own copy, so they can't complete or cancel the shared future.
+            final CompletableFuture<ProxiedResource.NodeResponse<T>> callerResponse = response.copy()
+                    .thenApply(nodeResponse -> (ProxiedResource.NodeResponse<T>) nodeResponse);
+            callerResponse.whenComplete((nodeResponse, error) -> {
+                if (error instanceof CancellationException) {
+                    leave();
+                }
+            });
+            return callerResponse;
+        }
+    }
+}
@@ -19,6 +19,7 @@ package org.graylog2.shared.rest.resources;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.auto.value.AutoValue;
 import com.google.common.base.Stopwatch;
+import okhttp3.Request;
 import okhttp3.ResponseBody;
 import org.graylog2.cluster.Node;
 import org.graylog2.cluster.NodeNotFoundException;
@@ -28,6 +29,7 @@ import org.graylog2.shared.utilities.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import retrofit2.Call;
+import retrofit2.Callback;
 import retrofit2.Response;
 
 import javax.annotation.Nonnull;
@@ -48,12 +50,11 @@ import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -73,6 +74,9 @@ public abstract class ProxiedResource extends RestResource {
     @Named("proxied_requests_default_call_timeout")
     private com.github.joschi.jadconfig.util.Duration defaultProxyCallTimeout;
 
+    @Inject
+    private ProxiedRequestCoalescer requestCoalescer;
+
     protected ProxiedResource(@Context HttpHeaders httpHeaders,
                               NodeService nodeService,
                               RemoteInterfaceProvider remoteInterfaceProvider,
@@ -206,52 +210,47 @@ public abstract class ProxiedResource extends RestResource {
             Duration timeout) {
         final long callTimeoutMs = Duration.ZERO.equals(timeout) ? getDefaultProxyCallTimeout().toMillis() : timeout.toMillis();
 
-        final Map<String, Future<Optional<FinalResponseType>>> futures = this.nodeService.allActive().keySet().stream()
-                .collect(Collectors.toMap(Function.identity(), node -> interfaceProvider.apply(node)
-                        .map(r -> executor.submit(() -> {
-                            final Call<RemoteCallResponseType> call = fn.apply(r);
-                            final Stopwatch sw = Stopwatch.createUnstarted();
-                            try {
-                                call.timeout().timeout(callTimeoutMs, TimeUnit.MILLISECONDS);
-                                sw.start();
-                                final Response<RemoteCallResponseType> response = call.execute();
-                                if (response.isSuccessful()) {
-                                    return Optional.of(transformer.apply(response.body()));
-                                } else {
-                                    LOG.warn("Unable to call {} on node <{}>, result: {} (duration: {} ms)",
-                                            call.request().url(), node, response.message(), sw.stop().elapsed().toMillis());
-                                    return Optional.<FinalResponseType>empty();
+        final Map<String, CompletableFuture<Optional<FinalResponseType>>> futures = this.nodeService.allActive().keySet().stream()
+                .collect(Collectors.toMap(Function.identity(), node -> {
+                    final Optional<RemoteInterfaceType> remoteInterface = interfaceProvider.apply(node);
+                    if (remoteInterface.isEmpty()) {
+                        return CompletableFuture.completedFuture(Optional.<FinalResponseType>empty());
+                    }
+                    final Call<RemoteCallResponseType> call = fn.apply(remoteInterface.get());
+                    call.timeout().timeout(callTimeoutMs, TimeUnit.MILLISECONDS);
+                    final Stopwatch sw = Stopwatch.createStarted();
+                    final CompletableFuture<NodeResponse<RemoteCallResponseType>> nodeResponse = enqueue(call);
+                    return nodeResponse
+                            .thenApply(response -> {
+                                if (response.isSuccess()) {
+                                    return response.entity().map(transformer);
+                                }
+                                LOG.warn("Unable to call {} on node <{}>, result: {} (duration: {} ms)",
+                                        call.request().url(), node, response.code(), sw.elapsed().toMillis());
+                                return Optional.<FinalResponseType>empty();
+                            })
+                            .exceptionally(e -> {
+                                final long elapsedMs = sw.elapsed().toMillis();
+                                final Throwable cause = unwrap(e);
+                                if (cause instanceof CancellationException) {
+                                    // Cancelled after the deadline, the result has already been reported
+                                    return Optional.empty();
                                 }
-                            } catch (IOException e) {
-                                final long elapsedMs = sw.stop().elapsed().toMillis();
                                 if (LOG.isDebugEnabled()) {
-                                    LOG.warn("Unable to call {} on node <{}> (duration: {} ms)", call.request().url(), node, elapsedMs, e);
+                                    LOG.warn("Unable to call {} on node <{}> (duration: {} ms)", call.request().url(), node, elapsedMs, cause);
                                 } else {
-                                    LOG.warn("Unable to call {} on node <{}>: {} (duration: {} ms)", call.request().url(), node, e.getMessage(), elapsedMs);
+                                    LOG.warn("Unable to call {} on node <{}>: {} (duration: {} ms)", call.request().url(), node, cause.getMessage(), elapsedMs);
                                 }
-                                return Optional.<FinalResponseType>empty();
-                            }
-                        }))
-                        .orElse(CompletableFuture.completedFuture(Optional.empty()))
-                ));
-
-        return futures
-                .entrySet()
-                .stream()
-                .collect(Collectors.toMap(Map.Entry::getKey, entry -> {
-                    try {
-                        // Never block without timeout to avoid saturating the thread pool with waiting futures.
-                        // We double the timeout that we use for the HTTP call here to ensure that the HTTP
-                        // requests times out before we hit the timeout on this Future#get call.
-                        return entry.getValue().get(callTimeoutMs * 2, TimeUnit.MILLISECONDS);
-                    } catch (InterruptedException | ExecutionException e) {
-                        LOG.debug("Couldn't retrieve future", e);
-                        return Optional.empty();
-                    } catch (TimeoutException e) {
-                        LOG.debug("Upstream timeout for node <{}>", entry.getKey());
-                        return Optional.empty();
-                    }
+                                return Optional.empty();
+                            })
+                            // We double the timeout that we use for the HTTP call here to ensure that the HTTP
+                            // requests times out before we give up on the node.
+                            .completeOnTimeout(Optional.empty(), callTimeoutMs * 2, TimeUnit.MILLISECONDS)
+                            // Stops the HTTP call if it is still running after the deadline
+                            .whenComplete((result, e) -> nodeResponse.cancel(false));
                 }));
+
+        return awaitAll(futures);
     }
 
     protected <RemoteInterfaceType> Function<String, Optional<RemoteInterfaceType>> createRemoteInterface(Class<RemoteInterfaceType> interfaceClass, @Nullable Duration timeout) {
@@ -308,40 +307,117 @@ public abstract class ProxiedResource extends RestResource {
     ) {
         final long callTimeoutMs = (timeout == null) ? getDefaultProxyCallTimeout().toMillis() : timeout.toMillis();
 
-        final Map<String, Future<CallResult<FinalResponseType>>> futures = this.nodeService.allActive().keySet().stream()
-                .collect(Collectors.toMap(Function.identity(), nodeId -> executor.submit(() -> {
-                            final Stopwatch sw = Stopwatch.createStarted();
-                            try {
-                                return CallResult.success(doNodeApiCall(nodeId, interfaceClass, remoteInterfaceCallProvider, responseTransformer, timeout));
-                            } catch (Exception e) {
-                                final long elapsedMs = sw.stop().elapsed().toMillis();
+        final Map<String, CompletableFuture<CallResult<FinalResponseType>>> futures = this.nodeService.allActive().keySet().stream()
+                .collect(Collectors.toMap(Function.identity(), nodeId -> {
+                    final Stopwatch sw = Stopwatch.createStarted();
+                    final CompletableFuture<NodeResponse<RemoteCallResponseType>> nodeResponse =
+                            doNodeApiCallAsync(nodeId, interfaceClass, remoteInterfaceCallProvider, timeout);
+                    return nodeResponse
+                            .thenApply(response -> CallResult.success(NodeResponse.create(
+                                    response.isSuccess(),
+                                    response.code(),
+                                    response.entity().map(responseTransformer).orElse(null),
+                                    response.error().orElse(null))))
+                            .exceptionally(e -> {
+                                final long elapsedMs = sw.elapsed().toMillis();
+                                final Throwable cause = unwrap(e);
+                                if (cause instanceof CancellationException) {
+                                    // Cancelled after the deadline, the result has already been reported
+                                    return CallResult.upstreamTimeout(nodeId);
+                                }
                                 if (LOG.isDebugEnabled()) {
-                                    LOG.warn("Failed to call API on node <{}>, cause: {} (duration: {} ms)", nodeId, e.getMessage(), elapsedMs, e);
+                                    LOG.warn("Failed to call API on node <{}>, cause: {} (duration: {} ms)", nodeId, cause.getMessage(), elapsedMs, cause);
                                 } else {
-                                    LOG.warn("Failed to call API on node <{}>, cause: {} (duration: {} ms)", nodeId, e.getMessage(), elapsedMs);
+                                    LOG.warn("Failed to call API on node <{}>, cause: {} (duration: {} ms)", nodeId, cause.getMessage(), elapsedMs);
                                 }
-                                return CallResult.error(e.getMessage());
-                            }
-                        })
-                ));
-
-        return futures
-                .entrySet()
-                .stream()
-                .collect(Collectors.toMap(Map.Entry::getKey, entry -> {
-                    try {
-                        // Never block without timeout to avoid saturating the thread pool with waiting futures.
-                        // We double the timeout that we use for the HTTP call here to ensure that the HTTP
-                        // requests times out before we hit the timeout on this Future#get call.
-                        return entry.getValue().get(callTimeoutMs * 2, TimeUnit.MILLISECONDS);
-                    } catch (InterruptedException | ExecutionException e) {
-                        LOG.debug("Couldn't retrieve future", e);
-                        throw new RuntimeException(e);
-                    } catch (TimeoutException e) {
-                        LOG.debug("Upstream timeout for node <{}>", entry.getKey());
-                        return CallResult.upstreamTimeout(entry.getKey());
-                    }
+                                return CallResult.error(cause.getMessage());
+                            })
+                            // Each node gets its own deadline, a slow node only delays the response up to that point
+                            // and is reported as an upstream timeout. We double the timeout that we use for the HTTP
+                            // call here to ensure that the HTTP request times out before we hit the deadline.
+                            .completeOnTimeout(CallResult.upstreamTimeout(nodeId), callTimeoutMs * 2, TimeUnit.MILLISECONDS)
+                            // Stops the HTTP call if it is still running after the deadline
+                            .whenComplete((result, e) -> nodeResponse.cancel(false));
                 }));
+
+        return awaitAll(futures);
+    }
+
+    /**
+     * Starts the given API call on a node without blocking the calling thread. Identical read requests which are
+     * already in flight for the same user are shared instead of being sent again, see {@link #isCoalescable(Request)}.
+     * Cancelling the returned future cancels the HTTP call, a shared call once all of its callers cancelled.
+     */
+    protected <RemoteInterfaceType, RemoteCallResponseType> CompletableFuture<NodeResponse<RemoteCallResponseType>> doNodeApiCallAsync(
+            String nodeId,
+            Class<RemoteInterfaceType> interfaceClass,
+            Function<RemoteInterfaceType, Call<RemoteCallResponseType>> remoteInterfaceFunction,
+            @Nullable Duration timeout
+    ) {
+        try {
+            final RemoteInterfaceType remoteInterfaceType = createRemoteInterface(interfaceClass, timeout).apply(nodeId)
+                    .orElseThrow(() -> new IllegalStateException("Node " + nodeId + " not found"));
+            final Call<RemoteCallResponseType> call = remoteInterfaceFunction.apply(remoteInterfaceType);
+
+            final long callTimeoutMs = (timeout == null) ? getDefaultProxyCallTimeout().toMillis() : timeout.toMillis();
+            call.timeout().timeout(callTimeoutMs, TimeUnit.MILLISECONDS);
+
+            if (requestCoalescer != null && isCoalescable(call.request())) {
+                return requestCoalescer.execute(call.request(), getAuthenticationToken(), () -> enqueue(call));
+            }
+            return enqueue(call);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Decides if identical concurrent requests may share a single response. Only {@code GET} requests are shared by
+     * default, resources which use other methods for read-only requests can override this.
+     */
+    protected boolean isCoalescable(Request request) {
+        return "GET".equals(request.method());
+    }
+
+    private static <RemoteCallResponseType> CompletableFuture<NodeResponse<RemoteCallResponseType>> enqueue(Call<RemoteCallResponseType> call) {
+        final CompletableFuture<NodeResponse<RemoteCallResponseType>> future = new CompletableFuture<>();
+        call.enqueue(new Callback<>() {
+            @Override
+            public void onResponse(@Nonnull Call<RemoteCallResponseType> call, @Nonnull Response<RemoteCallResponseType> response) {
+                try (final ResponseBody errorBody = response.errorBody()) {
+                    future.complete(NodeResponse.create(
+                            response.isSuccessful(),
+                            response.code(),
+                            response.body(),
+                            errorBody == null ? null : errorBody.bytes()
+                    ));
+                } catch (IOException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onFailure(@Nonnull Call<RemoteCallResponseType> call, @Nonnull Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        future.whenComplete((response, e) -> {
+            if (e instanceof CancellationException) {
+                call.cancel();
+            }
+        });
+        return future;
+    }
+
+    private static <T> Map<String, T> awaitAll(Map<String, CompletableFuture<T>> futures) {
+        // All futures complete on their own at the latest after their deadline, so this doesn't block forever.
+        CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).join();
+        return futures.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().join()));
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
     }
 
     /**
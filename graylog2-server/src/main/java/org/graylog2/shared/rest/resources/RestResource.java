@@ -22,6 +22,7 @@ import com.fasterxml.jackson.jaxrs.cfg.EndpointConfigBase;
 import com.fasterxml.jackson.jaxrs.cfg.ObjectWriterInjector;
 import com.fasterxml.jackson.jaxrs.cfg.ObjectWriterModifier;
 import org.apache.shiro.subject.Subject;
+import org.graylog.security.permissions.PermittedInstances;
 import org.graylog2.configuration.HttpConfiguration;
 import org.graylog2.indexer.IndexSet;
 import org.graylog2.indexer.IndexSetRegistry;
@@ -45,6 +46,8 @@ import java.net.URI;
 import java.security.Principal;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -153,6 +156,21 @@ public abstract class RestResource {
         return user;
     }
 
+    /**
+     * Returns the IDs of all entities the current user is permitted to access with the given permission, so lists can
+     * be filtered by the database. The result is empty if the user is permitted to access all entities or the IDs
+     * can't be resolved, every entity has to be checked with {@link #isPermitted(String, String)} then.
+     *
+     * @param permission the permission without instance ID, e.g. {@code streams:read}
+     */
+    protected Optional<Set<String>> getPermittedInstanceIds(String permission) {
+        final User user = getCurrentUser();
+        if (user == null) {
+            return Optional.empty();
+        }
+        return PermittedInstances.resolve(userService.getPermissionsForUser(user), permission);
+    }
+
     protected UriBuilder getUriBuilderToSelf() {
         final URI httpPublishUri = configuration.getHttpPublishUri();
         if (httpPublishUri != null) {
@@ -16,45 +16,141 @@
  */
 package org.graylog2.streams;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
-import com.google.common.collect.Maps;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.annotations.VisibleForTesting;
 import org.graylog2.plugin.streams.Stream;
 import org.graylog2.plugin.streams.StreamRule;
+import org.graylog2.shared.metrics.HdrHistogram;
 
 import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.graylog2.shared.metrics.MetricUtils.safelyRegister;
+
+/**
+ * Keeps the metrics of the stream router.
+ * <p>
+ * By default every stream rule gets its own {@link Timer}. In compact mode ({@code stream_rule_metrics_compact}) the
+ * rule execution times are recorded into a single lock-free histogram instead, and only the slowest rules are
+ * reported. The execution time of a rule can additionally be sampled to reduce the overhead on the processing path.
+ */
+@Singleton
 public class StreamMetrics {
-    private final MetricRegistry metricRegistry;
+    public static final String RULE_EXECUTION_TIME = MetricRegistry.name(StreamRule.class, "executionTime");
+    public static final String SLOWEST_RULES = MetricRegistry.name(StreamRule.class, "slowestRules");
+
+    private static final long HIGHEST_TRACKABLE_EXECUTION_TIME = TimeUnit.MINUTES.toNanos(1);
+    private static final RuleExecution NOOP_EXECUTION = () -> {};
 
-    private final Map<String, Meter> streamIncomingMeters = Maps.newHashMap();
-    private final Map<String, Timer> streamExecutionTimers = Maps.newHashMap();
-    private final Map<String, Meter> streamExceptionMeters = Maps.newHashMap();
-    private final Map<String, Meter> streamRuleTimeoutMeters = Maps.newHashMap();
-    private final Map<String, Meter> streamFaultsExceededMeters = Maps.newHashMap();
+    private final MetricRegistry metricRegistry;
+    private final boolean compact;
+    private final int sampleRate;
+    private final int topRules;
+
+    private final Map<String, Meter> streamIncomingMeters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> streamExecutionTimers = new ConcurrentHashMap<>();
+    private final Map<String, Meter> streamExceptionMeters = new ConcurrentHashMap<>();
+    private final Map<String, Meter> streamRuleTimeoutMeters = new ConcurrentHashMap<>();
+    private final Map<String, Meter> streamFaultsExceededMeters = new ConcurrentHashMap<>();
+    private final Map<String, RuleStats> ruleStats = new ConcurrentHashMap<>();
+    private final HdrHistogram ruleExecutionTime;
+
+    /**
+     * Measures a single execution of a stream rule.
+     */
+    public interface RuleExecution extends AutoCloseable {
+        @Override
+        void close();
+    }
 
+    public record SlowRule(@JsonProperty("stream_id") String streamId,
+                           @JsonProperty("stream_rule_id") String streamRuleId,
+                           @JsonProperty("executions") long executions,
+                           @JsonProperty("mean_execution_time_micros") double meanExecutionTimeMicros,
+                           @JsonProperty("max_execution_time_micros") double maxExecutionTimeMicros) {
+    }
 
     @Inject
-    public StreamMetrics(final MetricRegistry metricRegistry) {
+    public StreamMetrics(final MetricRegistry metricRegistry,
+                         @Named("stream_rule_metrics_compact") final boolean compact,
+                         @Named("stream_rule_metrics_sample_rate") final int sampleRate,
+                         @Named("stream_rule_metrics_top_rules") final int topRules) {
+        checkArgument(sampleRate > 0, "Sample rate must be positive");
         this.metricRegistry = metricRegistry;
+        this.compact = compact;
+        this.sampleRate = sampleRate;
+        this.topRules = topRules;
+
+        if (compact) {
+            this.ruleExecutionTime = safelyRegister(metricRegistry, RULE_EXECUTION_TIME, new HdrHistogram(HIGHEST_TRACKABLE_EXECUTION_TIME, 2));
+            safelyRegister(metricRegistry, SLOWEST_RULES, (Gauge<List<SlowRule>>) this::slowestRules);
+        } else {
+            this.ruleExecutionTime = null;
+        }
+    }
+
+    public StreamMetrics(final MetricRegistry metricRegistry) {
+        this(metricRegistry, false, 1, 10);
     }
 
     public void markIncomingMeter(String streamId) {
         getIncomingMeter(streamId).mark();
     }
 
-    public Timer getExecutionTimer(String streamId, String streamRuleId) {
-        Timer timer = this.streamExecutionTimers.get(streamRuleId);
-        if (timer == null) {
-            timer = metricRegistry.timer(MetricRegistry.name(Stream.class, streamId, "StreamRule", streamRuleId, "executionTime"));
-            this.streamExecutionTimers.put(streamRuleId, timer);
+    /**
+     * Starts measuring an execution of the given stream rule. The returned execution must be closed once the rule
+     * has been evaluated.
+     */
+    public RuleExecution timeRuleExecution(String streamId, String streamRuleId) {
+        if (!compact) {
+            final Timer.Context context = getExecutionTimer(streamId, streamRuleId).time();
+            return context::close;
+        }
+
+        final RuleStats stats = getRuleStats(streamId, streamRuleId);
+        stats.executions.increment();
+        if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return NOOP_EXECUTION;
         }
+        final long start = System.nanoTime();
+        return () -> {
+            final long duration = System.nanoTime() - start;
+            stats.record(duration);
+            ruleExecutionTime.update(duration);
+        };
+    }
 
-        return timer;
+    public Timer getExecutionTimer(String streamId, String streamRuleId) {
+        return streamExecutionTimers.computeIfAbsent(streamRuleId, ruleId ->
+                metricRegistry.timer(MetricRegistry.name(Stream.class, streamId, "StreamRule", ruleId, "executionTime")));
     }
 
+    /**
+     * Returns the rules with the highest mean execution time, slowest first. Only available in compact mode.
+     */
+    @VisibleForTesting
+    List<SlowRule> slowestRules() {
+        return ruleStats.values().stream()
+                .filter(stats -> stats.sampledExecutions.sum() > 0)
+                .map(RuleStats::toSlowRule)
+                .sorted(Comparator.comparingDouble(SlowRule::meanExecutionTimeMicros).reversed())
+                .limit(topRules)
+                .toList();
+    }
 
     public void markExceptionMeter(String streamId) {
         getExceptionMeter(streamId).mark();
@@ -68,43 +164,57 @@ public class StreamMetrics {
         getStreamFaultsExceededMeter(streamId).mark();
     }
 
-    private Meter getIncomingMeter(String streamId) {
-        Meter meter = this.streamIncomingMeters.get(streamId);
-        if (meter == null) {
-            meter = metricRegistry.meter(MetricRegistry.name(Stream.class, streamId, "incomingMessages"));
-            this.streamIncomingMeters.put(streamId, meter);
+    private RuleStats getRuleStats(String streamId, String streamRuleId) {
+        final RuleStats stats = ruleStats.get(streamRuleId);
+        if (stats != null) {
+            return stats;
         }
+        return ruleStats.computeIfAbsent(streamRuleId, ruleId -> new RuleStats(streamId, ruleId));
+    }
 
-        return meter;
+    private Meter getIncomingMeter(String streamId) {
+        return streamIncomingMeters.computeIfAbsent(streamId, id ->
+                metricRegistry.meter(MetricRegistry.name(Stream.class, id, "incomingMessages")));
     }
 
     private Meter getExceptionMeter(String streamId) {
-        Meter meter = this.streamExceptionMeters.get(streamId);
-        if (meter == null) {
-            meter = metricRegistry.meter(MetricRegistry.name(Stream.class, streamId, "matchingExceptions"));
-            this.streamExceptionMeters.put(streamId, meter);
-        }
-
-        return meter;
+        return streamExceptionMeters.computeIfAbsent(streamId, id ->
+                metricRegistry.meter(MetricRegistry.name(Stream.class, id, "matchingExceptions")));
     }
 
     private Meter getStreamRuleTimeoutMeter(final String streamId) {
-        Meter meter = this.streamRuleTimeoutMeters.get(streamId);
-        if (meter == null) {
-            meter = metricRegistry.meter(MetricRegistry.name(Stream.class, streamId, "ruleTimeouts"));
-            this.streamRuleTimeoutMeters.put(streamId, meter);
-        }
-
-        return meter;
+        return streamRuleTimeoutMeters.computeIfAbsent(streamId, id ->
+                metricRegistry.meter(MetricRegistry.name(Stream.class, id, "ruleTimeouts")));
     }
 
     private Meter getStreamFaultsExceededMeter(final String streamId) {
-        Meter meter = this.streamFaultsExceededMeters.get(streamId);
-        if (meter == null) {
-            meter = metricRegistry.meter(MetricRegistry.name(Stream.class, streamId, "faultsExceeded"));
-            this.streamFaultsExceededMeters.put(streamId, meter);
+        return streamFaultsExceededMeters.computeIfAbsent(streamId, id ->
+                metricRegistry.meter(MetricRegistry.name(Stream.class, id, "faultsExceeded")));
+    }
+
+    private static class RuleStats {
+        private final String streamId;
+        private final String streamRuleId;
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder sampledExecutions = new LongAdder();
+        private final LongAdder sampledNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+        private RuleStats(String streamId, String streamRuleId) {
+            this.streamId = streamId;
+            this.streamRuleId = streamRuleId;
         }
 
-        return meter;
+        private void record(long nanos) {
+            sampledExecutions.increment();
+            sampledNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        private SlowRule toSlowRule() {
+            final long sampled = sampledExecutions.sum();
+            final double meanMicros = sampled == 0 ? 0 : sampledNanos.sum() / (double) sampled / 1000;
+            return new SlowRule(streamId, streamRuleId, executions.sum(), meanMicros, maxNanos.get() / 1000d);
+        }
     }
 }
@@ -18,7 +18,6 @@ package org.graylog2.streams;
 
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.MetricRegistry;
-import com.codahale.metrics.Timer;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -302,7 +301,7 @@ public class StreamRouterEngine {
         @Nullable
         public Stream match(Message message) {
             // TODO Add missing message recordings!
-            try (final Timer.Context ignored = streamMetrics.getExecutionTimer(streamId, streamRuleId).time()) {
+            try (final StreamMetrics.RuleExecution ignored = streamMetrics.timeRuleExecution(streamId, streamRuleId)) {
                 if (matcher.match(message, rule)) {
                     return stream;
                 } else {
@@ -320,7 +319,7 @@ public class StreamRouterEngine {
         @Nullable
         private Stream matchWithTimeOut(final Message message, long timeout, TimeUnit unit) {
             Stream matchedStream = null;
-            try (final Timer.Context ignored = streamMetrics.getExecutionTimer(streamId, streamRuleId).time()) {
+            try (final StreamMetrics.RuleExecution ignored = streamMetrics.timeRuleExecution(streamId, streamRuleId)) {
                 matchedStream = timeLimiter.callWithTimeout(new Callable<Stream>() {
                     @Override
                     @Nullable
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.events.indices;
+
+import com.codahale.metrics.MetricRegistry;
+import org.graylog.events.event.Event;
+import org.graylog.events.event.TestEvent;
+import org.graylog.testing.mongodb.MongoDBExtension;
+import org.graylog.testing.mongodb.MongoDBTestService;
+import org.graylog2.indexer.IndexSet;
+import org.graylog2.indexer.indexset.IndexSetConfig;
+import org.graylog2.indexer.messages.IndexingRequest;
+import org.graylog2.plugin.Message;
+import org.graylog2.shared.bindings.providers.ObjectMapperProvider;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MongoDBExtension.class)
+class EventIndexingQueueTest {
+    private static final Duration CLAIM_DURATION = Duration.ofMinutes(5);
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private MongoDBTestService mongodb;
+    private EventIndexingQueue queue;
+
+    @BeforeEach
+    void setUp(MongoDBTestService mongodb) {
+        this.mongodb = mongodb;
+        this.queue = new EventIndexingQueue(3, mongodb.mongoConnection(), new ObjectMapperProvider().get(), metricRegistry);
+    }
+
+    @Test
+    void claimsOldestEntriesUpToBatchSize() {
+        final List<IndexingRequest> first = requests(1);
+        final List<IndexingRequest> second = requests(3);
+        final List<IndexingRequest> third = requests(2);
+        queue.add(first);
+        queue.add(second);
+        queue.add(third);
+
+        final List<EventIndexingQueue.Entry> batch = queue.claim(4, CLAIM_DURATION);
+
+        assertThat(batch).hasSize(2);
+        assertThat(batch).flatExtracting(EventIndexingQueue.Entry::events)
+                .extracting(event -> event.event().id())
+                .containsExactlyElementsOf(eventIds(first, second));
+        assertThat(batch).flatExtracting(EventIndexingQueue.Entry::events)
+                .extracting(EventIndexingQueue.QueuedEvent::indexSetId)
+                .containsOnly("index-set-1");
+        assertThat(queue.claim(4, CLAIM_DURATION)).flatExtracting(EventIndexingQueue.Entry::events)
+                .extracting(event -> event.event().id())
+                .containsExactlyElementsOf(eventIds(third));
+        // All entries are claimed
+        assertThat(queue.claim(4, CLAIM_DURATION)).isEmpty();
+        assertThat(queue.size()).isEqualTo(3);
+    }
+
+    @Test
+    void storesEventDocuments() {
+        final List<IndexingRequest> requests = requests(1);
+        final Event event = (Event) requests.get(0).message();
+        queue.add(requests);
+
+        assertThat(queue.claim(1, CLAIM_DURATION)).singleElement()
+                .satisfies(entry -> assertThat(entry.events()).singleElement()
+                        .satisfies(queuedEvent -> {
+                            assertThat(queuedEvent.event().id()).isEqualTo(event.getId());
+                            assertThat(queuedEvent.event().eventTimestamp()).isEqualTo(event.getEventTimestamp());
+                            assertThat(queuedEvent.event().streams()).containsExactly("stream-1");
+                            assertThat(queuedEvent.event().message()).isEqualTo(event.getMessage());
+                        }));
+    }
+
+    @Test
+    void claimsEntriesAgainAfterClaimExpired() {
+        queue.add(requests(1));
+
+        assertThat(queue.claim(1, Duration.ZERO)).hasSize(1);
+        assertThat(queue.claim(1, CLAIM_DURATION)).hasSize(1);
+        assertThat(queue.claim(1, CLAIM_DURATION)).isEmpty();
+    }
+
+    @Test
+    void retriesEntriesAfterTheGivenTime() {
+        queue.add(requests(1));
+        final EventIndexingQueue.Entry entry = queue.claim(1, CLAIM_DURATION).get(0);
+        assertThat(entry.attempts()).isZero();
+
+        queue.retryAt(entry.id(), Instant.now().plus(Duration.ofMinutes(1)));
+        assertThat(queue.claim(1, CLAIM_DURATION)).isEmpty();
+
+        queue.retryAt(entry.id(), Instant.now().minusSeconds(1));
+        assertThat(queue.claim(1, CLAIM_DURATION)).singleElement()
+                .satisfies(retry -> assertThat(retry.attempts()).isEqualTo(2));
+    }
+
+    @Test
+    void removesIndexedEntries() {
+        queue.add(requests(1));
+        queue.add(requests(1));
+
+        queue.remove(queue.claim(1, CLAIM_DURATION).stream().map(EventIndexingQueue.Entry::id).toList());
+
+        assertThat(queue.size()).isEqualTo(1);
+        assertThat(mongodb.mongoCollection(EventIndexingQueue.COLLECTION_NAME).countDocuments()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsWritesIfFull() {
+        queue.add(requests(1));
+        queue.add(requests(1));
+        queue.add(requests(1));
+
+        assertThatThrownBy(() -> queue.add(requests(2)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("queue is full");
+        assertThat(queue.size()).isEqualTo(3);
+        assertThat(metricRegistry.meter(MetricRegistry.name(EventIndexingQueue.class, "rejectedEvents")).getCount()).isEqualTo(2);
+    }
+
+    @Test
+    void rejectsMessages() {
+        final IndexingRequest request = IndexingRequest.create(indexSet(),
+                new Message("message", "source", new DateTime(2023, 1, 1, 0, 0, DateTimeZone.UTC)));
+
+        assertThatThrownBy(() -> queue.add(List.of(request))).isInstanceOf(IllegalArgumentException.class);
+        assertThat(queue.size()).isZero();
+    }
+
+    @SafeVarargs
+    private static List<String> eventIds(List<IndexingRequest>... requests) {
+        return Arrays.stream(requests)
+                .flatMap(List::stream)
+                .map(request -> ((Event) request.message()).getId())
+                .toList();
+    }
+
+    static List<IndexingRequest> requests(int count) {
+        final IndexSet indexSet = indexSet();
+        return IntStream.range(0, count)
+                .mapToObj(i -> {
+                    final TestEvent event = new TestEvent(new DateTime(2023, 1, 1, 0, 0, DateTimeZone.UTC));
+                    event.addStream("stream-1");
+                    return IndexingRequest.create(indexSet, event);
+                })
+                .toList();
+    }
+
+    private static IndexSet indexSet() {
+        final IndexSet indexSet = mock(IndexSet.class);
+        final IndexSetConfig config = mock(IndexSetConfig.class);
+        when(config.id()).thenReturn("index-set-1");
+        when(indexSet.getConfig()).thenReturn(config);
+        return indexSet;
+    }
+}
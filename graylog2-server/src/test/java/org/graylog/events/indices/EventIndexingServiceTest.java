@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.events.indices;
+
+import com.codahale.metrics.MetricRegistry;
+import org.graylog.events.event.Event;
+import org.graylog.testing.mongodb.MongoDBExtension;
+import org.graylog.testing.mongodb.MongoDBTestService;
+import org.graylog2.indexer.IndexSet;
+import org.graylog2.indexer.IndexSetRegistry;
+import org.graylog2.indexer.messages.IndexingRequest;
+import org.graylog2.indexer.messages.Messages;
+import org.graylog2.shared.bindings.providers.ObjectMapperProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.graylog.events.indices.EventIndexingQueueTest.requests;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MongoDBExtension.class)
+class EventIndexingServiceTest {
+    private final Messages messages = mock(Messages.class);
+    private final IndexSetRegistry indexSetRegistry = mock(IndexSetRegistry.class);
+    private final IndexSet indexSet = mock(IndexSet.class);
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private EventIndexingQueue queue;
+    private EventIndexingService service;
+
+    @BeforeEach
+    void setUp(MongoDBTestService mongodb) {
+        queue = new EventIndexingQueue(100, mongodb.mongoConnection(), new ObjectMapperProvider().get(), metricRegistry);
+        service = new EventIndexingService(4, queue, messages, indexSetRegistry, metricRegistry);
+        when(indexSetRegistry.get("index-set-1")).thenReturn(Optional.of(indexSet));
+        when(messages.bulkIndexRequests(anyList(), eq(true))).thenReturn(Set.of());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (service.isRunning()) {
+            service.stopAsync().awaitTerminated();
+        }
+    }
+
+    @Test
+    void indexesQueuedEventsInBatches() {
+        @SuppressWarnings("unchecked") final ArgumentCaptor<List<IndexingRequest>> batchCaptor = ArgumentCaptor.forClass(List.class);
+        final List<IndexingRequest> first = requests(1);
+        final List<IndexingRequest> second = requests(3);
+        final List<IndexingRequest> third = requests(2);
+        queue.add(first);
+        queue.add(second);
+        queue.add(third);
+
+        service.startAsync().awaitRunning();
+        await().atMost(1, TimeUnit.MINUTES).until(() -> queue.size() == 0);
+
+        verify(messages, times(2)).bulkIndexRequests(batchCaptor.capture(), eq(true));
+        // Entries are added to a batch until it has reached the batch size
+        assertThat(batchCaptor.getAllValues()).extracting(List::size).containsExactly(4, 2);
+        assertThat(batchCaptor.getAllValues().get(1))
+                .extracting(request -> ((Event) request.message()).getId())
+                .containsExactlyElementsOf(third.stream().map(request -> ((Event) request.message()).getId()).toList());
+        assertThat(batchCaptor.getAllValues()).flatExtracting(batch -> batch).extracting(IndexingRequest::indexSet).containsOnly(indexSet);
+        assertThat(meter("indexedEvents")).isEqualTo(6);
+    }
+
+    @Test
+    void retriesFailedBatches() {
+        when(messages.bulkIndexRequests(anyList(), eq(true)))
+                .thenThrow(new IllegalStateException("Boom"))
+                .thenReturn(Set.of());
+        queue.add(requests(2));
+
+        service.startAsync().awaitRunning();
+        await().atMost(1, TimeUnit.MINUTES).until(() -> queue.size() == 0);
+
+        verify(messages, times(2)).bulkIndexRequests(anyList(), eq(true));
+        assertThat(meter("failedBatches")).isEqualTo(1);
+        assertThat(meter("retriedEvents")).isEqualTo(2);
+        assertThat(meter("indexedEvents")).isEqualTo(2);
+    }
+
+    @Test
+    void keepsFailedEntriesQueued() {
+        when(messages.bulkIndexRequests(anyList(), eq(true))).thenThrow(new IllegalStateException("Boom"));
+        queue.add(requests(2));
+
+        service.index(queue.claim(4, Duration.ofMinutes(5)));
+
+        assertThat(queue.size()).isEqualTo(1);
+        // The entry is retried after the back-off
+        assertThat(queue.claim(4, Duration.ofMinutes(5))).isEmpty();
+    }
+
+    @Test
+    void dropsEventsOfDeletedIndexSets() {
+        when(indexSetRegistry.get("index-set-1")).thenReturn(Optional.empty());
+        queue.add(requests(2));
+
+        service.index(queue.claim(4, Duration.ofMinutes(5)));
+
+        verifyNoInteractions(messages);
+        assertThat(queue.size()).isZero();
+        assertThat(meter("droppedEvents")).isEqualTo(2);
+    }
+
+    @Test
+    void increasesRetryDelay() {
+        assertThat(EventIndexingService.retryDelay(0)).isEqualTo(Duration.ofSeconds(1));
+        assertThat(EventIndexingService.retryDelay(3)).isEqualTo(Duration.ofSeconds(8));
+        assertThat(EventIndexingService.retryDelay(100)).isEqualTo(Duration.ofMinutes(5));
+    }
+
+    private long meter(String name) {
+        return metricRegistry.meter(MetricRegistry.name(EventIndexingService.class, name)).getCount();
+    }
+}
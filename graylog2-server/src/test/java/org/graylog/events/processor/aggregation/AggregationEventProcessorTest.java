@@ -32,6 +32,7 @@ import org.graylog.events.processor.EventProcessorDependencyCheck;
 import org.graylog.events.processor.EventProcessorException;
 import org.graylog.events.processor.EventProcessorPreconditionException;
 import org.graylog.events.processor.EventStreamService;
+import org.graylog.events.processor.realtime.RealtimeFilterEventDefinitions;
 import org.graylog.events.search.MoreSearch;
 import org.graylog.plugins.views.search.searchtypes.pivot.SeriesSpec;
 import org.graylog.plugins.views.search.searchtypes.pivot.series.Cardinality;
@@ -89,6 +90,8 @@ public class AggregationEventProcessorTest {
     @Mock
     private Messages messages;
     @Mock
+    private RealtimeFilterEventDefinitions realtimeFilterEventDefinitions;
+    @Mock
     private Consumer<List<MessageSummary>> messageConsumer;
     private EventStreamService eventStreamService;
 
@@ -104,6 +107,7 @@ public class AggregationEventProcessorTest {
                 new StreamMock(Collections.singletonMap("_id", StreamImpl.DEFAULT_EVENTS_STREAM_ID), Collections.emptyList()),
                 new StreamMock(Collections.singletonMap("_id", StreamImpl.DEFAULT_SYSTEM_EVENTS_STREAM_ID), Collections.emptyList())
         ));
+        when(realtimeFilterEventDefinitions.evaluation(any(), any(), any())).thenReturn(RealtimeFilterEventDefinitions.Evaluation.SEARCH);
     }
 
     @Test
@@ -124,7 +128,7 @@ public class AggregationEventProcessorTest {
                 .build();
 
         final AggregationEventProcessor eventProcessor = new AggregationEventProcessor(
-                eventDefinitionDto, searchFactory, eventProcessorDependencyCheck, stateService, moreSearch, eventStreamService, messages);
+                eventDefinitionDto, searchFactory, eventProcessorDependencyCheck, stateService, moreSearch, eventStreamService, messages, realtimeFilterEventDefinitions);
 
         final AggregationResult result = AggregationResult.builder()
                 .effectiveTimerange(timerange)
@@ -220,7 +224,7 @@ public class AggregationEventProcessorTest {
                 .timerange(timerange)
                 .build();
 
-        final AggregationEventProcessor eventProcessor = new AggregationEventProcessor(eventDefinitionDto, searchFactory, eventProcessorDependencyCheck, stateService, moreSearch, eventStreamService, messages);
+        final AggregationEventProcessor eventProcessor = new AggregationEventProcessor(eventDefinitionDto, searchFactory, eventProcessorDependencyCheck, stateService, moreSearch, eventStreamService, messages, realtimeFilterEventDefinitions);
 
         final AggregationResult result = AggregationResult.builder()
                 .effectiveTimerange(timerange)
@@ -323,7 +327,7 @@ public class AggregationEventProcessorTest {
                 .timerange(timerange)
                 .build();
 
-        final AggregationEventProcessor eventProcessor = new AggregationEventProcessor(eventDefinitionDto, searchFactory, eventProcessorDependencyCheck, stateService, moreSearch, eventStreamService, messages);
+        final AggregationEventProcessor eventProcessor = new AggregationEventProcessor(eventDefinitionDto, searchFactory, eventProcessorDependencyCheck, stateService, moreSearch, eventStreamService, messages, realtimeFilterEventDefinitions);
 
         assertThatCode(() -> eventProcessor.createEvents(eventFactory, parameters, (events) -> {})).doesNotThrowAnyException();
 
@@ -338,6 +342,35 @@ public class AggregationEventProcessorTest {
         verify(searchFactory, never()).create(eq(config), eq(parameters), any(String.class), eq(eventDefinitionDto));
     }
 
+    @Test
+    public void createEventsSkipsSearchOfRealtimeDefinitions() throws Exception {
+        final DateTime now = DateTime.now(DateTimeZone.UTC);
+        final AbsoluteRange timerange = AbsoluteRange.create(now.minusHours(1), now);
+        final EventDefinitionDto eventDefinitionDto = buildEventDefinitionDto(ImmutableSet.of(), ImmutableList.of(), null);
+        final AggregationEventProcessorParameters parameters = AggregationEventProcessorParameters.builder()
+                .timerange(timerange)
+                .build();
+        final AggregationEventProcessor eventProcessor = new AggregationEventProcessor(eventDefinitionDto, searchFactory, eventProcessorDependencyCheck, stateService, moreSearch, eventStreamService, messages, realtimeFilterEventDefinitions);
+
+        when(realtimeFilterEventDefinitions.evaluation(eventDefinitionDto, timerange.from(), timerange.to()))
+                .thenReturn(RealtimeFilterEventDefinitions.Evaluation.REALTIME);
+        eventProcessor.createEvents(eventFactory, parameters, (events) -> {});
+
+        verify(stateService, times(1)).setState("dto-id-1", timerange.from(), timerange.to());
+        verify(moreSearch, never()).scrollQuery(any(), any(), any(), any(), any(Integer.class), any(MoreSearch.ScrollCallback.class));
+
+        // Some nodes haven't emitted the events of the time range yet
+        reset(stateService);
+        when(realtimeFilterEventDefinitions.evaluation(eventDefinitionDto, timerange.from(), timerange.to()))
+                .thenReturn(RealtimeFilterEventDefinitions.Evaluation.PENDING);
+
+        assertThatCode(() -> eventProcessor.createEvents(eventFactory, parameters, (events) -> {}))
+                .isInstanceOf(EventProcessorPreconditionException.class)
+                .hasMessageContaining("haven't been emitted on all nodes");
+        verify(stateService, never()).setState(any(String.class), any(DateTime.class), any(DateTime.class));
+        verify(moreSearch, never()).scrollQuery(any(), any(), any(), any(), any(Integer.class), any(MoreSearch.ScrollCallback.class));
+    }
+
     @Test
     public void createEventsWithoutRequiredMessagesBeingIndexed() throws Exception {
         final DateTime now = DateTime.now(DateTimeZone.UTC);
@@ -357,7 +390,7 @@ public class AggregationEventProcessorTest {
                 .timerange(timerange)
                 .build();
 
-        final AggregationEventProcessor eventProcessor = new AggregationEventProcessor(eventDefinitionDto, searchFactory, eventProcessorDependencyCheck, stateService, moreSearch, eventStreamService, messages);
+        final AggregationEventProcessor eventProcessor = new AggregationEventProcessor(eventDefinitionDto, searchFactory, eventProcessorDependencyCheck, stateService, moreSearch, eventStreamService, messages, realtimeFilterEventDefinitions);
 
         // If the dependency check returns true, there should be no exception raised and the state service should be called
         when(eventProcessorDependencyCheck.hasMessagesIndexedUpTo(timerange)).thenReturn(true);
@@ -415,7 +448,7 @@ public class AggregationEventProcessorTest {
                 .timerange(timerange)
                 .build();
 
-        final AggregationEventProcessor eventProcessor = new AggregationEventProcessor(eventDefinitionDto, searchFactory, eventProcessorDependencyCheck, stateService, moreSearch, eventStreamService, messages);
+        final AggregationEventProcessor eventProcessor = new AggregationEventProcessor(eventDefinitionDto, searchFactory, eventProcessorDependencyCheck, stateService, moreSearch, eventStreamService, messages, realtimeFilterEventDefinitions);
         final AggregationResult result = buildAggregationResult(timerange, timerange.to(), ImmutableList.of("one", "two"));
         final ImmutableList<EventWithContext> eventsWithContext = eventProcessor.eventsFromAggregationResult(eventFactory, parameters, result);
 
@@ -460,7 +493,7 @@ public class AggregationEventProcessorTest {
                 .build();
 
         final AggregationEventProcessor eventProcessor = new AggregationEventProcessor(eventDefinitionDto, searchFactory, eventProcessorDependencyCheck, stateService, moreSearch,
-                eventStreamService, messages);
+                eventStreamService, messages, realtimeFilterEventDefinitions);
         final AggregationResult result = buildAggregationResult(timerange, timerange.to(), ImmutableList.of("one", "two"));
         final ImmutableList<EventWithContext> eventsWithContext = eventProcessor.eventsFromAggregationResult(eventFactory, parameters, result);
 
@@ -551,7 +584,7 @@ public class AggregationEventProcessorTest {
                 .build();
         final EventDefinitionDto eventDefinitionDto = buildEventDefinitionDto(ImmutableSet.of(), ImmutableList.of(series), null);
         final AggregationEventProcessor eventProcessor = new AggregationEventProcessor(
-                eventDefinitionDto, searchFactory, eventProcessorDependencyCheck, stateService, moreSearch, eventStreamService, messages);
+                eventDefinitionDto, searchFactory, eventProcessorDependencyCheck, stateService, moreSearch, eventStreamService, messages, realtimeFilterEventDefinitions);
 
         eventProcessor.sourceMessagesForEvent(event, messageConsumer, batchLimit);
     }
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.events.processor.realtime;
+
+import org.graylog2.plugin.Message;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilterQueryCompilerTest {
+    private FilterQueryCompiler compiler;
+    private Message message;
+
+    @BeforeEach
+    void setUp() {
+        compiler = new FilterQueryCompiler();
+        message = new Message("Failed password for invalid user root from 10.0.0.1", "fw-01", new DateTime(2023, 1, 1, 0, 0, DateTimeZone.UTC));
+        message.addField("application_name", "sshd");
+        message.addField("http_response_code", 500);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "*",
+            "source:fw-01",
+            "application_name:sshd AND source:fw-01",
+            "application_name:nginx OR source:fw-01",
+            "message:failed",
+            "message:\"invalid user root\"",
+            "message:\"Invalid User\" AND NOT application_name:nginx",
+            "NOT application_name:nginx",
+            "_exists_:application_name",
+            "application_name:*",
+            "http_response_code:500",
+            "(application_name:sshd OR application_name:nginx) AND message:password"
+    })
+    void matchesMessage(String query) {
+        assertThat(compiler.compile(query)).hasValueSatisfying(matcher -> assertThat(matches(matcher)).isTrue());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "source:fw-02",
+            "application_name:SSHD",
+            "application_name:sshd AND source:fw-02",
+            "message:\"user invalid\"",
+            "message:fail",
+            "NOT application_name:sshd",
+            "_exists_:username",
+            "http_response_code:404"
+    })
+    void doesNotMatchMessage(String query) {
+        assertThat(compiler.compile(query)).hasValueSatisfying(matcher -> assertThat(matches(matcher)).isFalse());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "sshd",
+            "application_name:ssh*",
+            "http_response_code:[500 TO 599]",
+            "source:/fw-.*/",
+            "message:\"invalid root\"~2",
+            "source:fw~",
+            "application_name:sshd AND (",
+    })
+    void rejectsUnsupportedQueries(String query) {
+        assertThat(compiler.compile(query)).isEmpty();
+    }
+
+    private boolean matches(FilterQueryCompiler.Matcher matcher) {
+        return matcher.matches(new FilterQueryCompiler.MatchContext(message));
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.events.processor.realtime;
+
+import org.graylog.events.JobSchedulerTestClock;
+import org.graylog.events.processor.DBEventDefinitionService;
+import org.graylog.events.processor.EventDefinitionDto;
+import org.graylog.events.processor.aggregation.AggregationEventProcessorConfig;
+import org.graylog.testing.mongodb.MongoDBExtension;
+import org.graylog.testing.mongodb.MongoDBTestService;
+import org.graylog2.cluster.Node;
+import org.graylog2.cluster.NodeService;
+import org.graylog2.messageprocessors.MessageProcessorsConfig;
+import org.graylog2.plugin.cluster.ClusterConfigService;
+import org.graylog2.plugin.system.SimpleNodeId;
+import org.graylog2.shared.bindings.providers.ObjectMapperProvider;
+import org.graylog2.system.processing.ProcessingStatusRecorder;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.graylog.events.processor.realtime.RealtimeFilterEventDefinitions.Evaluation.PENDING;
+import static org.graylog.events.processor.realtime.RealtimeFilterEventDefinitions.Evaluation.REALTIME;
+import static org.graylog.events.processor.realtime.RealtimeFilterEventDefinitions.Evaluation.SEARCH;
+import static org.graylog.events.processor.realtime.RealtimeFilterEventProcessorTest.eventDefinition;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MongoDBExtension.class)
+@ExtendWith(MockitoExtension.class)
+class RealtimeFilterEventDefinitionsTest {
+    private static final DateTime NOW = new DateTime(2023, 6, 1, 12, 0, DateTimeZone.UTC);
+
+    @Mock
+    private DBEventDefinitionService eventDefinitionService;
+    @Mock
+    private ClusterConfigService clusterConfigService;
+    @Mock
+    private ScheduledExecutorService scheduler;
+    @Mock
+    private NodeService nodeService;
+    @Mock
+    private ProcessingStatusRecorder processingStatusRecorder;
+
+    private JobSchedulerTestClock clock;
+    private RealtimeFilterNodeStateService nodeStateService;
+    private RealtimeFilterEventDefinitions definitions;
+
+    @BeforeEach
+    void setUp(MongoDBTestService mongodb) {
+        clock = new JobSchedulerTestClock(NOW);
+        nodeStateService = new RealtimeFilterNodeStateService(mongodb.mongoConnection());
+        definitions = definitions("node-1");
+        lenient().when(nodeService.allActive(Node.Type.SERVER)).thenReturn(Map.of("node-1", mock(Node.class)));
+    }
+
+    private RealtimeFilterEventDefinitions definitions(String nodeId) {
+        return new RealtimeFilterEventDefinitions(true, eventDefinitionService, new FilterQueryCompiler(),
+                clusterConfigService, clock, new SimpleNodeId(nodeId), nodeService, nodeStateService,
+                processingStatusRecorder, new ObjectMapperProvider().get(), scheduler);
+    }
+
+    @Test
+    void skipsSearchOnlyAfterDefinitionHasBeenLoaded() {
+        final EventDefinitionDto eventDefinition = eventDefinition("application_name:sshd");
+
+        assertThat(definitions.evaluation(eventDefinition, NOW.plusMinutes(1), NOW.plusMinutes(2))).isEqualTo(SEARCH);
+
+        when(eventDefinitionService.streamAll()).thenAnswer(invocation -> Stream.of(eventDefinition));
+        definitions.refresh();
+
+        assertThat(definitions.definitions()).hasSize(1);
+        assertThat(definitions.evaluation(eventDefinition, NOW.minusMinutes(1), NOW)).isEqualTo(SEARCH);
+        assertThat(definitions.evaluation(eventDefinition, NOW, NOW)).isEqualTo(REALTIME);
+        // Messages received after the last refresh may still be processed
+        assertThat(definitions.evaluation(eventDefinition, NOW, NOW.plusMinutes(1))).isEqualTo(PENDING);
+
+        // Later refreshes keep the time the definition has been loaded first
+        clock.plus(1, TimeUnit.MINUTES);
+        definitions.refresh();
+        assertThat(definitions.evaluation(eventDefinition, NOW, NOW.plusMinutes(1))).isEqualTo(REALTIME);
+    }
+
+    @Test
+    void waitsForMessagesBeingProcessed() {
+        final EventDefinitionDto eventDefinition = eventDefinition("application_name:sshd");
+        when(eventDefinitionService.streamAll()).thenAnswer(invocation -> Stream.of(eventDefinition));
+        definitions.refresh();
+
+        clock.plus(1, TimeUnit.MINUTES);
+        when(processingStatusRecorder.getProcessBufferUsage()).thenReturn(10L);
+        when(processingStatusRecorder.getPostProcessingReceiveTime()).thenReturn(NOW.plusSeconds(30));
+        definitions.refresh();
+
+        assertThat(definitions.evaluation(eventDefinition, NOW, NOW.plusSeconds(30))).isEqualTo(REALTIME);
+        assertThat(definitions.evaluation(eventDefinition, NOW, NOW.plusMinutes(1))).isEqualTo(PENDING);
+    }
+
+    @Test
+    void waitsForPendingEmits() {
+        final EventDefinitionDto eventDefinition = eventDefinition("application_name:sshd");
+        when(eventDefinitionService.streamAll()).thenAnswer(invocation -> Stream.of(eventDefinition));
+        definitions.refresh();
+
+        final long emitId = definitions.emitStarted(NOW.plusSeconds(20));
+        clock.plus(1, TimeUnit.MINUTES);
+        definitions.refresh();
+
+        assertThat(definitions.evaluation(eventDefinition, NOW, NOW.plusSeconds(10))).isEqualTo(REALTIME);
+        assertThat(definitions.evaluation(eventDefinition, NOW, NOW.plusSeconds(30))).isEqualTo(PENDING);
+
+        definitions.emitFinished(emitId);
+        definitions.refresh();
+
+        assertThat(definitions.evaluation(eventDefinition, NOW, NOW.plusSeconds(30))).isEqualTo(REALTIME);
+    }
+
+    @Test
+    void searchesTimeRangesOfFailedEmits() {
+        final EventDefinitionDto eventDefinition = eventDefinition("application_name:sshd");
+        when(eventDefinitionService.streamAll()).thenAnswer(invocation -> Stream.of(eventDefinition));
+        definitions.refresh();
+
+        definitions.emitFailed(eventDefinition, NOW.plusSeconds(10), NOW.plusSeconds(20));
+        clock.plus(1, TimeUnit.MINUTES);
+        definitions.refresh();
+
+        assertThat(definitions.evaluation(eventDefinition, NOW, NOW.plusSeconds(5))).isEqualTo(REALTIME);
+        assertThat(definitions.evaluation(eventDefinition, NOW.plusSeconds(15), NOW.plusSeconds(30))).isEqualTo(SEARCH);
+        assertThat(definitions.evaluation(eventDefinition, NOW.plusSeconds(30), NOW.plusSeconds(40))).isEqualTo(REALTIME);
+    }
+
+    @Test
+    void searchesUnlessAllNodesEvaluateTheDefinition() {
+        final EventDefinitionDto eventDefinition = eventDefinition("application_name:sshd");
+        when(eventDefinitionService.streamAll()).thenAnswer(invocation -> Stream.of(eventDefinition));
+        when(nodeService.allActive(Node.Type.SERVER)).thenReturn(Map.of("node-1", mock(Node.class), "node-2", mock(Node.class)));
+        definitions.refresh();
+
+        // The second node doesn't have the option enabled
+        assertThat(definitions.evaluation(eventDefinition, NOW, NOW)).isEqualTo(SEARCH);
+
+        // The second node has loaded the definition later
+        clock.plus(1, TimeUnit.MINUTES);
+        final RealtimeFilterEventDefinitions otherNode = definitions("node-2");
+        otherNode.refresh();
+        definitions.refresh();
+
+        assertThat(definitions.evaluation(eventDefinition, NOW, NOW.plusMinutes(1))).isEqualTo(SEARCH);
+        assertThat(definitions.evaluation(eventDefinition, NOW.plusMinutes(1), NOW.plusMinutes(1))).isEqualTo(REALTIME);
+
+        // The second node stopped updating its state
+        clock.plus(1, TimeUnit.MINUTES);
+        definitions.refresh();
+
+        assertThat(definitions.evaluation(eventDefinition, NOW.plusMinutes(1), NOW.plusMinutes(2))).isEqualTo(SEARCH);
+    }
+
+    @Test
+    void searchesChangedDefinitionUntilItHasBeenLoaded() {
+        final EventDefinitionDto eventDefinition = eventDefinition("application_name:sshd");
+        when(eventDefinitionService.streamAll()).thenAnswer(invocation -> Stream.of(eventDefinition));
+        definitions.refresh();
+
+        final EventDefinitionDto changed = eventDefinition.toBuilder()
+                .config(((AggregationEventProcessorConfig) eventDefinition.config()).toBuilder().query("application_name:nginx").build())
+                .build();
+
+        assertThat(definitions.evaluation(changed, NOW, NOW)).isEqualTo(SEARCH);
+    }
+
+    @Test
+    void searchesIfProcessorIsDisabled() {
+        final EventDefinitionDto eventDefinition = eventDefinition("application_name:sshd");
+        when(eventDefinitionService.streamAll()).thenAnswer(invocation -> Stream.of(eventDefinition));
+        definitions.refresh();
+
+        when(clusterConfigService.get(MessageProcessorsConfig.class)).thenReturn(MessageProcessorsConfig.create(List.of(),
+                Set.of(RealtimeFilterEventProcessor.class.getCanonicalName())));
+
+        assertThat(definitions.evaluation(eventDefinition, NOW, NOW)).isEqualTo(SEARCH);
+        definitions.refresh();
+
+        // Once enabled again, only time ranges starting after the next refresh are evaluated in real-time
+        clock.plus(10, TimeUnit.SECONDS);
+        when(clusterConfigService.get(MessageProcessorsConfig.class)).thenReturn(MessageProcessorsConfig.defaultConfig());
+        definitions.refresh();
+
+        assertThat(definitions.evaluation(eventDefinition, NOW.plusSeconds(5), NOW.plusSeconds(10))).isEqualTo(SEARCH);
+        assertThat(definitions.evaluation(eventDefinition, NOW.plusSeconds(10), NOW.plusSeconds(10))).isEqualTo(REALTIME);
+    }
+
+    @Test
+    void ignoresDefinitionsWhichNeedASearch() {
+        final EventDefinitionDto eventDefinition = eventDefinition("application_name:ssh*");
+        when(eventDefinitionService.streamAll()).thenAnswer(invocation -> Stream.of(eventDefinition));
+        definitions.refresh();
+
+        assertThat(definitions.definitions()).isEmpty();
+        assertThat(definitions.evaluation(eventDefinition, NOW, NOW)).isEqualTo(SEARCH);
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.events.processor.realtime;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.graylog.events.event.EventOriginContext;
+import org.graylog.events.event.EventProcessorEventFactory;
+import org.graylog.events.event.EventWithContext;
+import org.graylog.events.event.TestEvent;
+import org.graylog.events.notifications.EventNotificationSettings;
+import org.graylog.events.processor.EventDefinition;
+import org.graylog.events.processor.EventDefinitionDto;
+import org.graylog.events.processor.EventProcessorEngine;
+import org.graylog.events.processor.EventStreamService;
+import org.graylog.events.processor.aggregation.AggregationEventProcessorConfig;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.MessageCollection;
+import org.graylog2.indexer.IndexSet;
+import org.graylog2.indexer.indexset.IndexSetConfig;
+import org.graylog2.plugin.Messages;
+import org.graylog2.plugin.streams.Stream;
+import org.graylog2.streams.StreamService;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RealtimeFilterEventProcessorTest {
+    private static final DateTime NOW = new DateTime(2023, 6, 1, 12, 0, DateTimeZone.UTC);
+
+    @Mock
+    private RealtimeFilterEventDefinitions definitions;
+    @Mock
+    private EventProcessorEngine engine;
+    @Mock
+    private EventProcessorEventFactory eventFactory;
+    @Mock
+    private IndexSet indexSet;
+
+    private MetricRegistry metricRegistry;
+    private RealtimeFilterEventProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        metricRegistry = new MetricRegistry();
+        final IndexSetConfig indexSetConfig = mock(IndexSetConfig.class);
+        lenient().when(indexSetConfig.id()).thenReturn("index-set-1");
+        lenient().when(indexSet.getConfig()).thenReturn(indexSetConfig);
+        lenient().when(indexSet.getActiveWriteIndex()).thenReturn("graylog_42");
+        processor = new RealtimeFilterEventProcessor(definitions, () -> engine, () -> eventFactory,
+                new EventStreamService(mock(StreamService.class)), metricRegistry);
+    }
+
+    @Test
+    void createsEventsForRoutedMatchingMessages() throws Exception {
+        final EventDefinition eventDefinition = eventDefinition("application_name:sshd");
+        when(definitions.isEnabled()).thenReturn(true);
+        when(definitions.definitions()).thenReturn(ImmutableList.of(compile(eventDefinition)));
+        when(eventFactory.createEvent(eq(eventDefinition), any(DateTime.class), anyString()))
+                .thenAnswer(invocation -> new TestEvent(invocation.getArgument(1)));
+
+        final Message matching = message("sshd", "stream-1");
+        final Message otherStream = message("sshd", "stream-2");
+        final Message notMatching = message("nginx", "stream-1");
+        final Message filteredOut = message("sshd", "stream-1");
+        filteredOut.setFilterOut(true);
+        final Messages messages = new MessageCollection(ImmutableList.of(matching, otherStream, notMatching, filteredOut));
+
+        assertThat(processor.process(messages)).isSameAs(messages);
+
+        @SuppressWarnings("unchecked")
+        final ArgumentCaptor<List<EventWithContext>> captor = ArgumentCaptor.forClass(List.class);
+        verify(engine, timeout(5000)).emitEvents(eq(eventDefinition), captor.capture());
+
+        assertThat(captor.getValue()).hasSize(1).first().satisfies(eventWithContext -> {
+            assertThat(eventWithContext.event().getSourceStreams()).containsExactly("stream-1");
+            assertThat(eventWithContext.event().getOriginContext())
+                    .isEqualTo(EventOriginContext.elasticsearchMessage("graylog_42", matching.getId()));
+            assertThat(eventWithContext.messageContext()).hasValueSatisfying(context -> {
+                assertThat(context).isNotSameAs(matching);
+                assertThat(context.getField("application_name")).isEqualTo("sshd");
+            });
+        });
+        assertThat(metricRegistry.meter(MetricRegistry.name(RealtimeFilterEventProcessor.class, "createdEvents")).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void recordsFailedEmits() throws Exception {
+        final EventDefinition eventDefinition = eventDefinition("application_name:sshd");
+        when(definitions.isEnabled()).thenReturn(true);
+        when(definitions.definitions()).thenReturn(ImmutableList.of(compile(eventDefinition)));
+        when(definitions.emitStarted(any(DateTime.class))).thenReturn(23L);
+        when(eventFactory.createEvent(eq(eventDefinition), any(DateTime.class), anyString()))
+                .thenAnswer(invocation -> new TestEvent(invocation.getArgument(1)));
+        doThrow(new IllegalStateException("Boom")).when(engine).emitEvents(eq(eventDefinition), any());
+
+        final Message first = message("sshd", "stream-1");
+        final Message second = new Message("Accepted password for root", "fw-01", NOW.plusSeconds(5));
+        second.addField("application_name", "sshd");
+        second.addStreams(first.getStreams());
+
+        processor.process(new MessageCollection(ImmutableList.of(first, second)));
+
+        // The scheduled execution searches the time range of the failed events instead
+        verify(definitions, timeout(5000)).emitFinished(23L);
+        verify(definitions).emitFailed(eventDefinition, NOW, NOW.plusSeconds(5));
+        assertThat(metricRegistry.meter(MetricRegistry.name(RealtimeFilterEventProcessor.class, "failedEvents")).getCount()).isEqualTo(2);
+    }
+
+    @Test
+    void createsEventsWithoutOriginIfWriteIndexIsUnknown() throws Exception {
+        final EventDefinition eventDefinition = eventDefinition("application_name:sshd");
+        when(definitions.isEnabled()).thenReturn(true);
+        when(definitions.definitions()).thenReturn(ImmutableList.of(compile(eventDefinition)));
+        when(eventFactory.createEvent(eq(eventDefinition), any(DateTime.class), anyString()))
+                .thenAnswer(invocation -> new TestEvent(invocation.getArgument(1)));
+        when(indexSet.getActiveWriteIndex()).thenThrow(new IllegalStateException("Boom"));
+
+        processor.process(message("sshd", "stream-1"));
+
+        @SuppressWarnings("unchecked")
+        final ArgumentCaptor<List<EventWithContext>> captor = ArgumentCaptor.forClass(List.class);
+        verify(engine, timeout(5000)).emitEvents(eq(eventDefinition), captor.capture());
+        assertThat(captor.getValue()).singleElement()
+                .satisfies(eventWithContext -> assertThat(eventWithContext.event().getOriginContext()).isNull());
+        verify(definitions, never()).emitFailed(any(), any(), any());
+    }
+
+    @Test
+    void doesNotCreateEventsWithoutRouting() {
+        // Without stream routing a stream-scoped definition can't match, see the processing order migration.
+        when(definitions.isEnabled()).thenReturn(true);
+        when(definitions.definitions()).thenReturn(ImmutableList.of(compile(eventDefinition("application_name:sshd"))));
+
+        processor.process(message("sshd"));
+
+        assertThat(metricRegistry.meter(MetricRegistry.name(RealtimeFilterEventProcessor.class, "createdEvents")).getCount()).isZero();
+        verify(eventFactory, never()).createEvent(any(), any(), anyString());
+    }
+
+    @Test
+    void skipsMessagesIfDisabled() {
+        when(definitions.isEnabled()).thenReturn(false);
+
+        processor.process(message("sshd", "stream-1"));
+
+        verify(definitions, never()).definitions();
+        verify(eventFactory, never()).createEvent(any(), any(), anyString());
+    }
+
+    private Message message(String applicationName, String... streamIds) {
+        final Message message = new Message("Accepted password for root", "fw-01", NOW);
+        message.addField("application_name", applicationName);
+        for (final String streamId : streamIds) {
+            final Stream stream = mock(Stream.class);
+            lenient().when(stream.getId()).thenReturn(streamId);
+            lenient().when(stream.getIndexSet()).thenReturn(indexSet);
+            message.addStream(stream);
+        }
+        return message;
+    }
+
+    private RealtimeFilterEventDefinitions.CompiledDefinition compile(EventDefinition eventDefinition) {
+        final AggregationEventProcessorConfig config = (AggregationEventProcessorConfig) eventDefinition.config();
+        return RealtimeFilterEventDefinitions.CompiledDefinition.create(eventDefinition, config.streams(),
+                new FilterQueryCompiler().compile(config.query()).orElseThrow(), NOW.minusHours(1));
+    }
+
+    static EventDefinitionDto eventDefinition(String query) {
+        return EventDefinitionDto.builder()
+                .id("definition-1")
+                .title("Test Filter")
+                .description("A test filter definition")
+                .priority(1)
+                .alert(false)
+                .state(EventDefinition.State.ENABLED)
+                .notificationSettings(EventNotificationSettings.withGracePeriod(60000))
+                .config(AggregationEventProcessorConfig.builder()
+                        .query(query)
+                        .streams(ImmutableSet.of("stream-1"))
+                        .groupBy(ImmutableList.of())
+                        .series(ImmutableList.of())
+                        .searchWithinMs(60000)
+                        .executeEveryMs(60000)
+                        .build())
+                .keySpec(ImmutableList.of())
+                .build();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.events.processor.realtime;
+
+import org.graylog.testing.mongodb.MongoDBExtension;
+import org.graylog.testing.mongodb.MongoDBTestService;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(MongoDBExtension.class)
+class RealtimeFilterNodeStateServiceTest {
+    private static final DateTime NOW = new DateTime(2023, 6, 1, 12, 0, DateTimeZone.UTC);
+
+    private RealtimeFilterNodeStateService service;
+
+    @BeforeEach
+    void setUp(MongoDBTestService mongodb) {
+        service = new RealtimeFilterNodeStateService(mongodb.mongoConnection());
+    }
+
+    @Test
+    void storesNodeStates() {
+        final var loaded = new RealtimeFilterNodeStateService.LoadedDefinition("abc", NOW.minusMinutes(5));
+        service.save("node-1", NOW, NOW.minusHours(1), NOW.minusSeconds(3), Map.of("definition-1", loaded), NOW.minusDays(1));
+        service.save("node-2", NOW, null, NOW, Map.of(), NOW.minusDays(1));
+        service.save("node-3", NOW, null, NOW, Map.of(), NOW.minusDays(1));
+
+        final Map<String, RealtimeFilterNodeStateService.NodeState> states = service.find(List.of("node-1", "node-2", "node-4"));
+
+        assertThat(states).containsOnlyKeys("node-1", "node-2");
+        assertThat(states.get("node-1")).isEqualTo(new RealtimeFilterNodeStateService.NodeState("node-1", NOW,
+                NOW.minusHours(1), NOW.minusSeconds(3), Map.of("definition-1", loaded), List.of()));
+        assertThat(states.get("node-2").processorEnabledSince()).isNull();
+    }
+
+    @Test
+    void keepsFailedRangesUntilRetention() {
+        final var old = new RealtimeFilterNodeStateService.FailedRange("definition-1", NOW.minusDays(2), NOW.minusDays(2).plusSeconds(1));
+        final var recent = new RealtimeFilterNodeStateService.FailedRange("definition-1", NOW.minusMinutes(2), NOW.minusMinutes(1));
+        service.addFailedRange("node-1", old);
+        service.addFailedRange("node-1", recent);
+
+        // Nodes without a state are ignored, their failed ranges are kept for the first save
+        assertThat(service.find(List.of("node-1"))).isEmpty();
+
+        service.save("node-1", NOW, NOW, NOW, Map.of(), NOW.minusDays(1));
+
+        assertThat(service.find(List.of("node-1")).get("node-1").failedRanges()).containsExactly(recent);
+    }
+
+    @Test
+    void matchesOverlappingFailedRanges() {
+        final var range = new RealtimeFilterNodeStateService.FailedRange("definition-1", NOW, NOW.plusMinutes(1));
+
+        assertThat(range.overlaps("definition-1", NOW.minusMinutes(1), NOW)).isTrue();
+        assertThat(range.overlaps("definition-1", NOW.plusSeconds(10), NOW.plusSeconds(20))).isTrue();
+        assertThat(range.overlaps("definition-1", NOW.plusMinutes(1).plusMillis(1), NOW.plusMinutes(2))).isFalse();
+        assertThat(range.overlaps("definition-2", NOW, NOW.plusMinutes(1))).isFalse();
+    }
+}
@@ -20,6 +20,7 @@ import com.codahale.metrics.Counter;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.net.HostAndPort;
 import io.prometheus.client.dropwizard.DropwizardExports;
+import io.prometheus.client.dropwizard.samplebuilder.MapperConfig;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -27,6 +28,9 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.Map;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 class PrometheusExporterHTTPServerTest {
@@ -83,6 +87,59 @@ class PrometheusExporterHTTPServerTest {
         });
     }
 
+    @Test
+    void runWithStreamingMetricsWriter() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        metricRegistry.counter("counter").inc();
+        metricRegistry.counter("other").inc();
+
+        final PrometheusExporterHTTPServer streamingServer = new PrometheusExporterHTTPServer(HostAndPort.fromParts("127.0.0.1", 0));
+        streamingServer.replaceMetricsWriter(PrometheusMetricsWriter.create(metricRegistry, new PrometheusMetricMappings(List.of(
+                new MapperConfig("counter", "gl_counter", Map.of()),
+                new MapperConfig("other", "gl_other", Map.of())))));
+        streamingServer.start();
+
+        try {
+            doGET(streamingServer, "/metrics", response -> {
+                assertThat(response.body()).isNotNull();
+                assertThat(response.body().string())
+                        .contains("gl_counter 1.0")
+                        .contains("gl_other 1.0")
+                        .contains("jvm_");
+            });
+            doGET(streamingServer, "/metrics?name[]=gl_counter", response -> {
+                assertThat(response.body()).isNotNull();
+                assertThat(response.body().string())
+                        .contains("gl_counter 1.0")
+                        .doesNotContain("gl_other")
+                        .doesNotContain("jvm_");
+            });
+            doGET(streamingServer, "/-/healthy", response -> {
+                assertThat(response.body()).isNotNull();
+                assertThat(response.body().string()).containsIgnoringCase("exporter is healthy");
+            });
+        } finally {
+            streamingServer.stop();
+        }
+    }
+
+    @Test
+    void respondsWithUnavailableWithoutMetricsWriter() throws Exception {
+        final PrometheusExporterHTTPServer streamingServer = new PrometheusExporterHTTPServer(HostAndPort.fromParts("127.0.0.1", 0));
+        streamingServer.replaceMetricsWriter(PrometheusMetricsWriter.create(new MetricRegistry(), new PrometheusMetricMappings(List.of())));
+        streamingServer.start();
+
+        try {
+            // Like a request which is still handled while the exporter is being stopped
+            streamingServer.replaceMetricsWriter(null);
+
+            doGET(streamingServer, "/metrics", response -> assertThat(response.code()).isEqualTo(503));
+            doGET(streamingServer, "/-/healthy", response -> assertThat(response.code()).isEqualTo(200));
+        } finally {
+            streamingServer.stop();
+        }
+    }
+
     void doGET(PrometheusExporterHTTPServer server,
                String path,
                ExceptionalConsumer<Response> consumer) throws Exception {
@@ -58,7 +58,7 @@ class PrometheusExporterTest {
     @BeforeEach
     void init() {
         metricRegistry = new LocalMetricRegistry();
-        classUnderTest = new PrometheusExporter(false, HostAndPort.fromParts("localhost", 8080), Duration.seconds(60), scheduledExecutorService, metricRegistry, prometheusMappingFilesHandlerProvider, factory);
+        classUnderTest = new PrometheusExporter(false, HostAndPort.fromParts("localhost", 8080), Duration.seconds(60), false, scheduledExecutorService, metricRegistry, prometheusMappingFilesHandlerProvider, factory);
     }
 
     @Test
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.metrics.prometheus;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import io.prometheus.client.dropwizard.samplebuilder.MapperConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrometheusMetricsWriterTest {
+    private MetricRegistry metricRegistry;
+    private PrometheusMetricsWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        metricRegistry = new MetricRegistry();
+        metricRegistry.counter("org.graylog2.buffers.input.size").inc(3);
+        metricRegistry.meter("org.graylog2.inputs.GELFUDPInput.input-1.incomingMessages").mark(5);
+        metricRegistry.meter("org.graylog2.inputs.GELFUDPInput.input-2.incomingMessages").mark(2);
+        metricRegistry.counter("org.graylog2.unmapped").inc();
+
+        writer = PrometheusMetricsWriter.create(metricRegistry, new PrometheusMetricMappings(List.of(
+                new MapperConfig("org.graylog2.buffers.input.size", "gl_input_buffer_size", ImmutableMap.of("node", "node-1")),
+                new MapperConfig("org.graylog2.inputs.GELFUDPInput.*.incomingMessages", "gl_input_incoming_messages",
+                        ImmutableMap.of("node", "node-1", "input_id", "${0}")),
+                new MapperConfig("org.graylog2.journal.*.latency", "gl_journal_latency", ImmutableMap.of())
+        )));
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.close();
+    }
+
+    @Test
+    void writesMappedMetricsInTextFormat() throws IOException {
+        assertThat(write(false, name -> true)).isEqualTo("""
+                # HELP gl_input_buffer_size Generated from Dropwizard metric import (metric=org.graylog2.buffers.input.size, type=com.codahale.metrics.Counter)
+                # TYPE gl_input_buffer_size gauge
+                gl_input_buffer_size{node="node-1"} 3.0
+                # HELP gl_input_incoming_messages_total Generated from Dropwizard metric import (metric=org.graylog2.inputs.GELFUDPInput.input-1.incomingMessages, type=com.codahale.metrics.Meter)
+                # TYPE gl_input_incoming_messages_total counter
+                gl_input_incoming_messages_total{input_id="input-1",node="node-1"} 5.0
+                gl_input_incoming_messages_total{input_id="input-2",node="node-1"} 2.0
+                """);
+    }
+
+    @Test
+    void writesCountersInOpenMetricsFormat() throws IOException {
+        assertThat(write(true, name -> true))
+                .contains("# TYPE gl_input_incoming_messages counter\n")
+                .contains("gl_input_incoming_messages_total{input_id=\"input-1\",node=\"node-1\"} 5.0\n");
+    }
+
+    @Test
+    void filtersMetricFamilies() throws IOException {
+        assertThat(write(false, "gl_input_incoming_messages_total"::equals))
+                .doesNotContain("gl_input_buffer_size")
+                .contains("gl_input_incoming_messages_total{input_id=\"input-2\",node=\"node-1\"} 2.0");
+    }
+
+    @Test
+    void tracksAddedAndRemovedMetrics() throws IOException {
+        metricRegistry.timer("org.graylog2.journal.reader.latency").update(500, TimeUnit.MILLISECONDS);
+        metricRegistry.remove("org.graylog2.buffers.input.size");
+
+        assertThat(write(false, name -> true))
+                .doesNotContain("gl_input_buffer_size")
+                .contains("# TYPE gl_journal_latency summary\n")
+                .contains("gl_journal_latency{quantile=\"0.5\"} 0.5\n")
+                .contains("gl_journal_latency_count 1.0\n");
+    }
+
+    @Test
+    void stopsTrackingMetricsWhenClosed() throws IOException {
+        writer.close();
+        metricRegistry.timer("org.graylog2.journal.reader.latency").update(500, TimeUnit.MILLISECONDS);
+
+        assertThat(write(false, name -> true)).doesNotContain("gl_journal_latency");
+    }
+
+    private String write(boolean openMetrics, Predicate<String> filter) throws IOException {
+        final StringWriter stringWriter = new StringWriter();
+        writer.write(stringWriter, openMetrics, filter);
+        return stringWriter.toString();
+    }
+}
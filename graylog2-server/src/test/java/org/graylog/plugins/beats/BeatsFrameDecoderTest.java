@@ -17,21 +17,28 @@
 package org.graylog.plugins.beats;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.TooLongFrameException;
 import io.netty.handler.logging.LoggingHandler;
 import org.graylog2.jackson.TypeReferences;
 import org.graylog2.shared.bindings.providers.ObjectMapperProvider;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class BeatsFrameDecoderTest {
     private final ObjectMapper objectMapper = new ObjectMapperProvider().get();
@@ -196,6 +203,73 @@ public class BeatsFrameDecoderTest {
         return buffer;
     }
 
+    @Test
+    public void decodeCompressedFrameSpanningMultipleChunks() throws Exception {
+        final String value = Strings.repeat("x", 1000);
+        final ByteBuf frames = Unpooled.buffer();
+        frames.writeBytes(buildWindowSizeFrame(500));
+        for (int i = 0; i < 500; i++) {
+            frames.writeBytes(buildDataFrame(ImmutableMap.of("message", value, "seq", String.valueOf(i)), i + 1));
+        }
+        final ByteBuf buffer = buildLargeCompressedFrame(ByteBufUtil.getBytes(frames));
+
+        channel.writeInbound(buffer);
+        channel.finish();
+
+        final ByteBuf replyBuffer = channel.readOutbound();
+        assertThat(extractSequenceNumber(replyBuffer)).isEqualTo(500L);
+
+        for (int i = 0; i < 500; i++) {
+            final ByteBuf resultBuffer = channel.readInbound();
+            final Map<String, Object> result = objectMapper.readValue(ByteBufUtil.getBytes(resultBuffer), TypeReferences.MAP_STRING_OBJECT);
+            resultBuffer.release();
+            assertThat(result).containsEntry("seq", String.valueOf(i)).containsEntry("message", value);
+        }
+        assertThat((Object) channel.readInbound()).isNull();
+    }
+
+    @Test
+    public void completeFrameLength() {
+        final ByteBuf dataFrame = buildDataFrame(ImmutableMap.of("foo", "bar"), 1);
+        final int length = dataFrame.readableBytes();
+
+        assertThat(BeatsFrameDecoder.completeFrameLength(dataFrame)).isEqualTo(length);
+        assertThat(BeatsFrameDecoder.completeFrameLength(dataFrame.slice(0, length - 1))).isEqualTo(-1);
+        assertThat(BeatsFrameDecoder.completeFrameLength(dataFrame.slice(0, 11))).isEqualTo(-1);
+
+        final ByteBuf jsonFrame = buildJsonFrame("{}".getBytes(StandardCharsets.UTF_8), 1);
+        assertThat(BeatsFrameDecoder.completeFrameLength(jsonFrame)).isEqualTo(jsonFrame.readableBytes());
+        assertThat(BeatsFrameDecoder.completeFrameLength(jsonFrame.slice(0, 9))).isEqualTo(-1);
+
+        assertThat(BeatsFrameDecoder.completeFrameLength(buildWindowSizeFrame(1))).isEqualTo(6);
+    }
+
+    @Test
+    public void rejectsTooLargeFrameInCompressedFrame() {
+        final ByteBuf jsonFrameHeader = Unpooled.buffer();
+        jsonFrameHeader.writeByte('2');
+        jsonFrameHeader.writeByte('J');
+        jsonFrameHeader.writeInt(1);
+        jsonFrameHeader.writeInt(BeatsFrameDecoder.MAX_DECOMPRESSED_FRAME_SIZE);
+
+        assertThatThrownBy(() -> BeatsFrameDecoder.completeFrameLength(jsonFrameHeader))
+                .isInstanceOf(TooLongFrameException.class);
+    }
+
+    private ByteBuf buildLargeCompressedFrame(byte[] payload) throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(compressed)) {
+            out.write(payload);
+        }
+
+        final ByteBuf buffer = Unpooled.buffer();
+        buffer.writeByte('2');
+        buffer.writeByte('C');
+        buffer.writeInt(compressed.size());
+        buffer.writeBytes(compressed.toByteArray());
+        return buffer;
+    }
+
     @Test
     public void decodeMultipleFrames() throws Exception {
         final Map<String, String> data = ImmutableMap.of("foo", "bar");
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.netflow.codecs;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class InMemoryNetFlowV9TemplateStore implements NetFlowV9TemplateStore {
+    private final Map<Long, NetFlowV9TemplateRegistry.Template> templates = new ConcurrentHashMap<>();
+    private final AtomicInteger saves = new AtomicInteger();
+    private volatile boolean available = true;
+
+    @Override
+    public void save(NetFlowV9TemplateRegistry.Template template) {
+        saves.incrementAndGet();
+        if (!available) {
+            throw new IllegalStateException("Template store unavailable");
+        }
+        templates.put(template.getId(), template);
+    }
+
+    @Override
+    public Optional<NetFlowV9TemplateRegistry.Template> get(long id) {
+        return Optional.ofNullable(templates.get(id));
+    }
+
+    public int saves() {
+        return saves.get();
+    }
+
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+}
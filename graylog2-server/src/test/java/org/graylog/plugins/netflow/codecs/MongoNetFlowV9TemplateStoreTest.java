@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.netflow.codecs;
+
+import org.bson.Document;
+import org.graylog.testing.mongodb.MongoDBExtension;
+import org.graylog.testing.mongodb.MongoDBTestService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.time.Duration;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(MongoDBExtension.class)
+class MongoNetFlowV9TemplateStoreTest {
+    private MongoDBTestService mongodb;
+    private MongoNetFlowV9TemplateStore templateStore;
+
+    @BeforeEach
+    void setUp(MongoDBTestService mongodb) {
+        this.mongodb = mongodb;
+        this.templateStore = new MongoNetFlowV9TemplateStore(mongodb.mongoConnection(), org.joda.time.Duration.standardHours(12));
+    }
+
+    @Test
+    void createsTTLIndex() {
+        assertThat(mongodb.mongoCollection("netflow_v9_templates").listIndexes())
+                .filteredOn(index -> index.get("key", Document.class).containsKey("updated_at"))
+                .singleElement()
+                .satisfies(index -> assertThat(index.get("expireAfterSeconds", Number.class).longValue())
+                        .isEqualTo(Duration.ofHours(12).plusDays(2).getSeconds()));
+
+        // creating the store again keeps the existing index
+        new MongoNetFlowV9TemplateStore(mongodb.mongoConnection(), org.joda.time.Duration.standardHours(12));
+        assertThat(mongodb.mongoCollection("netflow_v9_templates").listIndexes())
+                .filteredOn(index -> index.get("key", Document.class).containsKey("updated_at"))
+                .hasSize(1);
+
+        // the templates are kept longer if the journal retention is increased
+        new MongoNetFlowV9TemplateStore(mongodb.mongoConnection(), org.joda.time.Duration.standardDays(30));
+        assertThat(mongodb.mongoCollection("netflow_v9_templates").listIndexes())
+                .filteredOn(index -> index.get("key", Document.class).containsKey("updated_at"))
+                .singleElement()
+                .satisfies(index -> assertThat(index.get("expireAfterSeconds", Number.class).longValue())
+                        .isEqualTo(Duration.ofDays(32).getSeconds()));
+    }
+
+    @Test
+    void savesAndLoadsTemplate() {
+        final NetFlowV9TemplateRegistry.Template template = new NetFlowV9TemplateRegistry.Template(-42L, 256, true, new byte[]{0, 1, 2, (byte) 0xff});
+
+        templateStore.save(template);
+
+        assertThat(templateStore.get(-42L)).hasValueSatisfying(stored -> {
+            assertThat(stored.getId()).isEqualTo(-42L);
+            assertThat(stored.getTemplateId()).isEqualTo(256);
+            assertThat(stored.isOptionTemplate()).isTrue();
+            assertThat(stored.getBytes()).containsExactly(0, 1, 2, 0xff);
+        });
+        assertThat(templateStore.get(42L)).isEmpty();
+    }
+
+    @Test
+    void savingAgainRefreshesUpdatedAt() {
+        final NetFlowV9TemplateRegistry.Template template = new NetFlowV9TemplateRegistry.Template(1L, 256, false, new byte[]{1, 2, 3});
+        templateStore.save(template);
+
+        final Date expired = new Date(0);
+        mongodb.mongoCollection("netflow_v9_templates")
+                .updateOne(new Document("_id", 1L), new Document("$set", new Document("updated_at", expired)));
+
+        templateStore.save(template);
+
+        final Document stored = mongodb.mongoCollection("netflow_v9_templates").find(new Document("_id", 1L)).first();
+        assertThat(stored).isNotNull();
+        assertThat(stored.getDate("updated_at")).isAfter(expired);
+        assertThat(mongodb.mongoCollection("netflow_v9_templates").countDocuments()).isEqualTo(1);
+    }
+}
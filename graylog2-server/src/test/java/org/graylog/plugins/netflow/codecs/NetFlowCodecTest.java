@@ -18,9 +18,13 @@ package org.graylog.plugins.netflow.codecs;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Resources;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import org.graylog.plugins.netflow.flows.FlowException;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.configuration.Configuration;
+import org.graylog2.plugin.inputs.codecs.CodecAggregator;
 import org.graylog2.plugin.journal.RawMessage;
 import org.junit.Before;
 import org.junit.Rule;
@@ -33,6 +37,7 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.time.Clock;
 import java.util.Collection;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -45,10 +50,12 @@ public class NetFlowCodecTest {
 
     private NetFlowCodec codec;
     private NetflowV9CodecAggregator codecAggregator;
+    private InMemoryNetFlowV9TemplateStore templateStore;
 
     @Before
     public void setUp() throws Exception {
-        codecAggregator = new NetflowV9CodecAggregator();
+        templateStore = new InMemoryNetFlowV9TemplateStore();
+        codecAggregator = new NetflowV9CodecAggregator(new NetFlowV9TemplateRegistry(templateStore, MoreExecutors.newDirectExecutorService(), Clock.systemUTC()));
         codec = new NetFlowCodec(Configuration.EMPTY_CONFIGURATION, codecAggregator);
     }
 
@@ -142,4 +149,54 @@ public class NetFlowCodecTest {
 
         assertThat(codec.decodeMessages(new RawMessage(b, source))).isNull();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void decodeMessagesResolvesReferencedTemplates() throws Exception {
+        final InetSocketAddress source = new InetSocketAddress(InetAddress.getLocalHost(), 12345);
+        aggregate("netflow-data/netflow-v9-2-1.dat", source);
+        final byte[] payload = aggregate("netflow-data/netflow-v9-2-2.dat", source);
+
+        assertThat(payload).isNotNull();
+        assertThat(payload[0]).isEqualTo(NetFlowCodec.REFERENCED_V9_MARKER);
+        assertThat(codec.decodeMessages(new RawMessage(payload, source))).isNotEmpty();
+
+        // a restarted node resolves the referenced templates from the template store
+        final NetflowV9CodecAggregator restartedAggregator = new NetflowV9CodecAggregator(new NetFlowV9TemplateRegistry(templateStore, MoreExecutors.newDirectExecutorService(), Clock.systemUTC()));
+        final NetFlowCodec restartedCodec = new NetFlowCodec(Configuration.EMPTY_CONFIGURATION, restartedAggregator);
+        assertThat(restartedCodec.decodeMessages(new RawMessage(payload, source))).isNotEmpty();
+    }
+
+    @Test
+    public void decodeMessagesIncludesTemplatesUntilTheyAreStored() throws Exception {
+        final InetSocketAddress source = new InetSocketAddress(InetAddress.getLocalHost(), 12345);
+        templateStore.setAvailable(false);
+        aggregate("netflow-data/netflow-v9-2-1.dat", source);
+        final byte[] payload = aggregate("netflow-data/netflow-v9-2-2.dat", source);
+
+        assertThat(payload).isNotNull();
+        assertThat(payload[0]).isEqualTo(NetFlowCodec.ORDERED_V9_MARKER);
+
+        // a restarted node decodes the entry without the template store
+        final NetflowV9CodecAggregator restartedAggregator = new NetflowV9CodecAggregator(new NetFlowV9TemplateRegistry(new InMemoryNetFlowV9TemplateStore()));
+        final NetFlowCodec restartedCodec = new NetFlowCodec(Configuration.EMPTY_CONFIGURATION, restartedAggregator);
+        assertThat(restartedCodec.decodeMessages(new RawMessage(payload, source))).isNotEmpty();
+    }
+
+    @Test
+    public void decodeMessagesReturnsNullIfReferencedTemplateIsUnknown() throws Exception {
+        final InetSocketAddress source = new InetSocketAddress(InetAddress.getLocalHost(), 12345);
+        aggregate("netflow-data/netflow-v9-2-1.dat", source);
+        final byte[] payload = aggregate("netflow-data/netflow-v9-2-2.dat", source);
+
+        final NetflowV9CodecAggregator otherAggregator = new NetflowV9CodecAggregator(new NetFlowV9TemplateRegistry(new InMemoryNetFlowV9TemplateStore()));
+        final NetFlowCodec otherCodec = new NetFlowCodec(Configuration.EMPTY_CONFIGURATION, otherAggregator);
+        assertThat(otherCodec.decodeMessages(new RawMessage(payload, source))).isNull();
+    }
+
+    private byte[] aggregate(String resourceName, InetSocketAddress source) throws Exception {
+        final byte[] b = Resources.toByteArray(Resources.getResource(resourceName));
+        final CodecAggregator.Result result = codecAggregator.addChunk(Unpooled.wrappedBuffer(b), source);
+        assertThat(result.isValid()).isTrue();
+        return result.getMessage() == null ? null : ByteBufUtil.getBytes(result.getMessage());
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.netflow.codecs;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NetFlowV9TemplateRegistryTest {
+    private static final TemplateKey EXPORTER = TemplateKey.idForExporter(new InetSocketAddress("127.0.0.1", 2055), 1L);
+
+    private InMemoryNetFlowV9TemplateStore templateStore;
+    private MutableClock clock;
+    private NetFlowV9TemplateRegistry templateRegistry;
+
+    @Before
+    public void setUp() {
+        templateStore = new InMemoryNetFlowV9TemplateStore();
+        clock = new MutableClock(Duration.ofDays(365).toMillis());
+        templateRegistry = new NetFlowV9TemplateRegistry(templateStore, MoreExecutors.newDirectExecutorService(), clock);
+    }
+
+    @Test
+    public void storesUnchangedTemplateOnlyOnce() {
+        final NetFlowV9TemplateRegistry.Template first = templateRegistry.register(EXPORTER, 256, new byte[]{1, 2, 3}, false);
+        final NetFlowV9TemplateRegistry.Template second = templateRegistry.register(EXPORTER, 256, new byte[]{1, 2, 3}, false);
+
+        assertThat(second).isSameAs(first);
+        assertThat(templateStore.saves()).isEqualTo(1);
+        assertThat(templateRegistry.current(EXPORTER, 256)).containsSame(first);
+        assertThat(templateRegistry.templateIds(EXPORTER)).containsExactly(256);
+    }
+
+    @Test
+    public void changedTemplateBecomesNewVersion() {
+        final NetFlowV9TemplateRegistry.Template first = templateRegistry.register(EXPORTER, 256, new byte[]{1, 2, 3}, false);
+        final NetFlowV9TemplateRegistry.Template second = templateRegistry.register(EXPORTER, 256, new byte[]{1, 2, 4}, false);
+
+        assertThat(second.getId()).isNotEqualTo(first.getId());
+        assertThat(templateRegistry.current(EXPORTER, 256)).containsSame(second);
+        // entries referencing the previous version can still be decoded
+        assertThat(templateRegistry.get(first.getId())).containsSame(first);
+    }
+
+    @Test
+    public void templatesAreSeparatedByExporter() {
+        final TemplateKey otherExporter = TemplateKey.idForExporter(new InetSocketAddress("127.0.0.1", 2055), 2L);
+        templateRegistry.register(EXPORTER, 256, new byte[]{1, 2, 3}, false);
+
+        assertThat(templateRegistry.current(otherExporter, 256)).isEmpty();
+        assertThat(templateRegistry.templateIds(otherExporter)).isEmpty();
+    }
+
+    @Test
+    public void resolvesTemplatesFromStore() {
+        final NetFlowV9TemplateRegistry.Template template = templateRegistry.register(EXPORTER, 257, new byte[]{1, 2, 3}, true);
+        final NetFlowV9TemplateRegistry restartedRegistry = new NetFlowV9TemplateRegistry(templateStore, MoreExecutors.newDirectExecutorService(), clock);
+
+        assertThat(restartedRegistry.get(template.getId())).hasValueSatisfying(stored -> {
+            assertThat(stored.getTemplateId()).isEqualTo(257);
+            assertThat(stored.isOptionTemplate()).isTrue();
+            assertThat(stored.getBytes()).containsExactly(1, 2, 3);
+        });
+        assertThat(restartedRegistry.get(42L)).isEmpty();
+    }
+
+    @Test
+    public void templatesAreOnlyReferencedWhileStored() {
+        templateStore.setAvailable(false);
+        final NetFlowV9TemplateRegistry.Template template = templateRegistry.register(EXPORTER, 256, new byte[]{1, 2, 3}, false);
+        assertThat(templateRegistry.isStored(template)).isFalse();
+
+        templateStore.setAvailable(true);
+        clock.advance(Duration.ofSeconds(1).toMillis());
+        templateRegistry.register(EXPORTER, 256, new byte[]{1, 2, 3}, false);
+        assertThat(templateRegistry.isStored(template)).isTrue();
+
+        // the stored template may expire once it hasn't been refreshed for too long
+        templateStore.setAvailable(false);
+        clock.advance(NetFlowV9TemplateRegistry.STORED_TEMPLATE_VALIDITY.toMillis());
+        templateRegistry.register(EXPORTER, 256, new byte[]{1, 2, 3}, false);
+        assertThat(templateRegistry.isStored(template)).isFalse();
+    }
+
+    @Test
+    public void backsOffWhileStoreIsUnavailable() {
+        templateStore.setAvailable(false);
+        final NetFlowV9TemplateRegistry.Template template = templateRegistry.register(EXPORTER, 256, new byte[]{1, 2, 3}, false);
+        templateRegistry.register(EXPORTER, 256, new byte[]{1, 2, 3}, false);
+        templateRegistry.register(EXPORTER, 256, new byte[]{1, 2, 3}, false);
+
+        // announcements during the back-off don't hit the store
+        assertThat(templateStore.saves()).isEqualTo(1);
+        assertThat(templateRegistry.current(EXPORTER, 256)).containsSame(template);
+
+        clock.advance(Duration.ofSeconds(1).toMillis());
+        templateRegistry.register(EXPORTER, 256, new byte[]{1, 2, 3}, false);
+        assertThat(templateStore.saves()).isEqualTo(2);
+
+        // the back-off doubles after another failure
+        clock.advance(Duration.ofSeconds(1).toMillis());
+        templateRegistry.register(EXPORTER, 256, new byte[]{1, 2, 3}, false);
+        assertThat(templateStore.saves()).isEqualTo(2);
+
+        templateStore.setAvailable(true);
+        clock.advance(Duration.ofSeconds(1).toMillis());
+        templateRegistry.register(EXPORTER, 256, new byte[]{1, 2, 3}, false);
+        templateRegistry.register(EXPORTER, 256, new byte[]{1, 2, 3}, false);
+        assertThat(templateStore.saves()).isEqualTo(3);
+        assertThat(templateStore.get(template.getId())).containsSame(template);
+    }
+
+    @Test
+    public void registeringDoesNotWaitForStore() throws InterruptedException {
+        final CountDownLatch storeBlocked = new CountDownLatch(1);
+        final NetFlowV9TemplateStore blockingStore = new InMemoryNetFlowV9TemplateStore() {
+            @Override
+            public void save(NetFlowV9TemplateRegistry.Template template) {
+                try {
+                    storeBlocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.save(template);
+            }
+        };
+        final ExecutorService storeExecutor = Executors.newSingleThreadExecutor();
+        try {
+            final NetFlowV9TemplateRegistry registry = new NetFlowV9TemplateRegistry(blockingStore, storeExecutor, clock);
+
+            final NetFlowV9TemplateRegistry.Template template = registry.register(EXPORTER, 256, new byte[]{1, 2, 3}, false);
+            registry.register(EXPORTER, 256, new byte[]{1, 2, 3}, false);
+            assertThat(registry.current(EXPORTER, 256)).containsSame(template);
+
+            storeBlocked.countDown();
+            storeExecutor.shutdown();
+            assertThat(storeExecutor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(blockingStore.get(template.getId())).containsSame(template);
+            assertThat(((InMemoryNetFlowV9TemplateStore) blockingStore).saves()).isEqualTo(1);
+        } finally {
+            storeExecutor.shutdownNow();
+        }
+    }
+
+    private static class MutableClock extends Clock {
+        private long millis;
+
+        MutableClock(long millis) {
+            this.millis = millis;
+        }
+
+        void advance(long millis) {
+            this.millis += millis;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+}
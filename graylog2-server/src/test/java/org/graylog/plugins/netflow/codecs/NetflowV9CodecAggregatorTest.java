@@ -70,7 +70,7 @@ public class NetflowV9CodecAggregatorTest {
     public void setup() throws IOException {
         // the codec aggregator creates "netflowv9"ish packets, that always contain all necessary templates before the data flows
         // this is not an RFC netflow packet, but greatly simplifies decoding
-        codecAggregator = new NetflowV9CodecAggregator();
+        codecAggregator = new NetflowV9CodecAggregator(new NetFlowV9TemplateRegistry(new InMemoryNetFlowV9TemplateStore()));
         codec = new NetFlowCodec(Configuration.EMPTY_CONFIGURATION, codecAggregator);
     }
 
@@ -570,7 +570,7 @@ public class NetflowV9CodecAggregatorTest {
                                 final ByteBuf buffer = result.getMessage();
                                 // must read the marker byte off the buffer first.
                                 buffer.readByte();
-                                allPackets.addAll(codec.decodeV9Packets(buffer));
+                                allPackets.addAll(codec.decodeReferencedV9Packets(buffer));
                             }
                         }
                         return true;
@@ -19,6 +19,8 @@ package org.graylog.plugins.netflow.transport;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
+import org.graylog.plugins.netflow.codecs.InMemoryNetFlowV9TemplateStore;
+import org.graylog.plugins.netflow.codecs.NetFlowV9TemplateRegistry;
 import org.graylog.plugins.netflow.codecs.NetflowV9CodecAggregator;
 import org.graylog2.inputs.transports.NettyTransportConfiguration;
 import org.graylog2.inputs.transports.netty.EventLoopGroupFactory;
@@ -52,7 +54,7 @@ public class NetFlowUdpTransportTest {
                 nettyTransportConfiguration,
                 new ThroughputCounter(eventLoopGroup),
                 new LocalMetricRegistry());
-        transport.setMessageAggregator(new NetflowV9CodecAggregator());
+        transport.setMessageAggregator(new NetflowV9CodecAggregator(new NetFlowV9TemplateRegistry(new InMemoryNetFlowV9TemplateStore())));
     }
 
     @After
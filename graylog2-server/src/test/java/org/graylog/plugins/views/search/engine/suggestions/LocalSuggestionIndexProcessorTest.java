@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.views.search.engine.suggestions;
+
+import com.github.joschi.jadconfig.util.Duration;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.MessageCollection;
+import org.graylog2.plugin.indexer.searches.timeranges.AbsoluteRange;
+import org.graylog2.plugin.streams.Stream;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LocalSuggestionIndexProcessorTest {
+    private static final long START = new DateTime(2023, 6, 1, 12, 0, DateTimeZone.UTC).getMillis();
+
+    private LocalSuggestionIndexTest.MutableClock clock;
+    private LocalSuggestionIndex index;
+    private LocalSuggestionIndexProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        clock = new LocalSuggestionIndexTest.MutableClock(START);
+        index = new LocalSuggestionIndex(Set.of("source"), 5, Duration.minutes(15), clock);
+        processor = new LocalSuggestionIndexProcessor(index);
+        clock.advance(TimeUnit.MINUTES.toMillis(6));
+    }
+
+    @Test
+    void suggestsValuesOfRoutedMessages() {
+        final Message filteredOut = message("web-03", "stream-1");
+        filteredOut.setFilterOut(true);
+
+        processor.process(new MessageCollection(List.of(
+                message("web-01", "stream-1"),
+                message("web-01", "stream-1", "stream-2"),
+                message("web-02", "stream-2"),
+                filteredOut)));
+
+        assertThat(index.suggest(request("stream-1", 1))).hasValueSatisfying(response -> assertThat(response.suggestions())
+                .extracting(SuggestionEntry::getValue, SuggestionEntry::getOccurrence)
+                .containsExactly(tuple("web-01", 2L)));
+        assertThat(index.suggest(request("stream-2", 2))).hasValueSatisfying(response -> assertThat(response.suggestions())
+                .extracting(SuggestionEntry::getValue)
+                .containsExactly("web-01", "web-02"));
+        // the filtered out message isn't indexed, so there are not enough values to answer locally
+        assertThat(index.suggest(request("stream-1", 2))).isEmpty();
+    }
+
+    @Test
+    void doesNotSuggestValuesOfUnroutedMessages() {
+        // This is what happens if the processor runs before the stream matcher
+        processor.process(message("web-01"));
+
+        assertThat(index.suggest(request("stream-1", 1))).isEmpty();
+    }
+
+    private Message message(String source, String... streamIds) {
+        final Message message = new Message("message", source, new DateTime(clock.millis(), DateTimeZone.UTC));
+        for (String streamId : streamIds) {
+            final Stream stream = mock(Stream.class);
+            when(stream.getId()).thenReturn(streamId);
+            message.addStream(stream);
+        }
+        return message;
+    }
+
+    private SuggestionRequest request(String streamId, int size) {
+        return SuggestionRequest.builder()
+                .field("source")
+                .input("web")
+                .streams(Set.of(streamId))
+                .timerange(AbsoluteRange.create(new DateTime(clock.millis() - TimeUnit.MINUTES.toMillis(5), DateTimeZone.UTC),
+                        new DateTime(clock.millis(), DateTimeZone.UTC)))
+                .size(size)
+                .build();
+    }
+}
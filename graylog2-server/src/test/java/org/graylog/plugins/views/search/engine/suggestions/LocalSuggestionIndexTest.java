@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.views.search.engine.suggestions;
+
+import com.github.joschi.jadconfig.util.Duration;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.indexer.searches.timeranges.AbsoluteRange;
+import org.graylog2.plugin.indexer.searches.timeranges.TimeRange;
+import org.graylog2.plugin.streams.Stream;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LocalSuggestionIndexTest {
+    private static final long START = new DateTime(2023, 6, 1, 12, 0, DateTimeZone.UTC).getMillis();
+
+    private MutableClock clock;
+    private LocalSuggestionIndex index;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(START);
+        index = new LocalSuggestionIndex(Set.of("source"), 5, Duration.minutes(15), clock);
+    }
+
+    @Test
+    void suggestsMostFrequentValuesWithPrefix() {
+        clock.advance(TimeUnit.MINUTES.toMillis(6));
+        add("stream-1", "web-01", "web-01", "web-01", "web-02", "web-02", "db-01");
+
+        assertThat(index.suggest(request("stream-1", "web", 2, lastFiveMinutes())))
+                .hasValueSatisfying(response -> {
+                    assertThat(response.suggestions())
+                            .extracting(SuggestionEntry::getValue, SuggestionEntry::getOccurrence)
+                            .containsExactly(tuple("web-01", 3L), tuple("web-02", 2L));
+                    assertThat(response.sumOtherDocsCount()).isZero();
+                    // Only this node's occurrences are counted, not the document counts of the search backend
+                    assertThat(response.approximate()).isTrue();
+                });
+    }
+
+    @Test
+    void onlySuggestsValuesOfRequestedStreams() {
+        clock.advance(TimeUnit.MINUTES.toMillis(6));
+        add("stream-1", "web-01");
+        add("stream-2", "web-02");
+
+        assertThat(index.suggest(request("stream-1", "web", 1, lastFiveMinutes())))
+                .hasValueSatisfying(response -> assertThat(response.suggestions())
+                        .extracting(SuggestionEntry::getValue)
+                        .containsExactly("web-01"));
+    }
+
+    @Test
+    void fallsBackIfTheRequestCantBeAnsweredLocally() {
+        clock.advance(TimeUnit.MINUTES.toMillis(6));
+        add("stream-1", "web-01", "web-02");
+
+        // Not enough values, other nodes might know more
+        assertThat(index.suggest(request("stream-1", "web", 3, lastFiveMinutes()))).isEmpty();
+        // Field isn't indexed
+        assertThat(index.suggest(request("application_name", "stream-1", "web", 1, lastFiveMinutes()))).isEmpty();
+        // Time range starts before the index started
+        assertThat(index.suggest(request("stream-1", "web", 1, range(START - 1000, clock.millis())))).isEmpty();
+        // Time range doesn't end now
+        assertThat(index.suggest(request("stream-1", "web", 1, range(START + 1000, START + 2000)))).isEmpty();
+    }
+
+    @Test
+    void removesExpiredValues() {
+        add("stream-1", "web-01", "web-01", "web-01");
+        clock.advance(TimeUnit.MINUTES.toMillis(16));
+
+        index.maintain();
+        add("stream-1", "web-01");
+
+        assertThat(index.suggest(request("stream-1", "web", 1, lastFiveMinutes())))
+                .hasValueSatisfying(response -> assertThat(response.suggestions())
+                        .extracting(SuggestionEntry::getOccurrence)
+                        .containsExactly(1L));
+    }
+
+    @Test
+    void evictsLeastFrequentValuesWhenFull() {
+        clock.advance(TimeUnit.MINUTES.toMillis(6));
+        add("stream-1", "a", "a", "b", "b", "c", "c", "d", "d", "e");
+        // Index is full, new values are dropped until the next maintenance run
+        add("stream-1", "f", "f", "f");
+        assertThat(index.suggest(request("stream-1", "f", 1, lastFiveMinutes()))).isEmpty();
+
+        index.maintain();
+        add("stream-1", "f");
+
+        assertThat(index.suggest(request("stream-1", "", 5, lastFiveMinutes())))
+                .hasValueSatisfying(response -> assertThat(response.suggestions())
+                        .extracting(SuggestionEntry::getValue)
+                        .containsExactlyInAnyOrder("a", "b", "c", "d", "f"));
+    }
+
+    private void add(String streamId, String... sources) {
+        final Stream stream = mock(Stream.class);
+        when(stream.getId()).thenReturn(streamId);
+        for (String source : sources) {
+            final Message message = new Message("message", source, new DateTime(clock.millis(), DateTimeZone.UTC));
+            message.addStream(stream);
+            index.add(message);
+        }
+    }
+
+    private TimeRange lastFiveMinutes() {
+        return range(clock.millis() - TimeUnit.MINUTES.toMillis(5), clock.millis());
+    }
+
+    private TimeRange range(long from, long to) {
+        return AbsoluteRange.create(new DateTime(from, DateTimeZone.UTC), new DateTime(to, DateTimeZone.UTC));
+    }
+
+    private SuggestionRequest request(String streamId, String input, int size, TimeRange timeRange) {
+        return request("source", streamId, input, size, timeRange);
+    }
+
+    private SuggestionRequest request(String field, String streamId, String input, int size, TimeRange timeRange) {
+        return SuggestionRequest.builder()
+                .field(field)
+                .input(input)
+                .streams(Set.of(streamId))
+                .timerange(timeRange)
+                .size(size)
+                .build();
+    }
+
+    static class MutableClock extends Clock {
+        private long millis;
+
+        MutableClock(long millis) {
+            this.millis = millis;
+        }
+
+        void advance(long millis) {
+            this.millis += millis;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+}
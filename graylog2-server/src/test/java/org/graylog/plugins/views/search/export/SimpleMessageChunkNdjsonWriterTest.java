@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.views.search.export;
+
+import com.github.luben.zstd.ZstdInputStream;
+import org.graylog.plugins.views.search.Search;
+import org.graylog2.rest.MoreMediaTypes;
+import org.graylog2.shared.bindings.providers.ObjectMapperProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.graylog.plugins.views.search.export.LinkedHashSetUtil.linkedHashSetOf;
+import static org.graylog.plugins.views.search.export.TestData.simpleMessage;
+import static org.graylog.plugins.views.search.export.TestData.simpleMessageChunk;
+
+class SimpleMessageChunkNdjsonWriterTest {
+    private SimpleMessageChunkNdjsonWriter sut;
+
+    @BeforeEach
+    void setUp() {
+        sut = new SimpleMessageChunkNdjsonWriter(new ObjectMapperProvider().get());
+    }
+
+    @Test
+    void isWritableForCompressedNdjson() {
+        assertThat(sut.isWriteable(SimpleMessageChunk.class, null, null, MoreMediaTypes.APPLICATION_NDJSON_GZIP_TYPE)).isTrue();
+        assertThat(sut.isWriteable(SimpleMessageChunk.class, null, null, MoreMediaTypes.APPLICATION_NDJSON_ZSTD_TYPE)).isTrue();
+    }
+
+    @Test
+    void isNotWritableForOtherMediaTypesOrClasses() {
+        assertThat(sut.isWriteable(SimpleMessageChunk.class, null, null, MoreMediaTypes.TEXT_CSV_TYPE)).isFalse();
+        assertThat(sut.isWriteable(Search.class, null, null, MoreMediaTypes.APPLICATION_NDJSON_GZIP_TYPE)).isFalse();
+    }
+
+    @Test
+    void writesGzipCompressedNdjson() throws IOException {
+        SimpleMessageChunk chunk = simpleMessageChunk("timestamp,source,message",
+                new Object[]{"2015-01-01 01:00:00.000", "source-1", "Behold the tap dancing chimp!"},
+                new Object[]{"2015-01-02 01:00:00.000", "source-2", "Behold the yodelling parrot!"});
+
+        byte[] result = write(MoreMediaTypes.APPLICATION_NDJSON_GZIP_TYPE, chunk);
+
+        assertThat(decompress(new GZIPInputStream(new ByteArrayInputStream(result))).split("\n"))
+                .containsExactly(
+                        "{\"timestamp\":\"2015-01-01 01:00:00.000\",\"source\":\"source-1\",\"message\":\"Behold the tap dancing chimp!\"}",
+                        "{\"timestamp\":\"2015-01-02 01:00:00.000\",\"source\":\"source-2\",\"message\":\"Behold the yodelling parrot!\"}");
+    }
+
+    @Test
+    void concatenatesCompressedChunksIntoValidStream() throws IOException {
+        SimpleMessageChunk first = simpleMessageChunk("source,message", new Object[]{"source-1", "first"});
+        SimpleMessageChunk second = simpleMessageChunk("source,message", new Object[]{"source-2", "second"});
+
+        byte[] result = write(MoreMediaTypes.APPLICATION_NDJSON_ZSTD_TYPE, first, second);
+
+        assertThat(decompress(new ZstdInputStream(new ByteArrayInputStream(result))).split("\n"))
+                .containsExactly(
+                        "{\"source\":\"source-1\",\"message\":\"first\"}",
+                        "{\"source\":\"source-2\",\"message\":\"second\"}");
+    }
+
+    @Test
+    void omitsMissingFields() throws IOException {
+        SimpleMessageChunk chunk = SimpleMessageChunk.from(
+                linkedHashSetOf("timestamp", "source", "message"),
+                simpleMessage("timestamp,message", new Object[]{"2015-01-02 01:00:00.000", "more text"}));
+
+        byte[] result = write(MoreMediaTypes.APPLICATION_NDJSON_GZIP_TYPE, chunk);
+
+        assertThat(decompress(new GZIPInputStream(new ByteArrayInputStream(result))))
+                .isEqualTo("{\"timestamp\":\"2015-01-02 01:00:00.000\",\"message\":\"more text\"}\n");
+    }
+
+    private byte[] write(MediaType mediaType, SimpleMessageChunk... chunks) throws IOException {
+        ByteArrayOutputStream entityStream = new ByteArrayOutputStream();
+        for (SimpleMessageChunk chunk : chunks) {
+            sut.writeTo(chunk, SimpleMessageChunk.class, null, null, mediaType, null, entityStream);
+        }
+        return entityStream.toByteArray();
+    }
+
+    private String decompress(InputStream inputStream) throws IOException {
+        try (inputStream) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -250,4 +250,11 @@ class LuceneQueryParserTest {
                 .contains("now", "now+60d");
 
     }
+
+    @Test
+    void cachesParsedQueries() throws ParseException {
+        assertThat(parser.parse("foo:bar AND lorem:ipsum")).isSameAs(parser.parse("foo:bar AND lorem:ipsum"));
+        assertThatThrownBy(() -> parser.parse("foo:bar AND")).isInstanceOf(ParseException.class);
+        assertThatThrownBy(() -> parser.parse("foo:bar AND")).isInstanceOf(ParseException.class);
+    }
 }
@@ -19,10 +19,17 @@ package org.graylog.plugins.views.search.validation;
 import com.google.common.collect.ImmutableSet;
 import org.graylog.plugins.views.search.elasticsearch.ElasticsearchQueryString;
 import org.graylog2.indexer.fieldtypes.MappedFieldTypesService;
+import org.graylog2.plugin.indexer.searches.timeranges.AbsoluteRange;
 import org.graylog2.plugin.indexer.searches.timeranges.RelativeRange;
+import org.graylog2.plugin.indexer.searches.timeranges.TimeRange;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.junit.jupiter.api.Test;
 
 import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -124,11 +131,73 @@ class QueryValidationServiceImplTest {
                 .containsOnly(ValidationStatus.ERROR, ValidationStatus.WARNING);
     }
 
+    @Test
+    void cachesValidationResultsAndFieldTypes() {
+        final AtomicInteger validations = new AtomicInteger();
+        final AtomicInteger fieldTypeLookups = new AtomicInteger();
+        final AtomicLong nanos = new AtomicLong();
+        final QueryValidator queryValidator = context -> {
+            validations.incrementAndGet();
+            return Collections.emptyList();
+        };
+        final MappedFieldTypesService fieldTypesService = (streamIds, timeRange) -> {
+            fieldTypeLookups.incrementAndGet();
+            return Collections.emptySet();
+        };
+
+        final QueryValidationServiceImpl service = new QueryValidationServiceImpl(
+                LUCENE_QUERY_PARSER,
+                fieldTypesService,
+                Collections.singleton(queryValidator),
+                nanos::get);
+
+        service.validate(req());
+        service.validate(req());
+        assertThat(validations).hasValue(1);
+        assertThat(fieldTypeLookups).hasValue(1);
+
+        // Another query for the same streams and time range reuses the field types
+        service.validate(req("foo:baz", RelativeRange.create(300)));
+        assertThat(validations).hasValue(2);
+        assertThat(fieldTypeLookups).hasValue(1);
+
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        service.validate(req());
+        assertThat(validations).hasValue(3);
+        assertThat(fieldTypeLookups).hasValue(2);
+    }
+
+    @Test
+    void absoluteTimeRangesWithinTheSameMinuteShareCachedResults() {
+        final AtomicInteger validations = new AtomicInteger();
+        final QueryValidator queryValidator = context -> {
+            validations.incrementAndGet();
+            return Collections.emptyList();
+        };
+
+        final QueryValidationServiceImpl service = new QueryValidationServiceImpl(
+                LUCENE_QUERY_PARSER,
+                FIELD_TYPES_SERVICE,
+                Collections.singleton(queryValidator));
+
+        final DateTime from = new DateTime(2023, 1, 1, 10, 0, 0, DateTimeZone.UTC);
+        service.validate(req("foo:bar", AbsoluteRange.create(from, from.plusMinutes(5).plusSeconds(10))));
+        service.validate(req("foo:bar", AbsoluteRange.create(from, from.plusMinutes(5).plusSeconds(20))));
+        assertThat(validations).hasValue(1);
+
+        service.validate(req("foo:bar", AbsoluteRange.create(from, from.plusMinutes(6).plusSeconds(10))));
+        assertThat(validations).hasValue(2);
+    }
+
     private ValidationRequest req() {
+        return req("foo:bar", RelativeRange.create(300));
+    }
+
+    private ValidationRequest req(String query, TimeRange timeRange) {
         return ValidationRequest.builder()
-                .query(ElasticsearchQueryString.of("foo:bar"))
+                .query(ElasticsearchQueryString.of(query))
                 .streams(Collections.emptySet())
-                .timerange(RelativeRange.create(300))
+                .timerange(timeRange)
                 .build();
     }
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.security.permissions;
+
+import org.apache.shiro.authz.Permission;
+import org.apache.shiro.authz.permission.WildcardPermission;
+import org.graylog.grn.GRNRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PermissionIndexTest {
+    private final GRNRegistry grnRegistry = GRNRegistry.createWithBuiltinTypes();
+
+    private final List<Permission> permissions = List.of(
+            new CaseSensitiveWildcardPermission("streams:read:stream-1"),
+            new CaseSensitiveWildcardPermission("streams:read,edit:stream-2"),
+            new CaseSensitiveWildcardPermission("dashboards:read"),
+            new CaseSensitiveWildcardPermission("users:tokenlist:*"),
+            new CaseSensitiveWildcardPermission("searches:*:search-1"),
+            new CaseSensitiveWildcardPermission("clusterconfigentry"),
+            new WildcardPermission("Inputs:Read:Input-1"),
+            GRNPermission.create("entity:own", grnRegistry.parse("grn::::stream:stream-1"))
+    );
+    private final PermissionIndex index = new PermissionIndex(permissions);
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "streams:read:stream-1",
+            "streams:read:stream-1:extra",
+            "streams:edit:stream-2",
+            "streams:read,edit:stream-2",
+            "dashboards:read:any",
+            "dashboards:read",
+            "users:tokenlist:admin",
+            "searches:read:search-1",
+            "clusterconfigentry:read:foo",
+            "inputs:read:input-1",
+            "streams:read:stream-3",
+            "streams:read",
+            "streams:read:*",
+            "streams:read:stream-1,stream-2",
+            "dashboards",
+            "searches:read:search-2",
+            "Inputs:Read:Input-1",
+            "unknown:read:foo"
+    })
+    void behavesLikeShiro(String requested) {
+        final Permission permission = new CaseSensitiveWildcardPermission(requested);
+
+        final boolean expected = permissions.stream().anyMatch(p -> p.implies(permission));
+
+        assertThat(index.implies(permission)).as(requested).isEqualTo(expected);
+    }
+
+    @Test
+    void impliesIndexedPermissions() {
+        assertThat(index.implies(new CaseSensitiveWildcardPermission("streams:read:stream-1"))).isTrue();
+        assertThat(index.implies(new CaseSensitiveWildcardPermission("streams:edit:stream-1"))).isFalse();
+        assertThat(index.implies(new CaseSensitiveWildcardPermission("streams:read,edit:stream-2"))).isTrue();
+    }
+
+    @Test
+    void comparesGRNPermissions() {
+        assertThat(index.implies(GRNPermission.create("entity:own", grnRegistry.parse("grn::::stream:stream-1")))).isTrue();
+        assertThat(index.implies(GRNPermission.create("entity:own", grnRegistry.parse("grn::::stream:stream-2")))).isFalse();
+    }
+
+    @Test
+    void allPermissionImpliesEverything() {
+        final PermissionIndex adminIndex = new PermissionIndex(List.of(new CaseSensitiveWildcardPermission("*")));
+
+        assertThat(adminIndex.implies(new CaseSensitiveWildcardPermission("streams:read:stream-1"))).isTrue();
+        assertThat(adminIndex.implies(new CaseSensitiveWildcardPermission("dashboards"))).isTrue();
+    }
+}
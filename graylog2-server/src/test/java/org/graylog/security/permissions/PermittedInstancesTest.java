@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.security.permissions;
+
+import org.apache.shiro.authz.Permission;
+import org.graylog.grn.GRNRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PermittedInstancesTest {
+    @Test
+    void resolvesPermittedIds() {
+        final List<Permission> permissions = List.of(
+                new CaseSensitiveWildcardPermission("eventdefinitions:read:def-1"),
+                new CaseSensitiveWildcardPermission("eventdefinitions:read,edit:def-2,def-3"),
+                new CaseSensitiveWildcardPermission("eventdefinitions:edit:def-4"),
+                new CaseSensitiveWildcardPermission("streams:read:def-5"),
+                new CaseSensitiveWildcardPermission("dashboards:read"),
+                GRNPermission.create("entity:own", GRNRegistry.createWithBuiltinTypes().parse("grn::::event_definition:def-6"))
+        );
+
+        assertThat(PermittedInstances.resolve(permissions, "eventdefinitions:read"))
+                .hasValueSatisfying(ids -> assertThat(ids).containsExactlyInAnyOrder("def-1", "def-2", "def-3"));
+    }
+
+    @Test
+    void returnsNothingForWildcardPermissions() {
+        assertThat(PermittedInstances.resolve(List.of(new CaseSensitiveWildcardPermission("eventdefinitions:read")), "eventdefinitions:read")).isEmpty();
+        assertThat(PermittedInstances.resolve(List.of(new CaseSensitiveWildcardPermission("eventdefinitions:*:*")), "eventdefinitions:read")).isEmpty();
+        assertThat(PermittedInstances.resolve(List.of(new CaseSensitiveWildcardPermission("*")), "eventdefinitions:read")).isEmpty();
+    }
+
+    @Test
+    void returnsNothingForUnknownPermissionTypes() {
+        final Permission custom = p -> false;
+
+        assertThat(PermittedInstances.resolve(List.of(custom), "eventdefinitions:read")).isEmpty();
+    }
+
+    @Test
+    void returnsEmptySetWithoutPermissions() {
+        assertThat(PermittedInstances.resolve(List.of(), "eventdefinitions:read")).hasValueSatisfying(ids -> assertThat(ids).isEmpty());
+    }
+}
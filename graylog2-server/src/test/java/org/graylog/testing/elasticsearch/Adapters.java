@@ -38,6 +38,8 @@ public interface Adapters {
 
     MessagesAdapter messagesAdapter();
 
+    MessagesAdapter messagesAdapter(boolean compressionEnabled);
+
     IndexFieldTypePollerAdapter indexFieldTypePollerAdapter();
 
     IndexFieldTypePollerAdapter indexFieldTypePollerAdapter(final Configuration configuration);
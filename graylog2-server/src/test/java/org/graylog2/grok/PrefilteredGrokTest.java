@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.grok;
+
+import io.krakens.grok.api.Grok;
+import io.krakens.grok.api.GrokCompiler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrefilteredGrokTest {
+    @Test
+    void extractsLiteralsOutsideOfGroups() {
+        assertThat(PrefilteredGrok.requiredLiterals("user (?<name>\\w+) logged in from (?<ip>\\S+)"))
+                .containsExactly(" logged in from ", "user ");
+    }
+
+    @Test
+    void skipsCharacterClassesEscapesAndAnchors() {
+        assertThat(PrefilteredGrok.requiredLiterals("^GET\\s+[a-z/]+ HTTP\\.1$")).containsExactly(" HTTP.1", "GET");
+        assertThat(PrefilteredGrok.requiredLiterals("\\Qa.b\\Eab")).containsExactly("ab");
+        assertThat(PrefilteredGrok.requiredLiterals("[]x]yz[^]a]bc")).containsExactly("yz", "bc");
+    }
+
+    @Test
+    void skipsMultiCharacterEscapes() {
+        assertThat(PrefilteredGrok.requiredLiterals("\\x41BC")).containsExactly("BC");
+        assertThat(PrefilteredGrok.requiredLiterals("\\x{1F600}abc")).containsExactly("abc");
+        assertThat(PrefilteredGrok.requiredLiterals("ab\\u0041CDef")).containsExactly("CDef", "ab");
+        assertThat(PrefilteredGrok.requiredLiterals("xy\\0101zz")).containsExactly("xy", "zz");
+        assertThat(PrefilteredGrok.requiredLiterals("\\cXYZ")).containsExactly("YZ");
+        assertThat(PrefilteredGrok.requiredLiterals("(?<x>ab)\\k<x>")).isEmpty();
+        assertThat(PrefilteredGrok.requiredLiterals("(a)\\12cd")).containsExactly("cd");
+        assertThat(PrefilteredGrok.requiredLiterals("\\p{Alpha}xy\\pLzz")).containsExactly("xy", "zz");
+        assertThat(PrefilteredGrok.requiredLiterals("\\N{LATIN SMALL LETTER A}bc")).containsExactly("bc");
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "\\x41BC, ABC",
+            "\\0101BC, ABC",
+            "(?<x>ab)\\k<x>, abab",
+            "\\u0041BC, ABC"
+    })
+    void matchesValuesWithMultiCharacterEscapes(String regex, String value) {
+        assertThat(Pattern.compile(regex).matcher(value).find()).isTrue();
+        assertThat(new PrefilteredGrok(GrokCompiler.newInstance().compile(regex)).mightMatch(value)).isTrue();
+    }
+
+    @Test
+    void dropsOptionalCharacters() {
+        assertThat(PrefilteredGrok.requiredLiterals("abc?de")).containsExactly("ab", "de");
+        assertThat(PrefilteredGrok.requiredLiterals("ab*cd")).containsExactly("cd");
+        assertThat(PrefilteredGrok.requiredLiterals("ab+cd")).containsExactly("ab", "cd");
+        assertThat(PrefilteredGrok.requiredLiterals("ab{2,3}cd")).containsExactly("cd");
+        assertThat(PrefilteredGrok.requiredLiterals("xy(?:ab)?cd")).containsExactly("xy", "cd");
+    }
+
+    @Test
+    void returnsNoLiteralsForAlternationsAndInlineFlags() {
+        assertThat(PrefilteredGrok.requiredLiterals("foo|bar")).isEmpty();
+        assertThat(PrefilteredGrok.requiredLiterals("(?i)foo")).isEmpty();
+        assertThat(PrefilteredGrok.requiredLiterals("foo(?i:bar)")).isEmpty();
+        // Alternations inside of groups don't affect the literals outside
+        assertThat(PrefilteredGrok.requiredLiterals("foo (a|b) bar")).containsExactly("foo ", " bar");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "user=42 action=login",
+            "prefix user=7 action=logout suffix",
+            "user=abc action=login",
+            "user=42 act=login",
+            "action=login user=42",
+            ""
+    })
+    void capturesSameFieldsAsGrok(String value) {
+        final GrokCompiler compiler = GrokCompiler.newInstance();
+        compiler.register("NUM", "[0-9]+");
+        compiler.register("WORD", "\\b\\w+\\b");
+        final Grok grok = compiler.compile("user=%{NUM:uid} action=%{WORD:action}", true);
+        final PrefilteredGrok prefilteredGrok = new PrefilteredGrok(grok);
+
+        assertThat(prefilteredGrok.captureFlattened(value)).isEqualTo(grok.match(value).captureFlattened());
+    }
+
+    @Test
+    void rejectsValuesWithoutRequiredLiterals() {
+        final GrokCompiler compiler = GrokCompiler.newInstance();
+        compiler.register("NUM", "[0-9]+");
+        final PrefilteredGrok grok = new PrefilteredGrok(compiler.compile("status=%{NUM:status}", true));
+
+        assertThat(grok.mightMatch("code=200")).isFalse();
+        assertThat(grok.mightMatch("status=abc")).isTrue();
+    }
+}
@@ -19,8 +19,11 @@ package org.graylog2.indexer.fieldtypes;
 import com.github.joschi.jadconfig.util.Duration;
 import com.google.common.eventbus.EventBus;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.graylog2.events.ClusterEventBus;
 import org.graylog2.indexer.MongoIndexSet;
 import org.graylog2.indexer.cluster.Cluster;
+import org.graylog2.indexer.fieldtypes.events.ObservedFieldsEvent;
+import org.graylog2.indexer.fieldtypes.events.ObservedFieldsResetEvent;
 import org.graylog2.indexer.indexset.IndexSetConfig;
 import org.graylog2.indexer.indexset.IndexSetService;
 import org.graylog2.indexer.indices.Indices;
@@ -35,11 +38,13 @@ import org.mockito.stubbing.Answer;
 import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
@@ -58,6 +63,7 @@ class IndexFieldTypePollerPeriodicalTest {
     private final Cluster cluster = mock(Cluster.class);
     @SuppressWarnings("UnstableApiUsage")
     private final EventBus eventBus = mock(EventBus.class);
+    private final ClusterEventBus clusterEventBus = mock(ClusterEventBus.class);
     private final ServerStatus serverStatus = mock(ServerStatus.class);
     private final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(2,
             new ThreadFactoryBuilder().setNameFormat("index-field-type-poller-periodical-test-%d").build()
@@ -65,32 +71,28 @@ class IndexFieldTypePollerPeriodicalTest {
 
     @BeforeEach
     void setUp() {
-        this.periodical = new IndexFieldTypePollerPeriodical(indexFieldTypePoller,
+        this.periodical = createPeriodical(false);
+        when(serverStatus.getLifecycle()).thenReturn(Lifecycle.RUNNING);
+        when(cluster.isConnected()).thenReturn(true);
+    }
+
+    private IndexFieldTypePollerPeriodical createPeriodical(boolean trackObservedFields) {
+        return new IndexFieldTypePollerPeriodical(indexFieldTypePoller,
                 indexFieldTypesService,
                 indexSetService,
                 indices,
                 mongoIndexSetFactory,
                 cluster,
                 eventBus,
+                clusterEventBus,
                 serverStatus,
                 Duration.seconds(0),
+                trackObservedFields,
                 scheduler);
-        when(serverStatus.getLifecycle()).thenReturn(Lifecycle.RUNNING);
-        when(cluster.isConnected()).thenReturn(true);
     }
 
-    @Test
-    void scheduledExecutionIsSkippedWhenServerIsNotRunning() {
-        when(serverStatus.getLifecycle()).thenReturn(Lifecycle.HALTING);
-
-        periodical.doRun();
-
-        verifyNoInteractions(cluster);
-    }
-
-    @Test
-    void noConcurrentPollingForFieldTypes() throws InterruptedException {
-        final IndexSetConfig indexSet = IndexSetConfig.builder()
+    private IndexSetConfig indexSetConfig(org.joda.time.Duration fieldTypeRefreshInterval) {
+        return IndexSetConfig.builder()
                 .id("indexSet1")
                 .title("Test Index Set")
                 .indexPrefix("test")
@@ -100,11 +102,25 @@ class IndexFieldTypePollerPeriodicalTest {
                 .indexTemplateName("test")
                 .indexOptimizationMaxNumSegments(2048)
                 .indexOptimizationDisabled(false)
-                .fieldTypeRefreshInterval(org.joda.time.Duration.standardSeconds(1))
+                .fieldTypeRefreshInterval(fieldTypeRefreshInterval)
                 .retentionStrategy(NoopRetentionStrategyConfig.createDefault())
                 .rotationStrategy(MessageCountRotationStrategyConfig.createDefault())
                 .replicas(1)
                 .build();
+    }
+
+    @Test
+    void scheduledExecutionIsSkippedWhenServerIsNotRunning() {
+        when(serverStatus.getLifecycle()).thenReturn(Lifecycle.HALTING);
+
+        periodical.doRun();
+
+        verifyNoInteractions(cluster);
+    }
+
+    @Test
+    void noConcurrentPollingForFieldTypes() throws InterruptedException {
+        final IndexSetConfig indexSet = indexSetConfig(org.joda.time.Duration.standardSeconds(1));
         final List<IndexSetConfig> indexSets = List.of(indexSet);
         when(indexSetService.findAll()).thenReturn(indexSets);
 
@@ -139,4 +155,78 @@ class IndexFieldTypePollerPeriodicalTest {
 
         verify(indexFieldTypePoller, times(1)).pollIndex(anyString(), anyString());
     }
+
+    @Test
+    void onlyPollsIndexSetsWithObservedFieldsOrRotatedWriteIndex() {
+        final IndexFieldTypePollerPeriodical trackingPeriodical = createPeriodical(true);
+        // The refresh interval has always elapsed on the next run
+        final IndexSetConfig indexSet = indexSetConfig(org.joda.time.Duration.millis(1));
+        when(indexSetService.findAll()).thenReturn(List.of(indexSet));
+
+        final MongoIndexSet mongoIndexSet = mock(MongoIndexSet.class);
+        when(mongoIndexSet.getActiveWriteIndex()).thenReturn("test_0");
+        when(mongoIndexSetFactory.create(eq(indexSet))).thenReturn(mongoIndexSet);
+        when(indexFieldTypePoller.pollIndex(anyString(), anyString())).thenReturn(Optional.of(fieldTypes()));
+
+        // The first poll always fetches the mapping
+        runAndAwait(trackingPeriodical, 1);
+        verify(indexFieldTypePoller, times(1)).pollIndex("test_0", "indexSet1");
+        verify(clusterEventBus, times(1)).post(ObservedFieldsResetEvent.create("indexSet1"));
+
+        // Nothing new has been observed
+        runAndAwait(trackingPeriodical, 2);
+        verify(indexFieldTypePoller, times(1)).pollIndex("test_0", "indexSet1");
+
+        trackingPeriodical.handleObservedFields(ObservedFieldsEvent.create(Set.of("indexSet1")));
+        runAndAwait(trackingPeriodical, 3);
+        verify(indexFieldTypePoller, times(2)).pollIndex("test_0", "indexSet1");
+
+        when(mongoIndexSet.getActiveWriteIndex()).thenReturn("test_1");
+        runAndAwait(trackingPeriodical, 4);
+        verify(indexFieldTypePoller, times(1)).pollIndex("test_1", "indexSet1");
+        verify(clusterEventBus, times(2)).post(ObservedFieldsResetEvent.create("indexSet1"));
+    }
+
+    @Test
+    void pollsAgainAfterFailedPoll() {
+        final IndexFieldTypePollerPeriodical trackingPeriodical = createPeriodical(true);
+        final IndexSetConfig indexSet = indexSetConfig(org.joda.time.Duration.millis(1));
+        when(indexSetService.findAll()).thenReturn(List.of(indexSet));
+
+        final MongoIndexSet mongoIndexSet = mock(MongoIndexSet.class);
+        when(mongoIndexSet.getActiveWriteIndex()).thenReturn("test_0");
+        when(mongoIndexSetFactory.create(eq(indexSet))).thenReturn(mongoIndexSet);
+        final IllegalStateException error = new IllegalStateException("Boom");
+        when(indexFieldTypePoller.pollIndex(anyString(), anyString()))
+                .thenReturn(Optional.empty())
+                .thenThrow(error)
+                .thenReturn(Optional.of(fieldTypes()), Optional.empty())
+                .thenThrow(error)
+                .thenReturn(Optional.of(fieldTypes()));
+
+        // The new write index is polled until its mapping has been fetched
+        runAndAwait(trackingPeriodical, 1);
+        runAndAwait(trackingPeriodical, 2);
+        runAndAwait(trackingPeriodical, 3);
+        runAndAwait(trackingPeriodical, 4);
+        verify(indexFieldTypePoller, times(3)).pollIndex("test_0", "indexSet1");
+
+        // The marker for new fields is kept until the mapping has been fetched
+        trackingPeriodical.handleObservedFields(ObservedFieldsEvent.create(Set.of("indexSet1")));
+        runAndAwait(trackingPeriodical, 5);
+        runAndAwait(trackingPeriodical, 6);
+        runAndAwait(trackingPeriodical, 7);
+        runAndAwait(trackingPeriodical, 8);
+        verify(indexFieldTypePoller, times(6)).pollIndex("test_0", "indexSet1");
+        verify(indexFieldTypesService, times(2)).upsert(any(IndexFieldTypesDTO.class));
+    }
+
+    private static IndexFieldTypesDTO fieldTypes() {
+        return IndexFieldTypesDTO.create("indexSet1", "test_0", Set.of());
+    }
+
+    private void runAndAwait(IndexFieldTypePollerPeriodical periodical, long completedTasks) {
+        periodical.doRun();
+        await().atMost(1, TimeUnit.MINUTES).until(() -> scheduler.getCompletedTaskCount() == completedTasks);
+    }
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.indexer.fieldtypes;
+
+import com.google.common.eventbus.EventBus;
+import org.graylog2.events.ClusterEventBus;
+import org.graylog2.indexer.IndexSet;
+import org.graylog2.indexer.fieldtypes.events.ObservedFieldsEvent;
+import org.graylog2.indexer.fieldtypes.events.ObservedFieldsResetEvent;
+import org.graylog2.indexer.indexset.IndexSetConfig;
+import org.graylog2.indexer.messages.IndexingRequest;
+import org.graylog2.plugin.Message;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ObservedFieldsTrackerTest {
+    private final ClusterEventBus clusterEventBus = mock(ClusterEventBus.class);
+    private final IndexSet indexSet = mock(IndexSet.class);
+    private ObservedFieldsTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        final IndexSetConfig config = mock(IndexSetConfig.class);
+        when(config.id()).thenReturn("index-set-1");
+        when(indexSet.getConfig()).thenReturn(config);
+
+        tracker = new ObservedFieldsTracker(true, clusterEventBus, mock(EventBus.class), mock(ScheduledExecutorService.class));
+    }
+
+    @Test
+    void reportsIndexSetOnlyForNewFields() {
+        tracker.record(List.of(request(Map.of("foo", "bar"))));
+        tracker.publish();
+        verify(clusterEventBus, times(1)).post(ObservedFieldsEvent.create(Set.of("index-set-1")));
+
+        tracker.record(List.of(request(Map.of("foo", "baz"))));
+        tracker.publish();
+        verify(clusterEventBus, times(1)).post(ObservedFieldsEvent.create(Set.of("index-set-1")));
+
+        tracker.record(List.of(request(Map.of("foo", "baz", "new_field", 42))));
+        tracker.publish();
+        verify(clusterEventBus, times(2)).post(ObservedFieldsEvent.create(Set.of("index-set-1")));
+    }
+
+    @Test
+    void reportsFieldsAgainAfterReset() {
+        tracker.record(List.of(request(Map.of("foo", "bar"))));
+        tracker.publish();
+
+        tracker.handleReset(ObservedFieldsResetEvent.create("index-set-1"));
+        tracker.record(List.of(request(Map.of("foo", "bar"))));
+        tracker.publish();
+
+        verify(clusterEventBus, times(2)).post(ObservedFieldsEvent.create(Set.of("index-set-1")));
+    }
+
+    @Test
+    void doesNotTrackIfDisabled() {
+        final ObservedFieldsTracker disabledTracker = new ObservedFieldsTracker(false, clusterEventBus, mock(EventBus.class), mock(ScheduledExecutorService.class));
+
+        disabledTracker.record(List.of(request(Map.of("foo", "bar"))));
+        disabledTracker.publish();
+
+        verifyNoInteractions(clusterEventBus);
+    }
+
+    private IndexingRequest request(Map<String, Object> fields) {
+        final Message message = new Message("message", "source", new DateTime(2023, 1, 1, 0, 0, DateTimeZone.UTC));
+        message.addFields(fields);
+        return IndexingRequest.create(indexSet, message);
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.indexer.messages;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.joschi.jadconfig.util.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.graylog2.indexer.messages.AdaptiveBulkController.UNLIMITED;
+
+class AdaptiveBulkControllerTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(20);
+
+    private MetricRegistry metricRegistry;
+    private AdaptiveBulkController controller;
+
+    @BeforeEach
+    void setUp() {
+        metricRegistry = new MetricRegistry();
+        controller = new AdaptiveBulkController(500, 4, Duration.seconds(10), metricRegistry);
+    }
+
+    @Test
+    void limitsAreUnlimitedInitially() {
+        assertThat(controller.chunkSizeLimit()).isEqualTo(UNLIMITED);
+        assertThat(controller.concurrencyLimit()).isEqualTo(UNLIMITED);
+        assertThat(metricRegistry.getGauges().get("org.graylog2.indexer.messages.AdaptiveBulkController.chunkSizeLimit").getValue())
+                .isEqualTo(500);
+    }
+
+    @Test
+    void tooLargeRequestHalvesChunkBytes() {
+        controller.acquire();
+        controller.onTooLarge(10_000);
+
+        assertThat(controller.chunkBytesLimit()).isEqualTo(5_000);
+        assertThat(controller.chunkSizeLimit()).isEqualTo(UNLIMITED);
+        assertThat(controller.concurrencyLimit()).isEqualTo(UNLIMITED);
+        assertThat(controller.inFlightRequests()).isZero();
+    }
+
+    @Test
+    void chunkBytesStayBelowSmallestTooLargeRequest() {
+        controller.acquire();
+        controller.onTooLarge(10_000);
+
+        for (int i = 0; i < 9; i++) {
+            controller.acquire();
+            controller.onSuccess(10, FAST);
+        }
+        assertThat(controller.chunkBytesLimit()).isEqualTo(9_500);
+
+        for (int i = 0; i < 5; i++) {
+            controller.acquire();
+            controller.onSuccess(10, FAST);
+        }
+        assertThat(controller.chunkBytesLimit()).isEqualTo(9_999);
+
+        controller.acquire();
+        controller.onTooLarge(9_999);
+        controller.acquire();
+        controller.onSuccess(10, FAST);
+
+        assertThat(controller.chunkBytesLimit()).isEqualTo(5_498);
+    }
+
+    @Test
+    void rejectionBackoffDoublesUntilSuccess() {
+        assertThat(controller.rejectionBackoffMillis()).isZero();
+
+        for (int i = 0; i < 3; i++) {
+            controller.acquire();
+            controller.onRejected(10);
+        }
+        assertThat(controller.rejectionBackoffMillis()).isEqualTo(1000);
+
+        for (int i = 0; i < 20; i++) {
+            controller.acquire();
+            controller.onRejected(10);
+        }
+        assertThat(controller.rejectionBackoffMillis()).isEqualTo(AdaptiveBulkController.MAX_REJECTION_BACKOFF_MILLIS);
+
+        controller.acquire();
+        controller.onSuccess(1, FAST);
+        assertThat(controller.rejectionBackoffMillis()).isZero();
+    }
+
+    @Test
+    void rejectedRequestHalvesChunkSizeAndConcurrency() {
+        controller.acquire();
+        controller.acquire();
+        controller.acquire();
+        controller.acquire();
+        controller.onRejected(200);
+
+        assertThat(controller.chunkSizeLimit()).isEqualTo(100);
+        assertThat(controller.concurrencyLimit()).isEqualTo(2);
+        assertThat(controller.inFlightRequests()).isEqualTo(3);
+    }
+
+    @Test
+    void slowRequestHalvesConcurrency() {
+        controller.acquire();
+        controller.acquire();
+        controller.onSuccess(500, SLOW);
+
+        assertThat(controller.concurrencyLimit()).isEqualTo(1);
+        assertThat(controller.chunkSizeLimit()).isEqualTo(UNLIMITED);
+    }
+
+    @Test
+    void fastRequestsIncreaseLimitsUntilUnlimited() {
+        controller.acquire();
+        controller.onRejected(100);
+        assertThat(controller.chunkSizeLimit()).isEqualTo(50);
+        assertThat(controller.concurrencyLimit()).isEqualTo(1);
+
+        controller.acquire();
+        controller.onSuccess(50, FAST);
+        assertThat(controller.chunkSizeLimit()).isEqualTo(75);
+        assertThat(controller.concurrencyLimit()).isEqualTo(2);
+
+        controller.acquire();
+        controller.onSuccess(75, FAST);
+        controller.acquire();
+        controller.onSuccess(100, FAST);
+        assertThat(controller.concurrencyLimit()).isEqualTo(UNLIMITED);
+
+        for (int i = 0; i < 15; i++) {
+            controller.acquire();
+            controller.onSuccess(500, FAST);
+        }
+        assertThat(controller.chunkSizeLimit()).isEqualTo(UNLIMITED);
+    }
+
+    @Test
+    void smallerRequestsDoNotIncreaseChunkSize() {
+        controller.acquire();
+        controller.onRejected(100);
+        controller.acquire();
+        controller.onSuccess(20, FAST);
+
+        assertThat(controller.chunkSizeLimit()).isEqualTo(50);
+    }
+
+    @Test
+    void failedRequestKeepsLimits() {
+        controller.acquire();
+        controller.onRejected(100);
+        controller.acquire();
+        controller.onFailure();
+
+        assertThat(controller.chunkSizeLimit()).isEqualTo(50);
+        assertThat(controller.inFlightRequests()).isZero();
+    }
+
+    @Test
+    void acquireBlocksAtConcurrencyLimit() throws Exception {
+        controller.acquire();
+        controller.onSuccess(500, SLOW);
+        assertThat(controller.concurrencyLimit()).isEqualTo(1);
+
+        controller.acquire();
+        final Thread waiting = new Thread(() -> {
+            controller.acquire();
+            controller.onSuccess(500, FAST);
+        });
+        waiting.start();
+        waiting.join(200);
+        assertThat(waiting.isAlive()).isTrue();
+
+        controller.onSuccess(500, FAST);
+        waiting.join(5000);
+        assertThat(waiting.isAlive()).isFalse();
+        assertThat(controller.inFlightRequests()).isZero();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.indexer.messages;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BulkRequestCompressorTest {
+    private static final String PREFIX = "org.graylog2.indexer.messages.BulkRequestCompressor.";
+
+    private MetricRegistry metricRegistry;
+    private BulkRequestCompressor compressor;
+
+    @BeforeEach
+    void setUp() {
+        metricRegistry = new MetricRegistry();
+        compressor = new BulkRequestCompressor(true, metricRegistry);
+    }
+
+    @Test
+    void compressesBodyWithGzip() throws IOException {
+        final byte[] body = bulkBody(1000);
+
+        final BulkRequestCompressor.Body compressed = compressor.compress(out -> {
+            out.write(body, 0, 10);
+            out.write(body[10]);
+            out.write(body, 11, body.length - 11);
+        });
+
+        assertThat(compressed.uncompressedLength()).isEqualTo(body.length);
+        assertThat(compressed.length()).isLessThan(body.length / 5);
+        assertThat(decompress(compressed)).isEqualTo(body);
+    }
+
+    @Test
+    void reusesBufferForConsecutiveRequests() throws IOException {
+        final byte[] first = bulkBody(1000);
+        final byte[] second = bulkBody(10);
+
+        final BulkRequestCompressor.Body firstCompressed = compressor.compress(out -> out.write(first));
+        final byte[] firstBuffer = firstCompressed.buffer();
+        assertThat(decompress(firstCompressed)).isEqualTo(first);
+
+        final BulkRequestCompressor.Body secondCompressed = compressor.compress(out -> out.write(second));
+        assertThat(secondCompressed.buffer()).isSameAs(firstBuffer);
+        assertThat(decompress(secondCompressed)).isEqualTo(second);
+    }
+
+    @Test
+    void compressesEmptyBody() throws IOException {
+        final BulkRequestCompressor.Body compressed = compressor.compress(out -> {});
+
+        assertThat(decompress(compressed)).isEmpty();
+    }
+
+    @Test
+    void recordsMetrics() throws IOException {
+        final byte[] body = bulkBody(1000);
+
+        final BulkRequestCompressor.Body compressed = compressor.compress(out -> out.write(body));
+
+        assertThat(metricRegistry.getMeters().get(PREFIX + "uncompressedBytes").getCount()).isEqualTo(body.length);
+        assertThat(metricRegistry.getMeters().get(PREFIX + "compressedBytes").getCount()).isEqualTo(compressed.length());
+        assertThat(metricRegistry.getTimers().get(PREFIX + "compressionCpuTime").getCount()).isOne();
+        assertThat(metricRegistry.getHistograms().get(PREFIX + "compressedSizePercent").getSnapshot().getMax())
+                .isEqualTo(compressed.length() * 100L / body.length);
+    }
+
+    private static byte[] bulkBody(int documents) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < documents; i++) {
+            sb.append("{\"index\":{\"_index\":\"graylog_deflector\",\"_id\":\"").append(i).append("\"}}\n")
+                    .append("{\"message\":\"Failed password for invalid user root\",\"source\":\"fw-01\",\"count\":").append(i).append("}\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] decompress(BulkRequestCompressor.Body body) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body.buffer(), 0, body.length()))) {
+            return in.readAllBytes();
+        }
+    }
+}
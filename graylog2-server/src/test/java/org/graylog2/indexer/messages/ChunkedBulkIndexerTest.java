@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.indexer.messages;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.joschi.jadconfig.util.Duration;
+import org.graylog2.indexer.ElasticsearchException;
+import org.graylog2.indexer.IndexSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ChunkedBulkIndexerTest {
+    private AdaptiveBulkController controller;
+    private ChunkedBulkIndexer indexer;
+    private final List<Integer> requestSizes = new ArrayList<>();
+    private final List<Long> sleeps = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        controller = new AdaptiveBulkController(500, 3, Duration.seconds(10), new MetricRegistry());
+        indexer = new ChunkedBulkIndexer(controller, sleeps::add);
+    }
+
+    @Test
+    void indexesBatchInSingleRequest() throws Exception {
+        final List<IndexingRequest> requests = requests(100);
+
+        indexer.index(requests, chunk -> {
+            requestSizes.add(chunk.size);
+            return List.of();
+        });
+
+        assertThat(requestSizes).containsExactly(100);
+    }
+
+    @Test
+    void splitsBatchWhenEntityIsTooLarge() throws Exception {
+        final List<IndexingRequest> requests = requests(100);
+
+        indexer.index(requests, chunk -> {
+            requestSizes.add(chunk.size);
+            if (chunk.size > 30) {
+                throw new ChunkedBulkIndexer.EntityTooLargeException(0);
+            }
+            return List.of();
+        });
+
+        assertThat(requestSizes).containsExactly(100, 50, 25, 27, 30, 18);
+        assertThat(controller.inFlightRequests()).isZero();
+    }
+
+    @Test
+    void neverGrowsBackToRejectedRequestSize() throws Exception {
+        final List<Integer> rejectedSizes = new ArrayList<>();
+        final ChunkedBulkIndexer.BulkIndex bulkIndex = chunk -> {
+            requestSizes.add(chunk.size);
+            if (chunk.size > 30) {
+                rejectedSizes.add(chunk.size);
+                throw new ChunkedBulkIndexer.EntityTooLargeException(0);
+            }
+            return List.of();
+        };
+
+        for (int i = 0; i < 9; i++) {
+            indexer.index(requests(100), bulkIndex);
+        }
+        requestSizes.clear();
+        indexer.index(requests(100), bulkIndex);
+
+        assertThat(rejectedSizes).doesNotHaveDuplicates().isSortedAccordingTo(Comparator.reverseOrder());
+        assertThat(requestSizes).containsExactly(30, 30, 30, 10);
+    }
+
+    @Test
+    void remembersLearnedChunkSizeForNextBatch() throws Exception {
+        indexer.index(requests(100), chunk -> {
+            if (chunk.size > 30) {
+                throw new ChunkedBulkIndexer.TooManyRequestsException(0);
+            }
+            return List.of();
+        });
+
+        indexer.index(requests(100), chunk -> {
+            requestSizes.add(chunk.size);
+            return List.of();
+        });
+
+        assertThat(requestSizes).containsExactly(50, 50);
+    }
+
+    @Test
+    void backsOffWhenSingleMessageIsRejected() throws Exception {
+        final AtomicInteger rejections = new AtomicInteger(3);
+
+        indexer.index(requests(1), chunk -> {
+            requestSizes.add(chunk.size);
+            if (rejections.getAndDecrement() > 0) {
+                throw new ChunkedBulkIndexer.TooManyRequestsException(0);
+            }
+            return List.of();
+        });
+
+        assertThat(requestSizes).containsExactly(1, 1, 1, 1);
+        assertThat(sleeps).containsExactly(250L, 500L, 1000L);
+        assertThat(controller.rejectionBackoffMillis()).isZero();
+    }
+
+    @Test
+    void failsWhenBatchCannotBeSplitAnyFurther() {
+        assertThatThrownBy(() -> indexer.index(requests(4), chunk -> {
+            throw new ChunkedBulkIndexer.EntityTooLargeException(0);
+        })).isInstanceOf(ElasticsearchException.class);
+        assertThat(controller.inFlightRequests()).isZero();
+    }
+
+    private static List<IndexingRequest> requests(int count) {
+        final IndexSet indexSet = mock(IndexSet.class);
+        final Indexable message = mock(Indexable.class);
+        when(message.getSize()).thenReturn(1000L);
+        return IntStream.range(0, count)
+                .mapToObj(i -> IndexingRequest.create(indexSet, message))
+                .collect(Collectors.toList());
+    }
+}
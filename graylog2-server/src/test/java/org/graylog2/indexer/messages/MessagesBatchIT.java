@@ -21,6 +21,7 @@ import com.google.common.collect.Maps;
 import org.graylog.failure.FailureSubmissionService;
 import org.graylog.testing.elasticsearch.ElasticsearchBaseTest;
 import org.graylog2.indexer.IndexSet;
+import org.graylog2.indexer.fieldtypes.ObservedFieldsTracker;
 import org.graylog2.plugin.Message;
 import org.graylog2.system.processing.ProcessingStatusRecorder;
 import org.joda.time.DateTime;
@@ -58,7 +59,7 @@ public abstract class MessagesBatchIT extends ElasticsearchBaseTest {
         client().createIndex(INDEX_NAME);
         client().waitForGreenStatus(INDEX_NAME);
         messages = new Messages(mock(TrafficAccounting.class), createMessagesAdapter(), mock(ProcessingStatusRecorder.class),
-                failureSubmissionService);
+                failureSubmissionService, mock(ObservedFieldsTracker.class));
     }
 
     @After
@@ -20,6 +20,7 @@ import com.google.common.collect.ImmutableList;
 import org.graylog.failure.FailureSubmissionService;
 import org.graylog2.Configuration;
 import org.graylog2.indexer.IndexSet;
+import org.graylog2.indexer.fieldtypes.ObservedFieldsTracker;
 import org.graylog2.plugin.Message;
 import org.graylog2.system.processing.ProcessingStatusRecorder;
 import org.joda.time.DateTime;
@@ -56,7 +57,7 @@ class MessagesBulkIndexRetryingTest {
     void setUp() {
         when(conf.getFailureHandlingQueueCapacity()).thenReturn(1000);
         this.messages = new Messages(trafficAccounting, messagesAdapter, processingStatusRecorder,
-                mock(FailureSubmissionService.class));
+                mock(FailureSubmissionService.class), mock(ObservedFieldsTracker.class));
     }
 
     @Test
@@ -30,6 +30,7 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.graylog.failure.FailureSubmissionService;
 import org.graylog.testing.elasticsearch.ElasticsearchBaseTest;
 import org.graylog2.indexer.IndexSet;
+import org.graylog2.indexer.fieldtypes.ObservedFieldsTracker;
 import org.graylog2.indexer.results.ResultMessage;
 import org.graylog2.plugin.Message;
 import org.graylog2.system.processing.ProcessingStatusRecorder;
@@ -86,7 +87,7 @@ public abstract class MessagesIT extends ElasticsearchBaseTest {
         client().createIndex(INDEX_NAME);
         client().waitForGreenStatus(INDEX_NAME);
         messages = new Messages(mock(TrafficAccounting.class), createMessagesAdapter(), mock(ProcessingStatusRecorder.class),
-                failureSubmissionService);
+                failureSubmissionService, mock(ObservedFieldsTracker.class));
     }
 
     @After
@@ -19,6 +19,7 @@ package org.graylog2.indexer.messages;
 import com.google.common.collect.ImmutableList;
 import org.graylog.failure.FailureSubmissionService;
 import org.graylog2.indexer.IndexSet;
+import org.graylog2.indexer.fieldtypes.ObservedFieldsTracker;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.Tools;
 import org.graylog2.system.processing.ProcessingStatusRecorder;
@@ -72,7 +73,8 @@ public class MessagesTest {
 
     @Before
     public void setUp() throws Exception {
-        this.messages = new Messages(trafficAccounting, messagesAdapter, mock(ProcessingStatusRecorder.class), failureSubmissionService);
+        this.messages = new Messages(trafficAccounting, messagesAdapter, mock(ProcessingStatusRecorder.class), failureSubmissionService,
+                mock(ObservedFieldsTracker.class));
     }
 
     @Test
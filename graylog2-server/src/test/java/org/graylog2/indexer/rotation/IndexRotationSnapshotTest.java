@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.indexer.rotation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.graylog2.indexer.IndexSet;
+import org.graylog2.indexer.indices.Indices;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IndexRotationSnapshotTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Indices indices;
+
+    @BeforeEach
+    void setUp() {
+        indices = mock(Indices.class);
+    }
+
+    @Test
+    void containsWriteIndicesPointingToTheNewestIndex() throws Exception {
+        when(indices.getIndexNamesAndAliases("*")).thenReturn(ImmutableMap.<String, Set<String>>builder()
+                .put("graylog_9", Set.of())
+                .put("graylog_10", Set.of("graylog_deflector"))
+                .put("graylog_3_restored_archive", Set.of())
+                .put("events_1", Set.of("events_deflector"))
+                .put("events_2", Set.of())
+                .put("broken_1", Set.of("broken_deflector"))
+                .put("broken_2", Set.of("broken_deflector"))
+                .build());
+        when(indices.getIndexStats(List.of("graylog_10"))).thenReturn(stats("graylog_10", 42, 1024));
+
+        final IndexRotationSnapshot snapshot = IndexRotationSnapshot.create(indices,
+                List.of(indexSet("graylog"), indexSet("events"), indexSet("broken"), indexSet("missing")));
+
+        assertThat(snapshot.size()).isEqualTo(1);
+        assertThat(snapshot.writeIndex(indexSet("graylog"))).hasValue("graylog_10");
+        assertThat(snapshot.writeIndex(indexSet("events"))).isEmpty();
+        assertThat(snapshot.writeIndex(indexSet("broken"))).isEmpty();
+        assertThat(snapshot.writeIndex(indexSet("missing"))).isEmpty();
+        assertThat(snapshot.indexStats("graylog_10")).hasValue(new IndexRotationSnapshot.IndexStats(42, 1024));
+        assertThat(snapshot.indexStats("graylog_9")).isEmpty();
+        verify(indices).refresh("graylog_10");
+    }
+
+    @Test
+    void doesNotRequestStatsWithoutWriteIndices() {
+        when(indices.getIndexNamesAndAliases("*")).thenReturn(ImmutableMap.of("graylog_1", ImmutableSet.of()));
+
+        final IndexRotationSnapshot snapshot = IndexRotationSnapshot.create(indices, List.of(indexSet("graylog")));
+
+        assertThat(snapshot.size()).isZero();
+        verify(indices, never()).getIndexStats(anyCollection());
+    }
+
+    private IndexSet indexSet(String prefix) {
+        final IndexSet indexSet = mock(IndexSet.class);
+        when(indexSet.getIndexPrefix()).thenReturn(prefix);
+        when(indexSet.getWriteIndexAlias()).thenReturn(prefix + "_deflector");
+        return indexSet;
+    }
+
+    private JsonNode stats(String index, long count, long sizeInBytes) throws Exception {
+        return objectMapper.readTree("{\"" + index + "\":{\"primaries\":{\"docs\":{\"count\":" + count
+                + "},\"store\":{\"size_in_bytes\":" + sizeInBytes + "}}}}");
+    }
+}
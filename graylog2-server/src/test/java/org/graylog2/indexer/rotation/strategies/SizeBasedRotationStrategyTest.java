@@ -21,6 +21,7 @@ import org.graylog2.configuration.ElasticsearchConfiguration;
 import org.graylog2.indexer.IndexSet;
 import org.graylog2.indexer.indexset.IndexSetConfig;
 import org.graylog2.indexer.indices.Indices;
+import org.graylog2.indexer.rotation.IndexRotationSnapshot;
 import org.graylog2.plugin.system.NodeId;
 import org.graylog2.plugin.system.SimpleNodeId;
 import org.junit.Rule;
@@ -29,8 +30,10 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
+import java.util.Map;
 import java.util.Optional;
 
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
@@ -100,4 +103,22 @@ public class SizeBasedRotationStrategyTest {
         verify(indexSet, never()).cycle();
         reset(indexSet);
     }
+
+    @Test
+    public void testRotateWithSnapshot() throws Exception {
+        when(indexSet.getWriteIndexAlias()).thenReturn("name_deflector");
+        when(indexSet.getConfig()).thenReturn(indexSetConfig);
+        when(indexSetConfig.rotationStrategy()).thenReturn(SizeBasedRotationStrategyConfig.create(100L));
+        final IndexRotationSnapshot snapshot = new IndexRotationSnapshot(Map.of("name_deflector", "name"),
+                Map.of("name", new IndexRotationSnapshot.IndexStats(10L, 1000L)));
+
+        final SizeBasedRotationStrategy strategy = new SizeBasedRotationStrategy(indices, nodeId, auditEventSender, configuration);
+
+        strategy.rotate(indexSet, snapshot);
+        verify(indexSet, times(1)).cycle();
+        verify(indexSet, never()).getNewestIndex();
+        verify(indices, never()).refresh(anyString());
+        verify(indices, never()).getStoreSizeInBytes(anyString());
+        reset(indexSet);
+    }
 }
@@ -20,7 +20,10 @@ import com.codahale.metrics.Metric;
 import com.codahale.metrics.MetricFilter;
 import com.codahale.metrics.MetricRegistry;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import org.graylog2.plugin.InstantMillisProvider;
 import org.graylog2.plugin.inputs.codecs.CodecAggregator;
 import org.joda.time.DateTime;
@@ -34,6 +37,9 @@ import org.junit.Test;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 
@@ -258,6 +264,68 @@ public class GelfChunkAggregatorTest {
         assertEquals(1, counterValueNamed(metricRegistry, DUPLICATE_CHUNKS));
     }
 
+    @Test
+    public void keepsExactSizeCopiesOfChunkPayloads() {
+        final TrackingAllocator allocator = new TrackingAllocator();
+        final byte[] messageId = generateMessageId(1);
+        final ByteBuf chunk1 = createChunk(allocator, messageId, (byte) 0, (byte) 2, "Hello ".getBytes(StandardCharsets.UTF_8));
+        final ByteBuf chunk2 = createChunk(allocator, messageId, (byte) 1, (byte) 2, "World".getBytes(StandardCharsets.UTF_8));
+        // a receive buffer is usually a lot larger than the datagram
+        chunk1.capacity(65536);
+        allocator.buffers.clear();
+
+        assertNull(aggregator.addChunk(chunk2).getMessage());
+        final ByteBuf message = aggregator.addChunk(chunk1).getMessage();
+
+        assertNotNull(message);
+        assertThat(message).isInstanceOf(CompositeByteBuf.class);
+        assertThat(message.toString(StandardCharsets.UTF_8)).isEqualTo("Hello World");
+        // the received buffers can be released by the channel pipeline right away
+        assertThat(chunk1.refCnt()).isEqualTo(1);
+        assertThat(chunk2.refCnt()).isEqualTo(1);
+        assertThat(allocator.buffers).extracting(ByteBuf::capacity).containsExactly(5, 6);
+
+        message.release();
+        assertThat(allocator.buffers).extracting(ByteBuf::refCnt).containsOnly(0);
+    }
+
+    @Test
+    public void releasesExpiredAndDuplicateChunks() {
+        final DateTime initialTime = new DateTime(2014, 1, 1, 1, 59, 59, 0, DateTimeZone.UTC);
+        final InstantMillisProvider clock = new InstantMillisProvider(initialTime);
+        DateTimeUtils.setCurrentMillisProvider(clock);
+
+        poolExecutor = mock(ScheduledThreadPoolExecutor.class);
+        aggregator = new GelfChunkAggregator(poolExecutor, metricRegistry);
+        final GelfChunkAggregator.ChunkEvictionTask evictionTask = aggregator.new ChunkEvictionTask();
+
+        final byte[] messageId = generateMessageId(1);
+        final TrackingAllocator allocator = new TrackingAllocator();
+        final ByteBuf chunk = createChunk(allocator, messageId, (byte) 0, (byte) 2, new byte[16]);
+        final ByteBuf duplicate = createChunk(allocator, messageId, (byte) 0, (byte) 2, new byte[16]);
+
+        allocator.buffers.clear();
+
+        assertNull(aggregator.addChunk(chunk).getMessage());
+        assertNull(aggregator.addChunk(duplicate).getMessage());
+        assertThat(chunk.refCnt()).isEqualTo(1);
+        assertThat(duplicate.refCnt()).isEqualTo(1);
+        assertThat(allocator.buffers).extracting(ByteBuf::refCnt).containsExactly(1, 0);
+
+        // not outdated yet
+        clock.tick(Period.seconds(3));
+        evictionTask.run();
+        assertThat(allocator.buffers).extracting(ByteBuf::refCnt).containsExactly(1, 0);
+        assertEquals(1, counterValueNamed(metricRegistry, WAITING_MESSAGES));
+
+        clock.tick(Period.seconds(5));
+        evictionTask.run();
+        assertThat(allocator.buffers).extracting(ByteBuf::refCnt).containsOnly(0);
+        assertEquals(0, counterValueNamed(metricRegistry, WAITING_MESSAGES));
+        assertEquals(1, counterValueNamed(metricRegistry, EXPIRED_MESSAGES));
+        assertEquals(1, counterValueNamed(metricRegistry, EXPIRED_CHUNKS));
+    }
+
     @Test
     public void testChunkEntryCompareTo() throws Exception {
         // Test if the ChunkEntry#compareTo() method can handle ChunkEntry objects which have the same timestamp.
@@ -329,7 +397,11 @@ public class GelfChunkAggregatorTest {
     }
 
     private ByteBuf createChunk(byte[] messageId, byte sequenceNumber, byte sequenceCount, byte[] payload) {
-        final ByteBuf channelBuffer = Unpooled.buffer(payload.length + 12);
+        return createChunk(UnpooledByteBufAllocator.DEFAULT, messageId, sequenceNumber, sequenceCount, payload);
+    }
+
+    private ByteBuf createChunk(ByteBufAllocator allocator, byte[] messageId, byte sequenceNumber, byte sequenceCount, byte[] payload) {
+        final ByteBuf channelBuffer = allocator.heapBuffer(payload.length + 12);
 
         channelBuffer.writeBytes(CHUNK_MAGIC_BYTES);
         channelBuffer.writeBytes(messageId);
@@ -370,4 +442,19 @@ public class GelfChunkAggregatorTest {
             return metricName.equals(name);
         }
     }
+
+    private static class TrackingAllocator extends UnpooledByteBufAllocator {
+        private final List<ByteBuf> buffers = new ArrayList<>();
+
+        TrackingAllocator() {
+            super(false);
+        }
+
+        @Override
+        protected ByteBuf newHeapBuffer(int initialCapacity, int maxCapacity) {
+            final ByteBuf buffer = super.newHeapBuffer(initialCapacity, maxCapacity);
+            buffers.add(buffer);
+            return buffer;
+        }
+    }
 }
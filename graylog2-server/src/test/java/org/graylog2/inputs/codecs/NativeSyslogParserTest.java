@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.inputs.codecs;
+
+import org.graylog2.plugin.Message;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NativeSyslogParserTest {
+    private final NativeSyslogParser parser = parser(false);
+
+    private static NativeSyslogParser parser(boolean expandStructuredData) {
+        return new NativeSyslogParser(StandardCharsets.UTF_8, null, expandStructuredData, false,
+                (host, remoteAddress) -> host == null ? "remote" : host);
+    }
+
+    private static Message parse(NativeSyslogParser parser, String message) {
+        return parser.parse(message.getBytes(StandardCharsets.UTF_8), null);
+    }
+
+    @Test
+    void parsesRfc5424() {
+        final Message message = parse(parser, "<165>1 2003-08-24T05:14:15.000003-07:00 192.0.2.1 myproc 8710 - [origin@1 ip=\"192.0.2.1\"] It's time to make the dö-nuts.");
+
+        assertThat(message).isNotNull();
+        assertThat(message.getMessage()).isEqualTo("It's time to make the dö-nuts.");
+        assertThat(message.getSource()).isEqualTo("192.0.2.1");
+        assertThat(message.getTimestamp()).isEqualTo(new DateTime(2003, 8, 24, 12, 14, 15, 0, DateTimeZone.UTC).withZone(DateTimeZone.getDefault()));
+        assertThat(message.getFields()).containsEntry("facility", "local4")
+                .containsEntry("facility_num", 20)
+                .containsEntry("level", 5)
+                .containsEntry("application_name", "myproc")
+                .containsEntry("process_id", "8710")
+                .containsEntry("ip", "192.0.2.1");
+    }
+
+    @Test
+    void prefixesStructuredDataIfExpanded() {
+        final Message message = parse(parser(true), "<165>1 2003-10-11T22:14:15.003Z host app - ID47 [a@1 x=\"1\"][b@1 x=\"2\"] msg");
+
+        assertThat(message).isNotNull();
+        assertThat(message.getFields()).containsEntry("a@1_x", "1").containsEntry("b@1_x", "2");
+    }
+
+    @Test
+    void parsesCiscoMessages() {
+        final Message message = parse(parser, "<189>148093: *Feb 27 06:07:28.713: %LINEPROTO-5-UPDOWN: Line protocol changed state to down");
+
+        assertThat(message).isNotNull();
+        assertThat(message.getMessage()).isEqualTo("%LINEPROTO-5-UPDOWN: Line protocol changed state to down");
+        assertThat(message.getSource()).isEqualTo("remote");
+        assertThat(message.getField("sequence_number")).isEqualTo(148093);
+        assertThat(message.getTimestamp().withZone(DateTimeZone.UTC).getMillisOfSecond()).isEqualTo(713);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "<45>date=2017-03-06 time=12:53:10 devname=DEVICENAME",
+            "<190>: 2017 Mar 06 09:22:34 CET: %AUTHPRIV-6-SYSTEM_MSG: START",
+            "<165>1 - host app - - - message",
+            "<165>1 2003-10-11T22:14:15 host app - - - message without time zone",
+            "<165>1 2003-10-11T22:14:15.003Z host app - - [a@1 x=\"escaped \\\" quote\"] message",
+            "<165>1 2003-10-11T22:14:15.003Z host app - - [a@1 x=\"1\"] message with [brackets]",
+            "<165>1 2003-10-11T22:14:15.003Z host app - - [a@1 x=\"1\" x=\"2\"] duplicate",
+            "<34>Oct 11 22:14:15 su: message without host",
+            "<34>Oct 11 22:14:15.123 mymachine fractions are not supported",
+            "<34>Oct 11 22:14:15 mymachine trailing newline\n",
+            "<200>Oct 11 22:14:15 mymachine invalid priority",
+            "no priority"
+    })
+    void leavesUnsupportedMessagesToSyslog4j(String message) {
+        assertThat(parse(parser, message)).isNull();
+    }
+
+    @Test
+    void onlySupportsAsciiCompatibleCharsets() {
+        assertThat(NativeSyslogParser.supports(StandardCharsets.UTF_8)).isTrue();
+        assertThat(NativeSyslogParser.supports(StandardCharsets.ISO_8859_1)).isTrue();
+        assertThat(NativeSyslogParser.supports(StandardCharsets.UTF_16)).isFalse();
+    }
+}
@@ -37,6 +37,8 @@ import org.mockito.junit.MockitoRule;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -466,6 +468,49 @@ public class SyslogCodecTest {
         assertEquals(new DateTime("2015-01-11T16:35:21.335797", DateTimeZone.forOffsetHours(1)).toDate(), ((DateTime) msgWithTimezoneOffset.getField("timestamp")).toDate());
     }
 
+    @Test
+    public void nativeParserProducesSameMessagesAsSyslog4j() {
+        final List<String> messages = List.of(
+                STRUCTURED,
+                STRUCTURED_ISSUE_845,
+                STRUCTURED_ISSUE_845_EMPTY,
+                STRUCTURED_ISSUE_549,
+                UNSTRUCTURED,
+                "<34>Oct 11 22:14:15 mymachine su: 'su root' failed for lonvick on /dev/pts/8",
+                "<13>Feb  5 17:32:18 10.0.0.99 Use the BFG!",
+                "<34>1 2003-10-11T22:14:15.003Z mymachine.example.com su - ID47 - BOM'su root' failed for lonvick on /dev/pts/8",
+                "<165>1 2003-08-24T05:14:15.000003-07:00 192.0.2.1 myproc 8710 - - %% It's time to make the do-nuts.",
+                "<165>1 2003-10-11T22:14:15.003Z mymachine.example.com evntslog - ID47 [exampleSDID@32473 iut=\"3\" eventSource=\"Application\" eventID=\"1011\"][examplePriority@32473 class=\"high\"]",
+                "<6>2016-10-12T14:10:18Z hostname testmsg[20]: Test",
+                "<6>0 2017-02-15T16:01:07.000+01:00 hostname test - - -  test 4",
+                "<186>1541800: Feb 27 06:08:59.485: %HARDWARE-2-FAN_ERROR: Fan Failure",
+                "<190>530470: *Sep 28 17:13:35.098: %SEC-6-IPACCESSLOGP: list MGMT_IN denied udp IP(49964) -> IP(161), 11 packets",
+                "<190>: 2017 Mar 06 09:22:34 CET: %AUTHPRIV-6-SYSTEM_MSG: START: rsync pid=4311 from=::ffff:IP - xinetd[6219]",
+                "<45>date=2017-03-06 time=12:53:10 devname=DEVICENAME devid=DEVICEID logid=0000000013 type=traffic subtype=forward level=notice"
+        );
+        when(configuration.getBoolean(SyslogCodec.CK_STORE_FULL_MESSAGE)).thenReturn(true);
+
+        for (boolean expandStructuredData : new boolean[]{false, true}) {
+            when(configuration.getBoolean(SyslogCodec.CK_EXPAND_STRUCTURED_DATA)).thenReturn(expandStructuredData);
+            when(configuration.getBoolean(SyslogCodec.CK_USE_NATIVE_PARSER)).thenReturn(false);
+            final SyslogCodec syslog4jCodec = new SyslogCodec(configuration, metricRegistry);
+            when(configuration.getBoolean(SyslogCodec.CK_USE_NATIVE_PARSER)).thenReturn(true);
+            final SyslogCodec nativeCodec = new SyslogCodec(configuration, metricRegistry);
+
+            for (String message : messages) {
+                assertThat(fieldsWithoutId(nativeCodec.decode(buildRawMessage(message))))
+                        .as(message)
+                        .isEqualTo(fieldsWithoutId(syslog4jCodec.decode(buildRawMessage(message))));
+            }
+        }
+    }
+
+    private static Map<String, Object> fieldsWithoutId(Message message) {
+        final Map<String, Object> fields = new HashMap<>(message.getFields());
+        fields.remove(Message.FIELD_ID);
+        return fields;
+    }
+
     private RawMessage buildRawMessage(String message) {
         return new RawMessage(message.getBytes(StandardCharsets.UTF_8), new InetSocketAddress("127.0.0.1", 5140));
     }
@@ -17,10 +17,14 @@
 package org.graylog2.inputs.transports;
 
 import com.google.common.eventbus.EventBus;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
 import org.graylog.testing.kafka.KafkaContainer;
+import org.graylog2.plugin.BaseConfiguration;
 import org.graylog2.plugin.LocalMetricRegistry;
+import org.graylog2.plugin.Message;
 import org.graylog2.plugin.ServerStatus;
 import org.graylog2.plugin.configuration.Configuration;
 import org.graylog2.plugin.inputs.MessageInput;
@@ -28,25 +32,35 @@ import org.graylog2.plugin.journal.RawMessage;
 import org.graylog2.plugin.lifecycles.Lifecycle;
 import org.graylog2.plugin.system.SimpleNodeId;
 import org.graylog2.shared.SuppressForbidden;
+import org.graylog2.shared.messageq.MessageQueueAcknowledger;
+import org.graylog2.shared.messageq.MessageQueueModule;
+import org.graylog2.shared.messageq.kafka.KafkaMessageQueueAcknowledger;
+import org.graylog2.shared.messageq.localkafka.LocalKafkaMessageQueueAcknowledger;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.ArgumentCaptor;
-import org.mockito.Captor;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.awaitility.Awaitility.await;
 import static org.graylog2.shared.utilities.StringUtils.f;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.timeout;
-import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @Testcontainers
@@ -55,9 +69,6 @@ class KafkaTransportIT {
     @Container
     private static final KafkaContainer KAFKA = KafkaContainer.create();
 
-    @Captor
-    ArgumentCaptor<RawMessage> messageCaptor;
-
     @Test
     @SuppressForbidden("Executors.newSingleThreadScheduledExecutor is okay in tests")
     void basicConsumer() throws Exception {
@@ -86,19 +97,107 @@ class KafkaTransportIT {
                 new SimpleNodeId("node-1"),
                 new EventBus(),
                 serverStatus,
-                Executors.newSingleThreadScheduledExecutor()
+                Executors.newSingleThreadScheduledExecutor(),
+                mock(BaseConfiguration.class)
         );
-        final var input = mock(MessageInput.class);
-        when(input.getId()).thenReturn("TEST");
+        final List<RawMessage> received = new CopyOnWriteArrayList<>();
 
         transport.lifecycleStateChange(Lifecycle.RUNNING); // Required to set paused=false
-        transport.launch(input);
+        transport.launch(input(received));
 
-        verify(input, timeout(5_000).times(1)).processRawMessage(messageCaptor.capture());
+        // The records of a poll are passed to the input as one batch
+        await().atMost(5, TimeUnit.SECONDS).until(() -> !received.isEmpty());
 
-        assertThat(messageCaptor.getValue()).isNotNull().satisfies(rawMessage -> {
+        assertThat(received).singleElement().satisfies(rawMessage -> {
             assertThat(rawMessage.getId()).isNotNull();
             assertThat(rawMessage.getPayload()).isEqualTo(messageValue);
         });
     }
+
+    @Test
+    void kafkaJournalCommitsAcknowledgedOffsets() throws Exception {
+        KAFKA.createTopic("journal");
+        try (KafkaProducer<String, byte[]> producer = KAFKA.createByteArrayProducer()) {
+            for (int i = 0; i < 3; i++) {
+                producer.send(new ProducerRecord<>("journal", f("message-%d", i).getBytes(StandardCharsets.UTF_8)))
+                        .get(30, TimeUnit.SECONDS);
+            }
+        }
+        final Set<String> topics = KAFKA.listTopics();
+        final var acknowledger = new KafkaMessageQueueAcknowledger(mock(LocalKafkaMessageQueueAcknowledger.class),
+                mock(MessageQueueAcknowledger.Metrics.class, RETURNS_DEEP_STUBS));
+
+        final List<RawMessage> firstRun = new CopyOnWriteArrayList<>();
+        final var firstTransport = journalTransport();
+        firstTransport.launch(input(firstRun));
+        await().atMost(30, TimeUnit.SECONDS).until(() -> firstRun.size() == 3);
+
+        // The second message is still being processed when the input is stopped.
+        acknowledger.acknowledge(message(firstRun.get(0)));
+        acknowledger.acknowledge(message(firstRun.get(2)));
+        firstTransport.stop();
+
+        assertThat(committedOffsets()).containsOnly(entry(new TopicPartition("journal", 0), new OffsetAndMetadata(1)));
+
+        final List<RawMessage> secondRun = new CopyOnWriteArrayList<>();
+        final var secondTransport = journalTransport();
+        secondTransport.launch(input(secondRun));
+        await().atMost(30, TimeUnit.SECONDS).until(() -> secondRun.size() == 2);
+
+        assertThat(secondRun).extracting(rawMessage -> new String(rawMessage.getPayload(), StandardCharsets.UTF_8))
+                .containsExactly("message-1", "message-2");
+
+        acknowledger.acknowledge(secondRun.stream().map(KafkaTransportIT::message).toList());
+        secondTransport.stop();
+
+        assertThat(committedOffsets()).containsOnly(entry(new TopicPartition("journal", 0), new OffsetAndMetadata(3)));
+        // The input topic is the journal, no messages have been written to another topic.
+        assertThat(KAFKA.listTopics()).isEqualTo(topics);
+    }
+
+    @SuppressForbidden("Executors.newSingleThreadScheduledExecutor is okay in tests")
+    private KafkaTransport journalTransport() {
+        final var serverConfiguration = mock(BaseConfiguration.class);
+        when(serverConfiguration.getMessageJournalMode()).thenReturn(MessageQueueModule.KAFKA_JOURNAL_MODE);
+        final var config = new Configuration(Map.of(
+                KafkaTransport.CK_LEGACY, false,
+                KafkaTransport.CK_THREADS, 1,
+                KafkaTransport.CK_BOOTSTRAP, f("localhost:%d", KAFKA.getKafkaPort()),
+                KafkaTransport.CK_FETCH_MIN_BYTES, 1,
+                KafkaTransport.CK_FETCH_WAIT_MAX, 100,
+                KafkaTransport.CK_TOPIC_FILTER, "journal",
+                KafkaTransport.CK_OFFSET_RESET, "smallest",
+                KafkaTransport.CK_GROUP_ID, "journal-group"
+        ));
+        final var transport = new KafkaTransport(
+                config,
+                new LocalMetricRegistry(),
+                new SimpleNodeId("node-1"),
+                new EventBus(),
+                mock(ServerStatus.class),
+                Executors.newSingleThreadScheduledExecutor(),
+                serverConfiguration
+        );
+        transport.lifecycleStateChange(Lifecycle.RUNNING); // Required to set paused=false
+        return transport;
+    }
+
+    private static MessageInput input(List<RawMessage> received) {
+        final var input = mock(MessageInput.class);
+        when(input.getId()).thenReturn("TEST");
+        doAnswer(invocation -> received.addAll(invocation.getArgument(0))).when(input).processRawMessages(anyList());
+        return input;
+    }
+
+    private static Message message(RawMessage rawMessage) {
+        final var message = new Message("message", "source", DateTime.now(DateTimeZone.UTC));
+        message.setMessageQueueId(rawMessage.getMessageQueueId());
+        return message;
+    }
+
+    private static Map<TopicPartition, OffsetAndMetadata> committedOffsets() throws Exception {
+        return KAFKA.adminClient().listConsumerGroupOffsets("journal-group")
+                .partitionsToOffsetAndMetadata()
+                .get(30, TimeUnit.SECONDS);
+    }
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.inputs.transports;
+
+import com.google.common.eventbus.EventBus;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.graylog2.plugin.BaseConfiguration;
+import org.graylog2.plugin.LocalMetricRegistry;
+import org.graylog2.plugin.ServerStatus;
+import org.graylog2.plugin.configuration.Configuration;
+import org.graylog2.plugin.inputs.MessageInput;
+import org.graylog2.plugin.journal.RawMessage;
+import org.graylog2.plugin.lifecycles.Lifecycle;
+import org.graylog2.plugin.system.SimpleNodeId;
+import org.graylog2.shared.SuppressForbidden;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class KafkaTransportTest {
+    private final List<String> calls = new CopyOnWriteArrayList<>();
+    private final MessageInput input = mock(MessageInput.class);
+    private KafkaTransport transport;
+
+    @Test
+    void processesAllRecordsOfAPollInOneBatch() {
+        transport = transport(record -> false);
+        recordBatches(() -> {});
+
+        transport.consumeRecords(records(3), input, null);
+
+        assertThat(calls).containsExactly("batch [0, 1, 2]");
+    }
+
+    @Test
+    void processesPendingMessagesBeforeBlockingWhilePaused() {
+        transport = transport(record -> {
+            // Pause processing while the first record is being consumed
+            if (record == 0) {
+                transport.lifecycleStateChange(Lifecycle.PAUSED);
+            }
+            return false;
+        });
+        // Resume processing once the pending batch has been processed, the transport would block forever otherwise
+        recordBatches(() -> transport.lifecycleStateChange(Lifecycle.RUNNING));
+
+        transport.consumeRecords(records(3), input, null);
+
+        assertThat(calls).containsExactly("batch [0]", "batch [1, 2]");
+    }
+
+    @Test
+    void processesPendingMessagesBeforeBlockingWhileThrottled() {
+        transport = transport(record -> record == 2);
+        recordBatches(() -> {});
+
+        transport.consumeRecords(records(3), input, null);
+
+        assertThat(calls).containsExactly("batch [0, 1]", "blocked", "batch [2]");
+    }
+
+    @SuppressForbidden("Executors.newSingleThreadScheduledExecutor is okay in tests")
+    private KafkaTransport transport(IntPredicate throttledAtRecord) {
+        final AtomicInteger checkedRecords = new AtomicInteger();
+        final KafkaTransport kafkaTransport = new KafkaTransport(
+                new Configuration(Map.of(KafkaTransport.CK_THREADS, 1)),
+                new LocalMetricRegistry(),
+                new SimpleNodeId("node-1"),
+                new EventBus(),
+                mock(ServerStatus.class),
+                Executors.newSingleThreadScheduledExecutor(),
+                mock(BaseConfiguration.class)) {
+            @Override
+            public boolean isThrottled() {
+                return throttledAtRecord.test(checkedRecords.getAndIncrement());
+            }
+
+            @Override
+            public void blockUntilUnthrottled() {
+                calls.add("blocked");
+            }
+        };
+        kafkaTransport.lifecycleStateChange(Lifecycle.RUNNING); // Required to set paused=false
+        return kafkaTransport;
+    }
+
+    private void recordBatches(Runnable afterBatch) {
+        // The transport reuses the batch list, so only record its contents
+        doAnswer(invocation -> {
+            final List<RawMessage> batch = invocation.getArgument(0);
+            calls.add("batch " + batch.stream()
+                    .map(rawMessage -> new String(rawMessage.getPayload(), StandardCharsets.UTF_8))
+                    .toList());
+            afterBatch.run();
+            return null;
+        }).when(input).processRawMessages(anyList());
+    }
+
+    private static ConsumerRecords<byte[], byte[]> records(int count) {
+        final TopicPartition partition = new TopicPartition("test", 0);
+        final List<ConsumerRecord<byte[], byte[]>> records = IntStream.range(0, count)
+                .mapToObj(i -> new ConsumerRecord<byte[], byte[]>(partition.topic(), partition.partition(), i,
+                        null, String.valueOf(i).getBytes(StandardCharsets.UTF_8)))
+                .toList();
+        return new ConsumerRecords<>(Map.of(partition, records));
+    }
+}
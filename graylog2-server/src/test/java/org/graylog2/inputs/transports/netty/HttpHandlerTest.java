@@ -20,6 +20,7 @@ import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.codec.http.DefaultFullHttpRequest;
 import io.netty.handler.codec.http.DefaultHttpRequest;
 import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpHeaderValues;
 import io.netty.handler.codec.http.HttpHeaders;
@@ -28,12 +29,19 @@ import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpVersion;
+import org.graylog2.plugin.inputs.MessageInput;
+import org.graylog2.plugin.journal.RawMessage;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 
 public class HttpHandlerTest {
     private static final byte[] GELF_MESSAGE = "{\"version\":\"1.1\",\"short_message\":\"Foo\",\"host\":\"localhost\"}".getBytes(StandardCharsets.UTF_8);
@@ -200,4 +208,76 @@ public class HttpHandlerTest {
         assertThat(headers.get(HttpHeaderNames.ACCESS_CONTROL_ALLOW_HEADERS)).isEqualTo("Authorization, Content-Type");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void bulkRequestPassesLinesToInput() {
+        final MessageInput input = mock(MessageInput.class);
+        final EmbeddedChannel bulkChannel = new EmbeddedChannel(new HttpHandler(true, input));
+        final FullHttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/gelf/bulk");
+        httpRequest.headers().add(HttpHeaderNames.HOST, "localhost");
+        httpRequest.headers().add(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+
+        httpRequest.content().writeBytes(GELF_MESSAGE);
+        httpRequest.content().writeBytes("\r\n\n  ".getBytes(StandardCharsets.UTF_8));
+        httpRequest.content().writeBytes(GELF_MESSAGE);
+        httpRequest.content().writeBytes("\nfoo\n".getBytes(StandardCharsets.UTF_8));
+
+        bulkChannel.writeInbound(httpRequest);
+        bulkChannel.finish();
+
+        @SuppressWarnings("unchecked") final ArgumentCaptor<List<RawMessage>> messages = ArgumentCaptor.forClass(List.class);
+        verify(input).processRawMessages(messages.capture());
+        assertThat(messages.getValue()).extracting(RawMessage::getPayload).containsExactly(GELF_MESSAGE, GELF_MESSAGE);
+
+        final FullHttpResponse httpResponse = bulkChannel.readOutbound();
+        assertThat(httpResponse.status()).isEqualTo(HttpResponseStatus.ACCEPTED);
+        assertThat(httpResponse.headers().get(HttpHeaderNames.CONTENT_TYPE)).isEqualTo(HttpHeaderValues.APPLICATION_JSON.toString());
+        assertThat(httpResponse.content().toString(StandardCharsets.UTF_8))
+                .isEqualTo("{\"accepted\":2,\"rejected\":1,\"errors\":[{\"line\":4,\"error\":\"Line is not a JSON object\"}]}");
+    }
+
+    @Test
+    public void bulkRequestWithoutValidLinesIsRejected() {
+        final MessageInput input = mock(MessageInput.class);
+        final EmbeddedChannel bulkChannel = new EmbeddedChannel(new HttpHandler(true, input));
+        final FullHttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/gelf/bulk");
+        httpRequest.headers().add(HttpHeaderNames.HOST, "localhost");
+        httpRequest.content().writeBytes("foo".getBytes(StandardCharsets.UTF_8));
+
+        bulkChannel.writeInbound(httpRequest);
+        bulkChannel.finish();
+
+        verifyNoInteractions(input);
+        final HttpResponse httpResponse = bulkChannel.readOutbound();
+        assertThat(httpResponse.status()).isEqualTo(HttpResponseStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void bulkRequestWithUnsupportedContentEncodingIsRejected() {
+        final MessageInput input = mock(MessageInput.class);
+        final EmbeddedChannel bulkChannel = new EmbeddedChannel(new HttpHandler(true, input));
+        final FullHttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/gelf/bulk");
+        httpRequest.headers().add(HttpHeaderNames.HOST, "localhost");
+        httpRequest.headers().add(HttpHeaderNames.CONTENT_ENCODING, "zstd");
+        httpRequest.content().writeBytes(GELF_MESSAGE);
+
+        bulkChannel.writeInbound(httpRequest);
+        bulkChannel.finish();
+
+        verifyNoInteractions(input);
+        final HttpResponse httpResponse = bulkChannel.readOutbound();
+        assertThat(httpResponse.status()).isEqualTo(HttpResponseStatus.UNSUPPORTED_MEDIA_TYPE);
+    }
+
+    @Test
+    public void bulkPathIsNotFoundWithoutInput() {
+        final FullHttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/gelf/bulk");
+        httpRequest.headers().add(HttpHeaderNames.HOST, "localhost");
+        httpRequest.content().writeBytes(GELF_MESSAGE);
+
+        channel.writeInbound(httpRequest);
+        channel.finish();
+
+        final HttpResponse httpResponse = channel.readOutbound();
+        assertThat(httpResponse.status()).isEqualTo(HttpResponseStatus.NOT_FOUND);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.lookup.adapters.dnslookup;
+
+import org.graylog2.plugin.lookup.LookupResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DnsLookupResultCacheTest {
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicInteger lookups = new AtomicInteger();
+    private DnsLookupResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new DnsLookupResultCache(100, Duration.ofSeconds(5), Duration.ofHours(1), Duration.ofSeconds(30), nanos::get);
+    }
+
+    @Test
+    void cachesResultsForRecordTtl() {
+        assertThat(get("host", result(60_000L)).singleValue()).isEqualTo("10.0.0.1");
+        assertThat(get("host", result(60_000L)).singleValue()).isEqualTo("10.0.0.1");
+        assertThat(lookups).hasValue(1);
+
+        advance(Duration.ofSeconds(59));
+        get("host", result(60_000L));
+        assertThat(lookups).hasValue(1);
+
+        advance(Duration.ofSeconds(2));
+        get("host", result(60_000L));
+        assertThat(lookups).hasValue(2);
+    }
+
+    @Test
+    void clampsRecordTtl() {
+        get("short", result(0L));
+        advance(Duration.ofSeconds(4));
+        get("short", result(0L));
+        assertThat(lookups).hasValue(1);
+
+        get("long", result(Long.MAX_VALUE));
+        advance(Duration.ofHours(1).plusSeconds(1));
+        get("long", result(Long.MAX_VALUE));
+        assertThat(lookups).hasValue(3);
+    }
+
+    @Test
+    void cachesEmptyAndFailedLookupsForNegativeTtl() {
+        get("nxdomain", LookupResult.empty());
+        get("timeout", LookupResult.withError());
+        advance(Duration.ofSeconds(29));
+        get("nxdomain", LookupResult.empty());
+        get("timeout", LookupResult.withError());
+        assertThat(lookups).hasValue(2);
+
+        advance(Duration.ofSeconds(2));
+        get("nxdomain", LookupResult.empty());
+        assertThat(lookups).hasValue(3);
+    }
+
+    @Test
+    void mergesConcurrentLookupsOfSameKey() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<LookupResult> first = executor.submit(() -> cache.get("host", key -> {
+                lookups.incrementAndGet();
+                started.countDown();
+                awaitUninterruptibly(release);
+                return result(60_000L);
+            }));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            final Future<LookupResult> second = executor.submit(() -> get("host", result(60_000L)));
+
+            // the second lookup waits for the first one instead of querying again
+            assertThat(second.isDone()).isFalse();
+            release.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS)).isSameAs(second.get(5, TimeUnit.SECONDS));
+            assertThat(lookups).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private LookupResult get(String key, LookupResult result) {
+        return cache.get(key, k -> {
+            lookups.incrementAndGet();
+            return result;
+        });
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+
+    private static LookupResult result(long cacheTtlMillis) {
+        return LookupResult.builder().single("10.0.0.1").cacheTTL(cacheTtlMillis).build();
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.migrations;
+
+import com.google.common.collect.ImmutableSet;
+import org.graylog.events.processor.realtime.RealtimeFilterEventProcessor;
+import org.graylog.plugins.pipelineprocessor.processors.PipelineInterpreter;
+import org.graylog2.messageprocessors.MessageFilterChainProcessor;
+import org.graylog2.messageprocessors.MessageProcessorsConfig;
+import org.graylog2.messageprocessors.StreamMatcherFilterProcessor;
+import org.graylog2.plugin.cluster.ClusterConfigService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.graylog2.migrations.V20230612110000_AddRealtimeFilterEventProcessorToProcessingOrderMigration.MigrationCompleted;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class V20230612110000_AddRealtimeFilterEventProcessorToProcessingOrderMigrationTest {
+    private static final String FILTER_CHAIN = MessageFilterChainProcessor.class.getCanonicalName();
+    private static final String STREAM_MATCHER = StreamMatcherFilterProcessor.class.getCanonicalName();
+    private static final String PIPELINE = PipelineInterpreter.class.getCanonicalName();
+    private static final String REALTIME = RealtimeFilterEventProcessor.class.getCanonicalName();
+
+    @Mock
+    private ClusterConfigService clusterConfigService;
+
+    private V20230612110000_AddRealtimeFilterEventProcessorToProcessingOrderMigration migration;
+
+    @BeforeEach
+    void setUp() {
+        migration = new V20230612110000_AddRealtimeFilterEventProcessorToProcessingOrderMigration(clusterConfigService,
+                ImmutableSet.of(new MessageFilterChainProcessor.Descriptor(), new StreamMatcherFilterProcessor.Descriptor(),
+                        new PipelineInterpreter.Descriptor(), new RealtimeFilterEventProcessor.Descriptor()));
+    }
+
+    @Test
+    void movesUnknownProcessorToTheEnd() {
+        final MessageProcessorsConfig config = MessageProcessorsConfig.create(List.of(FILTER_CHAIN, STREAM_MATCHER, PIPELINE), Set.of(PIPELINE));
+        when(clusterConfigService.getOrDefault(eq(MessageProcessorsConfig.class), any())).thenReturn(config);
+
+        migration.upgrade();
+
+        final MessageProcessorsConfig written = writtenConfig();
+        assertThat(written.processorOrder()).containsExactly(FILTER_CHAIN, STREAM_MATCHER, PIPELINE, REALTIME);
+        assertThat(written.disabledProcessors()).containsExactly(PIPELINE);
+    }
+
+    @Test
+    void movesKnownProcessorAfterStreamMatcher() {
+        final MessageProcessorsConfig config = MessageProcessorsConfig.create(List.of(REALTIME, FILTER_CHAIN, STREAM_MATCHER, PIPELINE));
+        when(clusterConfigService.getOrDefault(eq(MessageProcessorsConfig.class), any())).thenReturn(config);
+
+        migration.upgrade();
+
+        assertThat(writtenConfig().processorOrder()).containsExactly(FILTER_CHAIN, STREAM_MATCHER, PIPELINE, REALTIME);
+    }
+
+    @Test
+    void doesNothingIfMigrationCompleted() {
+        when(clusterConfigService.get(MigrationCompleted.class)).thenReturn(MigrationCompleted.create());
+
+        migration.upgrade();
+
+        verify(clusterConfigService, never()).write(any());
+    }
+
+    private MessageProcessorsConfig writtenConfig() {
+        final ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(clusterConfigService, times(2)).write(captor.capture());
+        assertThat(captor.getAllValues().get(1)).isInstanceOf(MigrationCompleted.class);
+        return (MessageProcessorsConfig) captor.getAllValues().get(0);
+    }
+}
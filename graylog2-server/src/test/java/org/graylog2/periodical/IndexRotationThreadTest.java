@@ -16,6 +16,7 @@
  */
 package org.graylog2.periodical;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.ImmutableMap;
 import org.graylog2.indexer.IndexSet;
 import org.graylog2.indexer.IndexSetRegistry;
@@ -83,7 +84,8 @@ public class IndexRotationThreadTest {
                 cluster,
                 new NullActivityWriter(),
                 nodeId,
-                ImmutableMap.<String, Provider<RotationStrategy>>builder().put("strategy", provider).build()
+                ImmutableMap.<String, Provider<RotationStrategy>>builder().put("strategy", provider).build(),
+                new MetricRegistry()
         );
         when(indexSetConfig.rotationStrategyClass()).thenReturn("strategy");
 
@@ -103,7 +105,8 @@ public class IndexRotationThreadTest {
                 cluster,
                 new NullActivityWriter(),
                 nodeId,
-                ImmutableMap.<String, Provider<RotationStrategy>>builder().put("strategy", provider).build()
+                ImmutableMap.<String, Provider<RotationStrategy>>builder().put("strategy", provider).build(),
+                new MetricRegistry()
         );
         when(indexSetConfig.rotationStrategyClass()).thenReturn("strategy");
 
@@ -124,7 +127,8 @@ public class IndexRotationThreadTest {
                 cluster,
                 new NullActivityWriter(),
                 nodeId,
-                ImmutableMap.<String, Provider<RotationStrategy>>builder().put("strategy", provider).build()
+                ImmutableMap.<String, Provider<RotationStrategy>>builder().put("strategy", provider).build(),
+                new MetricRegistry()
         );
         rotationThread.doRun();
 
@@ -352,6 +352,25 @@ public class MessageTest {
         }
     }
 
+    @Test
+    public void testGetTimestampMillis() {
+        final DateTime timestamp = new DateTime(2015, 9, 8, 2, 0, DateTimeZone.forOffsetHours(2));
+        message.addField(Message.FIELD_TIMESTAMP, timestamp);
+
+        assertEquals(timestamp.getMillis(), message.getTimestampMillis());
+        assertEquals(message.getTimestamp().getMillis(), message.getTimestampMillis());
+    }
+
+    @Test
+    public void testProcessingTimeMillis() {
+        assertNull(message.getProcessingTime());
+
+        final DateTime processingTime = new DateTime(2015, 9, 8, 0, 0, DateTimeZone.UTC);
+        message.setProcessingTimeMillis(processingTime.getMillis());
+
+        assertEquals(processingTime, message.getProcessingTime());
+    }
+
     @Test
     public void testTimestampAsDate() {
         final DateTime dateTime = new DateTime(2015, 9, 8, 0, 0, DateTimeZone.UTC);
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.plugin.inputs;
+
+import com.codahale.metrics.MetricRegistry;
+import org.graylog2.plugin.GlobalMetricNames;
+import org.graylog2.plugin.InputFailureRecorder;
+import org.graylog2.plugin.LocalMetricRegistry;
+import org.graylog2.plugin.ServerStatus;
+import org.graylog2.plugin.buffers.InputBuffer;
+import org.graylog2.plugin.configuration.Configuration;
+import org.graylog2.plugin.configuration.ConfigurationRequest;
+import org.graylog2.plugin.inputs.codecs.Codec;
+import org.graylog2.plugin.inputs.transports.Transport;
+import org.graylog2.plugin.journal.RawMessage;
+import org.graylog2.plugin.system.SimpleNodeId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MessageInputTest {
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final LocalMetricRegistry localRegistry = new LocalMetricRegistry();
+    private final InputBuffer inputBuffer = mock(InputBuffer.class);
+    private MessageInput input;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        final Transport.Config transportConfig = mock(Transport.Config.class);
+        when(transportConfig.getRequestedConfiguration()).thenReturn(new ConfigurationRequest());
+        final Codec.Config codecConfig = mock(Codec.Config.class);
+        when(codecConfig.getRequestedConfiguration()).thenReturn(new ConfigurationRequest());
+        final Codec codec = mock(Codec.class);
+        when(codec.getName()).thenReturn("raw");
+        final ServerStatus serverStatus = mock(ServerStatus.class);
+        when(serverStatus.getNodeId()).thenReturn(new SimpleNodeId("node-1"));
+
+        input = new MessageInput(metricRegistry, new Configuration(Map.of()), mock(Transport.class), localRegistry,
+                codec, new MessageInput.Config(transportConfig, codecConfig), mock(MessageInput.Descriptor.class), serverStatus) {};
+        input.setPersistId("input-1");
+        input.launch(inputBuffer, mock(InputFailureRecorder.class));
+    }
+
+    @Test
+    void reservesContiguousSequenceNumbersForBatches() {
+        input.processRawMessage(rawMessage("a"));
+        input.processRawMessages(List.of(rawMessage("b"), rawMessage("c"), rawMessage("d")));
+        input.processRawMessage(rawMessage("e"));
+
+        final List<RawMessage> batch = insertedBatch();
+        assertThat(batch).extracting(RawMessage::getSequenceNr).containsExactly(1, 2, 3);
+        assertThat(batch).allSatisfy(rawMessage -> {
+            assertThat(rawMessage.getCodecName()).isEqualTo("raw");
+            assertThat(rawMessage.getSourceNodes()).singleElement()
+                    .satisfies(sourceNode -> assertThat(sourceNode.inputId).isEqualTo("input-1"));
+        });
+        assertThat(insertedMessages(2)).extracting(RawMessage::getSequenceNr).containsExactly(0, 4);
+    }
+
+    @Test
+    void wrapsSequenceNumbersAtUnsignedIntMaximum() {
+        input.setNextSequenceNr(0xFFFF_FFFEL);
+
+        input.processRawMessages(List.of(rawMessage("a"), rawMessage("b"), rawMessage("c")));
+        input.processRawMessage(rawMessage("d"));
+
+        assertThat(insertedBatch()).extracting(RawMessage::getSequenceNr).containsExactly(0xFFFF_FFFE, 0xFFFF_FFFF, 0);
+        assertThat(insertedMessages(1)).extracting(RawMessage::getSequenceNr).containsExactly(1);
+    }
+
+    @Test
+    void discardsEmptyMessagesOfBatches() {
+        input.processRawMessages(List.of(rawMessage("abc"), rawMessage(""), rawMessage("de")));
+
+        assertThat(insertedBatch()).extracting(rawMessage -> new String(rawMessage.getPayload(), StandardCharsets.UTF_8))
+                .containsExactly("abc", "de");
+        assertThat(localRegistry.counter("emptyMessages").getCount()).isEqualTo(1);
+        assertThat(localRegistry.meter("incomingMessages").getCount()).isEqualTo(2);
+        assertThat(localRegistry.meter("rawSize").getCount()).isEqualTo(5);
+        assertThat(metricRegistry.counter(GlobalMetricNames.INPUT_THROUGHPUT).getCount()).isEqualTo(2);
+        assertThat(metricRegistry.counter(GlobalMetricNames.INPUT_TRAFFIC).getCount()).isEqualTo(5);
+    }
+
+    @Test
+    void skipsBatchesWithOnlyEmptyMessages() {
+        input.processRawMessages(List.of(rawMessage(""), rawMessage("")));
+
+        verify(inputBuffer, never()).insert(anyList());
+        assertThat(localRegistry.counter("emptyMessages").getCount()).isEqualTo(2);
+        assertThat(localRegistry.meter("incomingMessages").getCount()).isZero();
+        assertThat(metricRegistry.counter(GlobalMetricNames.INPUT_THROUGHPUT).getCount()).isZero();
+    }
+
+    private List<RawMessage> insertedBatch() {
+        @SuppressWarnings("unchecked") final ArgumentCaptor<List<RawMessage>> captor = ArgumentCaptor.forClass(List.class);
+        verify(inputBuffer).insert(captor.capture());
+        return captor.getValue();
+    }
+
+    private List<RawMessage> insertedMessages(int count) {
+        final ArgumentCaptor<RawMessage> captor = ArgumentCaptor.forClass(RawMessage.class);
+        verify(inputBuffer, times(count)).insert(captor.capture());
+        return captor.getAllValues();
+    }
+
+    private static RawMessage rawMessage(String payload) {
+        return new RawMessage(payload.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.plugin.utilities.date;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.graylog2.plugin.Tools.ES_DATE_FORMAT_FORMATTER;
+
+class ElasticSearchTimestampFormatterTest {
+    @ParameterizedTest
+    @ValueSource(longs = {
+            0L,
+            1L,
+            999L,
+            -1L,
+            -1001L,
+            951782400000L, // 2000-02-29
+            1700000000123L,
+            -62167219200000L,
+            253402300799999L,
+            253402300800000L,
+            -62167219200001L
+    })
+    void formatsLikeJodaFormatter(long epochMillis) {
+        assertThat(ElasticSearchTimestampFormatter.format(epochMillis)).isEqualTo(ES_DATE_FORMAT_FORMATTER.print(epochMillis));
+    }
+
+    @Test
+    void formatsTimestampsWithinAndAcrossSeconds() {
+        final DateTime dateTime = new DateTime(2023, 12, 31, 23, 59, 59, 998, DateTimeZone.UTC);
+
+        assertThat(ElasticSearchTimestampFormatter.format(dateTime.getMillis())).isEqualTo("2023-12-31 23:59:59.998");
+        assertThat(ElasticSearchTimestampFormatter.format(dateTime.getMillis() + 1)).isEqualTo("2023-12-31 23:59:59.999");
+        assertThat(ElasticSearchTimestampFormatter.format(dateTime.getMillis() + 2)).isEqualTo("2024-01-01 00:00:00.000");
+        assertThat(ElasticSearchTimestampFormatter.format(dateTime.getMillis())).isEqualTo("2023-12-31 23:59:59.998");
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.shared.buffers;
+
+import com.codahale.metrics.MetricRegistry;
+import com.eaio.uuid.UUID;
+import com.lmax.disruptor.BlockingWaitStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.graylog2.plugin.BaseConfiguration;
+import org.graylog2.plugin.configuration.Configuration;
+import org.graylog2.plugin.journal.RawMessage;
+import org.graylog2.shared.messageq.MessageQueueModule;
+import org.graylog2.shared.messageq.MessageQueueWriter;
+import org.graylog2.shared.messageq.kafka.KafkaMessageQueueId;
+import org.graylog2.shared.messageq.kafka.KafkaMessageQueueOffsets;
+import org.graylog2.system.processing.ProcessingStatusRecorder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class InputBufferImplTest {
+    private static final int RING_SIZE = 4;
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final List<RawMessage> processed = new CopyOnWriteArrayList<>();
+    private final BaseConfiguration configuration = mock(BaseConfiguration.class);
+    private final ProcessBuffer processBuffer = mock(ProcessBuffer.class);
+    private InputBufferImpl inputBuffer;
+
+    @BeforeEach
+    void setUp() {
+        when(configuration.getInputBufferRingSize()).thenReturn(RING_SIZE);
+        when(configuration.getInputBufferWaitStrategy()).thenReturn(new BlockingWaitStrategy());
+        when(configuration.getInputbufferProcessors()).thenReturn(1);
+
+        doAnswer(invocation -> processed.add(invocation.getArgument(0))).when(processBuffer).insertBlocking(any(RawMessage.class));
+        final DirectMessageHandler handler = new DirectMessageHandler(processBuffer, mock(ProcessingStatusRecorder.class));
+
+        inputBuffer = new InputBufferImpl(metricRegistry, configuration, () -> handler, () -> null, () -> null, () -> null);
+    }
+
+    @Test
+    void publishesBatchesLargerThanTheRingBufferInChunks() {
+        final List<RawMessage> messages = rawMessages(RING_SIZE * 2 + 1);
+
+        inputBuffer.insert(messages);
+
+        await().atMost(30, TimeUnit.SECONDS).until(() -> processed.size() == messages.size());
+        assertThat(processed).containsExactlyElementsOf(messages);
+        assertThat(metricRegistry.meter(name(InputBufferImpl.class, "incomingMessages")).getCount()).isEqualTo(messages.size());
+    }
+
+    @Test
+    void publishesBatchesInOrderWithSingleMessages() {
+        final List<RawMessage> messages = rawMessages(RING_SIZE);
+
+        inputBuffer.insert(messages.get(0));
+        inputBuffer.insert(messages.subList(1, 3));
+        inputBuffer.insert(messages.get(3));
+        inputBuffer.insert(List.of());
+
+        await().atMost(30, TimeUnit.SECONDS).until(() -> processed.size() == messages.size());
+        assertThat(processed).containsExactlyElementsOf(messages);
+        assertThat(metricRegistry.meter(name(InputBufferImpl.class, "incomingMessages")).getCount()).isEqualTo(messages.size());
+    }
+
+    @Test
+    void journalsMessagesOfOtherInputsInKafkaMode() throws Exception {
+        when(configuration.isMessageJournalEnabled()).thenReturn(true);
+        when(configuration.getMessageJournalMode()).thenReturn(MessageQueueModule.KAFKA_JOURNAL_MODE);
+        final ProcessingStatusRecorder processingStatusRecorder = mock(ProcessingStatusRecorder.class);
+        final MessageQueueWriter messageQueueWriter = mock(MessageQueueWriter.class);
+        final List<UUID> journaled = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            final List<RawMessageEvent> entries = invocation.getArgument(0);
+            entries.forEach(entry -> journaled.add(entry.getMessageId()));
+            return null;
+        }).when(messageQueueWriter).write(anyList());
+        final KafkaInputMessageHandler handler = new KafkaInputMessageHandler(
+                new DirectMessageHandler(processBuffer, processingStatusRecorder),
+                new RawMessageEncoderHandler(metricRegistry));
+        final JournallingMessageHandler journallingHandler = new JournallingMessageHandler(metricRegistry,
+                messageQueueWriter, processingStatusRecorder);
+        final InputBufferImpl kafkaInputBuffer = new InputBufferImpl(new MetricRegistry(), configuration,
+                () -> null, () -> null, () -> handler, () -> journallingHandler);
+
+        final List<RawMessage> messages = rawMessages(4);
+        final KafkaMessageQueueOffsets offsets = new KafkaMessageQueueOffsets();
+        messages.get(0).setMessageQueueId(new KafkaMessageQueueId(offsets, new TopicPartition("topic", 0), 0L));
+        messages.get(2).setMessageQueueId(new KafkaMessageQueueId(offsets, new TopicPartition("topic", 0), 1L));
+        for (final RawMessage message : List.of(messages.get(1), messages.get(3))) {
+            message.setCodecName("raw");
+            message.setCodecConfig(Configuration.EMPTY_CONFIGURATION);
+        }
+        kafkaInputBuffer.insert(messages);
+
+        // Messages of Kafka inputs are already journaled in their topics, all other messages are written to the disk journal
+        await().atMost(30, TimeUnit.SECONDS).until(() -> processed.size() == 2 && journaled.size() == 2);
+        assertThat(processed).containsExactly(messages.get(0), messages.get(2));
+        assertThat(journaled).containsExactly(messages.get(1).getId(), messages.get(3).getId());
+    }
+
+    private static List<RawMessage> rawMessages(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new RawMessage(String.valueOf(i).getBytes(StandardCharsets.UTF_8)))
+                .toList();
+    }
+}
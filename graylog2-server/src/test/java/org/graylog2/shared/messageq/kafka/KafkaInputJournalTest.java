@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.shared.messageq.kafka;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.journal.RawMessage;
+import org.graylog2.shared.messageq.MessageQueueAcknowledger;
+import org.graylog2.shared.messageq.localkafka.LocalKafkaMessageQueueAcknowledger;
+import org.joda.time.DateTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.joda.time.DateTimeZone.UTC;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class KafkaInputJournalTest {
+    private static final String TOPIC = "input-topic";
+    private static final TopicPartition PARTITION_0 = new TopicPartition(TOPIC, 0);
+    private static final TopicPartition PARTITION_1 = new TopicPartition(TOPIC, 1);
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    MessageQueueAcknowledger.Metrics metrics;
+
+    MockConsumer<byte[], byte[]> consumer;
+    KafkaInputJournal journal;
+    KafkaMessageQueueAcknowledger acknowledger;
+
+    @BeforeEach
+    void setUp() {
+        consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.updatePartitions(TOPIC, List.of(
+                new PartitionInfo(TOPIC, 0, null, null, null),
+                new PartitionInfo(TOPIC, 1, null, null, null)));
+        consumer.updateBeginningOffsets(Map.of(PARTITION_0, 0L, PARTITION_1, 0L));
+        journal = new KafkaInputJournal(consumer);
+        journal.subscribe(Pattern.compile(TOPIC));
+        acknowledger = new KafkaMessageQueueAcknowledger(mock(LocalKafkaMessageQueueAcknowledger.class), metrics);
+    }
+
+    @Test
+    void commitsAcknowledgedOffsets() {
+        final List<RawMessage> messages = read(record(0, 0), record(0, 1), record(1, 0));
+
+        assertThat(messages).extracting(RawMessage::getMessageQueueId).containsExactlyInAnyOrder(
+                new KafkaMessageQueueId(queueOffsets(messages), PARTITION_0, 0),
+                new KafkaMessageQueueId(queueOffsets(messages), PARTITION_0, 1),
+                new KafkaMessageQueueId(queueOffsets(messages), PARTITION_1, 0));
+
+        journal.poll(Duration.ZERO);
+        assertThat(committed()).isEmpty();
+
+        acknowledge(messages);
+        journal.poll(Duration.ZERO);
+
+        assertThat(committed()).containsOnly(
+                Map.entry(PARTITION_0, new OffsetAndMetadata(2)),
+                Map.entry(PARTITION_1, new OffsetAndMetadata(1)));
+    }
+
+    @Test
+    void doesNotCommitPastUnacknowledgedOffsets() {
+        final List<RawMessage> messages = read(record(0, 0), record(0, 1), record(0, 2));
+
+        // Acknowledgements arrive out of order because messages are processed in parallel.
+        acknowledge(messages.subList(1, 3));
+        journal.poll(Duration.ZERO);
+
+        assertThat(committed()).isEmpty();
+
+        acknowledge(messages.subList(0, 1));
+        journal.poll(Duration.ZERO);
+
+        assertThat(committed()).containsOnly(Map.entry(PARTITION_0, new OffsetAndMetadata(3)));
+    }
+
+    @Test
+    void commitsRecordsWithoutPayload() {
+        consumer.addRecord(record(0, 0));
+        consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, 1, null, new byte[0]));
+        consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, 2, null, null));
+
+        final List<RawMessage> messages = new ArrayList<>();
+        for (ConsumerRecord<byte[], byte[]> record : journal.poll(Duration.ZERO)) {
+            if (record.value() == null) {
+                journal.skip(record);
+            } else {
+                messages.add(journal.rawMessage(record));
+            }
+        }
+
+        // The input discards empty messages, they are never acknowledged.
+        assertThat(messages.get(1).getPayload()).isEmpty();
+        assertThat(messages.get(1).getMessageQueueId()).isEqualTo(Long.MIN_VALUE);
+
+        acknowledge(messages.subList(0, 1));
+        journal.poll(Duration.ZERO);
+
+        assertThat(committed()).containsOnly(Map.entry(PARTITION_0, new OffsetAndMetadata(3)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void commitsAcknowledgedOffsetsOnClose() {
+        final Consumer<byte[], byte[]> mockConsumer = mock(Consumer.class);
+        final KafkaInputJournal mockJournal = new KafkaInputJournal(mockConsumer);
+        acknowledger.acknowledge(message(mockJournal.rawMessage(record(0, 0))));
+        acknowledger.acknowledge(message(mockJournal.rawMessage(record(0, 1))));
+
+        mockJournal.close(Duration.ofSeconds(1));
+
+        final InOrder inOrder = inOrder(mockConsumer);
+        inOrder.verify(mockConsumer).commitSync(Map.of(PARTITION_0, new OffsetAndMetadata(2)), Duration.ofSeconds(1));
+        inOrder.verify(mockConsumer).close(Duration.ofSeconds(1));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void commitsAndForgetsRevokedPartitions() {
+        final Consumer<byte[], byte[]> mockConsumer = mock(Consumer.class);
+        final KafkaInputJournal mockJournal = new KafkaInputJournal(mockConsumer);
+        final ArgumentCaptor<ConsumerRebalanceListener> listener = ArgumentCaptor.forClass(ConsumerRebalanceListener.class);
+        mockJournal.subscribe(Pattern.compile(TOPIC));
+        verify(mockConsumer).subscribe(any(Pattern.class), listener.capture());
+
+        final RawMessage first = mockJournal.rawMessage(record(0, 0));
+        final RawMessage second = mockJournal.rawMessage(record(0, 1));
+        acknowledger.acknowledge(message(first));
+
+        listener.getValue().onPartitionsRevoked(Set.of(PARTITION_0));
+
+        verify(mockConsumer).commitSync(Map.of(PARTITION_0, new OffsetAndMetadata(1)), Duration.ofSeconds(5));
+
+        // The new owner of the partition reads the second record again.
+        acknowledger.acknowledge(message(second));
+        mockJournal.close(Duration.ofSeconds(1));
+
+        verify(mockConsumer, times(1)).commitSync(anyMap(), any(Duration.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void retriesFailedCommits() {
+        final Consumer<byte[], byte[]> mockConsumer = mock(Consumer.class);
+        final KafkaInputJournal mockJournal = new KafkaInputJournal(mockConsumer);
+        final ArgumentCaptor<OffsetCommitCallback> callback = ArgumentCaptor.forClass(OffsetCommitCallback.class);
+
+        acknowledger.acknowledge(message(mockJournal.rawMessage(record(0, 0))));
+        mockJournal.poll(Duration.ZERO);
+
+        final Map<TopicPartition, OffsetAndMetadata> offsets = Map.of(PARTITION_0, new OffsetAndMetadata(1));
+        verify(mockConsumer).commitAsync(eq(offsets), callback.capture());
+        callback.getValue().onComplete(offsets, new TimeoutException("timeout"));
+
+        mockJournal.poll(Duration.ZERO);
+
+        verify(mockConsumer, times(2)).commitAsync(eq(offsets), any());
+    }
+
+    @SafeVarargs
+    private List<RawMessage> read(ConsumerRecord<byte[], byte[]>... records) {
+        for (ConsumerRecord<byte[], byte[]> record : records) {
+            consumer.addRecord(record);
+        }
+        final ConsumerRecords<byte[], byte[]> polled = journal.poll(Duration.ZERO);
+        final List<RawMessage> messages = new ArrayList<>();
+        polled.forEach(record -> messages.add(journal.rawMessage(record)));
+        return messages;
+    }
+
+    private void acknowledge(List<RawMessage> messages) {
+        messages.forEach(rawMessage -> acknowledger.acknowledge(message(rawMessage)));
+    }
+
+    private Map<TopicPartition, OffsetAndMetadata> committed() {
+        return consumer.committed(Set.of(PARTITION_0, PARTITION_1));
+    }
+
+    private static KafkaMessageQueueOffsets queueOffsets(List<RawMessage> messages) {
+        return ((KafkaMessageQueueId) messages.get(0).getMessageQueueId()).offsets();
+    }
+
+    private static ConsumerRecord<byte[], byte[]> record(int partition, long offset) {
+        return new ConsumerRecord<>(TOPIC, partition, offset, null, ("message-" + offset).getBytes());
+    }
+
+    private static Message message(RawMessage rawMessage) {
+        final Message message = new Message("message", "source", DateTime.now(UTC));
+        message.setMessageQueueId(rawMessage.getMessageQueueId());
+        return message;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.shared.messageq.kafka;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.graylog2.plugin.Message;
+import org.graylog2.shared.messageq.MessageQueueAcknowledger;
+import org.graylog2.shared.messageq.localkafka.LocalKafkaMessageQueueAcknowledger;
+import org.joda.time.DateTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.joda.time.DateTimeZone.UTC;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+public class KafkaMessageQueueAcknowledgerTest {
+    private static final TopicPartition PARTITION_0 = new TopicPartition("topic", 0);
+    private static final TopicPartition PARTITION_1 = new TopicPartition("topic", 1);
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    MessageQueueAcknowledger.Metrics metrics;
+
+    @Mock
+    LocalKafkaMessageQueueAcknowledger journalAcknowledger;
+
+    KafkaMessageQueueAcknowledger acknowledger;
+    KafkaMessageQueueOffsets offsets;
+
+    @BeforeEach
+    void setUp() {
+        acknowledger = new KafkaMessageQueueAcknowledger(journalAcknowledger, metrics);
+        offsets = new KafkaMessageQueueOffsets();
+    }
+
+    @Test
+    void acknowledgeMessage() {
+        final KafkaMessageQueueId queueId = offsets.track(record(0, 42L));
+
+        assertThat(offsets.committableOffsets()).isEmpty();
+
+        acknowledger.acknowledge(message(queueId));
+
+        assertThat(offsets.committableOffsets()).containsExactly(entry(PARTITION_0, new OffsetAndMetadata(43L)));
+        assertThat(offsets.committableOffsets()).isEmpty();
+        verify(metrics.acknowledgedMessages()).mark();
+        verifyNoInteractions(journalAcknowledger);
+    }
+
+    @Test
+    void acknowledgeMessageWithOtherTypeOfMessageQueueId() {
+        offsets.track(record(0, 42L));
+
+        // Messages of inputs other than Kafka inputs are written to the disk journal.
+        acknowledger.acknowledge(message(1L));
+        acknowledger.acknowledge(message(null));
+
+        assertThat(offsets.committableOffsets()).isEmpty();
+        verify(journalAcknowledger).acknowledge(1L);
+        verify(journalAcknowledger).acknowledge((Object) null);
+    }
+
+    @Test
+    void acknowledgeRecordWithSeveralMessages() {
+        final KafkaMessageQueueId queueId = offsets.track(record(0, 42L));
+        acknowledger.expectAcknowledgements(queueId, 3);
+
+        acknowledger.acknowledge(message(queueId));
+        acknowledger.acknowledge(message(queueId));
+
+        // The record is only done once all of its messages have been acknowledged.
+        assertThat(offsets.committableOffsets()).isEmpty();
+
+        acknowledger.acknowledge(message(queueId));
+
+        assertThat(offsets.committableOffsets()).containsExactly(entry(PARTITION_0, new OffsetAndMetadata(43L)));
+    }
+
+    @Test
+    void acknowledgeRecordWithoutMessages() {
+        final KafkaMessageQueueId queueId = offsets.track(record(0, 42L));
+
+        acknowledger.expectAcknowledgements(queueId, 0);
+
+        assertThat(offsets.committableOffsets()).containsExactly(entry(PARTITION_0, new OffsetAndMetadata(43L)));
+    }
+
+    @Test
+    void acknowledgeMessages() {
+        final KafkaMessageQueueId first = offsets.track(record(0, 1L));
+        final KafkaMessageQueueId second = offsets.track(record(0, 2L));
+        final KafkaMessageQueueId third = offsets.track(record(0, 3L));
+        final KafkaMessageQueueId other = offsets.track(record(1, 7L));
+        final Message journaled = message(5L);
+        final Message synthetic = message(null);
+
+        acknowledger.acknowledge(ImmutableList.of(
+                message(first),
+                message(other),
+                synthetic,
+                message(third),
+                journaled));
+
+        // The second message hasn't been acknowledged yet, so the first partition can only be committed up to it.
+        assertThat(offsets.committableOffsets()).containsOnly(
+                entry(PARTITION_0, new OffsetAndMetadata(2L)),
+                entry(PARTITION_1, new OffsetAndMetadata(8L)));
+
+        acknowledger.acknowledge(message(second));
+
+        assertThat(offsets.committableOffsets()).containsOnly(entry(PARTITION_0, new OffsetAndMetadata(4L)));
+        verify(metrics.acknowledgedMessages(), times(4)).mark();
+        verify(journalAcknowledger).acknowledge(ImmutableList.of(synthetic, journaled));
+    }
+
+    @Test
+    void acknowledgeMessageOfRevokedPartition() {
+        final KafkaMessageQueueId queueId = offsets.track(record(0, 42L));
+        offsets.remove(ImmutableList.of(PARTITION_0));
+
+        acknowledger.acknowledge(message(queueId));
+
+        assertThat(offsets.committableOffsets()).isEmpty();
+    }
+
+    private static ConsumerRecord<byte[], byte[]> record(int partition, long offset) {
+        return new ConsumerRecord<>("topic", partition, offset, null, new byte[]{1});
+    }
+
+    private static Message message(Object messageQueueId) {
+        final Message message = new Message("message", "source", DateTime.now(UTC));
+        if (messageQueueId != null) {
+            message.setMessageQueueId(messageQueueId);
+        }
+        return message;
+    }
+}
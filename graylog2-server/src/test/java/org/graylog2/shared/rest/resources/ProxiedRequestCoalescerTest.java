@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.shared.rest.resources;
+
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProxiedRequestCoalescerTest {
+    private static final Request GET_REQUEST = new Request.Builder().url("http://node-1:9000/api/system").get().build();
+
+    private ProxiedRequestCoalescer coalescer;
+    private AtomicInteger executions;
+    private CompletableFuture<ProxiedResource.NodeResponse<String>> upstream;
+
+    @BeforeEach
+    void setUp() {
+        coalescer = new ProxiedRequestCoalescer();
+        executions = new AtomicInteger();
+        upstream = new CompletableFuture<>();
+    }
+
+    private Supplier<CompletableFuture<ProxiedResource.NodeResponse<String>>> execution() {
+        return () -> {
+            executions.incrementAndGet();
+            return upstream;
+        };
+    }
+
+    @Test
+    void sharesIdenticalInFlightRequests() {
+        final var first = coalescer.execute(GET_REQUEST, "token", execution());
+        final var second = coalescer.execute(GET_REQUEST, "token", execution());
+
+        assertThat(executions).hasValue(1);
+        assertThat(coalescer.inFlightRequests()).isEqualTo(1);
+
+        upstream.complete(ProxiedResource.NodeResponse.create(true, 200, "response", null));
+
+        assertThat(first.join().entity()).hasValue("response");
+        assertThat(second.join().entity()).hasValue("response");
+        assertThat(coalescer.inFlightRequests()).isZero();
+    }
+
+    @Test
+    void doesNotShareRequestsOfDifferentUsers() {
+        coalescer.execute(GET_REQUEST, "token-1", execution());
+        coalescer.execute(GET_REQUEST, "token-2", execution());
+
+        assertThat(executions).hasValue(2);
+    }
+
+    @Test
+    void distinguishesRequestBodies() {
+        coalescer.execute(postRequest("{\"metrics\":[\"a\"]}"), "token", execution());
+        coalescer.execute(postRequest("{\"metrics\":[\"b\"]}"), "token", execution());
+        coalescer.execute(postRequest("{\"metrics\":[\"a\"]}"), "token", execution());
+
+        assertThat(executions).hasValue(2);
+    }
+
+    @Test
+    void executesAgainAfterCompletion() {
+        coalescer.execute(GET_REQUEST, "token", execution());
+        upstream.completeExceptionally(new IOException("Connection refused"));
+
+        final var retry = coalescer.execute(GET_REQUEST, "token", execution());
+
+        assertThat(executions).hasValue(2);
+        assertThat(retry).isCompletedExceptionally();
+    }
+
+    @Test
+    void callersCannotCancelSharedRequest() {
+        final var first = coalescer.execute(GET_REQUEST, "token", execution());
+        final var second = coalescer.execute(GET_REQUEST, "token", execution());
+
+        first.cancel(true);
+        upstream.complete(ProxiedResource.NodeResponse.create(true, 200, "response", null));
+
+        assertThat(upstream).isNotCancelled();
+        assertThat(second.join().entity()).hasValue("response");
+    }
+
+    @Test
+    void cancelsSharedRequestOnceAllCallersCancelled() {
+        final var first = coalescer.execute(GET_REQUEST, "token", execution());
+        final var second = coalescer.execute(GET_REQUEST, "token", execution());
+
+        first.cancel(true);
+        assertThat(upstream).isNotCancelled();
+
+        second.cancel(true);
+        assertThat(upstream).isCancelled();
+        assertThat(coalescer.inFlightRequests()).isZero();
+    }
+
+    @Test
+    void executesAgainAfterAllCallersCancelled() {
+        coalescer.execute(GET_REQUEST, "token", execution()).cancel(true);
+        final var cancelledUpstream = upstream;
+        upstream = new CompletableFuture<>();
+
+        final var retry = coalescer.execute(GET_REQUEST, "token", execution());
+        upstream.complete(ProxiedResource.NodeResponse.create(true, 200, "response", null));
+
+        assertThat(cancelledUpstream).isCancelled();
+        assertThat(executions).hasValue(2);
+        assertThat(retry.join().entity()).hasValue("response");
+    }
+
+    private static Request postRequest(String body) {
+        return new Request.Builder()
+                .url("http://node-1:9000/api/system/metrics/multiple")
+                .post(RequestBody.create(MediaType.get("application/json"), body))
+                .build();
+    }
+}
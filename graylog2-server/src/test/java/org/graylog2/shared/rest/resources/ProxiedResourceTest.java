@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.shared.rest.resources;
+
+import com.github.joschi.jadconfig.util.Duration;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.graylog2.cluster.Node;
+import org.graylog2.cluster.NodeService;
+import org.graylog2.rest.RemoteInterfaceProvider;
+import org.graylog2.shared.bindings.providers.ObjectMapperProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import retrofit2.Call;
+import retrofit2.http.GET;
+
+import javax.annotation.Nonnull;
+import javax.ws.rs.core.HttpHeaders;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProxiedResourceTest {
+    private static final int NODES = 10;
+
+    private final NodeService nodeService = mock(NodeService.class);
+    private MockWebServer server;
+    private TestResource resource;
+
+    interface TestInterface {
+        @GET("api/test")
+        Call<Map<String, Object>> get();
+    }
+
+    static class TestResource extends ProxiedResource {
+        TestResource(NodeService nodeService, RemoteInterfaceProvider remoteInterfaceProvider) {
+            super(mock(HttpHeaders.class), nodeService, remoteInterfaceProvider, mock(ExecutorService.class));
+        }
+
+        @Override
+        protected String getAuthenticationToken() {
+            return "token";
+        }
+
+        Map<String, CallResult<Map<String, Object>>> requestAll(java.time.Duration timeout) {
+            return requestOnAllNodes(TestInterface.class, TestInterface::get, timeout);
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        final RemoteInterfaceProvider remoteInterfaceProvider = new RemoteInterfaceProvider(new ObjectMapperProvider().get(),
+                new OkHttpClient(), Duration.seconds(5), 256, 64);
+        resource = new TestResource(nodeService, remoteInterfaceProvider);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    void callsAllNodesConcurrently() throws Exception {
+        final CountDownLatch allArrived = new CountDownLatch(NODES);
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+        final AtomicInteger concurrent = new AtomicInteger();
+        server.setDispatcher(new Dispatcher() {
+            @Nonnull
+            @Override
+            public MockResponse dispatch(@Nonnull RecordedRequest request) throws InterruptedException {
+                maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                allArrived.countDown();
+                // Only responds once the requests to all nodes are running at the same time
+                allArrived.await(5, TimeUnit.SECONDS);
+                concurrent.decrementAndGet();
+                return new MockResponse().setBody("{}");
+            }
+        });
+        // All nodes run on the same host, the default dispatcher only runs 5 requests per host
+        mockNodes(IntStream.range(0, NODES).mapToObj(i -> "node-" + i).collect(Collectors.toMap(Function.identity(), nodeId -> "/")));
+
+        final Map<String, ProxiedResource.CallResult<Map<String, Object>>> results = resource.requestAll(java.time.Duration.ofSeconds(5));
+
+        assertThat(allArrived.getCount()).isZero();
+        assertThat(maxConcurrent).hasValue(NODES);
+        assertThat(results).hasSize(NODES).allSatisfy((nodeId, result) -> {
+            assertThat(result.isCallExecuted()).isTrue();
+            assertThat(result.response()).isNotNull().satisfies(response -> assertThat(response.isSuccess()).isTrue());
+        });
+    }
+
+    @Test
+    void reportsSlowNodesAfterTheirDeadline() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        server.setDispatcher(new Dispatcher() {
+            @Nonnull
+            @Override
+            public MockResponse dispatch(@Nonnull RecordedRequest request) throws InterruptedException {
+                if (request.getPath().startsWith("/slow/")) {
+                    release.await(30, TimeUnit.SECONDS);
+                }
+                return new MockResponse().setBody("{}");
+            }
+        });
+        mockNodes(Map.of("fast", "/", "slow", "/slow/"));
+
+        final long start = System.nanoTime();
+        final Map<String, ProxiedResource.CallResult<Map<String, Object>>> results;
+        try {
+            results = resource.requestAll(java.time.Duration.ofMillis(200));
+        } finally {
+            release.countDown();
+        }
+
+        // The slow node is given up on after twice the call timeout instead of delaying the response
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(10));
+        assertThat(results.get("fast").response()).isNotNull().satisfies(response -> assertThat(response.isSuccess()).isTrue());
+        assertThat(results.get("slow").response()).isNull();
+        assertThat(results.get("slow").serverErrorMessage()).isNotNull();
+    }
+
+    private void mockNodes(Map<String, String> paths) throws Exception {
+        final Map<String, Node> nodes = paths.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> {
+                    final Node node = mock(Node.class);
+                    when(node.getNodeId()).thenReturn(entry.getKey());
+                    when(node.getTransportAddress()).thenReturn(server.url(entry.getValue()).toString());
+                    return node;
+                }));
+        when(nodeService.allActive()).thenReturn(nodes);
+        for (final Map.Entry<String, Node> node : nodes.entrySet()) {
+            when(nodeService.byNodeId(node.getKey())).thenReturn(node.getValue());
+        }
+    }
+}
@@ -16,12 +16,14 @@
  */
 package org.graylog2.streams;
 
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import org.junit.Before;
 import org.junit.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class StreamMetricsTest {
     private MetricRegistry metricRegistry;
@@ -41,4 +43,61 @@ public class StreamMetricsTest {
         assertThat(metricRegistry.getTimers())
                 .containsKey("org.graylog2.plugin.streams.Stream.stream-id.StreamRule.stream-rule-id.executionTime");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void timeRuleExecutionUsesPerRuleTimers() {
+        streamMetrics.timeRuleExecution("stream-id", "stream-rule-id").close();
+
+        assertThat(metricRegistry.getTimers().get("org.graylog2.plugin.streams.Stream.stream-id.StreamRule.stream-rule-id.executionTime").getCount())
+                .isEqualTo(1);
+        assertThat(metricRegistry.getMetrics()).doesNotContainKeys(StreamMetrics.RULE_EXECUTION_TIME, StreamMetrics.SLOWEST_RULES);
+    }
+
+    @Test
+    public void compactModeReportsSlowestRules() throws InterruptedException {
+        final StreamMetrics compactMetrics = new StreamMetrics(metricRegistry, true, 1, 2);
+
+        compactMetrics.timeRuleExecution("stream-1", "fast-rule").close();
+        try (StreamMetrics.RuleExecution ignored = compactMetrics.timeRuleExecution("stream-1", "slow-rule")) {
+            Thread.sleep(20);
+        }
+        try (StreamMetrics.RuleExecution ignored = compactMetrics.timeRuleExecution("stream-2", "medium-rule")) {
+            Thread.sleep(5);
+        }
+
+        assertThat(metricRegistry.getTimers()).isEmpty();
+        assertThat(metricRegistry.getHistograms().get(StreamMetrics.RULE_EXECUTION_TIME))
+                .extracting(Histogram::getCount)
+                .isEqualTo(3L);
+        assertThat(compactMetrics.slowestRules())
+                .extracting(StreamMetrics.SlowRule::streamRuleId)
+                .containsExactly("slow-rule", "medium-rule");
+        assertThat(compactMetrics.slowestRules().get(0)).satisfies(rule -> {
+            assertThat(rule.streamId()).isEqualTo("stream-1");
+            assertThat(rule.executions()).isEqualTo(1);
+            assertThat(rule.meanExecutionTimeMicros()).isGreaterThanOrEqualTo(20_000);
+        });
+    }
+
+    @Test
+    public void compactModeSamplesExecutionTimes() {
+        final StreamMetrics compactMetrics = new StreamMetrics(metricRegistry, true, 100, 10);
+
+        for (int i = 0; i < 10_000; i++) {
+            compactMetrics.timeRuleExecution("stream-id", "stream-rule-id").close();
+        }
+
+        final long sampled = metricRegistry.getHistograms().get(StreamMetrics.RULE_EXECUTION_TIME).getCount();
+        assertThat(sampled).isBetween(1L, 1_000L);
+        assertThat(compactMetrics.slowestRules())
+                .singleElement()
+                .extracting(StreamMetrics.SlowRule::executions)
+                .isEqualTo(10_000L);
+    }
+
+    @Test
+    public void rejectsInvalidSampleRate() {
+        assertThatThrownBy(() -> new StreamMetrics(metricRegistry, true, 0, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -109,6 +109,24 @@ describe('FieldValueCompletion', () => {
       expect(suggestions).toEqual(expectedSuggestions);
     });
 
+    it('marks hits of approximate suggestions', async () => {
+      asMock(SearchSuggestions.suggestFieldValue).mockResolvedValue({ ...suggestionsResponse, approximate: true });
+      const currentToken = createKeywordToken('http_method:');
+      const completer = new FieldValueCompletion();
+
+      const suggestions = await completer.getCompletions({
+        ...requestDefaults,
+        currentToken,
+        tokens: [currentToken],
+        currentTokenIdx: 0,
+      });
+
+      expect(suggestions).toEqual([
+        { name: 'POST', value: 'POST', caption: 'POST', score: 300, meta: '~300 hits' },
+        { name: 'PUT', value: 'PUT', caption: 'PUT', score: 400, meta: '~400 hits' },
+      ]);
+    });
+
     it('returns suggestions, when current token is a term and last token is a keyword', async () => {
       const currentToken = createCurrentToken('term', 'P', 1, 12);
       const lastToken = {
@@ -72,12 +72,14 @@ const getFieldNameAndInput = (currentToken: Token | undefined | null, lastToken:
 
 const isEnumerableField = (field: FieldTypeMapping | undefined) => field?.type.isEnumerable() ?? false;
 
-const formatSuggestion = (value: string, occurrence: number, input: string | number, isQuoted: boolean, title: string | undefined): CompletionResult => ({
+const formatHits = (occurrence: number, approximate: boolean) => (approximate ? `~${occurrence} hits` : `${occurrence} hits`);
+
+const formatSuggestion = (value: string, occurrence: number, input: string | number, isQuoted: boolean, title: string | undefined, approximate = false): CompletionResult => ({
   name: value,
   value: isQuoted ? value : escape(value),
   score: occurrence,
   caption: completionCaption(value, input, isQuoted),
-  meta: title ? `${title}: ${occurrence} hits` : `${occurrence} hits`,
+  meta: title ? `${title}: ${formatHits(occurrence, approximate)}` : formatHits(occurrence, approximate),
 });
 
 type PreviousSuggestions = Array<{ value: string, occurrence: number, title?: string }> | undefined;
@@ -85,6 +87,7 @@ type PreviousSuggestions = Array<{ value: string, occurrence: number, title?: st
 class FieldValueCompletion implements Completer {
   private previousSuggestions: undefined | {
     furtherSuggestionsCount: number,
+    approximate: boolean,
     suggestions: PreviousSuggestions,
     fieldName: string,
     input: string | number,
@@ -136,9 +139,11 @@ class FieldValueCompletion implements Completer {
 
   private filterExistingSuggestions(input: string | number, isQuoted: boolean) {
     if (this.previousSuggestions) {
-      return this.previousSuggestions.suggestions
+      const { suggestions, approximate } = this.previousSuggestions;
+
+      return suggestions
         .filter(({ value }) => (isQuoted ? value : escape(value)).startsWith(String(input)))
-        .map(({ value, occurrence, title }) => formatSuggestion(value, occurrence, input, isQuoted, title));
+        .map(({ value, occurrence, title }) => formatSuggestion(value, occurrence, input, isQuoted, title, approximate));
     }
 
     return [];
@@ -174,13 +179,14 @@ class FieldValueCompletion implements Completer {
       timerange: normalizedTimeRange,
       streams,
       size: SUGGESTIONS_PAGE_SIZE,
-    }).then(({ suggestions, sum_other_docs_count: furtherSuggestionsCount }) => {
+    }).then(({ suggestions, sum_other_docs_count: furtherSuggestionsCount, approximate = false }) => {
       if (!suggestions) {
         return [];
       }
 
       this.previousSuggestions = {
         furtherSuggestionsCount,
+        approximate,
         streams,
         timeRange,
         fieldName,
@@ -188,7 +194,7 @@ class FieldValueCompletion implements Completer {
         suggestions,
       };
 
-      return suggestions.map(({ value, occurrence, title }: any) => formatSuggestion(value, occurrence, input, isQuoted, title));
+      return suggestions.map(({ value, occurrence, title }: any) => formatSuggestion(value, occurrence, input, isQuoted, title, approximate));
     });
   };
 